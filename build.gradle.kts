@@ -3,7 +3,7 @@ plugins {
     id("com.google.protobuf") version ("0.9.4")
     id("jacoco")
     id("application")
-    id("com.gradleup.shadow") version "9.6.1"
+    id("com.gradleup.shadow") version "9.2.2"
 }
 
 group = "com.github.lukaszbudnik"
@@ -29,9 +29,10 @@ val classifier = when {
 println("Detected OS: $os, RocksDB classifier: $classifier")
 
 dependencies {
-    implementation(libs.rocksdb.map { "${it.group}:${it.name}:${it.version}:${classifier}" })
+    implementation(libs.rocksdb.map { "${it.group}:${it.name}:${it.version}" })
     implementation(libs.kryo)
     implementation(libs.commons.io)
+    implementation(libs.caffeine)
 
     implementation(libs.protobuf.java)
     implementation(libs.protobuf.java.util)
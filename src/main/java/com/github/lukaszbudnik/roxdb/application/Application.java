@@ -3,12 +3,18 @@ package com.github.lukaszbudnik.roxdb.application;
 import com.github.lukaszbudnik.roxdb.grpc.RoxDBGrpcService;
 import com.github.lukaszbudnik.roxdb.grpc.RoxDBServer;
 import com.github.lukaszbudnik.roxdb.metrics.*;
+import com.github.lukaszbudnik.roxdb.rocksdb.MemoryBudget;
 import com.github.lukaszbudnik.roxdb.rocksdb.RoxDB;
 import com.github.lukaszbudnik.roxdb.rocksdb.RoxDBImpl;
+import com.github.lukaszbudnik.roxdb.rocksdb.StartupStats;
+import com.github.lukaszbudnik.roxdb.rocksdb.StorageOptions;
+import com.github.lukaszbudnik.roxdb.rocksdb.TablesConfig;
+import com.github.lukaszbudnik.roxdb.rocksdb.TablesConfigReader;
 import com.google.common.base.Strings;
 import io.opentelemetry.api.metrics.Meter;
 import io.opentelemetry.sdk.metrics.export.MetricExporter;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Map;
 import org.rocksdb.RocksDBException;
 import org.slf4j.Logger;
@@ -18,11 +24,18 @@ public class Application {
   private static final Logger logger = LoggerFactory.getLogger(Application.class);
 
   private final RoxDBConfig config;
+  private final ContainerResources containerResources;
   private RoxDBServer server;
 
   public Application(Map<String, String> env) {
     EnvironmentConfigReader configReader = new EnvironmentConfigReader();
-    config = configReader.readConfiguration(env);
+    RoxDBConfig environmentConfig = configReader.readConfiguration(env);
+    containerResources = ContainerResources.detect();
+    config =
+        environmentConfig.autoTune()
+            ? AutoTuning.tune(
+                environmentConfig, env, containerResources, Runtime.getRuntime().maxMemory())
+            : environmentConfig;
 
     ConfigurationValidator configurationValidator = new ConfigurationValidator();
     configurationValidator.validateConfiguration(config);
@@ -41,8 +54,13 @@ public class Application {
   }
 
   void startApplication() throws RocksDBException, IOException {
-    RoxDB roxDB = new RoxDBImpl(config.dbPath());
-    this.server = new RoxDBServer(config, new RoxDBGrpcService(roxDB));
+    TablesConfig tablesConfig = TablesConfig.EMPTY;
+    if (!Strings.isNullOrEmpty(config.tablesConfig())) {
+      TablesConfigReader tablesConfigReader = new TablesConfigReader();
+      tablesConfig = tablesConfigReader.readConfig(config.tablesConfig());
+    }
+    RoxDB roxDB = new RoxDBImpl(config.dbPath(), tablesConfig, storageOptions(config));
+    this.server = new RoxDBServer(config, new RoxDBGrpcService(roxDB, config.ioThreads()));
     MetricExporter metricExporter = null;
     if (!Strings.isNullOrEmpty(config.openTelemetryConfig())) {
       MetricsConfigReader metricsConfigReader = new MetricsConfigReader();
@@ -56,10 +74,67 @@ public class Application {
       MetricsConfigProcessor metricsConfigProcessor = new MetricsConfigProcessor(metricsConfig);
       metricsCollector.createTickerTypeMetrics(metricsConfigProcessor.getTickerTypes());
       metricsCollector.createHistogramTypeMetrics(metricsConfigProcessor.getHistogramTypes());
+      metricsCollector.createCacheMetrics("roxdb_item_cache", roxDB::getItemCacheStats);
+      metricsCollector.createCacheMetrics("roxdb_query_cache", roxDB::getQueryCacheStats);
+      metricsCollector.createBlockCacheMetrics(roxDB::getBlockCacheStats);
+      metricsCollector.createGauge("roxdb_memtables_size_bytes", roxDB::getMemTablesSizeBytes);
+      StartupStats startupStats = roxDB.getStartupStats();
+      metricsCollector.createGauge(
+          "roxdb_startup_column_family_discovery_millis",
+          startupStats::columnFamilyDiscoveryMillis);
+      metricsCollector.createGauge("roxdb_startup_open_millis", startupStats::openMillis);
+      metricsCollector.createGauge("roxdb_startup_wal_replay_files", startupStats::walReplayFiles);
+      metricsCollector.createGauge("roxdb_startup_wal_replay_bytes", startupStats::walReplayBytes);
+      metricsCollector.createGauge(
+          "roxdb_startup_derived_data_millis", startupStats::derivedDataMillis);
+      metricsCollector.createGauge("roxdb_tuning_cpus", containerResources::cpus);
+      metricsCollector.createGauge(
+          "roxdb_tuning_memory_limit_bytes", containerResources::memoryLimitBytes);
+      metricsCollector.createGauge("roxdb_tuning_background_jobs", config::backgroundJobs);
+      metricsCollector.createGauge("roxdb_tuning_event_loop_threads", config::eventLoopThreads);
+      metricsCollector.createGauge("roxdb_tuning_io_threads", config::ioThreads);
+      metricsCollector.createGauge(
+          "roxdb_tuning_memory_budget_bytes", () -> config.memoryBudgetMb() * 1024 * 1024);
     }
-    ShutdownManager shutdownManager = new ShutdownManager(server, roxDB, metricExporter);
-    server.start();
+    ShutdownManager shutdownManager =
+        new ShutdownManager(server, roxDB, metricExporter, config.warmUpKeys());
+    // warm up can take ROXDB_WARMUP_SECONDS, termination during warm up shuts down cleanly too
     shutdownManager.register();
+    if (config.warmUpSeconds() > 0) {
+      server.start(() -> roxDB.warmUp(Duration.ofSeconds(config.warmUpSeconds())));
+    } else {
+      server.start();
+    }
+  }
+
+  static StorageOptions storageOptions(RoxDBConfig config) {
+    StorageOptions storageOptions =
+        new StorageOptions(
+            config.walTtlSeconds(),
+            config.walSizeLimitMb(),
+            config.itemCacheSizeMb() * 1024 * 1024,
+            config.queryCacheSizeMb() * 1024 * 1024,
+            config.blockCacheSizeMb() * 1024 * 1024,
+            config.blockCacheType(),
+            config.secondaryCachePath(),
+            config.secondaryCacheSizeMb() * 1024 * 1024,
+            0,
+            config.backgroundJobs(),
+            config.idleFlushSeconds());
+    if (config.memoryBudgetMb() == 0) {
+      return storageOptions;
+    }
+    MemoryBudget memoryBudget =
+        new MemoryBudget(config.memoryBudgetMb() * 1024 * 1024, Runtime.getRuntime().maxMemory());
+    logger.info(
+        "Memory budget of {} bytes: block cache {} (write buffers {}), item cache {}, query cache"
+            + " {}",
+        memoryBudget.totalBytes(),
+        memoryBudget.blockCacheBytes(),
+        memoryBudget.writeBufferBytes(),
+        memoryBudget.itemCacheBytes(),
+        memoryBudget.queryCacheBytes());
+    return memoryBudget.apply(storageOptions);
   }
 
   void blockUntilShutdown() throws InterruptedException {
@@ -0,0 +1,98 @@
+package com.github.lukaszbudnik.roxdb.application;
+
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Derives settings left unset in the environment from container resources: RocksDB background jobs
+// (flushes and compactions), Netty event loop threads and I/O threads reading items from disk
+// (which mostly wait, so there are more of them) from CPUs, and the memory budget shared by caches
+// and memtables from the memory limit. The budget takes a share of memory left after the
+// maximum heap, the rest is kept for memory RocksDB and Netty allocate outside of the budget
+// (iterators, compaction and network buffers, thread stacks), plus a share of the heap for item
+// and query caches. Memory is not tuned when the container has no memory limit.
+class AutoTuning {
+  static final int MIN_BACKGROUND_JOBS = 2;
+  static final int IO_THREADS_PER_CPU = 2;
+  static final double NATIVE_MEMORY_SHARE = 0.6;
+  static final double HEAP_SHARE = 0.25;
+  private static final Logger logger = LoggerFactory.getLogger(AutoTuning.class);
+
+  private AutoTuning() {}
+
+  static RoxDBConfig tune(
+      RoxDBConfig config,
+      Map<String, String> env,
+      ContainerResources resources,
+      long maxHeapBytes) {
+    int backgroundJobs = config.backgroundJobs();
+    if (backgroundJobs == 0) {
+      backgroundJobs = Math.max(MIN_BACKGROUND_JOBS, resources.cpus());
+    }
+    int eventLoopThreads = config.eventLoopThreads();
+    if (eventLoopThreads == 0) {
+      eventLoopThreads = resources.cpus();
+    }
+    int ioThreads = config.ioThreads();
+    if (ioThreads == 0) {
+      ioThreads = IO_THREADS_PER_CPU * resources.cpus();
+    }
+    long memoryBudgetMb = config.memoryBudgetMb();
+    if (memoryBudgetMb == 0 && !cacheSizesSet(env) && resources.memoryLimitBytes() > 0) {
+      if (resources.memoryLimitBytes() > maxHeapBytes) {
+        long budgetBytes =
+            (long)
+                ((resources.memoryLimitBytes() - maxHeapBytes) * NATIVE_MEMORY_SHARE
+                    + maxHeapBytes * HEAP_SHARE);
+        memoryBudgetMb = budgetBytes / (1024 * 1024);
+      } else {
+        logger.warn(
+            "Memory limit of {} bytes is not greater than maximum heap of {} bytes, memory budget"
+                + " is not tuned",
+            resources.memoryLimitBytes(),
+            maxHeapBytes);
+      }
+    }
+    logger.info(
+        "Auto tuning for {} CPUs and memory limit of {} bytes: background jobs {}, event loop"
+            + " threads {}, I/O threads {}, memory budget {} MB",
+        resources.cpus(),
+        resources.memoryLimitBytes(),
+        backgroundJobs,
+        eventLoopThreads,
+        ioThreads,
+        memoryBudgetMb);
+
+    return new RoxDBConfig(
+        config.port(),
+        config.dbPath(),
+        config.tlsCertificatePath(),
+        config.tlsPrivateKeyPath(),
+        config.tlsCertificateChainPath(),
+        config.openTelemetryConfig(),
+        config.tablesConfig(),
+        config.walTtlSeconds(),
+        config.walSizeLimitMb(),
+        config.itemCacheSizeMb(),
+        config.queryCacheSizeMb(),
+        config.blockCacheSizeMb(),
+        config.blockCacheType(),
+        config.secondaryCachePath(),
+        config.secondaryCacheSizeMb(),
+        memoryBudgetMb,
+        config.autoTune(),
+        backgroundJobs,
+        eventLoopThreads,
+        ioThreads,
+        config.warmUpKeys(),
+        config.warmUpSeconds(),
+        config.idleFlushSeconds());
+  }
+
+  // explicitly sized caches are kept instead of being replaced by a tuned budget
+  private static boolean cacheSizesSet(Map<String, String> env) {
+    return env.containsKey(EnvironmentConfigReader.ENV_ITEM_CACHE_SIZE_MB)
+        || env.containsKey(EnvironmentConfigReader.ENV_QUERY_CACHE_SIZE_MB)
+        || env.containsKey(EnvironmentConfigReader.ENV_BLOCK_CACHE_SIZE_MB);
+  }
+}
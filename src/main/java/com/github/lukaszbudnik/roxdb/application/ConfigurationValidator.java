@@ -11,6 +11,7 @@ public class ConfigurationValidator {
     validatePort(config.port());
     validateDbPath(config.dbPath());
     validateFile(config.openTelemetryConfig(), "OpenTelemetry config");
+    validateFile(config.tablesConfig(), "Tables config");
     validateTLSConfiguration(
         config.tlsCertificatePath(), config.tlsPrivateKeyPath(), config.tlsCertificateChainPath());
   }
@@ -0,0 +1,75 @@
+package com.github.lukaszbudnik.roxdb.application;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// CPU and memory limits of the container read from cgroup files, cgroup v2 (cpu.max, memory.max)
+// is tried first and cgroup v1 (cpu and memory controllers) second. Processors default to those
+// available to the JVM, memory limit is 0 when the container is not limited.
+public record ContainerResources(int cpus, long memoryLimitBytes) {
+  static final Path CGROUP_ROOT = Path.of("/sys/fs/cgroup");
+  private static final Logger logger = LoggerFactory.getLogger(ContainerResources.class);
+  // cgroup v1 reports unlimited memory as a page aligned value close to Long.MAX_VALUE
+  private static final long UNLIMITED_MEMORY_BYTES = 1L << 60;
+
+  public static ContainerResources detect() {
+    return detect(CGROUP_ROOT, Runtime.getRuntime().availableProcessors());
+  }
+
+  static ContainerResources detect(Path cgroupRoot, int availableProcessors) {
+    int cpus = availableProcessors;
+    long quota = -1;
+    long period = 0;
+    String cpuMax = read(cgroupRoot.resolve("cpu.max"));
+    if (cpuMax != null) {
+      String[] parts = cpuMax.split("\\s+");
+      if (!"max".equals(parts[0]) && parts.length == 2) {
+        quota = parseLong(parts[0]);
+        period = parseLong(parts[1]);
+      }
+    } else {
+      quota = parseLong(read(cgroupRoot.resolve("cpu/cpu.cfs_quota_us")));
+      period = parseLong(read(cgroupRoot.resolve("cpu/cpu.cfs_period_us")));
+    }
+    if (quota > 0 && period > 0) {
+      cpus = (int) Math.max(1, Math.min(availableProcessors, (quota + period - 1) / period));
+    }
+
+    String memoryMax = read(cgroupRoot.resolve("memory.max"));
+    if (memoryMax == null) {
+      memoryMax = read(cgroupRoot.resolve("memory/memory.limit_in_bytes"));
+    }
+    long memoryLimitBytes = parseLong(memoryMax);
+    if (memoryLimitBytes <= 0 || memoryLimitBytes >= UNLIMITED_MEMORY_BYTES) {
+      memoryLimitBytes = 0;
+    }
+    return new ContainerResources(cpus, memoryLimitBytes);
+  }
+
+  private static String read(Path path) {
+    if (!Files.isReadable(path)) {
+      return null;
+    }
+    try {
+      return Files.readString(path).trim();
+    } catch (IOException e) {
+      logger.warn("Error reading cgroup file {}", path, e);
+      return null;
+    }
+  }
+
+  // missing, unlimited ("max") and invalid values are -1
+  private static long parseLong(String value) {
+    if (value == null) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package com.github.lukaszbudnik.roxdb.application;
 
+import com.github.lukaszbudnik.roxdb.rocksdb.BlockCacheType;
+import com.github.lukaszbudnik.roxdb.rocksdb.StorageOptions;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,9 +13,34 @@ public class EnvironmentConfigReader {
   public static final String ENV_TLS_CERTIFICATE_PATH = "ROXDB_TLS_CERTIFICATE_PATH";
   public static final String ENV_TLS_CERTIFICATE_CHAIN_PATH = "ROXDB_TLS_CERTIFICATE_CHAIN_PATH";
   public static final String ENV_OPENTELEMETRY_CONFIG = "ROXDB_OPENTELEMETRY_CONFIG";
+  public static final String ENV_TABLES_CONFIG = "ROXDB_TABLES_CONFIG";
+  public static final String ENV_WAL_TTL_SECONDS = "ROXDB_WAL_TTL_SECONDS";
+  public static final String ENV_WAL_SIZE_LIMIT_MB = "ROXDB_WAL_SIZE_LIMIT_MB";
+  public static final String ENV_ITEM_CACHE_SIZE_MB = "ROXDB_ITEM_CACHE_SIZE_MB";
+  public static final String ENV_QUERY_CACHE_SIZE_MB = "ROXDB_QUERY_CACHE_SIZE_MB";
+  public static final String ENV_BLOCK_CACHE_SIZE_MB = "ROXDB_BLOCK_CACHE_SIZE_MB";
+  public static final String ENV_BLOCK_CACHE_TYPE = "ROXDB_BLOCK_CACHE_TYPE";
+  public static final String ENV_SECONDARY_CACHE_PATH = "ROXDB_SECONDARY_CACHE_PATH";
+  public static final String ENV_SECONDARY_CACHE_SIZE_MB = "ROXDB_SECONDARY_CACHE_SIZE_MB";
+  public static final String ENV_MEMORY_BUDGET_MB = "ROXDB_MEMORY_BUDGET_MB";
+  public static final String ENV_AUTO_TUNE = "ROXDB_AUTO_TUNE";
+  public static final String ENV_BACKGROUND_JOBS = "ROXDB_BACKGROUND_JOBS";
+  public static final String ENV_EVENT_LOOP_THREADS = "ROXDB_EVENT_LOOP_THREADS";
+  public static final String ENV_IO_THREADS = "ROXDB_IO_THREADS";
+  public static final String ENV_WARMUP_KEYS = "ROXDB_WARMUP_KEYS";
+  public static final String ENV_WARMUP_SECONDS = "ROXDB_WARMUP_SECONDS";
+  public static final String ENV_IDLE_FLUSH_SECONDS = "ROXDB_IDLE_FLUSH_SECONDS";
 
   public static final int DEFAULT_PORT = 50051;
   public static final String DEFAULT_DB_PATH = "/tmp/rocksdb";
+  public static final long DEFAULT_ITEM_CACHE_SIZE_MB = 64;
+  public static final long DEFAULT_QUERY_CACHE_SIZE_MB = 32;
+  public static final long DEFAULT_BLOCK_CACHE_SIZE_MB = 256;
+  public static final BlockCacheType DEFAULT_BLOCK_CACHE_TYPE = BlockCacheType.LRU;
+  public static final String DEFAULT_SECONDARY_CACHE_PATH = "/dev/shm/roxdb-block-cache";
+  public static final long MIN_SECONDARY_CACHE_SIZE_MB = 100;
+  public static final int DEFAULT_WARMUP_KEYS = 10000;
+  public static final long DEFAULT_WARMUP_SECONDS = 30;
 
   private static final Logger logger = LoggerFactory.getLogger(EnvironmentConfigReader.class);
 
@@ -81,12 +108,154 @@ public class EnvironmentConfigReader {
       logger.info("No OpenTelemetry config specified in environment. OpenTelemetry is disabled.");
     }
 
+    // Try to get TABLES_CONFIG from environment
+    String tablesConfig = env.get(ENV_TABLES_CONFIG);
+    if (tablesConfig != null && !tablesConfig.isBlank()) {
+      logger.info("Using tables config from environment variable: {}", tablesConfig);
+    } else {
+      logger.info("No tables config specified in environment. Using default table settings.");
+    }
+
+    // WAL retention lets GetChanges read changes which were already flushed
+    long walTtlSeconds = readNonNegativeLong(env, ENV_WAL_TTL_SECONDS, "WAL TTL seconds", 0);
+    long walSizeLimitMb = readNonNegativeLong(env, ENV_WAL_SIZE_LIMIT_MB, "WAL size limit MB", 0);
+    // 0 disables the cache
+    long itemCacheSizeMb =
+        readNonNegativeLong(
+            env, ENV_ITEM_CACHE_SIZE_MB, "item cache size MB", DEFAULT_ITEM_CACHE_SIZE_MB);
+    long queryCacheSizeMb =
+        readNonNegativeLong(
+            env, ENV_QUERY_CACHE_SIZE_MB, "query cache size MB", DEFAULT_QUERY_CACHE_SIZE_MB);
+    long blockCacheSizeMb =
+        readNonNegativeLong(
+            env, ENV_BLOCK_CACHE_SIZE_MB, "block cache size MB", DEFAULT_BLOCK_CACHE_SIZE_MB);
+    if (blockCacheSizeMb == 0) {
+      logger.warn("Block cache size cannot be 0. Using default: {}", DEFAULT_BLOCK_CACHE_SIZE_MB);
+      blockCacheSizeMb = DEFAULT_BLOCK_CACHE_SIZE_MB;
+    }
+    BlockCacheType blockCacheType = readBlockCacheType(env);
+    // secondary block cache tier is disabled by default, its path should be memory backed
+    long secondaryCacheSizeMb =
+        readNonNegativeLong(env, ENV_SECONDARY_CACHE_SIZE_MB, "secondary cache size MB", 0);
+    if (secondaryCacheSizeMb > 0 && secondaryCacheSizeMb < MIN_SECONDARY_CACHE_SIZE_MB) {
+      logger.warn(
+          "Secondary cache size must be at least {} MB. Using: {}",
+          MIN_SECONDARY_CACHE_SIZE_MB,
+          MIN_SECONDARY_CACHE_SIZE_MB);
+      secondaryCacheSizeMb = MIN_SECONDARY_CACHE_SIZE_MB;
+    }
+    String secondaryCachePath = env.get(ENV_SECONDARY_CACHE_PATH);
+    if (secondaryCachePath == null || secondaryCachePath.isBlank()) {
+      secondaryCachePath = DEFAULT_SECONDARY_CACHE_PATH;
+    }
+    if (secondaryCacheSizeMb > 0) {
+      logger.info("Using secondary cache path: {}", secondaryCachePath);
+    }
+    // when set the budget replaces item, query and block cache sizes
+    long memoryBudgetMb = readNonNegativeLong(env, ENV_MEMORY_BUDGET_MB, "memory budget MB", 0);
+    // settings left at 0 are derived from container resources when auto tuning is enabled
+    boolean autoTune = !"false".equalsIgnoreCase(env.getOrDefault(ENV_AUTO_TUNE, "").trim());
+    logger.info("Auto tuning enabled: {}", autoTune);
+    int backgroundJobs =
+        (int)
+            Math.min(
+                Integer.MAX_VALUE,
+                readNonNegativeLong(env, ENV_BACKGROUND_JOBS, "background jobs", 0));
+    int eventLoopThreads =
+        (int)
+            Math.min(
+                Integer.MAX_VALUE,
+                readNonNegativeLong(env, ENV_EVENT_LOOP_THREADS, "event loop threads", 0));
+    // GetItem reads which miss block cache run on I/O threads, 0 runs them on gRPC threads
+    int ioThreads =
+        (int)
+            Math.min(Integer.MAX_VALUE, readNonNegativeLong(env, ENV_IO_THREADS, "I/O threads", 0));
+    // hot keys saved on shutdown are read on startup before the server reports SERVING, 0 disables
+    int warmUpKeys =
+        (int)
+            Math.min(
+                Integer.MAX_VALUE,
+                readNonNegativeLong(env, ENV_WARMUP_KEYS, "warm up keys", DEFAULT_WARMUP_KEYS));
+    long warmUpSeconds =
+        readNonNegativeLong(env, ENV_WARMUP_SECONDS, "warm up seconds", DEFAULT_WARMUP_SECONDS);
+    // memtables of tables without writes for this long are flushed to bound WAL replayed on restart
+    long idleFlushSeconds =
+        readNonNegativeLong(
+            env,
+            ENV_IDLE_FLUSH_SECONDS,
+            "idle flush seconds",
+            StorageOptions.DEFAULT_IDLE_FLUSH_SECONDS);
+
     return new RoxDBConfig(
         port,
         dbPath,
         tlsCertificatePath,
         tlsPrivateKeyPath,
         tlsCertificateChainPath,
-        openTelemetryConfig);
+        openTelemetryConfig,
+        tablesConfig,
+        walTtlSeconds,
+        walSizeLimitMb,
+        itemCacheSizeMb,
+        queryCacheSizeMb,
+        blockCacheSizeMb,
+        blockCacheType,
+        secondaryCachePath,
+        secondaryCacheSizeMb,
+        memoryBudgetMb,
+        autoTune,
+        backgroundJobs,
+        eventLoopThreads,
+        ioThreads,
+        warmUpKeys,
+        warmUpSeconds,
+        idleFlushSeconds);
+  }
+
+  private BlockCacheType readBlockCacheType(Map<String, String> env) {
+    String value = env.get(ENV_BLOCK_CACHE_TYPE);
+    if (value == null || value.isBlank()) {
+      logger.info(
+          "No block cache type specified in environment. Using default: {}",
+          DEFAULT_BLOCK_CACHE_TYPE);
+      return DEFAULT_BLOCK_CACHE_TYPE;
+    }
+    try {
+      BlockCacheType blockCacheType = BlockCacheType.valueOf(value.trim().toUpperCase());
+      logger.info("Using block cache type from environment variable: {}", blockCacheType);
+      return blockCacheType;
+    } catch (IllegalArgumentException e) {
+      logger.warn(
+          "Invalid block cache type in environment variable {}: '{}'. Using default: {}",
+          ENV_BLOCK_CACHE_TYPE,
+          value,
+          DEFAULT_BLOCK_CACHE_TYPE);
+      return DEFAULT_BLOCK_CACHE_TYPE;
+    }
+  }
+
+  private long readNonNegativeLong(
+      Map<String, String> env, String name, String description, long defaultValue) {
+    String value = env.get(name);
+    if (value == null || value.isBlank()) {
+      logger.info("No {} specified in environment. Using default: {}", description, defaultValue);
+      return defaultValue;
+    }
+    try {
+      long parsed = Long.parseLong(value);
+      if (parsed >= 0) {
+        logger.info("Using {} from environment variable: {}", description, parsed);
+        return parsed;
+      }
+    } catch (NumberFormatException e) {
+      // handled below
+    }
+    logger.warn(
+        "Invalid {} in environment variable {}: '{}'. Using default: {}",
+        description,
+        name,
+        value,
+        defaultValue);
+    return defaultValue;
   }
 }
@@ -1,9 +1,28 @@
 package com.github.lukaszbudnik.roxdb.application;
 
+import com.github.lukaszbudnik.roxdb.rocksdb.BlockCacheType;
+
 public record RoxDBConfig(
     int port,
     String dbPath,
     String tlsCertificatePath,
     String tlsPrivateKeyPath,
     String tlsCertificateChainPath,
-    String openTelemetryConfig) {}
+    String openTelemetryConfig,
+    String tablesConfig,
+    long walTtlSeconds,
+    long walSizeLimitMb,
+    long itemCacheSizeMb,
+    long queryCacheSizeMb,
+    long blockCacheSizeMb,
+    BlockCacheType blockCacheType,
+    String secondaryCachePath,
+    long secondaryCacheSizeMb,
+    long memoryBudgetMb,
+    boolean autoTune,
+    int backgroundJobs,
+    int eventLoopThreads,
+    int ioThreads,
+    int warmUpKeys,
+    long warmUpSeconds,
+    long idleFlushSeconds) {}
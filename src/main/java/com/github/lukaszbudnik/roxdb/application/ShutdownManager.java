@@ -3,6 +3,7 @@ package com.github.lukaszbudnik.roxdb.application;
 import com.github.lukaszbudnik.roxdb.grpc.RoxDBServer;
 import com.github.lukaszbudnik.roxdb.rocksdb.RoxDB;
 import io.opentelemetry.sdk.metrics.export.MetricExporter;
+import java.io.IOException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,11 +13,19 @@ public class ShutdownManager {
   private final RoxDBServer server;
   private final RoxDB roxDB;
   private final MetricExporter metricExporter;
+  private final int warmUpKeys;
 
   public ShutdownManager(RoxDBServer server, RoxDB roxDB, MetricExporter metricExporter) {
+    this(server, roxDB, metricExporter, 0);
+  }
+
+  // up to warmUpKeys hot keys are saved for warm up on the next start, 0 does not save them
+  public ShutdownManager(
+      RoxDBServer server, RoxDB roxDB, MetricExporter metricExporter, int warmUpKeys) {
     this.server = server;
     this.roxDB = roxDB;
     this.metricExporter = metricExporter;
+    this.warmUpKeys = warmUpKeys;
     this.shutdownHook = createShutdownHook();
   }
 
@@ -32,6 +41,21 @@ public class ShutdownManager {
       logger.error("Error during server shutdown", e);
     }
 
+    if (warmUpKeys > 0) {
+      try {
+        roxDB.saveWarmUpManifest(warmUpKeys);
+      } catch (IOException e) {
+        logger.error("Error saving warm up manifest", e);
+      }
+    }
+
+    // memtables flushed now are not replayed from WAL on the next start
+    try {
+      roxDB.flush();
+    } catch (Exception e) {
+      logger.error("Error flushing RocksDB memtables", e);
+    }
+
     try {
       roxDB.close();
     } catch (Exception e) {
@@ -1,11 +1,20 @@
 package com.github.lukaszbudnik.roxdb.grpc;
 
+import com.github.lukaszbudnik.roxdb.rocksdb.AggregateFunction;
+import com.github.lukaszbudnik.roxdb.rocksdb.AggregateGroup;
+import com.github.lukaszbudnik.roxdb.rocksdb.ChangeEvent;
+import com.github.lukaszbudnik.roxdb.rocksdb.ChangeType;
+import com.github.lukaszbudnik.roxdb.rocksdb.GeoArea;
+import com.github.lukaszbudnik.roxdb.rocksdb.IndexType;
+import com.github.lukaszbudnik.roxdb.rocksdb.QueryAggregate;
 import com.github.lukaszbudnik.roxdb.rocksdb.RangeBoundary;
 import com.github.lukaszbudnik.roxdb.rocksdb.RangeType;
 import com.github.lukaszbudnik.roxdb.rocksdb.SortKeyRange;
 import com.github.lukaszbudnik.roxdb.v1.Item;
 import com.github.lukaszbudnik.roxdb.v1.ItemRequest;
+import com.github.lukaszbudnik.roxdb.v1.ItemResponse;
 import com.github.lukaszbudnik.roxdb.v1.Key;
+import com.github.lukaszbudnik.roxdb.v1.WatchResponse;
 import com.google.protobuf.ListValue;
 import com.google.protobuf.NullValue;
 import com.google.protobuf.Struct;
@@ -84,6 +93,40 @@ public class ProtoUtils {
         .build();
   }
 
+  public static WatchResponse modelToProto(ChangeEvent changeEvent) {
+    return WatchResponse.newBuilder()
+        .setType(modelToProto(changeEvent.type()))
+        .setItem(changeItem(changeEvent))
+        .build();
+  }
+
+  public static ItemResponse.GetChangesResponse.Change modelToProtoChange(ChangeEvent changeEvent) {
+    return ItemResponse.GetChangesResponse.Change.newBuilder()
+        .setTable(changeEvent.tableName())
+        .setType(modelToProto(changeEvent.type()))
+        .setItem(changeItem(changeEvent))
+        .build();
+  }
+
+  public static WatchResponse.ChangeType modelToProto(ChangeType changeType) {
+    return switch (changeType) {
+      case PUT -> WatchResponse.ChangeType.PUT;
+      case DELETE -> WatchResponse.ChangeType.DELETE;
+    };
+  }
+
+  private static Item changeItem(ChangeEvent changeEvent) {
+    Item.Builder item = Item.newBuilder().setKey(modelToProto(changeEvent.key()));
+    if (changeEvent.attributes() != null) {
+      item.setAttributes(mapToStruct(changeEvent.attributes()));
+    }
+    return item.build();
+  }
+
+  public static Key modelToProto(com.github.lukaszbudnik.roxdb.rocksdb.Key key) {
+    return Key.newBuilder().setPartitionKey(key.partitionKey()).setSortKey(key.sortKey()).build();
+  }
+
   public static com.github.lukaszbudnik.roxdb.rocksdb.Item protoToModel(Item item) {
     return new com.github.lukaszbudnik.roxdb.rocksdb.Item(
         new com.github.lukaszbudnik.roxdb.rocksdb.Key(
@@ -128,4 +171,56 @@ public class ProtoUtils {
       default -> throw new IllegalArgumentException("Unsupported range type: " + type);
     };
   }
+
+  public static IndexType protoToModel(ItemRequest.IndexType type) {
+    return switch (type) {
+      case GLOBAL -> IndexType.GLOBAL;
+      case LOCAL -> IndexType.LOCAL;
+      case BITMAP -> IndexType.BITMAP;
+      case GEO -> IndexType.GEO;
+      case VECTOR -> IndexType.VECTOR;
+      default -> throw new IllegalArgumentException("Unsupported index type: " + type);
+    };
+  }
+
+  public static QueryAggregate protoToModel(ItemRequest.QueryAggregate aggregate) {
+    AggregateFunction function =
+        switch (aggregate.getFunction()) {
+          case COUNT -> AggregateFunction.COUNT;
+          case SUM -> AggregateFunction.SUM;
+          case AVG -> AggregateFunction.AVG;
+          case MIN -> AggregateFunction.MIN;
+          case MAX -> AggregateFunction.MAX;
+          default ->
+              throw new IllegalArgumentException(
+                  "Unsupported aggregate function: " + aggregate.getFunction());
+        };
+    return new QueryAggregate(function, aggregate.getAttribute());
+  }
+
+  public static ItemResponse.QueryResponse.AggregateGroup modelToProto(
+      AggregateGroup aggregateGroup) {
+    var builder =
+        ItemResponse.QueryResponse.AggregateGroup.newBuilder()
+            .setGroupValue(objectToValue(aggregateGroup.groupValue()));
+    aggregateGroup.values().forEach(value -> builder.addValues(objectToValue(value)));
+    return builder.build();
+  }
+
+  public static GeoArea protoToModel(ItemRequest.GeoArea geoArea) {
+    return switch (geoArea.getAreaCase()) {
+      case RADIUS ->
+          GeoArea.radius(
+              geoArea.getRadius().getLatitude(),
+              geoArea.getRadius().getLongitude(),
+              geoArea.getRadius().getMeters());
+      case BOUNDING_BOX ->
+          GeoArea.boundingBox(
+              geoArea.getBoundingBox().getMinLatitude(),
+              geoArea.getBoundingBox().getMinLongitude(),
+              geoArea.getBoundingBox().getMaxLatitude(),
+              geoArea.getBoundingBox().getMaxLongitude());
+      default -> throw new IllegalArgumentException("Geo area not set");
+    };
+  }
 }
@@ -4,10 +4,21 @@ import com.github.lukaszbudnik.roxdb.rocksdb.*;
 import com.github.lukaszbudnik.roxdb.v1.ItemRequest;
 import com.github.lukaszbudnik.roxdb.v1.ItemResponse;
 import com.github.lukaszbudnik.roxdb.v1.RoxDBGrpc;
+import com.github.lukaszbudnik.roxdb.v1.WatchRequest;
+import com.github.lukaszbudnik.roxdb.v1.WatchResponse;
 import io.grpc.Metadata;
 import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 import org.rocksdb.RocksDBException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,17 +26,188 @@ import org.slf4j.LoggerFactory;
 public class RoxDBGrpcService extends RoxDBGrpc.RoxDBImplBase {
   private static final Logger logger = LoggerFactory.getLogger(RoxDBGrpcService.class);
   private final RoxDB roxDB;
+  private static final int IO_QUEUE_SIZE_PER_THREAD = 256;
+  private final Set<WatchStream> watchStreams = ConcurrentHashMap.newKeySet();
+  // null when all requests are processed on gRPC threads
+  private final ThreadPoolExecutor ioExecutor;
 
   public RoxDBGrpcService(RoxDB roxDB) {
+    this(roxDB, 0);
+  }
+
+  // GetItem requests are first read from memtables and block cache on the gRPC thread, items which
+  // have to be read from disk are read by ioThreads so that gRPC threads are not blocked by disk
+  // reads, 0 reads them on gRPC threads. When the queue of the I/O executor is full reads run on
+  // the calling thread, requests rejected by the shut down executor are answered with an error.
+  public RoxDBGrpcService(RoxDB roxDB, int ioThreads) {
     this.roxDB = roxDB;
+    if (ioThreads > 0) {
+      AtomicInteger threadNumber = new AtomicInteger();
+      this.ioExecutor =
+          new ThreadPoolExecutor(
+              ioThreads,
+              ioThreads,
+              0,
+              TimeUnit.MILLISECONDS,
+              new ArrayBlockingQueue<>(ioThreads * IO_QUEUE_SIZE_PER_THREAD),
+              r -> {
+                Thread thread = new Thread(r, "roxdb-io-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              },
+              (task, executor) -> {
+                // CallerRunsPolicy would silently drop tasks of a shut down executor
+                if (executor.isShutdown()) {
+                  throw new RejectedExecutionException("I/O executor is shut down");
+                }
+                task.run();
+              });
+    } else {
+      this.ioExecutor = null;
+    }
+  }
+
+  // called after the server terminated, waits for reads still running on the I/O executor
+  public void shutdownIoExecutor() throws InterruptedException {
+    if (ioExecutor != null) {
+      ioExecutor.shutdown();
+      if (!ioExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+        logger.warn("I/O executor did not terminate in 30 seconds");
+      }
+    }
+  }
+
+  @Override
+  public void watch(WatchRequest watchRequest, StreamObserver<WatchResponse> responseObserver) {
+    List<ValidationResult> validationResults =
+        new ArrayList<>(validatePartitionKey(watchRequest.getPartitionKey()));
+    if (watchRequest.hasSortKeyRange()
+        && !watchRequest.getSortKeyRange().hasStart()
+        && !watchRequest.getSortKeyRange().hasEnd()) {
+      validationResults.add(
+          new ValidationResult(false, "When set SortKeyRange must have at least one boundary"));
+    }
+    List<String> errors =
+        validationResults.stream()
+            .filter(vr -> !vr.valid())
+            .map(ValidationResult::errorMessage)
+            .toList();
+    if (!errors.isEmpty()) {
+      responseObserver.onError(
+          Status.INVALID_ARGUMENT.withDescription(String.join(", ", errors)).asException());
+      return;
+    }
+
+    Optional<SortKeyRange> sortKeyRange = Optional.empty();
+    if (watchRequest.hasSortKeyRange()) {
+      sortKeyRange = Optional.of(ProtoUtils.protoToModel(watchRequest.getSortKeyRange()));
+    }
+    var serverCallObserver = (ServerCallStreamObserver<WatchResponse>) responseObserver;
+    WatchStream watchStream = new WatchStream(serverCallObserver);
+    serverCallObserver.setOnCancelHandler(watchStream::close);
+    watchStreams.add(watchStream);
+    watchStream.start(
+        roxDB.watch(
+            watchRequest.getTable(),
+            watchRequest.getPartitionKey(),
+            sortKeyRange,
+            watchStream::send));
+  }
+
+  // completes open watch streams so that they do not hold graceful shutdown of the server
+  public void completeWatches() {
+    for (WatchStream watchStream : watchStreams) {
+      watchStream.complete();
+    }
+  }
+
+  // Stream observers are not thread-safe, changes published by concurrent writers are sent one at
+  // a time. Stream closed by the client or completed by the server stops its watch.
+  private class WatchStream {
+    private final ServerCallStreamObserver<WatchResponse> responseObserver;
+    private Watch watch;
+    private boolean closed;
+
+    WatchStream(ServerCallStreamObserver<WatchResponse> responseObserver) {
+      this.responseObserver = responseObserver;
+    }
+
+    synchronized void start(Watch watch) {
+      if (closed) {
+        watch.close();
+      } else {
+        this.watch = watch;
+      }
+    }
+
+    synchronized void send(ChangeEvent changeEvent) {
+      if (!closed) {
+        responseObserver.onNext(ProtoUtils.modelToProto(changeEvent));
+      }
+    }
+
+    synchronized void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      watchStreams.remove(this);
+      if (watch != null) {
+        watch.close();
+      }
+    }
+
+    synchronized void complete() {
+      if (closed) {
+        return;
+      }
+      close();
+      responseObserver.onCompleted();
+    }
   }
 
   @Override
   public StreamObserver<ItemRequest> processItems(StreamObserver<ItemResponse> responseObserver) {
     return new StreamObserver<ItemRequest>() {
+      // Requests of a stream are answered in order: once a read is offloaded to the I/O executor
+      // requests which follow it are queued behind it on the executor until it completes. gRPC
+      // does not call the observer concurrently, responses are sent by one thread at a time.
+      private CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+
       @Override
       public void onNext(ItemRequest itemRequest) {
+        if (pending.isDone()) {
+          process(itemRequest, ioExecutor != null);
+        } else {
+          processOnIoExecutor(itemRequest, pending);
+        }
+      }
+
+      // answers the request with an error when the I/O executor rejects it, so that the stream is
+      // not left waiting for a response which would never be sent
+      private void processOnIoExecutor(ItemRequest itemRequest, CompletableFuture<Void> after) {
+        pending =
+            after
+                .thenRunAsync(() -> process(itemRequest, false), ioExecutor)
+                .exceptionally(
+                    t -> {
+                      responseObserver.onNext(
+                          ItemResponse.newBuilder()
+                              .setCorrelationId(itemRequest.getCorrelationId())
+                              .setErrors(
+                                  ItemResponse.Errors.newBuilder()
+                                      .addError(
+                                          ItemResponse.Error.newBuilder()
+                                              .setMessage("Server is shutting down")
+                                              .build())
+                                      .build())
+                              .build());
+                      return null;
+                    });
+      }
 
+      // cache only GetItem reads which are incomplete are offloaded to the I/O executor
+      private void process(ItemRequest itemRequest, boolean cacheOnly) {
         try {
           ItemResponse.Builder responseBuilder =
               ItemResponse.newBuilder().setCorrelationId(itemRequest.getCorrelationId());
@@ -42,7 +224,23 @@ public class RoxDBGrpcService extends RoxDBGrpc.RoxDBImplBase {
                     .toList();
             responseBuilder.setErrors(ItemResponse.Errors.newBuilder().addAllError(errors).build());
           } else {
-            executeOperation(itemRequest, responseBuilder);
+            try {
+              if (cacheOnly
+                  && itemRequest.getOperationCase() == ItemRequest.OperationCase.GET_ITEM) {
+                if (!getItem(itemRequest.getGetItem(), responseBuilder, true)) {
+                  processOnIoExecutor(itemRequest, CompletableFuture.completedFuture(null));
+                  return;
+                }
+              } else {
+                executeOperation(itemRequest, responseBuilder);
+              }
+            } catch (IllegalArgumentException e) {
+              // request is valid but cannot be applied to the table e.g. table type does not match
+              responseBuilder.setErrors(
+                  ItemResponse.Errors.newBuilder()
+                      .addError(ItemResponse.Error.newBuilder().setMessage(e.getMessage()).build())
+                      .build());
+            }
           }
           responseObserver.onNext(responseBuilder.build());
         } catch (Throwable t) {
@@ -60,7 +258,8 @@ public class RoxDBGrpcService extends RoxDBGrpc.RoxDBImplBase {
 
       @Override
       public void onError(Throwable t) {
-        onError(Status.INTERNAL.withDescription("Internal server error"), null);
+        pending.whenComplete(
+            (result, e) -> onError(Status.INTERNAL.withDescription("Internal server error"), null));
       }
 
       private void onError(Status status, Metadata metadata) {
@@ -70,23 +269,86 @@ public class RoxDBGrpcService extends RoxDBGrpc.RoxDBImplBase {
 
       @Override
       public void onCompleted() {
-        responseObserver.onCompleted();
+        pending.whenComplete((result, e) -> responseObserver.onCompleted());
       }
     };
   }
 
   private List<ValidationResult> validateKeys(ItemRequest itemRequest) {
     return switch (itemRequest.getOperationCase()) {
-      case PUT_ITEM -> validateSingleKey(itemRequest.getPutItem().getItem().getKey());
+      case PUT_ITEM -> validatePutItemKey(itemRequest.getPutItem());
       case UPDATE_ITEM -> validateSingleKey(itemRequest.getUpdateItem().getItem().getKey());
       case GET_ITEM -> validateSingleKey(itemRequest.getGetItem().getKey());
       case DELETE_ITEM -> validateSingleKey(itemRequest.getDeleteItem().getKey());
       case QUERY -> validateQueryKeys(itemRequest.getQuery());
       case TRANSACT_WRITE_ITEMS -> validateTransactionKeys(itemRequest.getTransactWriteItems());
+      case ENQUEUE -> validatePartitionKey(itemRequest.getEnqueue().getPartitionKey());
+      case DEQUEUE ->
+          validateConsumerGroup(
+              validatePartitionKey(itemRequest.getDequeue().getPartitionKey()),
+              itemRequest.getDequeue().getConsumerGroup());
+      case ACK ->
+          validateConsumerGroup(
+              KeyValidator.isValid(
+                  new Key(
+                      itemRequest.getAck().getPartitionKey(), itemRequest.getAck().getSortKey())),
+              itemRequest.getAck().getConsumerGroup());
+      // index definition is validated when the index is created
+      case CREATE_INDEX -> List.of();
+      case GET_AGGREGATE -> validatePartitionKey(itemRequest.getGetAggregate().getPartitionKey());
+      case GET_CHANGES -> validateGetChanges(itemRequest.getGetChanges());
       default -> throw new IllegalArgumentException("Operation not set");
     };
   }
 
+  private List<ValidationResult> validatePutItemKey(ItemRequest.PutItem putItem) {
+    if (!putItem.getGenerateSortKey()) {
+      return validateSingleKey(putItem.getItem().getKey());
+    }
+    List<ValidationResult> validationResults =
+        new ArrayList<>(validatePartitionKey(putItem.getItem().getKey().getPartitionKey()));
+    if (!putItem.getItem().getKey().getSortKey().isEmpty()) {
+      validationResults.add(
+          new ValidationResult(false, "Sort key must be blank when it is generated"));
+    }
+    return validationResults;
+  }
+
+  private List<ValidationResult> validatePartitionKey(String partitionKey) {
+    // sort key is not part of the request, use non-empty placeholder so that only partition key
+    // errors are reported
+    return KeyValidator.isValid(new Key(partitionKey, " "));
+  }
+
+  private List<ValidationResult> validateGetChanges(ItemRequest.GetChanges getChanges) {
+    List<ValidationResult> validationResults = new ArrayList<>();
+    if (getChanges.getSinceSequenceNumber() < 0) {
+      validationResults.add(
+          new ValidationResult(false, "Since sequence number cannot be negative"));
+    }
+    if (getChanges.getLimit() <= 0) {
+      validationResults.add(new ValidationResult(false, "Limit must be greater than 0"));
+    }
+    return validationResults;
+  }
+
+  private List<ValidationResult> validateConsumerGroup(
+      List<ValidationResult> keyValidationResults, String consumerGroup) {
+    List<ValidationResult> validationResults = new ArrayList<>(keyValidationResults);
+    if (consumerGroup.isBlank()) {
+      validationResults.add(new ValidationResult(false, "Consumer group cannot be blank"));
+    }
+    if (consumerGroup.contains(String.valueOf(RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR))) {
+      validationResults.add(
+          new ValidationResult(
+              false,
+              String.format(
+                  "Consumer group cannot contain character U+%04X",
+                  (int) RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR)));
+    }
+    return validationResults;
+  }
+
   private List<ValidationResult> validateSingleKey(com.github.lukaszbudnik.roxdb.v1.Key key) {
     return KeyValidator.isValid(ProtoUtils.protoToModel(key));
   }
@@ -118,20 +380,82 @@ public class RoxDBGrpcService extends RoxDBGrpc.RoxDBImplBase {
       sortKeyEnd = " ";
     }
 
-    Key startKey = new Key(query.getPartitionKey(), sortKeyStart);
-    Key endKey = new Key(query.getPartitionKey(), sortKeyEnd);
+    List<String> partitionKeys =
+        query.getPartitionKeysCount() > 0
+            ? query.getPartitionKeysList()
+            : List.of(query.getPartitionKey());
+
+    List<ValidationResult> validationResults = new ArrayList<>();
+    for (String partitionKey : partitionKeys) {
+      Key startKey = new Key(partitionKey, sortKeyStart);
+      Key endKey = new Key(partitionKey, sortKeyEnd);
+
+      List<ValidationResult> startKeyValidationResult = KeyValidator.isValid(startKey);
+      List<ValidationResult> endKeyValidationResult = KeyValidator.isValid(endKey);
+
+      // elements of the startKeyValidationResult and endKeyValidationResult are added to the final
+      // list only if they are not already present (since the primary key is the same for both we
+      // don't want duplicate errors for primary key)
+      Stream.concat(startKeyValidationResult.stream(), endKeyValidationResult.stream())
+          .filter(vr -> !validationResults.contains(vr))
+          .forEach(validationResults::add);
+    }
 
-    List<ValidationResult> startKeyValidationResult = KeyValidator.isValid(startKey);
-    List<ValidationResult> endKeyValidationResult = KeyValidator.isValid(endKey);
+    if (query.getPartitionKeysCount() > 0) {
+      if (!query.getPartitionKey().isEmpty()) {
+        validationResults.add(
+            new ValidationResult(
+                false, "Partition key and partition keys cannot be used together"));
+      }
+      if (query.getPartitionKeysCount() > RoxDBImpl.MAX_QUERY_PARTITION_KEYS) {
+        validationResults.add(
+            new ValidationResult(
+                false,
+                "Query cannot have more than "
+                    + RoxDBImpl.MAX_QUERY_PARTITION_KEYS
+                    + " partition keys"));
+      }
+      if (!query.getIndexName().isEmpty()
+          || query.getFiltersCount() > 0
+          || query.getAggregatesCount() > 0) {
+        validationResults.add(
+            new ValidationResult(
+                false, "Partition keys cannot be used with index queries, filters or aggregates"));
+      }
+    }
+    if (query.hasExclusiveStartKey()
+        && !query.getPartitionKeysList().contains(query.getExclusiveStartKey().getPartitionKey())) {
+      validationResults.add(
+          new ValidationResult(
+              false, "Exclusive start key partition key must be one of partition keys"));
+    }
 
-    // create a list of validation results from startKeyValidationResult and endKeyValidationResult
-    List<ValidationResult> validationResults = new ArrayList<>(startKeyValidationResult);
-    // elements of the endKeyValidationResult are added to the final list
-    // only if they are not already present (since the primary key is the same for both we don't
-    // want duplicate errors for primary key)
-    endKeyValidationResult.stream()
-        .filter(vr -> !validationResults.contains(vr))
-        .forEach(validationResults::add);
+    if (!query.getIndexName().isEmpty() && query.getFiltersCount() > 0) {
+      validationResults.add(
+          new ValidationResult(false, "Filters cannot be used with index queries"));
+    }
+    if (query.hasGeoArea() && query.getIndexName().isEmpty()) {
+      validationResults.add(new ValidationResult(false, "Geo area requires geo index name"));
+    }
+    if (query.hasGeoArea() && query.hasSortKeyRange()) {
+      validationResults.add(
+          new ValidationResult(false, "Sort key range cannot be used with geo area"));
+    }
+    if (query.getAggregatesCount() > 0
+        && (!query.getIndexName().isEmpty() || query.getFiltersCount() > 0)) {
+      validationResults.add(
+          new ValidationResult(false, "Aggregates cannot be used with index queries or filters"));
+    }
+    if (query.getAggregatesCount() == 0 && !query.getGroupBy().isEmpty()) {
+      validationResults.add(new ValidationResult(false, "Group by requires aggregates"));
+    }
+    if (query.getVectorCount() > 0 && query.getIndexName().isEmpty()) {
+      validationResults.add(new ValidationResult(false, "Vector requires vector index name"));
+    }
+    if (query.getVectorCount() > 0 && (query.hasSortKeyRange() || query.hasGeoArea())) {
+      validationResults.add(
+          new ValidationResult(false, "Sort key range and geo area cannot be used with vector"));
+    }
 
     return validationResults;
   }
@@ -158,11 +482,17 @@ public class RoxDBGrpcService extends RoxDBGrpc.RoxDBImplBase {
     switch (itemRequest.getOperationCase()) {
       case PUT_ITEM -> putItem(itemRequest.getPutItem(), responseBuilder);
       case UPDATE_ITEM -> updateItem(itemRequest.getUpdateItem(), responseBuilder);
-      case GET_ITEM -> getItem(itemRequest.getGetItem(), responseBuilder);
+      case GET_ITEM -> getItem(itemRequest.getGetItem(), responseBuilder, false);
       case DELETE_ITEM -> deleteItem(itemRequest.getDeleteItem(), responseBuilder);
       case QUERY -> query(itemRequest.getQuery(), responseBuilder);
       case TRANSACT_WRITE_ITEMS ->
           transactWriteItems(itemRequest.getTransactWriteItems(), responseBuilder);
+      case ENQUEUE -> enqueue(itemRequest.getEnqueue(), responseBuilder);
+      case DEQUEUE -> dequeue(itemRequest.getDequeue(), responseBuilder);
+      case ACK -> ack(itemRequest.getAck(), responseBuilder);
+      case CREATE_INDEX -> createIndex(itemRequest.getCreateIndex(), responseBuilder);
+      case GET_AGGREGATE -> getAggregate(itemRequest.getGetAggregate(), responseBuilder);
+      case GET_CHANGES -> getChanges(itemRequest.getGetChanges(), responseBuilder);
     }
   }
 
@@ -171,6 +501,14 @@ public class RoxDBGrpcService extends RoxDBGrpc.RoxDBImplBase {
     var protoItem = putItem.getItem();
     var tableName = putItem.getTable();
     Map<String, Object> attributes = ProtoUtils.structToMap(protoItem.getAttributes());
+    if (putItem.getGenerateSortKey()) {
+      var generatedKey = roxDB.putItem(tableName, protoItem.getKey().getPartitionKey(), attributes);
+      responseBuilder.setPutItemResponse(
+          ItemResponse.PutItemResponse.newBuilder()
+              .setKey(ProtoUtils.modelToProto(generatedKey))
+              .build());
+      return;
+    }
     var key = new Key(protoItem.getKey().getPartitionKey(), protoItem.getKey().getSortKey());
     var item = new Item(key, attributes);
     roxDB.putItem(tableName, item);
@@ -192,11 +530,26 @@ public class RoxDBGrpcService extends RoxDBGrpc.RoxDBImplBase {
         ItemResponse.UpdateItemResponse.newBuilder().setKey(updateItem.getItem().getKey()).build());
   }
 
-  private void getItem(ItemRequest.GetItem getItem, ItemResponse.Builder responseBuilder)
+  // returns false when cache only read is incomplete and the item has to be read from disk
+  private boolean getItem(
+      ItemRequest.GetItem getItem, ItemResponse.Builder responseBuilder, boolean cacheOnly)
       throws RocksDBException {
     String tableName = getItem.getTable();
     var key = new Key(getItem.getKey().getPartitionKey(), getItem.getKey().getSortKey());
-    var item = roxDB.getItem(tableName, key);
+    Item item;
+    if (cacheOnly) {
+      try {
+        item = roxDB.getItem(tableName, key, true);
+      } catch (RocksDBException e) {
+        if (e.getStatus() != null
+            && e.getStatus().getCode() == org.rocksdb.Status.Code.Incomplete) {
+          return false;
+        }
+        throw e;
+      }
+    } else {
+      item = roxDB.getItem(tableName, key);
+    }
     if (item != null) {
       responseBuilder.setGetItemResponse(
           ItemResponse.GetItemResponse.newBuilder().setItem(ProtoUtils.modelToProto(item)).build());
@@ -209,6 +562,66 @@ public class RoxDBGrpcService extends RoxDBGrpc.RoxDBImplBase {
                       .build())
               .build());
     }
+    return true;
+  }
+
+  private void queryAggregates(
+      ItemRequest.Query query,
+      Optional<SortKeyRange> sortKeyRange,
+      ItemResponse.Builder responseBuilder)
+      throws RocksDBException {
+    List<QueryAggregate> aggregates =
+        query.getAggregatesList().stream().map(ProtoUtils::protoToModel).toList();
+    var groups =
+        roxDB.queryAggregates(
+            query.getTable(),
+            query.getPartitionKey(),
+            query.getLimit(),
+            sortKeyRange,
+            aggregates,
+            query.getGroupBy());
+    var aggregatesQueryResultBuilder =
+        ItemResponse.QueryResponse.AggregatesQueryResult.newBuilder();
+    for (var group : groups) {
+      aggregatesQueryResultBuilder.addGroups(ProtoUtils.modelToProto(group));
+    }
+    responseBuilder.setQueryResponse(
+        ItemResponse.QueryResponse.newBuilder()
+            .setAggregatesQueryResult(aggregatesQueryResultBuilder.build())
+            .build());
+  }
+
+  private void getChanges(ItemRequest.GetChanges getChanges, ItemResponse.Builder responseBuilder)
+      throws RocksDBException {
+    Changes changes =
+        roxDB.getChanges(
+            getChanges.getSinceSequenceNumber(),
+            getChanges.getLimit(),
+            Set.copyOf(getChanges.getTablesList()));
+    var changesResultBuilder =
+        ItemResponse.GetChangesResponse.ChangesResult.newBuilder()
+            .setNextSequenceNumber(changes.nextSequenceNumber());
+    for (ChangeEvent change : changes.changes()) {
+      changesResultBuilder.addChanges(ProtoUtils.modelToProtoChange(change));
+    }
+    responseBuilder.setGetChangesResponse(
+        ItemResponse.GetChangesResponse.newBuilder()
+            .setChangesResult(changesResultBuilder.build())
+            .build());
+  }
+
+  private void getAggregate(
+      ItemRequest.GetAggregate getAggregate, ItemResponse.Builder responseBuilder)
+      throws RocksDBException {
+    Number value =
+        roxDB.getAggregate(
+            getAggregate.getTable(),
+            getAggregate.getPartitionKey(),
+            getAggregate.getAggregateName());
+    responseBuilder.setGetAggregateResponse(
+        ItemResponse.GetAggregateResponse.newBuilder()
+            .setValue(ProtoUtils.objectToValue(value))
+            .build());
   }
 
   private void deleteItem(ItemRequest.DeleteItem deleteItem, ItemResponse.Builder responseBuilder)
@@ -230,7 +643,48 @@ public class RoxDBGrpcService extends RoxDBGrpc.RoxDBImplBase {
       sortKeyRange = Optional.of(modelSortKeyRange);
     }
     int limit = query.getLimit();
-    var items = roxDB.query(tableName, query.getPartitionKey(), limit, sortKeyRange);
+    if (query.getAggregatesCount() > 0) {
+      queryAggregates(query, sortKeyRange, responseBuilder);
+      return;
+    }
+    List<Item> items;
+    if (query.hasGeoArea()) {
+      items =
+          roxDB.queryGeoIndex(
+              tableName,
+              query.getIndexName(),
+              query.getPartitionKey(),
+              limit,
+              ProtoUtils.protoToModel(query.getGeoArea()));
+    } else if (query.getVectorCount() > 0) {
+      float[] vector = new float[query.getVectorCount()];
+      for (int i = 0; i < vector.length; i++) {
+        vector[i] = query.getVector(i);
+      }
+      items =
+          roxDB.queryVectorIndex(
+              tableName, query.getIndexName(), query.getPartitionKey(), limit, vector);
+    } else if (query.getPartitionKeysCount() > 0) {
+      items =
+          roxDB.queryPartitions(
+              tableName,
+              query.getPartitionKeysList(),
+              limit,
+              sortKeyRange,
+              query.hasExclusiveStartKey()
+                  ? Optional.of(ProtoUtils.protoToModel(query.getExclusiveStartKey()))
+                  : Optional.empty());
+    } else if (!query.getIndexName().isEmpty()) {
+      items =
+          roxDB.queryIndex(
+              tableName, query.getIndexName(), query.getPartitionKey(), limit, sortKeyRange);
+    } else if (query.getFiltersCount() > 0) {
+      items =
+          roxDB.query(
+              tableName, query.getPartitionKey(), limit, sortKeyRange, query.getFiltersMap());
+    } else {
+      items = roxDB.query(tableName, query.getPartitionKey(), limit, sortKeyRange);
+    }
     var itemsQueryResultBuilder = ItemResponse.QueryResponse.ItemsQueryResult.newBuilder();
     for (var item : items) {
       var protoItem = ProtoUtils.modelToProto(item);
@@ -283,4 +737,66 @@ public class RoxDBGrpcService extends RoxDBGrpc.RoxDBImplBase {
                     .build())
             .build());
   }
+
+  private void enqueue(ItemRequest.Enqueue enqueue, ItemResponse.Builder responseBuilder)
+      throws RocksDBException {
+    Map<String, Object> attributes = ProtoUtils.structToMap(enqueue.getAttributes());
+    var key = roxDB.enqueue(enqueue.getTable(), enqueue.getPartitionKey(), attributes);
+
+    responseBuilder.setEnqueueResponse(
+        ItemResponse.EnqueueResponse.newBuilder().setKey(ProtoUtils.modelToProto(key)).build());
+  }
+
+  private void dequeue(ItemRequest.Dequeue dequeue, ItemResponse.Builder responseBuilder)
+      throws RocksDBException {
+    var items =
+        roxDB.dequeue(
+            dequeue.getTable(),
+            dequeue.getPartitionKey(),
+            dequeue.getConsumerGroup(),
+            dequeue.getLimit());
+    var dequeueResultBuilder = ItemResponse.DequeueResponse.DequeueResult.newBuilder();
+    for (var item : items) {
+      dequeueResultBuilder.addItems(ProtoUtils.modelToProto(item));
+    }
+
+    responseBuilder.setDequeueResponse(
+        ItemResponse.DequeueResponse.newBuilder()
+            .setDequeueResult(dequeueResultBuilder.build())
+            .build());
+  }
+
+  private void ack(ItemRequest.Ack ack, ItemResponse.Builder responseBuilder)
+      throws RocksDBException {
+    roxDB.ack(ack.getTable(), ack.getPartitionKey(), ack.getConsumerGroup(), ack.getSortKey());
+
+    responseBuilder.setAckResponse(
+        ItemResponse.AckResponse.newBuilder()
+            .setKey(
+                com.github.lukaszbudnik.roxdb.v1.Key.newBuilder()
+                    .setPartitionKey(ack.getPartitionKey())
+                    .setSortKey(ack.getSortKey())
+                    .build())
+            .build());
+  }
+
+  private void createIndex(
+      ItemRequest.CreateIndex createIndex, ItemResponse.Builder responseBuilder)
+      throws RocksDBException {
+    var indexDefinition =
+        new IndexDefinition(
+            createIndex.getIndexName(),
+            ProtoUtils.protoToModel(createIndex.getType()),
+            createIndex.getPartitionAttribute(),
+            createIndex.getSortAttribute(),
+            createIndex.getProjectedAttributesList(),
+            createIndex.getAttributesList());
+    roxDB.createIndex(
+        createIndex.getTable(), indexDefinition, createIndex.getBackfillItemsPerSecond());
+
+    responseBuilder.setCreateIndexResponse(
+        ItemResponse.CreateIndexResponse.newBuilder()
+            .setIndexName(createIndex.getIndexName())
+            .build());
+  }
 }
@@ -5,6 +5,11 @@ import com.github.lukaszbudnik.roxdb.v1.RoxDBGrpc;
 import com.google.common.base.Strings;
 import io.grpc.*;
 import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
 import io.grpc.protobuf.services.ProtoReflectionServiceV1;
 import java.io.File;
 import java.io.IOException;
@@ -19,6 +24,9 @@ public class RoxDBServer {
   private final RoxDBGrpcService roxDBGrpcService;
   private final Server server;
   private final HealthService healthService;
+  // null when Netty default event loops are used
+  private final EventLoopGroup bossEventLoopGroup;
+  private final EventLoopGroup workerEventLoopGroup;
 
   public RoxDBServer(RoxDBConfig config, RoxDBGrpcService roxDBGrpcService) throws IOException {
     this.port = config.port();
@@ -27,8 +35,28 @@ public class RoxDBServer {
 
     ServerCredentials serverCredentials = getServerCredentials(config);
 
+    ServerBuilder<?> serverBuilder;
+    if (config.eventLoopThreads() > 0) {
+      // one thread accepts connections, worker threads serve them
+      this.bossEventLoopGroup =
+          new NioEventLoopGroup(1, new DefaultThreadFactory("grpc-boss", true));
+      this.workerEventLoopGroup =
+          new NioEventLoopGroup(
+              config.eventLoopThreads(), new DefaultThreadFactory("grpc-worker", true));
+      serverBuilder =
+          NettyServerBuilder.forPort(port, serverCredentials)
+              .bossEventLoopGroup(bossEventLoopGroup)
+              .workerEventLoopGroup(workerEventLoopGroup)
+              .channelType(NioServerSocketChannel.class);
+      logger.info("Using {} event loop threads", config.eventLoopThreads());
+    } else {
+      this.bossEventLoopGroup = null;
+      this.workerEventLoopGroup = null;
+      serverBuilder = Grpc.newServerBuilderForPort(port, serverCredentials);
+    }
+
     this.server =
-        Grpc.newServerBuilderForPort(port, serverCredentials)
+        serverBuilder
             .addService(roxDBGrpcService)
             .addService(healthService)
             .addService(ProtoReflectionServiceV1.newInstance())
@@ -59,10 +87,18 @@ public class RoxDBServer {
   }
 
   public void start() throws IOException {
+    start(() -> {});
+  }
+
+  // warm up runs after the port is bound while health reports NOT_SERVING, so that load balancers
+  // do not send traffic to a server with cold caches
+  public void start(Runnable warmUp) throws IOException {
     logger.info("Starting server on port {}", port);
 
     server.start();
 
+    setServiceStatus(ServingStatus.NOT_SERVING);
+    warmUp.run();
     setServiceStatus(ServingStatus.SERVING);
 
     logger.info("Server started, listening on port {}", port);
@@ -71,16 +107,24 @@ public class RoxDBServer {
   public void stop() throws InterruptedException {
     logger.info("Initiating graceful shutdown");
     server.shutdown();
+    roxDBGrpcService.completeWatches();
     setServiceStatus(ServingStatus.NOT_SERVING);
     try {
       if (!server.awaitTermination(30, TimeUnit.SECONDS)) {
         logger.warn("Server did not terminate in 30 seconds. Forcing shutdown.");
         server.shutdownNow();
       }
+      roxDBGrpcService.shutdownIoExecutor();
     } catch (InterruptedException e) {
       logger.error("Server shutdown interrupted", e);
       server.shutdownNow();
       throw e;
+    } finally {
+      // event loop groups passed to the builder are not owned by the server
+      if (workerEventLoopGroup != null) {
+        workerEventLoopGroup.shutdownGracefully();
+        bossEventLoopGroup.shutdownGracefully();
+      }
     }
     logger.info("Server shutdown completed");
   }
@@ -1,13 +1,21 @@
 package com.github.lukaszbudnik.roxdb.metrics;
 
+import com.github.lukaszbudnik.roxdb.rocksdb.BlockCacheStats;
+import com.github.lukaszbudnik.roxdb.rocksdb.CacheStats;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.metrics.Meter;
 import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 import org.rocksdb.HistogramData;
 import org.rocksdb.HistogramType;
 import org.rocksdb.Statistics;
 import org.rocksdb.TickerType;
 
 public class RocksDBMetricsCollector {
+  private static final AttributeKey<String> ROLE = AttributeKey.stringKey("role");
+
   private final Statistics statistics;
   private final Meter meter;
 
@@ -28,6 +36,81 @@ public class RocksDBMetricsCollector {
             measurement -> measurement.record(statistics.getTickerCount(tickerType)));
   }
 
+  public void createGauge(String name, LongSupplier value) {
+    meter
+        .gaugeBuilder(name)
+        .ofLongs()
+        .buildWithCallback(measurement -> measurement.record(value.getAsLong()));
+  }
+
+  // cache counters are read from the supplier every time metrics are collected
+  public void createCacheMetrics(String name, Supplier<CacheStats> cacheStats) {
+    meter
+        .gaugeBuilder(name + "_hits")
+        .buildWithCallback(measurement -> measurement.record(cacheStats.get().hitCount()));
+    meter
+        .gaugeBuilder(name + "_misses")
+        .buildWithCallback(measurement -> measurement.record(cacheStats.get().missCount()));
+    meter
+        .gaugeBuilder(name + "_hit_rate")
+        .buildWithCallback(measurement -> measurement.record(cacheStats.get().hitRate()));
+    meter
+        .gaugeBuilder(name + "_evictions")
+        .buildWithCallback(measurement -> measurement.record(cacheStats.get().evictionCount()));
+    meter
+        .gaugeBuilder(name + "_entries")
+        .buildWithCallback(measurement -> measurement.record(cacheStats.get().entryCount()));
+    meter
+        .gaugeBuilder(name + "_size_bytes")
+        .buildWithCallback(measurement -> measurement.record(cacheStats.get().sizeBytes()));
+    meter
+        .gaugeBuilder(name + "_coalesced")
+        .buildWithCallback(measurement -> measurement.record(cacheStats.get().coalescedCount()));
+  }
+
+  // RocksDB does not attribute entries of the shared block cache to column families, usage is
+  // broken down by role of the cached blocks instead
+  public void createBlockCacheMetrics(Supplier<BlockCacheStats> blockCacheStats) {
+    meter
+        .gaugeBuilder("roxdb_block_cache_capacity_bytes")
+        .buildWithCallback(
+            measurement -> measurement.record(blockCacheStats.get().capacityBytes()));
+    meter
+        .gaugeBuilder("roxdb_block_cache_usage_bytes")
+        .buildWithCallback(measurement -> measurement.record(blockCacheStats.get().usageBytes()));
+    meter
+        .gaugeBuilder("roxdb_block_cache_pinned_usage_bytes")
+        .buildWithCallback(
+            measurement -> measurement.record(blockCacheStats.get().pinnedUsageBytes()));
+    meter
+        .gaugeBuilder("roxdb_block_cache_role_usage_bytes")
+        .buildWithCallback(
+            measurement ->
+                blockCacheStats
+                    .get()
+                    .usageBytesByRole()
+                    .forEach(
+                        (role, bytes) -> measurement.record(bytes, Attributes.of(ROLE, role))));
+    meter
+        .gaugeBuilder("roxdb_block_cache_hits")
+        .buildWithCallback(measurement -> measurement.record(blockCacheStats.get().hitCount()));
+    meter
+        .gaugeBuilder("roxdb_block_cache_misses")
+        .buildWithCallback(measurement -> measurement.record(blockCacheStats.get().missCount()));
+    meter
+        .gaugeBuilder("roxdb_block_cache_secondary_capacity_bytes")
+        .buildWithCallback(
+            measurement -> measurement.record(blockCacheStats.get().secondaryCapacityBytes()));
+    meter
+        .gaugeBuilder("roxdb_block_cache_secondary_hits")
+        .buildWithCallback(
+            measurement -> measurement.record(blockCacheStats.get().secondaryHitCount()));
+    meter
+        .gaugeBuilder("roxdb_block_cache_secondary_misses")
+        .buildWithCallback(
+            measurement -> measurement.record(blockCacheStats.get().secondaryMissCount()));
+  }
+
   public void createHistogramTypeMetrics(List<HistogramType> histogramTypes) {
     histogramTypes.forEach(this::createGaugeFromHistogramData);
   }
@@ -0,0 +1,38 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import static com.github.lukaszbudnik.roxdb.rocksdb.RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR;
+
+// Aggregate of items of every partition of a table. COUNT counts items, or items having the
+// attribute when it is set. SUM, MIN and MAX require an attribute and skip non-numeric values.
+// AVG is not maintained, it is computed from SUM and COUNT aggregates.
+public record AggregateConfig(String name, AggregateFunction function, String attribute) {
+
+  public AggregateConfig {
+    if (name == null || name.isBlank()) {
+      throw new IllegalArgumentException("Aggregate name cannot be blank");
+    }
+    if (name.indexOf(PARTITION_SORT_KEY_SEPARATOR) >= 0) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Aggregate name cannot contain character U+%04X",
+              (int) PARTITION_SORT_KEY_SEPARATOR));
+    }
+    if (function == null) {
+      throw new IllegalArgumentException("Aggregate " + name + " function cannot be empty");
+    }
+    if (attribute != null && attribute.isBlank()) {
+      attribute = null;
+    }
+    if (function == AggregateFunction.AVG) {
+      throw new IllegalArgumentException(
+          "Aggregate " + name + " cannot be AVG, declare SUM and COUNT aggregates instead");
+    }
+    if (function != AggregateFunction.COUNT && attribute == null) {
+      throw new IllegalArgumentException("Aggregate " + name + " attribute cannot be blank");
+    }
+  }
+
+  public boolean hasAttribute() {
+    return attribute != null;
+  }
+}
@@ -0,0 +1,9 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+public enum AggregateFunction {
+  COUNT,
+  SUM,
+  AVG,
+  MIN,
+  MAX
+}
@@ -0,0 +1,8 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.List;
+
+// Values of query aggregates (in request order) of items sharing the group by attribute value.
+// Group value is null when query is not grouped or items do not have the group by attribute.
+// COUNT and SUM are 0 and AVG, MIN and MAX are null when there are no numeric values.
+public record AggregateGroup(Object groupValue, List<Object> values) {}
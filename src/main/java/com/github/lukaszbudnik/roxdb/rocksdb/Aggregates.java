@@ -0,0 +1,294 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import static com.github.lukaszbudnik.roxdb.rocksdb.RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.rocksdb.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Aggregates declared in tables config are kept per partition in the aggregates column family and
+// updated in the transaction of every item write. COUNT and SUM are running totals stored under
+// partition key and aggregate name. MIN and MAX keep a sorted list of values of the partition keyed
+// by encoded value and sort key, so that removing the current minimum or maximum does not need a
+// partition scan and both are read with a single seek. Aggregates which are new or changed since
+// the database was last opened are computed from existing items on startup.
+class Aggregates {
+  private static final Logger logger = LoggerFactory.getLogger(Aggregates.class);
+  private static final int REBUILD_BATCH_SIZE = 1000;
+
+  private final RoxDBImpl roxDB;
+  private final TransactionDB db;
+  private final Map<String, TableAggregates> tableAggregates = new HashMap<>();
+
+  Aggregates(RoxDBImpl roxDB, TransactionDB db, TablesConfig tablesConfig) throws RocksDBException {
+    this.roxDB = roxDB;
+    this.db = db;
+    for (Map.Entry<String, TableConfig> entry : tablesConfig.tables().entrySet()) {
+      if (entry.getValue().hasAggregates()) {
+        String tableName = entry.getKey();
+        ColumnFamilyHandle cfHandle =
+            roxDB.getOrCreateColumnFamily(ColumnFamilyNames.aggregates(tableName));
+        tableAggregates.put(
+            tableName, new TableAggregates(entry.getValue().aggregates(), cfHandle));
+        rebuildChanged(tableName, entry.getValue().aggregates(), cfHandle);
+      }
+    }
+  }
+
+  // returns null when table has no aggregates
+  DerivedData getTableAggregates(String tableName) {
+    return tableAggregates.get(tableName);
+  }
+
+  // COUNT and SUM of partitions without items are 0, MIN and MAX are null
+  Number get(String tableName, String partitionKey, String aggregateName) throws RocksDBException {
+    TableAggregates aggregates = tableAggregates.get(tableName);
+    AggregateConfig aggregate =
+        aggregates == null
+            ? null
+            : aggregates.configs.stream()
+                .filter(config -> config.name().equals(aggregateName))
+                .findFirst()
+                .orElse(null);
+    if (aggregate == null) {
+      throw new IllegalArgumentException(
+          "Aggregate " + aggregateName + " does not exist on table " + tableName);
+    }
+    return switch (aggregate.function()) {
+      case COUNT -> (long) readTotal(aggregates.cfHandle, partitionKey, aggregate);
+      case SUM -> readTotal(aggregates.cfHandle, partitionKey, aggregate);
+      case MIN, MAX -> readExtreme(aggregates.cfHandle, partitionKey, aggregate);
+      case AVG -> throw new IllegalStateException("AVG aggregates are not maintained");
+    };
+  }
+
+  private double readTotal(
+      ColumnFamilyHandle cfHandle, String partitionKey, AggregateConfig aggregate)
+      throws RocksDBException {
+    byte[] value = db.get(cfHandle, totalKey(partitionKey, aggregate));
+    return value == null ? 0 : ByteBuffer.wrap(value).getDouble();
+  }
+
+  private Double readExtreme(
+      ColumnFamilyHandle cfHandle, String partitionKey, AggregateConfig aggregate) {
+    String prefix = valuesPrefix(partitionKey, aggregate);
+    try (RocksIterator iterator = db.newIterator(cfHandle)) {
+      if (aggregate.function() == AggregateFunction.MIN) {
+        iterator.seek(prefix.getBytes(StandardCharsets.UTF_8));
+      } else {
+        // encoded numbers start with U+0001, next character is past the last value
+        iterator.seekForPrev((prefix + '\u0002').getBytes(StandardCharsets.UTF_8));
+      }
+      if (!iterator.isValid()
+          || !new String(iterator.key(), StandardCharsets.UTF_8).startsWith(prefix)) {
+        return null;
+      }
+      return ByteBuffer.wrap(iterator.value()).getDouble();
+    }
+  }
+
+  private static byte[] totalKey(String partitionKey, AggregateConfig aggregate) {
+    return (partitionKey + PARTITION_SORT_KEY_SEPARATOR + aggregate.name())
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String valuesPrefix(String partitionKey, AggregateConfig aggregate) {
+    return partitionKey
+        + PARTITION_SORT_KEY_SEPARATOR
+        + aggregate.name()
+        + PARTITION_SORT_KEY_SEPARATOR;
+  }
+
+  private static byte[] valueKey(Key key, AggregateConfig aggregate, double value) {
+    return (valuesPrefix(key.partitionKey(), aggregate)
+            + IndexValues.encode(aggregate.attribute(), value)
+            + PARTITION_SORT_KEY_SEPARATOR
+            + key.sortKey())
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] toBytes(double value) {
+    return ByteBuffer.allocate(Double.BYTES).putDouble(value).array();
+  }
+
+  // Definitions are stored under blank partition key (partition keys cannot be blank), aggregates
+  // without a stored definition or with a different one are cleared and computed from table items
+  private void rebuildChanged(
+      String tableName, List<AggregateConfig> aggregates, ColumnFamilyHandle cfHandle)
+      throws RocksDBException {
+    List<AggregateConfig> changed = new ArrayList<>();
+    for (AggregateConfig aggregate : aggregates) {
+      byte[] stored = db.get(cfHandle, definitionKey(aggregate));
+      if (stored == null
+          || !new String(stored, StandardCharsets.UTF_8).equals(definitionValue(aggregate))) {
+        changed.add(aggregate);
+      }
+    }
+    if (changed.isEmpty()) {
+      return;
+    }
+
+    long started = System.currentTimeMillis();
+    clear(cfHandle, changed);
+    TableAggregates rebuilt = new TableAggregates(changed, cfHandle);
+    long itemsCount = 0;
+    for (ColumnFamilyHandle tableHandle : roxDB.getTableColumnFamilies(tableName)) {
+      List<Key> keys = new ArrayList<>();
+      try (RocksIterator iterator = db.newIterator(tableHandle)) {
+        for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+          keys.add(SerDeUtils.deserializeKey(iterator.key()));
+          if (keys.size() >= REBUILD_BATCH_SIZE) {
+            itemsCount += rebuildBatch(tableName, rebuilt, keys);
+            keys.clear();
+          }
+        }
+      }
+      itemsCount += rebuildBatch(tableName, rebuilt, keys);
+    }
+    for (AggregateConfig aggregate : changed) {
+      db.put(
+          cfHandle,
+          definitionKey(aggregate),
+          definitionValue(aggregate).getBytes(StandardCharsets.UTF_8));
+    }
+    logger.info(
+        "Computed aggregates {} of table {} from {} items in {} ms",
+        changed.stream().map(AggregateConfig::name).toList(),
+        tableName,
+        itemsCount,
+        System.currentTimeMillis() - started);
+  }
+
+  private int rebuildBatch(String tableName, TableAggregates rebuilt, List<Key> keys)
+      throws RocksDBException {
+    if (keys.isEmpty()) {
+      return 0;
+    }
+    int[] counted = new int[1];
+    roxDB.executeTransaction(
+        txCtx -> {
+          for (Key key : keys) {
+            if (txCtx.reindex(tableName, key, rebuilt)) {
+              counted[0]++;
+            }
+          }
+        });
+    return counted[0];
+  }
+
+  // removes totals and values of the aggregates in all partitions
+  private void clear(ColumnFamilyHandle cfHandle, List<AggregateConfig> aggregates)
+      throws RocksDBException {
+    List<String> names = aggregates.stream().map(AggregateConfig::name).toList();
+    try (RocksIterator iterator = db.newIterator(cfHandle);
+        WriteBatch writeBatch = new WriteBatch();
+        WriteOptions writeOptions = new WriteOptions()) {
+      for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+        String[] parts =
+            new String(iterator.key(), StandardCharsets.UTF_8)
+                .split(String.valueOf(PARTITION_SORT_KEY_SEPARATOR), 3);
+        if (!parts[0].isEmpty() && names.contains(parts[1])) {
+          writeBatch.delete(cfHandle, iterator.key());
+        }
+      }
+      db.write(writeOptions, writeBatch);
+    }
+  }
+
+  private static byte[] definitionKey(AggregateConfig aggregate) {
+    return totalKey("", aggregate);
+  }
+
+  private static String definitionValue(AggregateConfig aggregate) {
+    return aggregate.function() + "," + Objects.toString(aggregate.attribute(), "");
+  }
+
+  private static class TableAggregates implements DerivedData {
+    private final List<AggregateConfig> configs;
+    private final ColumnFamilyHandle cfHandle;
+
+    TableAggregates(List<AggregateConfig> configs, ColumnFamilyHandle cfHandle) {
+      this.configs = configs;
+      this.cfHandle = cfHandle;
+    }
+
+    @Override
+    public void update(
+        Transaction transaction,
+        Key key,
+        Map<String, Object> oldAttributes,
+        Map<String, Object> newAttributes)
+        throws RocksDBException {
+      for (AggregateConfig aggregate : configs) {
+        switch (aggregate.function()) {
+          case COUNT ->
+              addToTotal(
+                  transaction,
+                  key,
+                  aggregate,
+                  counted(aggregate, newAttributes) - counted(aggregate, oldAttributes));
+          case SUM -> {
+            Double oldValue = numericValue(aggregate, oldAttributes);
+            Double newValue = numericValue(aggregate, newAttributes);
+            addToTotal(
+                transaction,
+                key,
+                aggregate,
+                (newValue == null ? 0 : newValue) - (oldValue == null ? 0 : oldValue));
+          }
+          case AVG -> throw new IllegalStateException("AVG aggregates are not maintained");
+          case MIN, MAX -> {
+            Double oldValue = numericValue(aggregate, oldAttributes);
+            Double newValue = numericValue(aggregate, newAttributes);
+            if (Objects.equals(oldValue, newValue)) {
+              continue;
+            }
+            if (oldValue != null) {
+              transaction.delete(cfHandle, valueKey(key, aggregate, oldValue));
+            }
+            if (newValue != null) {
+              transaction.put(cfHandle, valueKey(key, aggregate, newValue), toBytes(newValue));
+            }
+          }
+        }
+      }
+    }
+
+    // totals of a partition are locked until the item transaction commits
+    private void addToTotal(
+        Transaction transaction, Key key, AggregateConfig aggregate, double delta)
+        throws RocksDBException {
+      if (delta == 0) {
+        return;
+      }
+      byte[] totalKey = totalKey(key.partitionKey(), aggregate);
+      try (ReadOptions readOptions = new ReadOptions()) {
+        byte[] value = transaction.getForUpdate(readOptions, cfHandle, totalKey, true);
+        double total = value == null ? 0 : ByteBuffer.wrap(value).getDouble();
+        transaction.put(cfHandle, totalKey, toBytes(total + delta));
+      }
+    }
+
+    private static int counted(AggregateConfig aggregate, Map<String, Object> attributes) {
+      if (attributes == null) {
+        return 0;
+      }
+      return !aggregate.hasAttribute() || attributes.get(aggregate.attribute()) != null ? 1 : 0;
+    }
+
+    private static Double numericValue(AggregateConfig aggregate, Map<String, Object> attributes) {
+      if (attributes == null || !(attributes.get(aggregate.attribute()) instanceof Number number)) {
+        return null;
+      }
+      double value = number.doubleValue();
+      return Double.isNaN(value) ? null : value;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import static com.github.lukaszbudnik.roxdb.rocksdb.RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.rocksdb.*;
+
+// Bitmap index keeps a sorted list of sort keys for every partition, attribute and value. Entries
+// are keyed by partition key, attribute, value and sort key and have empty values, consecutive
+// entries of a list share the key prefix which RocksDB stores delta encoded in data blocks.
+class BitmapIndex implements SecondaryIndex {
+  private static final byte[] EMPTY = new byte[0];
+
+  private final IndexDefinition definition;
+  private final TransactionDB db;
+  private final ColumnFamilyHandle cfHandle;
+
+  BitmapIndex(IndexDefinition definition, TransactionDB db, ColumnFamilyHandle cfHandle) {
+    this.definition = definition;
+    this.db = db;
+    this.cfHandle = cfHandle;
+  }
+
+  @Override
+  public IndexDefinition definition() {
+    return definition;
+  }
+
+  @Override
+  public void update(
+      Transaction transaction,
+      Key key,
+      Map<String, Object> oldAttributes,
+      Map<String, Object> newAttributes)
+      throws RocksDBException {
+    for (String attribute : definition.attributes()) {
+      String oldValue =
+          oldAttributes != null
+              ? IndexValues.encode(attribute, oldAttributes.get(attribute))
+              : null;
+      String newValue =
+          newAttributes != null
+              ? IndexValues.encode(attribute, newAttributes.get(attribute))
+              : null;
+      // most writes do not change low cardinality attributes
+      if (oldValue != null && oldValue.equals(newValue)) {
+        continue;
+      }
+      if (oldValue != null) {
+        transaction.delete(cfHandle, entryKey(key.partitionKey(), attribute, oldValue, key));
+      }
+      if (newValue != null) {
+        transaction.put(cfHandle, entryKey(key.partitionKey(), attribute, newValue, key), EMPTY);
+      }
+    }
+  }
+
+  private static byte[] entryKey(String partitionKey, String attribute, String value, Key key) {
+    return (listPrefix(partitionKey, attribute, value) + key.sortKey())
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String listPrefix(String partitionKey, String attribute, String value) {
+    return partitionKey
+        + PARTITION_SORT_KEY_SEPARATOR
+        + attribute
+        + PARTITION_SORT_KEY_SEPARATOR
+        + value
+        + PARTITION_SORT_KEY_SEPARATOR;
+  }
+
+  // union of lists of sort keys of items of the partition with any of given (encoded) values
+  PostingList postingList(String partitionKey, String attribute, List<String> values) {
+    return new PostingList(
+        values.stream()
+            .map(
+                value ->
+                    new ListIterator(
+                        db.newIterator(cfHandle), listPrefix(partitionKey, attribute, value)))
+            .toList());
+  }
+
+  // Leapfrog intersection, every list is moved to the greatest sort key seen so far until all lists
+  // agree on the same sort key. Returns the first sort key present in all lists which is greater or
+  // equal to the given one, null when any list is exhausted.
+  static String intersect(List<PostingList> postingLists, String fromSortKey) {
+    String candidate = fromSortKey;
+    while (true) {
+      boolean agreed = true;
+      for (PostingList postingList : postingLists) {
+        String current = postingList.seek(candidate);
+        if (current == null) {
+          return null;
+        }
+        if (!current.equals(candidate)) {
+          candidate = current;
+          agreed = false;
+        }
+      }
+      if (agreed) {
+        return candidate;
+      }
+    }
+  }
+
+  private record ListIterator(RocksIterator iterator, String prefix) {
+    // returns the first sort key greater or equal to the given one, null when list is exhausted
+    String seek(String sortKey) {
+      iterator.seek((prefix + sortKey).getBytes(StandardCharsets.UTF_8));
+      if (!iterator.isValid()) {
+        return null;
+      }
+      String entryKey = new String(iterator.key(), StandardCharsets.UTF_8);
+      return entryKey.startsWith(prefix) ? entryKey.substring(prefix.length()) : null;
+    }
+  }
+
+  static class PostingList implements AutoCloseable {
+    private final List<ListIterator> lists;
+
+    private PostingList(List<ListIterator> lists) {
+      this.lists = lists;
+    }
+
+    // returns the first sort key greater or equal to the given one in any of the lists, null when
+    // all lists are exhausted
+    String seek(String sortKey) {
+      String first = null;
+      for (ListIterator list : lists) {
+        String current = list.seek(sortKey);
+        if (current != null && (first == null || current.compareTo(first) < 0)) {
+          first = current;
+        }
+      }
+      return first;
+    }
+
+    @Override
+    public void close() {
+      lists.forEach(list -> list.iterator().close());
+    }
+  }
+}
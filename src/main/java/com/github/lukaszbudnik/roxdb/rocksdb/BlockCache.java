@@ -0,0 +1,144 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.Cache;
+import org.rocksdb.Env;
+import org.rocksdb.HyperClockCache;
+import org.rocksdb.InfoLogLevel;
+import org.rocksdb.LRUCache;
+import org.rocksdb.PersistentCache;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.Statistics;
+import org.rocksdb.TickerType;
+import org.rocksdb.WriteBufferManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Block cache shared by all column families so that one budget serves the whole working set
+// instead of a small default cache per column family. Index and filter blocks are kept in the
+// cache (so that their memory is bounded too) with high priority, which LRU cache reserves a pool
+// for so that scans of data blocks do not evict them, and filter and index blocks of L0 files,
+// which are checked by every read, are pinned.
+//
+// Optional secondary tier keeps blocks in their compressed on disk form in files under a
+// directory, which is meant to be memory backed (tmpfs). Blocks missing in the primary cache are
+// looked up in the secondary tier before SST files and promoted to the primary cache on hit, so a
+// working set larger than the primary cache is still served without disk reads. RocksJava does
+// not expose the compressed secondary cache, the secondary tier uses RocksDB persistent cache.
+class BlockCache implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(BlockCache.class);
+  private static final double HIGH_PRIORITY_POOL_RATIO = 0.2;
+  private static final double BLOOM_FILTER_BITS_PER_KEY = 10;
+  private static final String ENTRY_STATS_PROPERTY = "rocksdb.block-cache-entry-stats";
+  private static final String ENTRY_STATS_BYTES_PREFIX = "bytes.";
+
+  private final Cache cache;
+  private final BloomFilter filter;
+  private final org.rocksdb.Logger secondaryCacheLogger;
+  private final PersistentCache secondaryCache;
+  private final BlockBasedTableConfig tableConfig;
+  private final long capacityBytes;
+  private final long secondaryCapacityBytes;
+  private final WriteBufferManager writeBufferManager;
+
+  BlockCache(StorageOptions storageOptions) throws RocksDBException {
+    this.capacityBytes = storageOptions.blockCacheSizeBytes();
+    this.secondaryCapacityBytes = storageOptions.secondaryCacheSizeBytes();
+    this.cache =
+        switch (storageOptions.blockCacheType()) {
+          case LRU -> new LRUCache(capacityBytes, -1, false, HIGH_PRIORITY_POOL_RATIO);
+          // estimated entry charge 0 sizes the table automatically
+          case HYPER_CLOCK -> new HyperClockCache(capacityBytes, 0, -1, false);
+        };
+    this.filter = new BloomFilter(BLOOM_FILTER_BITS_PER_KEY);
+    this.tableConfig =
+        new BlockBasedTableConfig()
+            .setBlockCache(cache)
+            .setFilterPolicy(filter)
+            .setCacheIndexAndFilterBlocks(true)
+            .setCacheIndexAndFilterBlocksWithHighPriority(true)
+            .setPinL0FilterAndIndexBlocksInCache(true);
+
+    // memtables reserve their memory in the cache, writes stall while memtables are at the limit
+    this.writeBufferManager =
+        storageOptions.writeBufferManagerSizeBytes() > 0
+            ? new WriteBufferManager(storageOptions.writeBufferManagerSizeBytes(), cache, true)
+            : null;
+
+    if (secondaryCapacityBytes > 0) {
+      String path = storageOptions.secondaryCachePath();
+      if (!new File(path).mkdirs() && !new File(path).isDirectory()) {
+        throw new IllegalArgumentException("Cannot create secondary cache directory " + path);
+      }
+      this.secondaryCacheLogger =
+          new org.rocksdb.Logger(InfoLogLevel.WARN_LEVEL) {
+            @Override
+            protected void log(InfoLogLevel infoLogLevel, String message) {
+              logger.warn("Secondary block cache: {}", message);
+            }
+          };
+      // existing cache files are removed when the cache is opened
+      this.secondaryCache =
+          new PersistentCache(
+              Env.getDefault(), path, secondaryCapacityBytes, secondaryCacheLogger, false);
+      tableConfig.setPersistentCache(secondaryCache);
+      logger.info("Secondary block cache of {} bytes enabled at {}", secondaryCapacityBytes, path);
+    } else {
+      this.secondaryCacheLogger = null;
+      this.secondaryCache = null;
+    }
+  }
+
+  BlockBasedTableConfig getTableConfig() {
+    return tableConfig;
+  }
+
+  // null when memtables are not charged to the cache
+  WriteBufferManager getWriteBufferManager() {
+    return writeBufferManager;
+  }
+
+  BlockCacheStats stats(RocksDB db, Statistics statistics) {
+    Map<String, Long> usageByRole = new HashMap<>();
+    try {
+      for (Map.Entry<String, String> entry : db.getMapProperty(ENTRY_STATS_PROPERTY).entrySet()) {
+        if (entry.getKey().startsWith(ENTRY_STATS_BYTES_PREFIX)) {
+          usageByRole.put(
+              entry.getKey().substring(ENTRY_STATS_BYTES_PREFIX.length()),
+              Long.parseLong(entry.getValue()));
+        }
+      }
+    } catch (RocksDBException e) {
+      logger.warn("Error reading block cache entry stats", e);
+    }
+    return new BlockCacheStats(
+        capacityBytes,
+        cache.getUsage(),
+        cache.getPinnedUsage(),
+        usageByRole,
+        statistics.getTickerCount(TickerType.BLOCK_CACHE_HIT),
+        statistics.getTickerCount(TickerType.BLOCK_CACHE_MISS),
+        secondaryCapacityBytes,
+        statistics.getTickerCount(TickerType.PERSISTENT_CACHE_HIT),
+        statistics.getTickerCount(TickerType.PERSISTENT_CACHE_MISS));
+  }
+
+  // must be called after the database is closed
+  @Override
+  public void close() {
+    if (writeBufferManager != null) {
+      writeBufferManager.close();
+    }
+    if (secondaryCache != null) {
+      secondaryCache.close();
+      secondaryCacheLogger.close();
+    }
+    filter.close();
+    cache.close();
+  }
+}
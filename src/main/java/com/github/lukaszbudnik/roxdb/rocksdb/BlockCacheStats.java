@@ -0,0 +1,20 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.Map;
+
+// Snapshot of the shared block cache, usage by role (data, index, filter etc.) is sampled by
+// RocksDB
+// and can lag behind total usage. Hits and misses are counted since the database was opened, misses
+// of the primary cache are looked up in the secondary tier when it is enabled.
+public record BlockCacheStats(
+    long capacityBytes,
+    long usageBytes,
+    long pinnedUsageBytes,
+    Map<String, Long> usageBytesByRole,
+    long hitCount,
+    long missCount,
+    long secondaryCapacityBytes,
+    long secondaryHitCount,
+    long secondaryMissCount) {
+  public static final BlockCacheStats EMPTY = new BlockCacheStats(0, 0, 0, Map.of(), 0, 0, 0, 0, 0);
+}
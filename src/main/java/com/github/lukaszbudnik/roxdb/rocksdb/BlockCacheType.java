@@ -0,0 +1,7 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+public enum BlockCacheType {
+  LRU,
+  // lock free cache which scales better with many concurrent readers
+  HYPER_CLOCK
+}
@@ -0,0 +1,18 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+// Snapshot of cache counters, size is the estimated number of bytes held by the cache and
+// coalesced count is the number of reads which shared a concurrent identical read
+public record CacheStats(
+    long hitCount,
+    long missCount,
+    long evictionCount,
+    long entryCount,
+    long sizeBytes,
+    long coalescedCount) {
+  public static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0);
+
+  public double hitRate() {
+    long requestCount = hitCount + missCount;
+    return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+  }
+}
@@ -0,0 +1,8 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.Map;
+
+// Committed change of a single item, puts carry all attributes of the item (updates are merged
+// before they are written), attributes of deletes are null
+public record ChangeEvent(
+    String tableName, ChangeType type, Key key, Map<String, Object> attributes) {}
@@ -0,0 +1,201 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.rocksdb.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Reads committed changes of table items from the write ahead log. Every write batch (single write
+// or committed transaction) is decoded into put events carrying the new item and delete events.
+// Batches are never split so that the next sequence number always points at a batch boundary, a
+// page can therefore have a few more changes than the limit. Writes to internal column families
+// (indexes, aggregates, consumer groups) are skipped. How far back changes can be read depends on
+// WAL retention, once WAL files are removed older sequence numbers cannot be read.
+class ChangeLog {
+  private static final Logger logger = LoggerFactory.getLogger(ChangeLog.class);
+
+  private final RoxDBImpl roxDB;
+  private final TransactionDB db;
+
+  ChangeLog(RoxDBImpl roxDB, TransactionDB db) {
+    this.roxDB = roxDB;
+    this.db = db;
+  }
+
+  Changes read(long sinceSequenceNumber, int limit, Set<String> tables) throws RocksDBException {
+    long latestSequenceNumber = db.getLatestSequenceNumber();
+    if (sinceSequenceNumber > latestSequenceNumber) {
+      return new Changes(List.of(), sinceSequenceNumber);
+    }
+
+    Map<Integer, String> tableNames = roxDB.getTableNamesByColumnFamilyId();
+    List<ChangeEvent> changes = new ArrayList<>();
+    long nextSequenceNumber = sinceSequenceNumber;
+    try (TransactionLogIterator iterator = db.getUpdatesSince(sinceSequenceNumber)) {
+      while (iterator.isValid() && changes.size() < limit) {
+        TransactionLogIterator.BatchResult batch = iterator.getBatch();
+        try (WriteBatch writeBatch = batch.writeBatch()) {
+          long batchEnd = batch.sequenceNumber() + writeBatch.count();
+          // iterator starts at the batch which contains the requested sequence number
+          if (batchEnd > sinceSequenceNumber) {
+            try (BatchDecoder decoder = new BatchDecoder(tableNames, tables)) {
+              writeBatch.iterate(decoder);
+              changes.addAll(decoder.changes());
+            }
+            nextSequenceNumber = batchEnd;
+          }
+        }
+        iterator.next();
+      }
+      iterator.status();
+    } catch (RocksDBException e) {
+      logger.warn("Cannot read changes since sequence number {}", sinceSequenceNumber, e);
+      throw new IllegalArgumentException(
+          "Changes since sequence number "
+              + sinceSequenceNumber
+              + " are not available, WAL retention may be too short");
+    }
+    return new Changes(changes, nextSequenceNumber);
+  }
+
+  // Items moved between shards of a hot partition are written to one column family and deleted
+  // from another in the same batch, such put and delete of the same item are reported as a put.
+  private static class BatchDecoder extends WriteBatch.Handler {
+    private record ItemKey(String tableName, Key key) {}
+
+    private record Operation(ChangeEvent event, int columnFamilyId) {}
+
+    private final Map<Integer, String> tableNames;
+    private final Set<String> tables;
+    private final Map<ItemKey, Operation> operations = new LinkedHashMap<>();
+
+    BatchDecoder(Map<Integer, String> tableNames, Set<String> tables) {
+      this.tableNames = tableNames;
+      this.tables = tables;
+    }
+
+    List<ChangeEvent> changes() {
+      return operations.values().stream().map(Operation::event).toList();
+    }
+
+    private void add(int columnFamilyId, ChangeType type, byte[] key, byte[] value) {
+      String tableName = tableNames.get(columnFamilyId);
+      if (tableName == null || (!tables.isEmpty() && !tables.contains(tableName))) {
+        return;
+      }
+      Key itemKey = SerDeUtils.deserializeKey(key);
+      ChangeEvent event =
+          new ChangeEvent(
+              tableName,
+              type,
+              itemKey,
+              type == ChangeType.PUT ? SerDeUtils.deserializeAttributes(value) : null);
+      operations.merge(
+          new ItemKey(tableName, itemKey),
+          new Operation(event, columnFamilyId),
+          (previous, next) ->
+              previous.columnFamilyId() != next.columnFamilyId()
+                      && previous.event().type() == ChangeType.PUT
+                      && next.event().type() == ChangeType.DELETE
+                  ? previous
+                  : next);
+    }
+
+    @Override
+    public void put(int columnFamilyId, byte[] key, byte[] value) {
+      add(columnFamilyId, ChangeType.PUT, key, value);
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+      // default column family does not store table items
+    }
+
+    @Override
+    public void merge(int columnFamilyId, byte[] key, byte[] value) {
+      // merge operator is not used
+    }
+
+    @Override
+    public void merge(byte[] key, byte[] value) {
+      // merge operator is not used
+    }
+
+    @Override
+    public void delete(int columnFamilyId, byte[] key) {
+      add(columnFamilyId, ChangeType.DELETE, key, null);
+    }
+
+    @Override
+    public void delete(byte[] key) {
+      // default column family does not store table items
+    }
+
+    @Override
+    public void singleDelete(int columnFamilyId, byte[] key) {
+      add(columnFamilyId, ChangeType.DELETE, key, null);
+    }
+
+    @Override
+    public void singleDelete(byte[] key) {
+      // default column family does not store table items
+    }
+
+    @Override
+    public void deleteRange(int columnFamilyId, byte[] beginKey, byte[] endKey) {
+      logger.warn(
+          "Range delete of {} is not reported as change",
+          new String(beginKey, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void deleteRange(byte[] beginKey, byte[] endKey) {
+      // default column family does not store table items
+    }
+
+    @Override
+    public void logData(byte[] blob) {
+      // not used
+    }
+
+    @Override
+    public void putBlobIndex(int columnFamilyId, byte[] key, byte[] value) {
+      // blob files are not used
+    }
+
+    @Override
+    public void markBeginPrepare() {
+      // two phase commit is not used
+    }
+
+    @Override
+    public void markEndPrepare(byte[] xid) {
+      // two phase commit is not used
+    }
+
+    @Override
+    public void markNoop(boolean emptyBatch) {
+      // no change
+    }
+
+    @Override
+    public void markRollback(byte[] xid) {
+      // two phase commit is not used
+    }
+
+    @Override
+    public void markCommit(byte[] xid) {
+      // two phase commit is not used
+    }
+
+    @Override
+    public void markCommitWithTimestamp(byte[] xid, byte[] commitTimestamp) {
+      // two phase commit is not used
+    }
+  }
+}
@@ -0,0 +1,6 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+public enum ChangeType {
+  PUT,
+  DELETE
+}
@@ -0,0 +1,7 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.List;
+
+// Page of committed changes read from the write ahead log, next sequence number is passed to the
+// next read to continue right after the last returned change
+public record Changes(List<ChangeEvent> changes, long nextSequenceNumber) {}
@@ -0,0 +1,94 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import org.rocksdb.RocksDB;
+
+// Internal column families are named after the table they belong to, followed by the separator
+// character which is not allowed in keys and is not expected in table names.
+class ColumnFamilyNames {
+  static final char SEPARATOR = RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR;
+  static final String WINDOW = "window";
+  static final String CONSUMER_GROUPS = "consumer_groups";
+  static final String HOT_PARTITIONS = "hot_partitions";
+  static final String SHARD = "shard";
+  static final String INDEXES = "indexes";
+  static final String INDEX = "index";
+  static final String AGGREGATES = "aggregates";
+  static final String EXPIRY = "expiry";
+
+  static String internal(String tableName, String... parts) {
+    StringBuilder name = new StringBuilder(tableName);
+    for (String part : parts) {
+      name.append(SEPARATOR).append(part);
+    }
+    return name.toString();
+  }
+
+  static boolean isInternal(String columnFamilyName) {
+    return columnFamilyName.indexOf(SEPARATOR) >= 0;
+  }
+
+  static String tableName(String columnFamilyName) {
+    int separatorIndex = columnFamilyName.indexOf(SEPARATOR);
+    return separatorIndex < 0 ? columnFamilyName : columnFamilyName.substring(0, separatorIndex);
+  }
+
+  // column families which store table items, items of hot partitions and time windows are stored in
+  // internal column families
+  static boolean isTableItems(String columnFamilyName) {
+    if (!isInternal(columnFamilyName)) {
+      return !columnFamilyName.equals(new String(RocksDB.DEFAULT_COLUMN_FAMILY));
+    }
+    return isShard(columnFamilyName) || windowStart(columnFamilyName).isPresent();
+  }
+
+  static String consumerGroups(String tableName) {
+    return internal(tableName, CONSUMER_GROUPS);
+  }
+
+  static String hotPartitions(String tableName) {
+    return internal(tableName, HOT_PARTITIONS);
+  }
+
+  static String shard(String tableName, int shard) {
+    return internal(tableName, SHARD, String.valueOf(shard));
+  }
+
+  static boolean isShard(String columnFamilyName) {
+    return columnFamilyName.startsWith(internal(tableName(columnFamilyName), SHARD) + SEPARATOR);
+  }
+
+  static String indexes(String tableName) {
+    return internal(tableName, INDEXES);
+  }
+
+  static String index(String tableName, String indexName) {
+    return internal(tableName, INDEX, indexName);
+  }
+
+  static String aggregates(String tableName) {
+    return internal(tableName, AGGREGATES);
+  }
+
+  static String expiry(String tableName) {
+    return internal(tableName, EXPIRY);
+  }
+
+  static String window(String tableName, Instant windowStart) {
+    return internal(tableName, WINDOW, windowStart.toString());
+  }
+
+  static Optional<Instant> windowStart(String columnFamilyName) {
+    String prefix = internal(tableName(columnFamilyName), WINDOW) + SEPARATOR;
+    if (!columnFamilyName.startsWith(prefix)) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(Instant.parse(columnFamilyName.substring(prefix.length())));
+    } catch (DateTimeParseException e) {
+      return Optional.empty();
+    }
+  }
+}
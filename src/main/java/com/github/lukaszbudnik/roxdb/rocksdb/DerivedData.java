@@ -0,0 +1,18 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.Map;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.Transaction;
+
+// Data derived from table items (secondary indexes, aggregates) is stored in its own column
+// families and updated in the same transaction as the base table item
+interface DerivedData {
+
+  // old attributes are null when item is created, new attributes are null when item is deleted
+  void update(
+      Transaction transaction,
+      Key key,
+      Map<String, Object> oldAttributes,
+      Map<String, Object> newAttributes)
+      throws RocksDBException;
+}
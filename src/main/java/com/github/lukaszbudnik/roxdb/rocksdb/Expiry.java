@@ -0,0 +1,204 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import static com.github.lukaszbudnik.roxdb.rocksdb.RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.rocksdb.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Items of tables with TTL attribute are listed in the expiry column family keyed by expiry time
+// and item key, so background expiry reads only the entries which already expired instead of
+// scanning the table. Entries are updated in the transaction of every item write, enqueued messages
+// write them in the enqueue write batch. Acknowledged messages are removed without reading them,
+// their entries are removed when they expire. Tables whose TTL attribute is new or changed since
+// the database was last opened are listed from existing items on startup.
+class Expiry {
+  private static final Logger logger = LoggerFactory.getLogger(Expiry.class);
+  private static final int REBUILD_BATCH_SIZE = 1000;
+  // TTL attribute is stored under blank key, entry keys start with the encoded expiry time
+  private static final byte[] DEFINITION_KEY = new byte[0];
+
+  private final RoxDBImpl roxDB;
+  private final TransactionDB db;
+  private final Map<String, TableExpiry> tableExpiries = new HashMap<>();
+
+  record Entry(byte[] entryKey, Key key) {}
+
+  Expiry(RoxDBImpl roxDB, TransactionDB db, TablesConfig tablesConfig) throws RocksDBException {
+    this.roxDB = roxDB;
+    this.db = db;
+    for (Map.Entry<String, TableConfig> entry : tablesConfig.tables().entrySet()) {
+      // time series windows are dropped as a whole when they expire
+      if (entry.getValue().hasTtl() && !entry.getValue().isTimeSeries()) {
+        String tableName = entry.getKey();
+        ColumnFamilyHandle cfHandle =
+            roxDB.getOrCreateColumnFamily(ColumnFamilyNames.expiry(tableName));
+        TableExpiry tableExpiry = new TableExpiry(entry.getValue(), cfHandle);
+        tableExpiries.put(tableName, tableExpiry);
+        rebuildChanged(tableName, tableExpiry);
+      }
+    }
+  }
+
+  // returns null when table items do not expire in the background
+  DerivedData getTableExpiry(String tableName) {
+    return tableExpiries.get(tableName);
+  }
+
+  // lists enqueued message, queue writes are not transactional
+  void put(WriteBatch writeBatch, String tableName, Key key, Map<String, Object> attributes)
+      throws RocksDBException {
+    TableExpiry tableExpiry = tableExpiries.get(tableName);
+    Long expiresAt = tableExpiry == null ? null : tableExpiry.tableConfig.expiresAt(attributes);
+    if (expiresAt != null) {
+      writeBatch.put(tableExpiry.cfHandle, entryKey(expiresAt, key), new byte[0]);
+    }
+  }
+
+  // returns up to limit entries which expired at or before now, ordered by expiry time and starting
+  // after the given entry
+  List<Entry> expired(String tableName, long nowEpochSeconds, Entry after, int limit) {
+    TableExpiry tableExpiry = tableExpiries.get(tableName);
+    List<Entry> entries = new ArrayList<>();
+    if (tableExpiry == null) {
+      return entries;
+    }
+    byte[] end = encodeExpiry(nowEpochSeconds + 1).getBytes(StandardCharsets.UTF_8);
+    try (RocksIterator iterator = db.newIterator(tableExpiry.cfHandle)) {
+      if (after == null) {
+        iterator.seek(encodeExpiry(Long.MIN_VALUE).getBytes(StandardCharsets.UTF_8));
+      } else {
+        iterator.seek(after.entryKey());
+        if (iterator.isValid() && Arrays.equals(iterator.key(), after.entryKey())) {
+          iterator.next();
+        }
+      }
+      for (; iterator.isValid() && entries.size() < limit; iterator.next()) {
+        if (Arrays.compare(iterator.key(), end) >= 0) {
+          break;
+        }
+        entries.add(new Entry(iterator.key(), parseKey(iterator.key())));
+      }
+    }
+    return entries;
+  }
+
+  // flipping the sign bit makes hex encoding of negative times sort before positive ones
+  private static String encodeExpiry(long expiresAt) {
+    return String.format("%016x", expiresAt ^ Long.MIN_VALUE);
+  }
+
+  private static byte[] entryKey(long expiresAt, Key key) {
+    return (encodeExpiry(expiresAt)
+            + PARTITION_SORT_KEY_SEPARATOR
+            + key.partitionKey()
+            + PARTITION_SORT_KEY_SEPARATOR
+            + key.sortKey())
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static Key parseKey(byte[] entryKey) {
+    String value = new String(entryKey, StandardCharsets.UTF_8);
+    int separatorIndex = value.indexOf(PARTITION_SORT_KEY_SEPARATOR);
+    return SerDeUtils.deserializeKey(
+        value.substring(separatorIndex + 1).getBytes(StandardCharsets.UTF_8));
+  }
+
+  // entries of a table without a stored TTL attribute or with a different one are cleared and
+  // listed from table items
+  private void rebuildChanged(String tableName, TableExpiry tableExpiry) throws RocksDBException {
+    String ttlAttribute = tableExpiry.tableConfig.ttlAttribute();
+    byte[] stored = db.get(tableExpiry.cfHandle, DEFINITION_KEY);
+    if (stored != null && new String(stored, StandardCharsets.UTF_8).equals(ttlAttribute)) {
+      return;
+    }
+
+    long started = System.currentTimeMillis();
+    clear(tableExpiry.cfHandle);
+    long itemsCount = 0;
+    for (ColumnFamilyHandle tableHandle : roxDB.getTableColumnFamilies(tableName)) {
+      List<Key> keys = new ArrayList<>();
+      try (RocksIterator iterator = db.newIterator(tableHandle)) {
+        for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+          keys.add(SerDeUtils.deserializeKey(iterator.key()));
+          if (keys.size() >= REBUILD_BATCH_SIZE) {
+            itemsCount += rebuildBatch(tableName, tableExpiry, keys);
+            keys.clear();
+          }
+        }
+      }
+      itemsCount += rebuildBatch(tableName, tableExpiry, keys);
+    }
+    db.put(tableExpiry.cfHandle, DEFINITION_KEY, ttlAttribute.getBytes(StandardCharsets.UTF_8));
+    logger.info(
+        "Listed expiry of table {} from {} items in {} ms",
+        tableName,
+        itemsCount,
+        System.currentTimeMillis() - started);
+  }
+
+  private int rebuildBatch(String tableName, TableExpiry tableExpiry, List<Key> keys)
+      throws RocksDBException {
+    if (keys.isEmpty()) {
+      return 0;
+    }
+    int[] listed = new int[1];
+    roxDB.executeTransaction(
+        txCtx -> {
+          for (Key key : keys) {
+            if (txCtx.reindex(tableName, key, tableExpiry)) {
+              listed[0]++;
+            }
+          }
+        });
+    return listed[0];
+  }
+
+  private void clear(ColumnFamilyHandle cfHandle) throws RocksDBException {
+    try (RocksIterator iterator = db.newIterator(cfHandle);
+        WriteBatch writeBatch = new WriteBatch();
+        WriteOptions writeOptions = new WriteOptions()) {
+      for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+        writeBatch.delete(cfHandle, iterator.key());
+      }
+      db.write(writeOptions, writeBatch);
+    }
+  }
+
+  private static class TableExpiry implements DerivedData {
+    private final TableConfig tableConfig;
+    private final ColumnFamilyHandle cfHandle;
+
+    TableExpiry(TableConfig tableConfig, ColumnFamilyHandle cfHandle) {
+      this.tableConfig = tableConfig;
+      this.cfHandle = cfHandle;
+    }
+
+    @Override
+    public void update(
+        Transaction transaction,
+        Key key,
+        Map<String, Object> oldAttributes,
+        Map<String, Object> newAttributes)
+        throws RocksDBException {
+      Long oldExpiresAt = tableConfig.expiresAt(oldAttributes);
+      Long newExpiresAt = tableConfig.expiresAt(newAttributes);
+      if (Objects.equals(oldExpiresAt, newExpiresAt)) {
+        return;
+      }
+      if (oldExpiresAt != null) {
+        transaction.delete(cfHandle, entryKey(oldExpiresAt, key));
+      }
+      if (newExpiresAt != null) {
+        transaction.put(cfHandle, entryKey(newExpiresAt, key), new byte[0]);
+      }
+    }
+  }
+}
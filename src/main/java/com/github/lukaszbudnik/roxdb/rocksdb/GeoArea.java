@@ -0,0 +1,51 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+// Area of a geo index query. Bounding box with minimum longitude greater than maximum longitude
+// crosses the antimeridian.
+public sealed interface GeoArea {
+
+  static Radius radius(double latitude, double longitude, double meters) {
+    return new Radius(latitude, longitude, meters);
+  }
+
+  static BoundingBox boundingBox(
+      double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+    return new BoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+  }
+
+  record Radius(double latitude, double longitude, double meters) implements GeoArea {
+    public Radius {
+      validateLatitude(latitude);
+      validateLongitude(longitude);
+      if (!(meters > 0)) {
+        throw new IllegalArgumentException("Radius must be greater than 0");
+      }
+    }
+  }
+
+  record BoundingBox(
+      double minLatitude, double minLongitude, double maxLatitude, double maxLongitude)
+      implements GeoArea {
+    public BoundingBox {
+      validateLatitude(minLatitude);
+      validateLatitude(maxLatitude);
+      validateLongitude(minLongitude);
+      validateLongitude(maxLongitude);
+      if (minLatitude > maxLatitude) {
+        throw new IllegalArgumentException("Minimum latitude cannot be greater than maximum");
+      }
+    }
+  }
+
+  private static void validateLatitude(double latitude) {
+    if (!(latitude >= -90 && latitude <= 90)) {
+      throw new IllegalArgumentException("Latitude must be between -90 and 90: " + latitude);
+    }
+  }
+
+  private static void validateLongitude(double longitude) {
+    if (!(longitude >= -180 && longitude <= 180)) {
+      throw new IllegalArgumentException("Longitude must be between -180 and 180: " + longitude);
+    }
+  }
+}
@@ -0,0 +1,294 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import static com.github.lukaszbudnik.roxdb.rocksdb.RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import org.rocksdb.*;
+
+// Geo index keeps items of a partition by geohash of their latitude and longitude attributes.
+// Entries are keyed by partition key, geohash and sort key and store the point so that items
+// outside of the queried area are skipped without reading the table. Queries read only the key
+// ranges of geohash cells covering the area, cell size is chosen so that few cells are read.
+class GeoIndex implements SecondaryIndex {
+  static final int PRECISION = 12;
+  private static final int MAX_COVERING_CELLS = 16;
+  private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+  private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+  private final String tableName;
+  private final IndexDefinition definition;
+  private final RoxDB roxDB;
+  private final TransactionDB db;
+  private final ColumnFamilyHandle cfHandle;
+
+  record Point(double latitude, double longitude) {}
+
+  private record Box(
+      double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {}
+
+  private record Match(String sortKey, double distance) {}
+
+  GeoIndex(
+      String tableName,
+      IndexDefinition definition,
+      RoxDB roxDB,
+      TransactionDB db,
+      ColumnFamilyHandle cfHandle) {
+    this.tableName = tableName;
+    this.definition = definition;
+    this.roxDB = roxDB;
+    this.db = db;
+    this.cfHandle = cfHandle;
+  }
+
+  @Override
+  public IndexDefinition definition() {
+    return definition;
+  }
+
+  @Override
+  public void update(
+      Transaction transaction,
+      Key key,
+      Map<String, Object> oldAttributes,
+      Map<String, Object> newAttributes)
+      throws RocksDBException {
+    Point oldPoint = point(oldAttributes);
+    Point newPoint = point(newAttributes);
+    if (oldPoint != null && oldPoint.equals(newPoint)) {
+      return;
+    }
+    if (oldPoint != null) {
+      transaction.delete(cfHandle, entryKey(key, oldPoint));
+    }
+    if (newPoint != null) {
+      transaction.put(
+          cfHandle,
+          entryKey(key, newPoint),
+          ByteBuffer.allocate(2 * Double.BYTES)
+              .putDouble(newPoint.latitude())
+              .putDouble(newPoint.longitude())
+              .array());
+    }
+  }
+
+  // items without numeric coordinates in valid ranges are not indexed
+  private Point point(Map<String, Object> attributes) {
+    if (attributes == null
+        || !(attributes.get(definition.attributes().get(0)) instanceof Number latitude)
+        || !(attributes.get(definition.attributes().get(1)) instanceof Number longitude)) {
+      return null;
+    }
+    double lat = latitude.doubleValue();
+    double lon = longitude.doubleValue();
+    if (!(lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180)) {
+      return null;
+    }
+    return new Point(lat, lon);
+  }
+
+  private static byte[] entryKey(Key key, Point point) {
+    return (cellPrefix(key.partitionKey(), encode(point, PRECISION)) + key.sortKey())
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String cellPrefix(String partitionKey, String cell) {
+    return partitionKey + PARTITION_SORT_KEY_SEPARATOR + cell;
+  }
+
+  // radius queries return items ordered by distance, bounding box queries by sort key
+  List<Item> query(String partitionKey, GeoArea area, int limit) throws RocksDBException {
+    TreeSet<String> cells = new TreeSet<>();
+    for (Box box : boxes(area)) {
+      cells.addAll(coveringCells(box));
+    }
+
+    // cells of split boxes may differ in precision and overlap, matches are deduplicated
+    Map<String, Match> matches = new LinkedHashMap<>();
+    try (RocksIterator iterator = db.newIterator(cfHandle)) {
+      for (String cell : cells) {
+        String prefix = cellPrefix(partitionKey, cell);
+        for (iterator.seek(prefix.getBytes(StandardCharsets.UTF_8));
+            iterator.isValid();
+            iterator.next()) {
+          String entryKey = new String(iterator.key(), StandardCharsets.UTF_8);
+          if (!entryKey.startsWith(prefix)) {
+            break;
+          }
+          ByteBuffer value = ByteBuffer.wrap(iterator.value());
+          Point point = new Point(value.getDouble(), value.getDouble());
+          if (contains(area, point)) {
+            // geohash has fixed length and is directly followed by sort key
+            String sortKey = entryKey.substring(partitionKey.length() + 1 + PRECISION);
+            matches.putIfAbsent(sortKey, new Match(sortKey, distance(area, point)));
+          }
+        }
+      }
+    }
+
+    List<Item> results = new ArrayList<>();
+    for (Match match :
+        matches.values().stream()
+            .sorted(Comparator.comparingDouble(Match::distance).thenComparing(Match::sortKey))
+            .limit(limit)
+            .toList()) {
+      Item item = roxDB.getItem(tableName, new Key(partitionKey, match.sortKey()));
+      if (item != null) {
+        results.add(item);
+      }
+    }
+    return results;
+  }
+
+  // bounding box queries have no center, all matches are at distance 0
+  private static double distance(GeoArea area, Point point) {
+    return area instanceof GeoArea.Radius radius
+        ? distanceMeters(new Point(radius.latitude(), radius.longitude()), point)
+        : 0;
+  }
+
+  static boolean contains(GeoArea area, Point point) {
+    return switch (area) {
+      case GeoArea.Radius radius ->
+          distanceMeters(new Point(radius.latitude(), radius.longitude()), point)
+              <= radius.meters();
+      case GeoArea.BoundingBox box ->
+          point.latitude() >= box.minLatitude()
+              && point.latitude() <= box.maxLatitude()
+              && (box.minLongitude() <= box.maxLongitude()
+                  ? point.longitude() >= box.minLongitude()
+                      && point.longitude() <= box.maxLongitude()
+                  : point.longitude() >= box.minLongitude()
+                      || point.longitude() <= box.maxLongitude());
+    };
+  }
+
+  // haversine great circle distance
+  static double distanceMeters(Point from, Point to) {
+    double dLat = Math.toRadians(to.latitude() - from.latitude());
+    double dLon = Math.toRadians(to.longitude() - from.longitude());
+    double a =
+        Math.pow(Math.sin(dLat / 2), 2)
+            + Math.cos(Math.toRadians(from.latitude()))
+                * Math.cos(Math.toRadians(to.latitude()))
+                * Math.pow(Math.sin(dLon / 2), 2);
+    return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  // areas crossing the antimeridian are split into two boxes
+  private static List<Box> boxes(GeoArea area) {
+    Box box =
+        switch (area) {
+          case GeoArea.BoundingBox boundingBox ->
+              new Box(
+                  boundingBox.minLatitude(),
+                  boundingBox.minLongitude(),
+                  boundingBox.maxLatitude(),
+                  boundingBox.maxLongitude());
+          case GeoArea.Radius radius -> boundingBox(radius);
+        };
+    if (box.minLongitude() <= box.maxLongitude()) {
+      return List.of(box);
+    }
+    return List.of(
+        new Box(box.minLatitude(), box.minLongitude(), box.maxLatitude(), 180),
+        new Box(box.minLatitude(), -180, box.maxLatitude(), box.maxLongitude()));
+  }
+
+  private static Box boundingBox(GeoArea.Radius radius) {
+    double latitudeDelta = Math.toDegrees(radius.meters() / EARTH_RADIUS_METERS);
+    double minLatitude = radius.latitude() - latitudeDelta;
+    double maxLatitude = radius.latitude() + latitudeDelta;
+    double longitudeDelta = latitudeDelta / Math.cos(Math.toRadians(radius.latitude()));
+    if (minLatitude <= -90 || maxLatitude >= 90 || longitudeDelta >= 180) {
+      // circle contains a pole or spans all longitudes
+      return new Box(Math.max(-90, minLatitude), -180, Math.min(90, maxLatitude), 180);
+    }
+    double minLongitude = radius.longitude() - longitudeDelta;
+    double maxLongitude = radius.longitude() + longitudeDelta;
+    return new Box(
+        minLatitude,
+        minLongitude < -180 ? minLongitude + 360 : minLongitude,
+        maxLatitude,
+        maxLongitude > 180 ? maxLongitude - 360 : maxLongitude);
+  }
+
+  // Returns geohashes of the finest cells which cover the box with at most MAX_COVERING_CELLS cells
+  private static List<String> coveringCells(Box box) {
+    for (int precision = PRECISION; ; precision--) {
+      int lonBits = (5 * precision + 1) / 2;
+      int latBits = 5 * precision / 2;
+      double lonStep = 360.0 / (1L << lonBits);
+      double latStep = 180.0 / (1L << latBits);
+      long minLonCell = cell(box.minLongitude() + 180, lonStep, lonBits);
+      long maxLonCell = cell(box.maxLongitude() + 180, lonStep, lonBits);
+      long minLatCell = cell(box.minLatitude() + 90, latStep, latBits);
+      long maxLatCell = cell(box.maxLatitude() + 90, latStep, latBits);
+      long count = (maxLonCell - minLonCell + 1) * (maxLatCell - minLatCell + 1);
+      if (count <= MAX_COVERING_CELLS || precision == 1) {
+        List<String> cells = new ArrayList<>();
+        for (long latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+          for (long lonCell = minLonCell; lonCell <= maxLonCell; lonCell++) {
+            // center of the cell is encoded to its geohash
+            cells.add(
+                encode(
+                    new Point((latCell + 0.5) * latStep - 90, (lonCell + 0.5) * lonStep - 180),
+                    precision));
+          }
+        }
+        return cells;
+      }
+    }
+  }
+
+  private static long cell(double offset, double step, int bits) {
+    return Math.min((long) Math.floor(offset / step), (1L << bits) - 1);
+  }
+
+  // geohash interleaves longitude and latitude bisection bits starting with longitude
+  static String encode(Point point, int precision) {
+    double minLat = -90;
+    double maxLat = 90;
+    double minLon = -180;
+    double maxLon = 180;
+    StringBuilder geohash = new StringBuilder(precision);
+    boolean longitudeBit = true;
+    int bits = 0;
+    int character = 0;
+    while (geohash.length() < precision) {
+      if (longitudeBit) {
+        double mid = (minLon + maxLon) / 2;
+        if (point.longitude() >= mid) {
+          character = (character << 1) | 1;
+          minLon = mid;
+        } else {
+          character <<= 1;
+          maxLon = mid;
+        }
+      } else {
+        double mid = (minLat + maxLat) / 2;
+        if (point.latitude() >= mid) {
+          character = (character << 1) | 1;
+          minLat = mid;
+        } else {
+          character <<= 1;
+          maxLat = mid;
+        }
+      }
+      longitudeBit = !longitudeBit;
+      if (++bits == 5) {
+        geohash.append(BASE32[character]);
+        bits = 0;
+        character = 0;
+      }
+    }
+    return geohash.toString();
+  }
+}
@@ -0,0 +1,43 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import static com.github.lukaszbudnik.roxdb.rocksdb.RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.TransactionDB;
+
+// Global index is partitioned by an attribute, entries identify base items by their full key
+class GlobalIndex extends SortedIndex {
+
+  GlobalIndex(
+      String tableName,
+      IndexDefinition definition,
+      RoxDBImpl roxDB,
+      TransactionDB db,
+      ColumnFamilyHandle cfHandle) {
+    super(tableName, definition, roxDB, db, cfHandle);
+  }
+
+  @Override
+  protected String partitionValue(Key key, Map<String, Object> attributes) {
+    return IndexValues.encode(
+        definition.partitionAttribute(), attributes.get(definition.partitionAttribute()));
+  }
+
+  @Override
+  protected String baseKeySuffix(Key key) {
+    return key.partitionKey() + PARTITION_SORT_KEY_SEPARATOR + key.sortKey();
+  }
+
+  @Override
+  protected Key baseKey(String partitionValue, String baseKeySuffix) {
+    return SerDeUtils.deserializeKey(baseKeySuffix.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Override
+  protected List<String> encodePartitionValue(String partitionValue) {
+    return IndexValues.encodeQueryValue(partitionValue);
+  }
+}
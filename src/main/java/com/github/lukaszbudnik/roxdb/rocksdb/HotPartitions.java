@@ -0,0 +1,188 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import static com.github.lukaszbudnik.roxdb.rocksdb.RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.rocksdb.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Hot partitions spread writes over shard column families. Shard is selected by sort key hash so
+// that point operations touch a single shard while queries merge all shards of a partition.
+// Sharded partitions are persisted in a separate column family and never go back to the table
+// column family. Partitions which already had items when they became hot keep reading (and
+// deleting) the table column family as well, every item is stored in exactly one of them. Writers
+// hold a read lock of the partition from choosing column families of the item until the write is
+// committed and sharding takes the write lock, so a write which chose the table column family
+// cannot land there after the partition was sharded. Sharding gives up when the write lock is not
+// acquired shortly, the partition is sharded by one of later writes.
+class HotPartitions {
+  private static final Logger logger = LoggerFactory.getLogger(HotPartitions.class);
+  private static final int LOCK_STRIPES = 64;
+  private static final long SHARD_LOCK_TIMEOUT_MS = 100;
+
+  private final RoxDBImpl roxDB;
+  private final TransactionDB db;
+  private final Map<String, Sharding> shardedPartitions = new ConcurrentHashMap<>();
+  private final Map<String, WriteRate> writeRates = new ConcurrentHashMap<>();
+  private final ReentrantReadWriteLock[] partitionLocks = new ReentrantReadWriteLock[LOCK_STRIPES];
+
+  record Sharding(int shards, boolean hasTableItems) {
+    int shard(Key key) {
+      return Math.floorMod(key.sortKey().hashCode(), shards);
+    }
+  }
+
+  HotPartitions(RoxDBImpl roxDB, TransactionDB db, TablesConfig tablesConfig)
+      throws RocksDBException {
+    this.roxDB = roxDB;
+    this.db = db;
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      partitionLocks[i] = new ReentrantReadWriteLock();
+    }
+    for (Map.Entry<String, TableConfig> entry : tablesConfig.tables().entrySet()) {
+      if (entry.getValue().hasHotPartitions()) {
+        load(entry.getKey());
+      }
+    }
+  }
+
+  private void load(String tableName) throws RocksDBException {
+    ColumnFamilyHandle hotPartitionsHandle =
+        roxDB.getOrCreateColumnFamily(ColumnFamilyNames.hotPartitions(tableName));
+    try (RocksIterator iterator = db.newIterator(hotPartitionsHandle)) {
+      for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+        String partitionKey = new String(iterator.key(), StandardCharsets.UTF_8);
+        String[] value = new String(iterator.value(), StandardCharsets.UTF_8).split(",");
+        shardedPartitions.put(
+            partitionId(tableName, partitionKey),
+            new Sharding(Integer.parseInt(value[0]), Boolean.parseBoolean(value[1])));
+      }
+    }
+  }
+
+  // returns null when partition is not sharded
+  Sharding getSharding(String tableName, String partitionKey) {
+    return shardedPartitions.get(partitionId(tableName, partitionKey));
+  }
+
+  // locked until the write of the calling thread is committed, then unlocked by the caller
+  Lock lockPartition(String tableName, String partitionKey) {
+    Lock lock = partitionLock(tableName, partitionKey).readLock();
+    lock.lock();
+    return lock;
+  }
+
+  // Counts the write and shards the partition when it is listed as hot or exceeds the write rate
+  Sharding recordWrite(String tableName, HotPartitionsConfig config, String partitionKey)
+      throws RocksDBException {
+    Sharding sharding = getSharding(tableName, partitionKey);
+    if (sharding != null) {
+      return sharding;
+    }
+    if (config.partitionKeys().contains(partitionKey)) {
+      return shard(
+          tableName, partitionKey, config.shards(), hasTableItems(tableName, partitionKey));
+    }
+    if (config.hasWritesPerSecondThreshold()
+        && writeRates
+                .computeIfAbsent(tableName, table -> new WriteRate())
+                .increment(partitionKey, System.currentTimeMillis() / 1000)
+            > config.writesPerSecondThreshold()) {
+      // writes below the threshold were already stored in the table column family
+      return shard(tableName, partitionKey, config.shards(), true);
+    }
+    return null;
+  }
+
+  // returns null when the partition cannot be sharded yet, it is sharded by one of later writes
+  private Sharding shard(String tableName, String partitionKey, int shards, boolean hasTableItems)
+      throws RocksDBException {
+    // transaction of the calling thread holds partition locks until it is committed, waiting for
+    // the write lock could deadlock with other transactions
+    for (ReentrantReadWriteLock partitionLock : partitionLocks) {
+      if (partitionLock.getReadHoldCount() > 0) {
+        return getSharding(tableName, partitionKey);
+      }
+    }
+    // waiting writer blocks new readers of the stripe, so waiting without a limit could deadlock
+    // with transactions of other threads waiting for stripes locked by each other
+    Lock lock = partitionLock(tableName, partitionKey).writeLock();
+    try {
+      if (!lock.tryLock(SHARD_LOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+        return getSharding(tableName, partitionKey);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return getSharding(tableName, partitionKey);
+    }
+    try {
+      return shardLocked(tableName, partitionKey, shards, hasTableItems);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Sharding shardLocked(
+      String tableName, String partitionKey, int shards, boolean hasTableItems)
+      throws RocksDBException {
+    Sharding sharding = getSharding(tableName, partitionKey);
+    if (sharding != null) {
+      return sharding;
+    }
+    sharding = new Sharding(shards, hasTableItems);
+    db.put(
+        roxDB.getOrCreateColumnFamily(ColumnFamilyNames.hotPartitions(tableName)),
+        partitionKey.getBytes(StandardCharsets.UTF_8),
+        (shards + "," + hasTableItems).getBytes(StandardCharsets.UTF_8));
+    shardedPartitions.put(partitionId(tableName, partitionKey), sharding);
+    logger.info(
+        "Partition {} of table {} is hot, spreading writes over {} shards",
+        partitionKey,
+        tableName,
+        shards);
+    return sharding;
+  }
+
+  private boolean hasTableItems(String tableName, String partitionKey) throws RocksDBException {
+    byte[] partitionPrefix = (partitionKey + PARTITION_SORT_KEY_SEPARATOR).getBytes();
+    try (RocksIterator iterator = db.newIterator(roxDB.getOrCreateColumnFamily(tableName))) {
+      iterator.seek(partitionPrefix);
+      return iterator.isValid()
+          && new String(iterator.key()).startsWith(new String(partitionPrefix));
+    }
+  }
+
+  private ReentrantReadWriteLock partitionLock(String tableName, String partitionKey) {
+    return partitionLocks[
+        Math.floorMod(partitionId(tableName, partitionKey).hashCode(), LOCK_STRIPES)];
+  }
+
+  private static String partitionId(String tableName, String partitionKey) {
+    return tableName + PARTITION_SORT_KEY_SEPARATOR + partitionKey;
+  }
+
+  // Counts writes per partition within the current second, counters are reset every second
+  private static class WriteRate {
+    private volatile long second;
+    private volatile Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+    int increment(String partitionKey, long nowSecond) {
+      if (nowSecond != second) {
+        synchronized (this) {
+          if (nowSecond != second) {
+            counts = new ConcurrentHashMap<>();
+            second = nowSecond;
+          }
+        }
+      }
+      return counts.computeIfAbsent(partitionKey, key -> new AtomicInteger()).incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.List;
+
+public record HotPartitionsConfig(
+    int shards, List<String> partitionKeys, long writesPerSecondThreshold) {
+  static final int DEFAULT_SHARDS = 8;
+
+  public HotPartitionsConfig {
+    if (shards == 0) {
+      shards = DEFAULT_SHARDS;
+    }
+    if (shards < 2) {
+      throw new IllegalArgumentException("Hot partitions must be spread over at least 2 shards");
+    }
+    if (partitionKeys == null) {
+      partitionKeys = List.of();
+    }
+  }
+
+  // partitions are detected as hot when they receive more writes per second than the threshold,
+  // 0 disables detection and only listed partition keys are sharded
+  public boolean hasWritesPerSecondThreshold() {
+    return writesPerSecondThreshold > 0;
+  }
+}
@@ -0,0 +1,83 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import static com.github.lukaszbudnik.roxdb.rocksdb.RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR;
+
+import java.util.List;
+
+// Global index items are partitioned by partition attribute and sorted by optional sort attribute.
+// Local index items keep the partition key of the table and are sorted by required sort attribute.
+// When projected attributes are empty index queries return base table items, otherwise only
+// projected and index key attributes are returned without reading the base table.
+// Bitmap index keeps sorted lists of items of a partition for every value of indexed attributes.
+// Geo index keeps items of a partition by cell of their latitude and longitude attributes.
+// Vector index keeps a nearest neighbor graph of items of a partition by their vector attribute.
+public record IndexDefinition(
+    String name,
+    IndexType type,
+    String partitionAttribute,
+    String sortAttribute,
+    List<String> projectedAttributes,
+    List<String> attributes) {
+
+  public IndexDefinition {
+    if (name == null || name.isBlank()) {
+      throw new IllegalArgumentException("Index name cannot be blank");
+    }
+    if (name.indexOf(PARTITION_SORT_KEY_SEPARATOR) >= 0) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Index name cannot contain character U+%04X", (int) PARTITION_SORT_KEY_SEPARATOR));
+    }
+    if (type == null) {
+      type = IndexType.GLOBAL;
+    }
+    if (partitionAttribute != null && partitionAttribute.isBlank()) {
+      partitionAttribute = null;
+    }
+    if (sortAttribute != null && sortAttribute.isBlank()) {
+      sortAttribute = null;
+    }
+    boolean hasAttributes =
+        type == IndexType.BITMAP || type == IndexType.GEO || type == IndexType.VECTOR;
+    if (hasAttributes && (partitionAttribute != null || sortAttribute != null)) {
+      throw new IllegalArgumentException(
+          "Bitmap, geo and vector indexes are partitioned by table partition key");
+    }
+    if (type == IndexType.GLOBAL && partitionAttribute == null) {
+      throw new IllegalArgumentException("Index partition attribute cannot be blank");
+    }
+    if (type == IndexType.LOCAL && partitionAttribute != null) {
+      throw new IllegalArgumentException("Local index is partitioned by table partition key");
+    }
+    if (type == IndexType.LOCAL && sortAttribute == null) {
+      throw new IllegalArgumentException("Local index sort attribute cannot be blank");
+    }
+    projectedAttributes =
+        projectedAttributes == null ? List.of() : List.copyOf(projectedAttributes);
+    attributes = attributes == null ? List.of() : List.copyOf(attributes);
+    if (type == IndexType.BITMAP && attributes.isEmpty()) {
+      throw new IllegalArgumentException("Bitmap index attributes cannot be empty");
+    }
+    if (type == IndexType.GEO && attributes.size() != 2) {
+      throw new IllegalArgumentException(
+          "Geo index attributes must be latitude and longitude attributes");
+    }
+    if (type == IndexType.VECTOR && attributes.size() != 1) {
+      throw new IllegalArgumentException(
+          "Vector index attributes must be a single vector attribute");
+    }
+    if (!hasAttributes && !attributes.isEmpty()) {
+      throw new IllegalArgumentException(
+          "Attributes can be set only for bitmap, geo and vector indexes");
+    }
+    for (String attribute : attributes) {
+      if (attribute.isBlank() || attribute.indexOf(PARTITION_SORT_KEY_SEPARATOR) >= 0) {
+        throw new IllegalArgumentException("Invalid index attribute: " + attribute);
+      }
+    }
+  }
+
+  public boolean hasProjection() {
+    return !projectedAttributes.isEmpty();
+  }
+}
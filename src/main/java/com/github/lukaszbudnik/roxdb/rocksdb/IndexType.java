@@ -0,0 +1,9 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+public enum IndexType {
+  GLOBAL,
+  LOCAL,
+  BITMAP,
+  GEO,
+  VECTOR
+}
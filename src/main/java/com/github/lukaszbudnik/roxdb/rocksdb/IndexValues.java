@@ -0,0 +1,116 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import static com.github.lukaszbudnik.roxdb.rocksdb.RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+// Encodes attribute values as parts of index keys. Numbers are prefixed and encoded so that
+// lexicographical order of index keys matches numerical order, strings and booleans are used as is.
+// Query values are strings which do not carry the type of attribute values, a query value which
+// is a number matches both numeric attribute values and string attribute values such as "02134".
+class IndexValues {
+  private static final char NUMBER_PREFIX = '\u0001';
+  // encoded numbers sort before this string and encoded strings after it
+  private static final String NUMBERS_END = String.valueOf((char) (NUMBER_PREFIX + 1));
+  private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?");
+
+  // returns null for missing values and values which cannot be indexed (maps and lists)
+  static String encode(String attribute, Object value) {
+    String encoded = encodeValue(value);
+    if (encoded != null && encoded.indexOf(PARTITION_SORT_KEY_SEPARATOR) >= 0) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Indexed attribute %s cannot contain character U+%04X",
+              attribute, (int) PARTITION_SORT_KEY_SEPARATOR));
+    }
+    return encoded;
+  }
+
+  // range of encoded values, null end is open
+  record Range(String start, boolean startExclusive, String end, boolean endExclusive) {
+    boolean excludes(String value) {
+      return startExclusive && value.equals(start);
+    }
+
+    boolean endsBefore(String value) {
+      if (end == null) {
+        return false;
+      }
+      int compared = value.compareTo(end);
+      return compared > 0 || (compared == 0 && endExclusive);
+    }
+  }
+
+  // equality filters follow the same rules as index keys
+  static boolean matches(Object value, String filterValue) {
+    return encodeQueryValue(filterValue).contains(encodeValue(value));
+  }
+
+  // encoded attribute values matching the query value, the number first as numbers sort first
+  static List<String> encodeQueryValue(String value) {
+    if (NUMBER.matcher(value).matches()) {
+      return List.of(encodeNumber(Double.parseDouble(value)), value);
+    }
+    return List.of(value);
+  }
+
+  // Ranges of encoded attribute values between query boundaries in index order. String values are
+  // compared with boundaries as strings, numeric values are compared as numbers when all
+  // boundaries are numbers.
+  static List<Range> encodeRange(Optional<RangeBoundary> start, Optional<RangeBoundary> end) {
+    List<Range> ranges = new ArrayList<>();
+    if (start.map(IndexValues::isNumber).orElse(true)
+        && end.map(IndexValues::isNumber).orElse(true)) {
+      ranges.add(
+          new Range(
+              start
+                  .map(boundary -> encodeNumber(Double.parseDouble(boundary.value())))
+                  .orElse(String.valueOf(NUMBER_PREFIX)),
+              start.map(IndexValues::isExclusive).orElse(false),
+              end.map(boundary -> encodeNumber(Double.parseDouble(boundary.value())))
+                  .orElse(NUMBERS_END),
+              end.map(IndexValues::isExclusive).orElse(true)));
+    }
+    boolean startsInNumbers =
+        start.map(boundary -> boundary.value().compareTo(NUMBERS_END) < 0).orElse(true);
+    ranges.add(
+        new Range(
+            startsInNumbers ? NUMBERS_END : start.get().value(),
+            !startsInNumbers && isExclusive(start.get()),
+            end.map(RangeBoundary::value).orElse(null),
+            end.map(IndexValues::isExclusive).orElse(false)));
+    return ranges;
+  }
+
+  private static boolean isNumber(RangeBoundary boundary) {
+    return NUMBER.matcher(boundary.value()).matches();
+  }
+
+  private static boolean isExclusive(RangeBoundary boundary) {
+    return boundary.type() == RangeType.EXCLUSIVE;
+  }
+
+  private static String encodeValue(Object value) {
+    if (value instanceof Number number) {
+      return encodeNumber(number.doubleValue());
+    }
+    if (value instanceof String || value instanceof Boolean) {
+      return value.toString();
+    }
+    return null;
+  }
+
+  private static String encodeNumber(double value) {
+    if (value == 0) {
+      // -0.0 and 0.0 are equal
+      value = 0;
+    }
+    long bits = Double.doubleToLongBits(value);
+    // flip sign bit of positive numbers and all bits of negative numbers
+    bits ^= bits < 0 ? -1L : Long.MIN_VALUE;
+    return NUMBER_PREFIX + String.format("%016x", bits);
+  }
+}
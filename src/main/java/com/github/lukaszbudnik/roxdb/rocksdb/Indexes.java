@@ -0,0 +1,413 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.rocksdb.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Keeps secondary index definitions of all tables. Definitions are persisted in per table indexes
+// column family. New indexes are maintained by writes right away and existing items are indexed
+// by a rate limited background backfill, index can be queried once the backfill completes.
+class Indexes {
+  static final int DEFAULT_BACKFILL_ITEMS_PER_SECOND = 1000;
+  private static final int BACKFILL_BATCH_SIZE = 100;
+  private static final Logger logger = LoggerFactory.getLogger(Indexes.class);
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private final RoxDBImpl roxDB;
+  private final TransactionDB db;
+  private final Map<String, List<SecondaryIndex>> tableIndexes = new ConcurrentHashMap<>();
+  private final Map<String, IndexMetadata> metadata = new ConcurrentHashMap<>();
+  // writers hold the read lock of their table from reading its indexes until the write is
+  // committed, new indexes are registered under the write lock so that writes which did not see
+  // them complete before backfill starts
+  private final Map<String, ReadWriteLock> tableLocks = new ConcurrentHashMap<>();
+  private final ExecutorService backfillExecutor;
+
+  enum IndexStatus {
+    BUILDING,
+    ACTIVE
+  }
+
+  record IndexMetadata(
+      IndexDefinition definition, IndexStatus status, int backfillItemsPerSecond) {}
+
+  Indexes(RoxDBImpl roxDB, TransactionDB db) throws RocksDBException {
+    this.roxDB = roxDB;
+    this.db = db;
+    this.backfillExecutor =
+        Executors.newSingleThreadExecutor(
+            r -> {
+              Thread thread = new Thread(r, "roxdb-index-backfill");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    for (String cfName : roxDB.getColumnFamilyNames()) {
+      if (cfName.equals(ColumnFamilyNames.indexes(ColumnFamilyNames.tableName(cfName)))) {
+        load(ColumnFamilyNames.tableName(cfName));
+      }
+    }
+  }
+
+  private void load(String tableName) throws RocksDBException {
+    try (RocksIterator iterator =
+        db.newIterator(roxDB.getOrCreateColumnFamily(ColumnFamilyNames.indexes(tableName)))) {
+      for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+        IndexMetadata indexMetadata = readMetadata(iterator.value());
+        register(tableName, indexMetadata);
+        // backfill is idempotent, interrupted backfill starts again from the beginning
+        if (indexMetadata.status() == IndexStatus.BUILDING) {
+          submitBackfill(tableName, indexMetadata);
+        }
+      }
+    }
+  }
+
+  List<SecondaryIndex> getIndexes(String tableName) {
+    return tableIndexes.getOrDefault(tableName, List.of());
+  }
+
+  // returns the locked read lock
+  Lock lockWrites(String tableName) {
+    Lock lock = tableLock(tableName).readLock();
+    lock.lock();
+    return lock;
+  }
+
+  private ReadWriteLock tableLock(String tableName) {
+    return tableLocks.computeIfAbsent(tableName, table -> new ReentrantReadWriteLock());
+  }
+
+  synchronized void createIndex(
+      String tableName, IndexDefinition definition, int backfillItemsPerSecond)
+      throws RocksDBException {
+    if (metadata.containsKey(indexId(tableName, definition.name()))) {
+      throw new IllegalArgumentException(
+          "Index " + definition.name() + " already exists on table " + tableName);
+    }
+    IndexMetadata indexMetadata =
+        new IndexMetadata(
+            definition,
+            IndexStatus.BUILDING,
+            backfillItemsPerSecond > 0
+                ? backfillItemsPerSecond
+                : DEFAULT_BACKFILL_ITEMS_PER_SECOND);
+    writeMetadata(tableName, indexMetadata);
+    // writes maintain the index before backfill starts so that no item is missed
+    Lock registration = tableLock(tableName).writeLock();
+    registration.lock();
+    try {
+      register(tableName, indexMetadata);
+    } finally {
+      registration.unlock();
+    }
+    submitBackfill(tableName, indexMetadata);
+    logger.info("Created index {} on table {}", definition.name(), tableName);
+  }
+
+  List<Item> query(
+      String tableName,
+      String indexName,
+      String partitionValue,
+      int limit,
+      Optional<SortKeyRange> sortKeyRange)
+      throws RocksDBException {
+    if (!(findActiveIndex(tableName, indexName) instanceof SortedIndex index)) {
+      throw new IllegalArgumentException(
+          "Index " + indexName + " on table " + tableName + " cannot be queried by sort key range");
+    }
+    return index.query(partitionValue, limit, sortKeyRange);
+  }
+
+  List<Item> queryGeo(
+      String tableName, String indexName, String partitionKey, int limit, GeoArea area)
+      throws RocksDBException {
+    if (!(findActiveIndex(tableName, indexName) instanceof GeoIndex index)) {
+      throw new IllegalArgumentException(
+          "Index " + indexName + " on table " + tableName + " is not a geo index");
+    }
+    return index.query(partitionKey, area, limit);
+  }
+
+  List<Item> queryVector(
+      String tableName, String indexName, String partitionKey, int limit, float[] vector)
+      throws RocksDBException {
+    if (!(findActiveIndex(tableName, indexName) instanceof VectorIndex index)) {
+      throw new IllegalArgumentException(
+          "Index " + indexName + " on table " + tableName + " is not a vector index");
+    }
+    return index.query(partitionKey, vector, limit);
+  }
+
+  private SecondaryIndex findActiveIndex(String tableName, String indexName) {
+    IndexMetadata indexMetadata = metadata.get(indexId(tableName, indexName));
+    if (indexMetadata == null) {
+      throw new IllegalArgumentException(
+          "Index " + indexName + " does not exist on table " + tableName);
+    }
+    if (indexMetadata.status() != IndexStatus.ACTIVE) {
+      throw new IllegalArgumentException(
+          "Index " + indexName + " on table " + tableName + " is still being built");
+    }
+    return findIndex(tableName, indexName);
+  }
+
+  // Returns items of the partition which match all equality filters. Posting lists of active
+  // bitmap indexes covering filtered attributes are intersected, remaining filters are checked on
+  // fetched items. Without a covering index the partition is scanned page by page.
+  List<Item> filteredQuery(
+      String tableName,
+      String partitionKey,
+      int limit,
+      Optional<SortKeyRange> sortKeyRange,
+      Map<String, String> filters)
+      throws RocksDBException {
+    Map<String, String> residualFilters = new HashMap<>(filters);
+    List<BitmapIndex.PostingList> postingLists = new ArrayList<>();
+    try {
+      for (SecondaryIndex index : getIndexes(tableName)) {
+        if (index instanceof BitmapIndex bitmapIndex
+            && isActive(tableName, index.definition().name())) {
+          for (String attribute : index.definition().attributes()) {
+            if (residualFilters.containsKey(attribute)) {
+              postingLists.add(
+                  bitmapIndex.postingList(
+                      partitionKey,
+                      attribute,
+                      IndexValues.encodeQueryValue(residualFilters.remove(attribute))));
+            }
+          }
+        }
+      }
+      if (postingLists.isEmpty()) {
+        return scan(tableName, partitionKey, limit, sortKeyRange, filters);
+      }
+      return intersect(tableName, partitionKey, limit, sortKeyRange, postingLists, residualFilters);
+    } finally {
+      postingLists.forEach(BitmapIndex.PostingList::close);
+    }
+  }
+
+  private List<Item> intersect(
+      String tableName,
+      String partitionKey,
+      int limit,
+      Optional<SortKeyRange> sortKeyRange,
+      List<BitmapIndex.PostingList> postingLists,
+      Map<String, String> residualFilters)
+      throws RocksDBException {
+    Optional<RangeBoundary> start = sortKeyRange.flatMap(SortKeyRange::start);
+    Optional<RangeBoundary> end = sortKeyRange.flatMap(SortKeyRange::end);
+    List<Item> results = new ArrayList<>();
+    String fromSortKey = start.map(RangeBoundary::value).orElse("");
+    String sortKey;
+    while (results.size() < limit
+        && (sortKey = BitmapIndex.intersect(postingLists, fromSortKey)) != null) {
+      // smallest string greater than the current sort key
+      fromSortKey = sortKey + '\u0000';
+      if (start.isPresent()
+          && start.get().type() == RangeType.EXCLUSIVE
+          && sortKey.equals(start.get().value())) {
+        continue;
+      }
+      if (end.isPresent()) {
+        int compared = sortKey.compareTo(end.get().value());
+        if (compared > 0 || (compared == 0 && end.get().type() == RangeType.EXCLUSIVE)) {
+          break;
+        }
+      }
+      Item item = roxDB.getItem(tableName, new Key(partitionKey, sortKey));
+      if (item != null && matches(item, residualFilters)) {
+        results.add(item);
+      }
+    }
+    return results;
+  }
+
+  private List<Item> scan(
+      String tableName,
+      String partitionKey,
+      int limit,
+      Optional<SortKeyRange> sortKeyRange,
+      Map<String, String> filters)
+      throws RocksDBException {
+    List<Item> results = new ArrayList<>();
+    roxDB.scan(
+        tableName,
+        partitionKey,
+        sortKeyRange,
+        item -> {
+          if (matches(item, filters)) {
+            results.add(item);
+          }
+          return results.size() < limit;
+        });
+    return results;
+  }
+
+  private static boolean matches(Item item, Map<String, String> filters) {
+    for (Map.Entry<String, String> filter : filters.entrySet()) {
+      if (!IndexValues.matches(item.attributes().get(filter.getKey()), filter.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  boolean isActive(String tableName, String indexName) {
+    IndexMetadata indexMetadata = metadata.get(indexId(tableName, indexName));
+    return indexMetadata != null && indexMetadata.status() == IndexStatus.ACTIVE;
+  }
+
+  private SecondaryIndex findIndex(String tableName, String indexName) {
+    return getIndexes(tableName).stream()
+        .filter(index -> index.definition().name().equals(indexName))
+        .findFirst()
+        .orElseThrow();
+  }
+
+  private void register(String tableName, IndexMetadata indexMetadata) throws RocksDBException {
+    IndexDefinition definition = indexMetadata.definition();
+    ColumnFamilyHandle cfHandle =
+        roxDB.getOrCreateColumnFamily(ColumnFamilyNames.index(tableName, definition.name()));
+    SecondaryIndex index =
+        switch (definition.type()) {
+          case GLOBAL -> new GlobalIndex(tableName, definition, roxDB, db, cfHandle);
+          case LOCAL -> new LocalIndex(tableName, definition, roxDB, db, cfHandle);
+          case BITMAP -> new BitmapIndex(definition, db, cfHandle);
+          case GEO -> new GeoIndex(tableName, definition, roxDB, db, cfHandle);
+          case VECTOR -> new VectorIndex(tableName, definition, roxDB, db, cfHandle);
+        };
+    metadata.put(indexId(tableName, definition.name()), indexMetadata);
+    tableIndexes.computeIfAbsent(tableName, table -> new CopyOnWriteArrayList<>()).add(index);
+  }
+
+  private void submitBackfill(String tableName, IndexMetadata indexMetadata) {
+    backfillExecutor.submit(
+        () -> {
+          try {
+            backfill(tableName, indexMetadata);
+          } catch (InterruptedException e) {
+            logger.info(
+                "Backfill of index {} on table {} interrupted",
+                indexMetadata.definition().name(),
+                tableName);
+            Thread.currentThread().interrupt();
+          } catch (Exception e) {
+            logger.error(
+                "Error backfilling index {} on table {}",
+                indexMetadata.definition().name(),
+                tableName,
+                e);
+          }
+        });
+  }
+
+  private void backfill(String tableName, IndexMetadata indexMetadata)
+      throws RocksDBException, InterruptedException {
+    SecondaryIndex index = findIndex(tableName, indexMetadata.definition().name());
+    int batchSize = Math.min(BACKFILL_BATCH_SIZE, indexMetadata.backfillItemsPerSecond());
+    long batchMillis =
+        TimeUnit.SECONDS.toMillis(batchSize) / indexMetadata.backfillItemsPerSecond();
+    long indexedCount = 0;
+
+    for (ColumnFamilyHandle cfHandle : roxDB.getTableColumnFamilies(tableName)) {
+      List<Key> keys = new ArrayList<>();
+      try (RocksIterator iterator = db.newIterator(cfHandle)) {
+        for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+          keys.add(SerDeUtils.deserializeKey(iterator.key()));
+          if (keys.size() >= batchSize) {
+            long started = System.currentTimeMillis();
+            indexedCount += backfillBatch(tableName, index, keys);
+            keys.clear();
+            // throttle to configured number of items per second
+            Thread.sleep(Math.max(0, batchMillis - (System.currentTimeMillis() - started)));
+          }
+        }
+      }
+      indexedCount += backfillBatch(tableName, index, keys);
+    }
+
+    IndexMetadata activeMetadata =
+        new IndexMetadata(
+            indexMetadata.definition(), IndexStatus.ACTIVE, indexMetadata.backfillItemsPerSecond());
+    writeMetadata(tableName, activeMetadata);
+    metadata.put(indexId(tableName, indexMetadata.definition().name()), activeMetadata);
+    logger.info(
+        "Index {} on table {} is active, backfilled {} items",
+        indexMetadata.definition().name(),
+        tableName,
+        indexedCount);
+  }
+
+  // items are re-read in transaction, items modified since they were listed are indexed by writes
+  private int backfillBatch(String tableName, SecondaryIndex index, List<Key> keys)
+      throws RocksDBException {
+    if (keys.isEmpty()) {
+      return 0;
+    }
+    int[] indexed = new int[1];
+    roxDB.executeTransaction(
+        txCtx -> {
+          for (Key key : keys) {
+            if (txCtx.reindex(tableName, key, index)) {
+              indexed[0]++;
+            }
+          }
+        });
+    return indexed[0];
+  }
+
+  private void writeMetadata(String tableName, IndexMetadata indexMetadata)
+      throws RocksDBException {
+    try {
+      db.put(
+          roxDB.getOrCreateColumnFamily(ColumnFamilyNames.indexes(tableName)),
+          indexMetadata.definition().name().getBytes(StandardCharsets.UTF_8),
+          mapper.writeValueAsBytes(indexMetadata));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static IndexMetadata readMetadata(byte[] value) {
+    try {
+      return mapper.readValue(value, IndexMetadata.class);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String indexId(String tableName, String indexName) {
+    return ColumnFamilyNames.index(tableName, indexName);
+  }
+
+  void close() {
+    backfillExecutor.shutdownNow();
+    try {
+      if (!backfillExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+        logger.warn("Index backfill did not terminate in 30 seconds");
+      }
+    } catch (InterruptedException e) {
+      logger.error("Interrupted while waiting for index backfill to terminate", e);
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.rocksdb.RocksDBException;
+
+// Cache of decoded items in front of GetItem bounded by estimated size in bytes, Caffeine evicts
+// with W-TinyLFU so that a burst of one-off reads does not push out frequently read items. Items
+// which do not exist are cached too (negative entries). Writers invalidate keys after the write is
+// committed, a load which read the previous value and is still in flight finishes before the
+// invalidation removes it, so stale items are never left in the cache. Concurrent loads of a key
+// are coalesced by the cache (callers waiting for a load count as hits), when the cache is disabled
+// they are coalesced by single flight which invalidation makes forget the key.
+class ItemCache {
+  // rough per entry overhead of cache node, key and item objects
+  private static final int ENTRY_OVERHEAD_BYTES = 128;
+  // decoded attributes take more heap than their serialized form
+  private static final int DECODED_SIZE_FACTOR = 4;
+  private static final int VERSION_STRIPES = 4096;
+
+  record CacheKey(String tableName, Key key) {}
+
+  // attributes are null for items which do not exist
+  private record CachedItem(Map<String, Object> attributes, int weight) {}
+
+  interface Loader {
+    // returns serialized attributes or null when the item does not exist
+    byte[] load() throws RocksDBException;
+  }
+
+  private final Cache<CacheKey, CachedItem> cache;
+  private final SingleFlight<CacheKey, Map<String, Object>> singleFlight = new SingleFlight<>();
+  // incremented before keys are invalidated, memory reads of older versions are not cached
+  private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+  private final AtomicLong epoch = new AtomicLong();
+
+  ItemCache(long sizeBytes) {
+    this.cache =
+        sizeBytes > 0
+            ? Caffeine.newBuilder()
+                .maximumWeight(sizeBytes)
+                .weigher((CacheKey key, CachedItem item) -> item.weight())
+                .recordStats()
+                .build()
+            : null;
+  }
+
+  boolean isEnabled() {
+    return cache != null;
+  }
+
+  // Returns cached attributes, which cannot be modified, or null when the item does not exist.
+  // Cache only reads never wait for loads in flight, which hold a lock of the cache map, they probe
+  // the cache and on miss read memory. Complete memory reads are cached off the calling thread
+  // unless the key was invalidated since the read started. Their Incomplete failures are not
+  // shared.
+  Map<String, Object> get(String tableName, Key key, boolean cacheOnly, Loader loader)
+      throws RocksDBException {
+    if (cacheOnly) {
+      if (cache == null) {
+        return toCachedItem(key, loader.load()).attributes();
+      }
+      CacheKey cacheKey = new CacheKey(tableName, key);
+      CachedItem cached = cache.getIfPresent(cacheKey);
+      if (cached != null) {
+        return cached.attributes();
+      }
+      long version = version(cacheKey);
+      CachedItem loaded = toCachedItem(key, loader.load());
+      // invalidation increments the version before it removes the key, both lock the key
+      ForkJoinPool.commonPool()
+          .execute(
+              () ->
+                  cache
+                      .asMap()
+                      .computeIfAbsent(cacheKey, k -> version(k) == version ? loaded : null));
+      return loaded.attributes();
+    }
+    if (cache == null) {
+      return singleFlight.load(
+          new CacheKey(tableName, key), () -> toCachedItem(key, loader.load()).attributes());
+    }
+    try {
+      return cache
+          .get(
+              new CacheKey(tableName, key),
+              cacheKey -> {
+                try {
+                  return toCachedItem(key, loader.load());
+                } catch (RocksDBException e) {
+                  throw new LoadException(e);
+                }
+              })
+          .attributes();
+    } catch (LoadException e) {
+      throw e.getCause();
+    }
+  }
+
+  void invalidate(String tableName, Key key) {
+    if (cache != null) {
+      versions.incrementAndGet(stripe(new CacheKey(tableName, key)));
+      cache.invalidate(new CacheKey(tableName, key));
+    } else {
+      singleFlight.forget(new CacheKey(tableName, key));
+    }
+  }
+
+  void invalidateAll(String tableName, Collection<Key> keys) {
+    if (cache != null && !keys.isEmpty()) {
+      List<CacheKey> cacheKeys = keys.stream().map(key -> new CacheKey(tableName, key)).toList();
+      cacheKeys.forEach(cacheKey -> versions.incrementAndGet(stripe(cacheKey)));
+      cache.invalidateAll(cacheKeys);
+    } else if (cache == null) {
+      keys.forEach(key -> singleFlight.forget(new CacheKey(tableName, key)));
+    }
+  }
+
+  // used when items are removed without writes to their keys e.g. dropped time windows
+  void invalidateTable(String tableName) {
+    if (cache != null) {
+      epoch.incrementAndGet();
+      cache.asMap().keySet().removeIf(cacheKey -> cacheKey.tableName().equals(tableName));
+    } else {
+      singleFlight.forgetIf(cacheKey -> cacheKey.tableName().equals(tableName));
+    }
+  }
+
+  // keys most likely to be retained by the eviction policy first, empty when the cache is disabled
+  List<CacheKey> hottestKeys(int limit) {
+    if (cache == null) {
+      return List.of();
+    }
+    return cache
+        .policy()
+        .eviction()
+        .map(eviction -> List.copyOf(eviction.hottest(limit).keySet()))
+        .orElse(List.of());
+  }
+
+  CacheStats stats() {
+    if (cache == null) {
+      return new CacheStats(0, 0, 0, 0, 0, singleFlight.coalescedCount());
+    }
+    // applies pending writes so that entries and size are up to date
+    cache.cleanUp();
+    com.github.benmanes.caffeine.cache.stats.CacheStats stats = cache.stats();
+    long sizeBytes =
+        cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    return new CacheStats(
+        stats.hitCount(),
+        stats.missCount(),
+        stats.evictionCount(),
+        cache.estimatedSize(),
+        sizeBytes,
+        0);
+  }
+
+  // both counters only grow so their sum changes whenever either of them is incremented
+  private long version(CacheKey cacheKey) {
+    return versions.get(stripe(cacheKey)) + epoch.get();
+  }
+
+  private static int stripe(CacheKey cacheKey) {
+    int hash = cacheKey.hashCode();
+    return (hash ^ (hash >>> 16)) & (VERSION_STRIPES - 1);
+  }
+
+  private static CachedItem toCachedItem(Key key, byte[] value) {
+    int keyBytes = 2 * (key.partitionKey().length() + key.sortKey().length());
+    if (value == null) {
+      return new CachedItem(null, ENTRY_OVERHEAD_BYTES + keyBytes);
+    }
+    return new CachedItem(
+        Collections.unmodifiableMap(SerDeUtils.deserializeAttributes(value)),
+        ENTRY_OVERHEAD_BYTES + keyBytes + DECODED_SIZE_FACTOR * value.length);
+  }
+
+  private static class LoadException extends RuntimeException {
+    LoadException(RocksDBException cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized RocksDBException getCause() {
+      return (RocksDBException) super.getCause();
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.List;
+import java.util.Map;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.TransactionDB;
+
+// Local index keeps the partition key of the table and sorts items of a partition by an alternate
+// sort attribute, entries are keyed by partition key, alternate sort value and base sort key
+class LocalIndex extends SortedIndex {
+
+  LocalIndex(
+      String tableName,
+      IndexDefinition definition,
+      RoxDBImpl roxDB,
+      TransactionDB db,
+      ColumnFamilyHandle cfHandle) {
+    super(tableName, definition, roxDB, db, cfHandle);
+  }
+
+  @Override
+  protected String partitionValue(Key key, Map<String, Object> attributes) {
+    return key.partitionKey();
+  }
+
+  @Override
+  protected String baseKeySuffix(Key key) {
+    return key.sortKey();
+  }
+
+  @Override
+  protected Key baseKey(String partitionValue, String baseKeySuffix) {
+    return new Key(partitionValue, baseKeySuffix);
+  }
+
+  @Override
+  protected List<String> encodePartitionValue(String partitionValue) {
+    return List.of(partitionValue);
+  }
+}
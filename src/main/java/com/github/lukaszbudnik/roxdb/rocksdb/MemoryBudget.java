@@ -0,0 +1,66 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+// Splits one memory budget between JVM caches and RocksDB native memory. Native memory is bounded
+// by the block cache: index and filter blocks are read into it and memtables are charged to it by
+// a write buffer manager, which flushes and stalls writes when memtables reach their share, so
+// block cache capacity is the whole native budget. Item and query caches are taken from the budget
+// too but live on the JVM heap, their share is capped by maximum heap size so that large budgets go
+// to the block cache instead of exhausting the heap.
+public record MemoryBudget(long totalBytes, long maxHeapBytes) {
+  static final double ITEM_CACHE_SHARE = 0.10;
+  static final double QUERY_CACHE_SHARE = 0.05;
+  // of maximum heap size, split between item and query caches in the same proportion
+  static final double MAX_HEAP_SHARE = 0.25;
+  // of the block cache
+  static final double WRITE_BUFFER_SHARE = 0.25;
+
+  public MemoryBudget {
+    if (totalBytes <= 0) {
+      throw new IllegalArgumentException("Memory budget must be greater than 0");
+    }
+    if (maxHeapBytes <= 0) {
+      throw new IllegalArgumentException("Maximum heap size must be greater than 0");
+    }
+  }
+
+  public long itemCacheBytes() {
+    return (long) (heapScale() * totalBytes * ITEM_CACHE_SHARE);
+  }
+
+  public long queryCacheBytes() {
+    return (long) (heapScale() * totalBytes * QUERY_CACHE_SHARE);
+  }
+
+  public long heapBytes() {
+    return itemCacheBytes() + queryCacheBytes();
+  }
+
+  public long blockCacheBytes() {
+    return totalBytes - heapBytes();
+  }
+
+  public long writeBufferBytes() {
+    return (long) (blockCacheBytes() * WRITE_BUFFER_SHARE);
+  }
+
+  // replaces cache sizes of storage options with shares of the budget
+  public StorageOptions apply(StorageOptions storageOptions) {
+    return new StorageOptions(
+        storageOptions.walTtlSeconds(),
+        storageOptions.walSizeLimitMb(),
+        itemCacheBytes(),
+        queryCacheBytes(),
+        blockCacheBytes(),
+        storageOptions.blockCacheType(),
+        storageOptions.secondaryCachePath(),
+        storageOptions.secondaryCacheSizeBytes(),
+        writeBufferBytes(),
+        storageOptions.backgroundJobs(),
+        storageOptions.idleFlushSeconds());
+  }
+
+  private double heapScale() {
+    double heapShare = totalBytes * (ITEM_CACHE_SHARE + QUERY_CACHE_SHARE);
+    return Math.min(1, maxHeapBytes * MAX_HEAP_SHARE / heapShare);
+  }
+}
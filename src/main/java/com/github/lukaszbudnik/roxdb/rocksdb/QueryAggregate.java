@@ -0,0 +1,27 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+// Aggregate computed by Query over items of a partition or sort key range. COUNT counts items, or
+// items having the attribute when it is set. SUM, AVG, MIN and MAX require an attribute and skip
+// non-numeric values.
+public record QueryAggregate(AggregateFunction function, String attribute) {
+
+  public QueryAggregate {
+    if (function == null) {
+      throw new IllegalArgumentException("Aggregate function cannot be empty");
+    }
+    if (attribute != null && attribute.isBlank()) {
+      attribute = null;
+    }
+    if (function != AggregateFunction.COUNT && attribute == null) {
+      throw new IllegalArgumentException("Aggregate " + function + " attribute cannot be blank");
+    }
+  }
+
+  public static QueryAggregate count() {
+    return new QueryAggregate(AggregateFunction.COUNT, null);
+  }
+
+  public static QueryAggregate of(AggregateFunction function, String attribute) {
+    return new QueryAggregate(function, attribute);
+  }
+}
@@ -0,0 +1,97 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Accumulates query aggregates of scanned items per group, groups are returned in the order in
+// which they were first seen. Only the first limit groups of grouped queries are kept, limit 0
+// (unset in proto3 requests) does not limit them.
+class QueryAggregation {
+  private final List<QueryAggregate> aggregates;
+  private final String groupBy;
+  private final int limit;
+  private final Map<Object, Accumulator[]> groups = new LinkedHashMap<>();
+
+  QueryAggregation(List<QueryAggregate> aggregates, String groupBy, int limit) {
+    if (aggregates.isEmpty()) {
+      throw new IllegalArgumentException("Aggregates cannot be empty");
+    }
+    this.aggregates = List.copyOf(aggregates);
+    this.groupBy = groupBy == null || groupBy.isBlank() ? null : groupBy;
+    this.limit = limit;
+  }
+
+  void add(Item item) {
+    Object groupValue = groupBy == null ? null : item.attributes().get(groupBy);
+    Accumulator[] accumulators = groups.get(groupValue);
+    if (accumulators == null) {
+      if (groupBy != null && limit > 0 && groups.size() >= limit) {
+        return;
+      }
+      accumulators = newAccumulators();
+      groups.put(groupValue, accumulators);
+    }
+    for (int i = 0; i < accumulators.length; i++) {
+      QueryAggregate aggregate = aggregates.get(i);
+      if (aggregate.function() == AggregateFunction.COUNT) {
+        if (aggregate.attribute() == null || item.attributes().get(aggregate.attribute()) != null) {
+          accumulators[i].count++;
+        }
+      } else if (item.attributes().get(aggregate.attribute()) instanceof Number number
+          && !Double.isNaN(number.doubleValue())) {
+        accumulators[i].add(number.doubleValue());
+      }
+    }
+  }
+
+  List<AggregateGroup> results() {
+    if (groups.isEmpty() && groupBy == null) {
+      // not grouped query of an empty range returns a single group
+      groups.put(null, newAccumulators());
+    }
+    List<AggregateGroup> results = new ArrayList<>();
+    for (Map.Entry<Object, Accumulator[]> group : groups.entrySet()) {
+      List<Object> values = new ArrayList<>();
+      for (int i = 0; i < aggregates.size(); i++) {
+        values.add(group.getValue()[i].value(aggregates.get(i).function()));
+      }
+      results.add(new AggregateGroup(group.getKey(), Collections.unmodifiableList(values)));
+    }
+    return results;
+  }
+
+  private Accumulator[] newAccumulators() {
+    Accumulator[] accumulators = new Accumulator[aggregates.size()];
+    for (int i = 0; i < accumulators.length; i++) {
+      accumulators[i] = new Accumulator();
+    }
+    return accumulators;
+  }
+
+  private static class Accumulator {
+    long count;
+    double sum;
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+
+    void add(double value) {
+      count++;
+      sum += value;
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+    }
+
+    Object value(AggregateFunction function) {
+      return switch (function) {
+        case COUNT -> count;
+        case SUM -> sum;
+        case AVG -> count == 0 ? null : sum / count;
+        case MIN -> count == 0 ? null : min;
+        case MAX -> count == 0 ? null : max;
+      };
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import org.rocksdb.RocksDBException;
+
+// Cache of Query results of a single partition keyed by table, partition key, sort key range and
+// limit, bounded by estimated size in bytes. Results are invalidated at partition granularity with
+// generation counters: every cached result remembers the generation of its partition read before
+// the query ran, writers increment the generation after the write is committed and results of an
+// older generation are treated as misses. A query racing with a write is therefore never served
+// after the write returns, and writes do not need to find cached results of the partition.
+// Generations are kept in a fixed array of stripes indexed by partition hash so that memory does
+// not grow with the number of partitions, a write also invalidates partitions sharing its stripe.
+// Concurrent identical queries of the same generation are coalesced into one read, also when the
+// cache is disabled.
+class QueryCache {
+  private static final int GENERATION_STRIPES = 4096;
+  // rough per entry overhead of cache node, key and result list
+  private static final int ENTRY_OVERHEAD_BYTES = 128;
+  // rough heap size of an item with its key and attributes map, and of every attribute
+  private static final int ITEM_OVERHEAD_BYTES = 96;
+  private static final int ATTRIBUTE_BYTES = 64;
+
+  private record CacheKey(
+      String tableName, String partitionKey, Optional<SortKeyRange> sortKeyRange, int limit) {}
+
+  private record CachedResult(List<Item> items, long generation, int weight) {}
+
+  private record FlightKey(CacheKey cacheKey, long generation) {}
+
+  interface Loader {
+    List<Item> load() throws RocksDBException;
+  }
+
+  private final Cache<CacheKey, CachedResult> cache;
+  private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+  // incremented when items of a table are removed without writes e.g. dropped time windows
+  private final AtomicLong epoch = new AtomicLong();
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  // flights of older generations are not joined, writers do not need to forget them
+  private final SingleFlight<FlightKey, List<Item>> singleFlight = new SingleFlight<>();
+
+  QueryCache(long sizeBytes) {
+    this.cache =
+        sizeBytes > 0
+            ? Caffeine.newBuilder()
+                .maximumWeight(sizeBytes)
+                .weigher((CacheKey key, CachedResult result) -> result.weight())
+                .recordStats()
+                .build()
+            : null;
+  }
+
+  // returns cached items, which cannot be modified, results holding an expired item are reloaded
+  List<Item> get(
+      String tableName,
+      String partitionKey,
+      Optional<SortKeyRange> sortKeyRange,
+      int limit,
+      Predicate<Item> isExpired,
+      Loader loader)
+      throws RocksDBException {
+    CacheKey cacheKey = new CacheKey(tableName, partitionKey, sortKeyRange, limit);
+    long generation = generation(tableName, partitionKey);
+    if (cache == null) {
+      return singleFlight.load(new FlightKey(cacheKey, generation), () -> load(loader));
+    }
+    // stale results are not counted as hits by the cache
+    CachedResult cached = cache.policy().getIfPresentQuietly(cacheKey);
+    if (cached != null
+        && cached.generation() == generation
+        && cached.items().stream().noneMatch(isExpired)) {
+      hitCount.increment();
+      return cached.items();
+    }
+    missCount.increment();
+    return singleFlight.load(
+        new FlightKey(cacheKey, generation),
+        () -> {
+          List<Item> items = load(loader);
+          cache.put(cacheKey, new CachedResult(items, generation, weight(cacheKey, items)));
+          return items;
+        });
+  }
+
+  void invalidatePartitions(String tableName, Collection<Key> keys) {
+    keys.stream()
+        .map(Key::partitionKey)
+        .distinct()
+        .forEach(partitionKey -> generations.incrementAndGet(stripe(tableName, partitionKey)));
+  }
+
+  void invalidateAll() {
+    epoch.incrementAndGet();
+  }
+
+  CacheStats stats() {
+    if (cache == null) {
+      return new CacheStats(0, 0, 0, 0, 0, singleFlight.coalescedCount());
+    }
+    // applies pending writes so that entries and size are up to date
+    cache.cleanUp();
+    long sizeBytes =
+        cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    return new CacheStats(
+        hitCount.sum(),
+        missCount.sum(),
+        cache.stats().evictionCount(),
+        cache.estimatedSize(),
+        sizeBytes,
+        singleFlight.coalescedCount());
+  }
+
+  // loaded items are shared by callers and the cache
+  private static List<Item> load(Loader loader) throws RocksDBException {
+    return loader.load().stream()
+        .map(item -> new Item(item.key(), Collections.unmodifiableMap(item.attributes())))
+        .toList();
+  }
+
+  // both counters only grow so their sum changes whenever either of them is incremented
+  private long generation(String tableName, String partitionKey) {
+    return generations.get(stripe(tableName, partitionKey)) + epoch.get();
+  }
+
+  private static int stripe(String tableName, String partitionKey) {
+    int hash = 31 * tableName.hashCode() + partitionKey.hashCode();
+    return (hash ^ (hash >>> 16)) & (GENERATION_STRIPES - 1);
+  }
+
+  private static int weight(CacheKey cacheKey, List<Item> items) {
+    int weight = ENTRY_OVERHEAD_BYTES + 2 * cacheKey.partitionKey().length();
+    for (Item item : items) {
+      weight +=
+          ITEM_OVERHEAD_BYTES
+              + 2 * item.key().sortKey().length()
+              + ATTRIBUTE_BYTES * item.attributes().size();
+    }
+    return weight;
+  }
+}
@@ -0,0 +1,223 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import static com.github.lukaszbudnik.roxdb.rocksdb.RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.rocksdb.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Queue tables store messages under server assigned, monotonic offsets used as sort keys.
+// Offsets committed by consumer groups are kept in a separate column family, the segment of a
+// partition acknowledged by all consumer groups is removed in the same write batch as the offset.
+class Queues {
+  private static final Logger logger = LoggerFactory.getLogger(Queues.class);
+  private static final String OFFSET_FORMAT = "%020d";
+  // consumer group names cannot be blank, blank group stores the last assigned offset
+  private static final String LAST_OFFSET_GROUP = "";
+
+  private final RoxDBImpl roxDB;
+  private final TransactionDB db;
+  private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+
+  Queues(RoxDBImpl roxDB, TransactionDB db) {
+    this.roxDB = roxDB;
+    this.db = db;
+  }
+
+  static String formatOffset(long offset) {
+    return String.format(OFFSET_FORMAT, offset);
+  }
+
+  static long parseOffset(String sortKey) {
+    try {
+      return Long.parseLong(sortKey);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Queue sort key must be an offset: " + sortKey);
+    }
+  }
+
+  Key enqueue(String tableName, String partitionKey, Map<String, Object> attributes)
+      throws RocksDBException {
+    ColumnFamilyHandle cfHandle = roxDB.getOrCreateColumnFamily(tableName);
+    ColumnFamilyHandle groupsHandle =
+        roxDB.getOrCreateColumnFamily(ColumnFamilyNames.consumerGroups(tableName));
+    Partition partition = getPartition(tableName, partitionKey);
+
+    synchronized (partition) {
+      long offset = partition.lastOffset + 1;
+      Key key = new Key(partitionKey, formatOffset(offset));
+      // message and last assigned offset are written atomically so that offsets are never reused,
+      // even when all messages of the partition were already removed
+      try (WriteBatch writeBatch = new WriteBatch();
+          WriteOptions writeOptions = new WriteOptions()) {
+        writeBatch.put(
+            cfHandle,
+            SerDeUtils.serializeKey(key),
+            SerDeUtils.serializeAttributes(new Item(key, attributes)));
+        roxDB.getExpiry().put(writeBatch, tableName, key, attributes);
+        writeBatch.put(
+            groupsHandle,
+            groupKey(partitionKey, LAST_OFFSET_GROUP),
+            formatOffset(offset).getBytes(StandardCharsets.UTF_8));
+        db.write(writeOptions, writeBatch);
+      }
+      partition.lastOffset = offset;
+      logger.debug("Enqueued: {}{}{}", partitionKey, PARTITION_SORT_KEY_SEPARATOR, key.sortKey());
+      return key;
+    }
+  }
+
+  List<Item> dequeue(String tableName, String partitionKey, String consumerGroup, int limit)
+      throws RocksDBException {
+    ColumnFamilyHandle cfHandle = roxDB.getOrCreateColumnFamily(tableName);
+    ColumnFamilyHandle groupsHandle =
+        roxDB.getOrCreateColumnFamily(ColumnFamilyNames.consumerGroups(tableName));
+    Partition partition = getPartition(tableName, partitionKey);
+
+    long committedOffset;
+    synchronized (partition) {
+      byte[] value = db.get(groupsHandle, groupKey(partitionKey, consumerGroup));
+      if (value == null) {
+        // new consumer groups are registered on first dequeue so that messages they have not seen
+        // yet are not removed when other groups acknowledge them
+        committedOffset = partition.removedOffset;
+        db.put(
+            groupsHandle,
+            groupKey(partitionKey, consumerGroup),
+            formatOffset(committedOffset).getBytes(StandardCharsets.UTF_8));
+      } else {
+        committedOffset = Long.parseLong(new String(value, StandardCharsets.UTF_8));
+      }
+    }
+
+    List<Item> results = new ArrayList<>();
+    String partitionPrefix = partitionKey + PARTITION_SORT_KEY_SEPARATOR;
+    // seek lands directly after the committed offset, acknowledged messages are not visited
+    try (RocksIterator iterator = db.newIterator(cfHandle)) {
+      iterator.seek((partitionPrefix + formatOffset(committedOffset + 1)).getBytes());
+      while (iterator.isValid() && results.size() < limit) {
+        Key key = SerDeUtils.deserializeKey(iterator.key());
+        if (!key.partitionKey().equals(partitionKey)) {
+          break;
+        }
+        results.add(new Item(key, SerDeUtils.deserializeAttributes(iterator.value())));
+        iterator.next();
+      }
+    }
+
+    logger.debug(
+        "Dequeued from: {} group {} limit {} found items: {}",
+        partitionKey,
+        consumerGroup,
+        limit,
+        results.size());
+    return results;
+  }
+
+  void ack(String tableName, String partitionKey, String consumerGroup, String sortKey)
+      throws RocksDBException {
+    long offset = parseOffset(sortKey);
+    ColumnFamilyHandle cfHandle = roxDB.getOrCreateColumnFamily(tableName);
+    ColumnFamilyHandle groupsHandle =
+        roxDB.getOrCreateColumnFamily(ColumnFamilyNames.consumerGroups(tableName));
+    Partition partition = getPartition(tableName, partitionKey);
+
+    synchronized (partition) {
+      if (offset > partition.lastOffset) {
+        throw new IllegalArgumentException("Cannot acknowledge offset which was not enqueued yet");
+      }
+      // offsets only move forward, acknowledging an older message is a no-op
+      if (offset <= readOffset(groupsHandle, partitionKey, consumerGroup)) {
+        return;
+      }
+      try (WriteBatch writeBatch = new WriteBatch();
+          WriteOptions writeOptions = new WriteOptions()) {
+        writeBatch.put(
+            groupsHandle,
+            groupKey(partitionKey, consumerGroup),
+            formatOffset(offset).getBytes(StandardCharsets.UTF_8));
+
+        long acknowledgedByAll =
+            Math.max(
+                minCommittedOffset(groupsHandle, partitionKey, consumerGroup, offset),
+                partition.removedOffset);
+        // TransactionDB rejects range deletes, acknowledged offsets are contiguous so they are
+        // deleted one by one, dequeue seeks past the removed segment and never scans tombstones
+        for (long removed = partition.removedOffset + 1; removed <= acknowledgedByAll; removed++) {
+          writeBatch.delete(
+              cfHandle, SerDeUtils.serializeKey(new Key(partitionKey, formatOffset(removed))));
+        }
+        db.write(writeOptions, writeBatch);
+
+        if (acknowledgedByAll > partition.removedOffset) {
+          partition.removedOffset = acknowledgedByAll;
+          logger.debug("Removed acknowledged messages up to: {}", acknowledgedByAll);
+        }
+      }
+    }
+  }
+
+  private Partition getPartition(String tableName, String partitionKey) throws RocksDBException {
+    String partitionId = tableName + PARTITION_SORT_KEY_SEPARATOR + partitionKey;
+    Partition partition = partitions.get(partitionId);
+    if (partition != null) {
+      return partition;
+    }
+    ColumnFamilyHandle groupsHandle =
+        roxDB.getOrCreateColumnFamily(ColumnFamilyNames.consumerGroups(tableName));
+    Partition loaded = new Partition();
+    loaded.lastOffset = readOffset(groupsHandle, partitionKey, LAST_OFFSET_GROUP);
+    loaded.removedOffset = minCommittedOffset(groupsHandle, partitionKey);
+    Partition existing = partitions.putIfAbsent(partitionId, loaded);
+    return existing != null ? existing : loaded;
+  }
+
+  private long readOffset(ColumnFamilyHandle groupsHandle, String partitionKey, String group)
+      throws RocksDBException {
+    byte[] value = db.get(groupsHandle, groupKey(partitionKey, group));
+    return value == null ? 0 : Long.parseLong(new String(value, StandardCharsets.UTF_8));
+  }
+
+  // lowest offset committed by all consumer groups of a partition, 0 when there are no groups
+  private long minCommittedOffset(ColumnFamilyHandle groupsHandle, String partitionKey) {
+    return minCommittedOffset(groupsHandle, partitionKey, null, 0);
+  }
+
+  // same as above but with the offset of the given group replaced by a not yet written one
+  private long minCommittedOffset(
+      ColumnFamilyHandle groupsHandle, String partitionKey, String group, long groupOffset) {
+    String partitionPrefix = partitionKey + PARTITION_SORT_KEY_SEPARATOR;
+    long minOffset = Long.MAX_VALUE;
+    try (RocksIterator iterator = db.newIterator(groupsHandle)) {
+      for (iterator.seek(partitionPrefix.getBytes()); iterator.isValid(); iterator.next()) {
+        Key key = SerDeUtils.deserializeKey(iterator.key());
+        if (!key.partitionKey().equals(partitionKey)) {
+          break;
+        }
+        if (key.sortKey().equals(LAST_OFFSET_GROUP)) {
+          continue;
+        }
+        long committed =
+            key.sortKey().equals(group)
+                ? groupOffset
+                : Long.parseLong(new String(iterator.value(), StandardCharsets.UTF_8));
+        minOffset = Math.min(minOffset, committed);
+      }
+    }
+    return minOffset == Long.MAX_VALUE ? 0 : minOffset;
+  }
+
+  private static byte[] groupKey(String partitionKey, String group) {
+    return SerDeUtils.serializeKey(new Key(partitionKey, group));
+  }
+
+  private static class Partition {
+    long lastOffset;
+    long removedOffset;
+  }
+}
@@ -1,7 +1,12 @@
 package com.github.lukaszbudnik.roxdb.rocksdb;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.Statistics;
@@ -9,19 +14,113 @@ import org.rocksdb.Statistics;
 public interface RoxDB extends AutoCloseable {
   Statistics getStatistics();
 
+  CacheStats getItemCacheStats();
+
+  CacheStats getQueryCacheStats();
+
+  BlockCacheStats getBlockCacheStats();
+
+  StartupStats getStartupStats();
+
+  // memory of active and unflushed memtables of all tables
+  long getMemTablesSizeBytes();
+
   ColumnFamilyHandle getOrCreateColumnFamily(String tableName) throws RocksDBException;
 
   void putItem(String tableName, Item item) throws RocksDBException;
 
+  Key putItem(String tableName, String partitionKey, Map<String, Object> attributes)
+      throws RocksDBException;
+
   void updateItem(String tableName, Item item) throws RocksDBException;
 
   Item getItem(String tableName, Key key) throws RocksDBException;
 
+  // reads only memtables and block cache, throws RocksDBException with Incomplete status when the
+  // item would have to be read from disk
+  Item getItem(String tableName, Key key, boolean cacheOnly) throws RocksDBException;
+
+  // saves up to maxKeys keys of hot items, returns the number of saved keys
+  int saveWarmUpManifest(int maxKeys) throws IOException;
+
+  // reads items of saved keys until all are read or time budget runs out, returns the number of
+  // read keys
+  int warmUp(Duration timeBudget);
+
+  // flushes memtables of all tables and waits for the flushes, so that the next open does not
+  // replay their WAL
+  void flush() throws RocksDBException;
+
   List<Item> query(
       String tableName, String partitionKey, int limit, Optional<SortKeyRange> sortKeyRange)
       throws RocksDBException;
 
+  List<Item> query(
+      String tableName,
+      String partitionKey,
+      int limit,
+      Optional<SortKeyRange> sortKeyRange,
+      Map<String, String> filters)
+      throws RocksDBException;
+
+  List<Item> queryPartitions(
+      String tableName,
+      List<String> partitionKeys,
+      int limit,
+      Optional<SortKeyRange> sortKeyRange,
+      Optional<Key> exclusiveStartKey)
+      throws RocksDBException;
+
+  List<AggregateGroup> queryAggregates(
+      String tableName,
+      String partitionKey,
+      int limit,
+      Optional<SortKeyRange> sortKeyRange,
+      List<QueryAggregate> aggregates,
+      String groupBy)
+      throws RocksDBException;
+
   void deleteItem(String tableName, Key key) throws RocksDBException;
 
+  Changes getChanges(long sinceSequenceNumber, int limit, Set<String> tables)
+      throws RocksDBException;
+
+  Watch watch(
+      String tableName,
+      String partitionKey,
+      Optional<SortKeyRange> sortKeyRange,
+      Consumer<ChangeEvent> listener);
+
+  void createIndex(String tableName, IndexDefinition indexDefinition, int backfillItemsPerSecond)
+      throws RocksDBException;
+
+  List<Item> queryIndex(
+      String tableName,
+      String indexName,
+      String partitionKey,
+      int limit,
+      Optional<SortKeyRange> sortKeyRange)
+      throws RocksDBException;
+
+  List<Item> queryGeoIndex(
+      String tableName, String indexName, String partitionKey, int limit, GeoArea area)
+      throws RocksDBException;
+
+  List<Item> queryVectorIndex(
+      String tableName, String indexName, String partitionKey, int limit, float[] vector)
+      throws RocksDBException;
+
+  Number getAggregate(String tableName, String partitionKey, String aggregateName)
+      throws RocksDBException;
+
   void executeTransaction(TransactionOperations transactionContext) throws RocksDBException;
+
+  Key enqueue(String tableName, String partitionKey, Map<String, Object> attributes)
+      throws RocksDBException;
+
+  List<Item> dequeue(String tableName, String partitionKey, String consumerGroup, int limit)
+      throws RocksDBException;
+
+  void ack(String tableName, String partitionKey, String consumerGroup, String sortKey)
+      throws RocksDBException;
 }
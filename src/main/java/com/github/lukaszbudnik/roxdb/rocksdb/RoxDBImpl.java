@@ -1,13 +1,32 @@
 package com.github.lukaszbudnik.roxdb.rocksdb;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import org.rocksdb.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class RoxDBImpl implements RoxDB {
   public static final char PARTITION_SORT_KEY_SEPARATOR = '\u001F';
+  static final long EXPIRY_INTERVAL_SECONDS = 60;
+  static final int EXPIRY_BATCH_SIZE = 1000;
+  private static final String WAL_FILE_SUFFIX = ".log";
+  static final int SCAN_PAGE_SIZE = 1000;
+  public static final int MAX_QUERY_PARTITION_KEYS = 1000;
   private static final Logger logger = LoggerFactory.getLogger(RoxDBImpl.class);
 
   static {
@@ -20,16 +39,57 @@ public class RoxDBImpl implements RoxDB {
   private final DBOptions dbOptions;
   private final TransactionDBOptions transactionDbOptions;
   private final List<ColumnFamilyHandle> columnFamilyHandles;
+  // handles of dropped column families cannot be flushed, they are only closed with the database
+  private final List<ColumnFamilyHandle> droppedColumnFamilyHandles;
+  // warm up runs while shutdown can already be in progress, it stops before handles are closed
+  private final Object warmUpLock = new Object();
+  private volatile boolean closing;
   private final Statistics statistics;
+  private final TablesConfig tablesConfig;
+  private final ColumnFamilyOptions columnFamilyOptions;
+  private final Map<String, ColumnFamilyOptions> timeWindowColumnFamilyOptions;
+  private final Queues queues;
+  private final HotPartitions hotPartitions;
+  private final Indexes indexes;
+  private final Aggregates aggregates;
+  private final Expiry expiry;
+  private final Watches watches = new Watches();
+  private final ChangeLog changeLog;
+  private final ItemCache itemCache;
+  private final QueryCache queryCache;
+  private final BlockCache blockCache;
+  private final SortKeyGenerator sortKeyGenerator = new SortKeyGenerator();
+  private final ScheduledExecutorService maintenanceExecutor;
+  // reads which do not go to disk, not found blocks make them fail with Incomplete status
+  private final ReadOptions cacheOnlyReadOptions =
+      new ReadOptions().setReadTier(ReadTier.BLOCK_CACHE_TIER);
+  // number of entries of active memtables seen by the previous idle flush
+  private final Map<ColumnFamilyHandle, Long> activeMemTableEntries = new HashMap<>();
+  private final StartupStats startupStats;
 
   public RoxDBImpl(String dbPath) throws RocksDBException {
+    this(dbPath, TablesConfig.EMPTY);
+  }
+
+  public RoxDBImpl(String dbPath, TablesConfig tablesConfig) throws RocksDBException {
+    this(dbPath, tablesConfig, StorageOptions.DEFAULT);
+  }
+
+  public RoxDBImpl(String dbPath, TablesConfig tablesConfig, StorageOptions storageOptions)
+      throws RocksDBException {
     logger.info("Initializing RocksDB instance at {}", dbPath);
 
     this.dbPath = dbPath;
+    this.tablesConfig = tablesConfig;
 
     // Initialize column families
-    this.columnFamilies = new HashMap<>();
-    this.columnFamilyHandles = new ArrayList<>();
+    this.columnFamilies = new ConcurrentHashMap<>();
+    this.columnFamilyHandles = new CopyOnWriteArrayList<>();
+    this.droppedColumnFamilyHandles = new CopyOnWriteArrayList<>();
+    this.blockCache = new BlockCache(storageOptions);
+    this.columnFamilyOptions =
+        new ColumnFamilyOptions().setTableFormatConfig(blockCache.getTableConfig());
+    this.timeWindowColumnFamilyOptions = new ConcurrentHashMap<>();
 
     this.statistics = new Statistics();
     // Create DB options
@@ -37,29 +97,54 @@ public class RoxDBImpl implements RoxDB {
         new DBOptions()
             .setCreateIfMissing(true)
             .setCreateMissingColumnFamilies(true)
-            .setStatistics(statistics);
+            .setStatistics(statistics)
+            .setWalTtlSeconds(storageOptions.walTtlSeconds())
+            .setWalSizeLimitMB(storageOptions.walSizeLimitMb())
+            // statistics and sizes of all SST files are not read when the database is opened
+            .setSkipStatsUpdateOnDbOpen(true)
+            .setSkipCheckingSstFileSizesOnDbOpen(true);
+    if (blockCache.getWriteBufferManager() != null) {
+      dbOptions.setWriteBufferManager(blockCache.getWriteBufferManager());
+    }
+    // RocksDB sizes flush and compaction thread pools to background jobs
+    if (storageOptions.backgroundJobs() > 0) {
+      dbOptions.setMaxBackgroundJobs(storageOptions.backgroundJobs());
+    }
 
     this.transactionDbOptions = new TransactionDBOptions();
 
     // Get list of existing column families
-    List<byte[]> existingCFs = RocksDB.listColumnFamilies(new Options(), dbPath);
+    long discoveryStart = System.nanoTime();
+    List<byte[]> existingCFs;
+    try (Options options = new Options()) {
+      existingCFs = RocksDB.listColumnFamilies(options, dbPath);
+    }
 
     // Prepare column family descriptors
     List<ColumnFamilyDescriptor> columnFamilyDescriptors = new ArrayList<>();
     // Always add default column family
-    columnFamilyDescriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY));
+    columnFamilyDescriptors.add(
+        new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, columnFamilyOptions));
 
     // Add existing column families
     for (byte[] cf : existingCFs) {
       if (!Arrays.equals(cf, RocksDB.DEFAULT_COLUMN_FAMILY)) {
-        columnFamilyDescriptors.add(new ColumnFamilyDescriptor(cf));
+        columnFamilyDescriptors.add(
+            new ColumnFamilyDescriptor(cf, getColumnFamilyOptions(new String(cf))));
       }
     }
 
-    // Open DB with column families
+    long columnFamilyDiscoveryMillis = millisSince(discoveryStart);
+
+    // Open DB with column families, WAL files left by the previous run are replayed
+    File[] walFiles = new File(dbPath).listFiles((dir, name) -> name.endsWith(WAL_FILE_SUFFIX));
+    long walReplayBytes =
+        walFiles == null ? 0 : Arrays.stream(walFiles).mapToLong(File::length).sum();
+    long openStart = System.nanoTime();
     this.db =
         TransactionDB.open(
             dbOptions, transactionDbOptions, dbPath, columnFamilyDescriptors, columnFamilyHandles);
+    long openMillis = millisSince(openStart);
 
     // Map column family handles
     for (int i = 0; i < columnFamilyHandles.size(); i++) {
@@ -67,9 +152,122 @@ public class RoxDBImpl implements RoxDB {
       columnFamilies.put(cfName, columnFamilyHandles.get(i));
     }
 
+    // derived data rebuilt below writes items through transactions which invalidate the cache
+    long derivedDataStart = System.nanoTime();
+    this.itemCache = new ItemCache(storageOptions.itemCacheSizeBytes());
+    this.queryCache = new QueryCache(storageOptions.queryCacheSizeBytes());
+    this.queues = new Queues(this, db);
+    this.hotPartitions = new HotPartitions(this, db, tablesConfig);
+    this.indexes = new Indexes(this, db);
+    this.aggregates = new Aggregates(this, db, tablesConfig);
+    this.expiry = new Expiry(this, db, tablesConfig);
+    this.changeLog = new ChangeLog(this, db);
+    this.startupStats =
+        new StartupStats(
+            columnFamilyDiscoveryMillis,
+            openMillis,
+            walFiles == null ? 0 : walFiles.length,
+            walReplayBytes,
+            millisSince(derivedDataStart));
+    logger.info("RocksDB startup: {}", startupStats);
+
+    this.maintenanceExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "roxdb-maintenance");
+              thread.setDaemon(true);
+              return thread;
+            });
+    maintenanceExecutor.scheduleWithFixedDelay(
+        this::runExpiry, EXPIRY_INTERVAL_SECONDS, EXPIRY_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    maintenanceExecutor.scheduleWithFixedDelay(
+        this::runRetention, EXPIRY_INTERVAL_SECONDS, EXPIRY_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    if (storageOptions.idleFlushSeconds() > 0) {
+      maintenanceExecutor.scheduleWithFixedDelay(
+          this::runIdleFlush,
+          storageOptions.idleFlushSeconds(),
+          storageOptions.idleFlushSeconds(),
+          TimeUnit.SECONDS);
+    }
+
     logger.info("RocksDB instance initialized");
   }
 
+  TableConfig getTableConfig(String tableName) {
+    return tablesConfig.getTableConfig(tableName);
+  }
+
+  // sort keys of queue tables are assigned by the server, items can only be enqueued
+  void validateDirectWrite(String tableName) {
+    if (getTableConfig(tableName).isQueue()) {
+      throw new IllegalArgumentException(
+          "Items cannot be put to queue table " + tableName + ", use Enqueue instead");
+    }
+  }
+
+  private void validateQueueTable(String tableName) {
+    if (!getTableConfig(tableName).isQueue()) {
+      throw new IllegalArgumentException("Table " + tableName + " is not a queue table");
+    }
+  }
+
+  // held from reading derived data of the table until the write is committed, indexes created
+  // meanwhile wait for the write before they are backfilled
+  Lock lockIndexes(String tableName) {
+    return indexes.lockWrites(tableName);
+  }
+
+  List<DerivedData> getDerivedData(String tableName) {
+    List<SecondaryIndex> tableIndexes = indexes.getIndexes(tableName);
+    DerivedData tableAggregates = aggregates.getTableAggregates(tableName);
+    DerivedData tableExpiry = expiry.getTableExpiry(tableName);
+    if (tableAggregates == null && tableExpiry == null) {
+      return List.copyOf(tableIndexes);
+    }
+    List<DerivedData> derivedData = new ArrayList<>(tableIndexes);
+    if (tableAggregates != null) {
+      derivedData.add(tableAggregates);
+    }
+    if (tableExpiry != null) {
+      derivedData.add(tableExpiry);
+    }
+    return derivedData;
+  }
+
+  Expiry getExpiry() {
+    return expiry;
+  }
+
+  Set<String> getColumnFamilyNames() {
+    return Set.copyOf(columnFamilies.keySet());
+  }
+
+  // Column families holding items of a table: table column family, shards and time windows
+  List<ColumnFamilyHandle> getTableColumnFamilies(String tableName) {
+    List<ColumnFamilyHandle> cfHandles = new ArrayList<>();
+    for (Map.Entry<String, ColumnFamilyHandle> entry : columnFamilies.entrySet()) {
+      String cfName = entry.getKey();
+      if (cfName.equals(tableName)
+          || (ColumnFamilyNames.tableName(cfName).equals(tableName)
+              && (ColumnFamilyNames.isShard(cfName)
+                  || ColumnFamilyNames.windowStart(cfName).isPresent()))) {
+        cfHandles.add(entry.getValue());
+      }
+    }
+    return cfHandles;
+  }
+
+  // changes of dropped time windows are skipped as their column families are no longer known
+  Map<Integer, String> getTableNamesByColumnFamilyId() {
+    Map<Integer, String> tableNames = new HashMap<>();
+    for (Map.Entry<String, ColumnFamilyHandle> entry : columnFamilies.entrySet()) {
+      if (ColumnFamilyNames.isTableItems(entry.getKey())) {
+        tableNames.put(entry.getValue().getID(), ColumnFamilyNames.tableName(entry.getKey()));
+      }
+    }
+    return tableNames;
+  }
+
   @Override
   public Statistics getStatistics() {
     return statistics;
@@ -77,36 +275,247 @@ public class RoxDBImpl implements RoxDB {
 
   @Override
   public ColumnFamilyHandle getOrCreateColumnFamily(String tableName) throws RocksDBException {
-    if (!columnFamilies.containsKey(tableName)) {
-      ColumnFamilyDescriptor cfDescriptor = new ColumnFamilyDescriptor(tableName.getBytes());
-      ColumnFamilyHandle cfHandle = db.createColumnFamily(cfDescriptor);
-      columnFamilies.put(tableName, cfHandle);
-      columnFamilyHandles.add(cfHandle);
+    ColumnFamilyHandle cfHandle = columnFamilies.get(tableName);
+    if (cfHandle != null) {
       return cfHandle;
     }
-    return columnFamilies.get(tableName);
+    synchronized (columnFamilies) {
+      if (!columnFamilies.containsKey(tableName)) {
+        ColumnFamilyDescriptor cfDescriptor =
+            new ColumnFamilyDescriptor(tableName.getBytes(), getColumnFamilyOptions(tableName));
+        cfHandle = db.createColumnFamily(cfDescriptor);
+        columnFamilies.put(tableName, cfHandle);
+        columnFamilyHandles.add(cfHandle);
+        return cfHandle;
+      }
+      return columnFamilies.get(tableName);
+    }
+  }
+
+  // Time series tables store every time window in a separate column family
+  ColumnFamilyHandle getOrCreateColumnFamily(String tableName, Key key) throws RocksDBException {
+    TableConfig tableConfig = getTableConfig(tableName);
+    if (!tableConfig.isTimeSeries()) {
+      return getOrCreateColumnFamily(tableName);
+    }
+    Instant windowStart =
+        tableConfig
+            .timeSeries()
+            .window()
+            .windowStart(parseTimestamp(tableConfig.timeSeries(), key));
+    return getOrCreateColumnFamily(ColumnFamilyNames.window(tableName, windowStart));
+  }
+
+  // Same as getOrCreateColumnFamily but does not create missing time windows, returns null instead
+  private ColumnFamilyHandle findColumnFamily(String tableName, Key key) throws RocksDBException {
+    TableConfig tableConfig = getTableConfig(tableName);
+    if (!tableConfig.isTimeSeries()) {
+      return getOrCreateColumnFamily(tableName);
+    }
+    Instant windowStart =
+        tableConfig
+            .timeSeries()
+            .window()
+            .windowStart(parseTimestamp(tableConfig.timeSeries(), key));
+    return columnFamilies.get(ColumnFamilyNames.window(tableName, windowStart));
+  }
+
+  // Counts puts to tables with hot partitions, which may shard the partition, and locks the
+  // partition so that it is not sharded until the write is committed. Column families of the item
+  // must be chosen under the lock. Returns null for tables without hot partitions.
+  Lock lockPartition(String tableName, Key key, boolean recordWrite) throws RocksDBException {
+    TableConfig tableConfig = getTableConfig(tableName);
+    if (!tableConfig.hasHotPartitions()) {
+      return null;
+    }
+    if (recordWrite) {
+      hotPartitions.recordWrite(tableName, tableConfig.hotPartitions(), key.partitionKey());
+    }
+    return hotPartitions.lockPartition(tableName, key.partitionKey());
+  }
+
+  // Column family to which item is written, items of hot partitions are spread over shards
+  ColumnFamilyHandle getWriteColumnFamily(String tableName, Key key) throws RocksDBException {
+    HotPartitions.Sharding sharding =
+        getTableConfig(tableName).hasHotPartitions()
+            ? hotPartitions.getSharding(tableName, key.partitionKey())
+            : null;
+    if (sharding != null) {
+      return getOrCreateColumnFamily(ColumnFamilyNames.shard(tableName, sharding.shard(key)));
+    }
+    return getOrCreateColumnFamily(tableName, key);
+  }
+
+  // Column families which may hold the item, empty list when there is no column family for the key
+  List<ColumnFamilyHandle> getReadColumnFamilies(String tableName, Key key)
+      throws RocksDBException {
+    HotPartitions.Sharding sharding =
+        getTableConfig(tableName).hasHotPartitions()
+            ? hotPartitions.getSharding(tableName, key.partitionKey())
+            : null;
+    if (sharding == null) {
+      ColumnFamilyHandle cfHandle = findColumnFamily(tableName, key);
+      return cfHandle != null ? List.of(cfHandle) : List.of();
+    }
+    List<ColumnFamilyHandle> cfHandles = new ArrayList<>(2);
+    ColumnFamilyHandle shardHandle =
+        columnFamilies.get(ColumnFamilyNames.shard(tableName, sharding.shard(key)));
+    if (shardHandle != null) {
+      cfHandles.add(shardHandle);
+    }
+    if (sharding.hasTableItems()) {
+      cfHandles.add(getOrCreateColumnFamily(tableName));
+    }
+    return cfHandles;
+  }
+
+  private ColumnFamilyOptions getColumnFamilyOptions(String columnFamilyName) {
+    TableConfig tableConfig = getTableConfig(ColumnFamilyNames.tableName(columnFamilyName));
+    if (!tableConfig.isTimeSeries()
+        || !tableConfig.timeSeries().fifoCompaction()
+        || ColumnFamilyNames.windowStart(columnFamilyName).isEmpty()) {
+      return columnFamilyOptions;
+    }
+    // time windows are never updated once they are closed and are dropped as a whole when they
+    // fall out of retention, FIFO compaction avoids rewriting data which is about to be dropped
+    return timeWindowColumnFamilyOptions.computeIfAbsent(
+        ColumnFamilyNames.tableName(columnFamilyName),
+        table -> {
+          long maxTableFilesSize = tableConfig.timeSeries().fifoMaxTableFilesSize();
+          CompactionOptionsFIFO compactionOptionsFIFO =
+              new CompactionOptionsFIFO()
+                  .setMaxTableFilesSize(maxTableFilesSize > 0 ? maxTableFilesSize : Long.MAX_VALUE)
+                  .setAllowCompaction(true);
+          return new ColumnFamilyOptions()
+              .setTableFormatConfig(blockCache.getTableConfig())
+              .setCompactionStyle(CompactionStyle.FIFO)
+              .setCompactionOptionsFIFO(compactionOptionsFIFO);
+        });
+  }
+
+  // only canonical keys are accepted, other forms of the same instant (offsets, other precision)
+  // would be stored as different keys in a different order
+  private static Instant parseTimestamp(TimeSeriesConfig timeSeries, Key key) {
+    return parseTimestamp(key.sortKey())
+        .filter(timestamp -> timeSeries.precision().format(timestamp).equals(key.sortKey()))
+        .orElseThrow(
+            () ->
+                new IllegalArgumentException(
+                    "Time series sort key must be an ISO-8601 UTC timestamp with "
+                        + timeSeries.precision()
+                        + " precision: "
+                        + key.sortKey()));
+  }
+
+  private static Optional<Instant> parseTimestamp(String value) {
+    try {
+      return Optional.of(Instant.parse(value));
+    } catch (DateTimeParseException e) {
+      return Optional.empty();
+    }
+  }
+
+  // Returns time windows of a table which overlap sort key range, ordered from oldest to newest
+  private List<ColumnFamilyHandle> getTimeWindows(
+      String tableName, TimeWindow window, Optional<SortKeyRange> sortKeyRange) {
+    // boundaries which are not full timestamps (e.g. date prefix) do not prune windows
+    Instant from =
+        sortKeyRange
+            .flatMap(SortKeyRange::start)
+            .flatMap(start -> parseTimestamp(start.value()))
+            .map(window::windowStart)
+            .orElse(Instant.MIN);
+    Instant to =
+        sortKeyRange
+            .flatMap(SortKeyRange::end)
+            .flatMap(end -> parseTimestamp(end.value()))
+            .orElse(Instant.MAX);
+
+    TreeMap<Instant, ColumnFamilyHandle> windows = new TreeMap<>();
+    for (Map.Entry<String, ColumnFamilyHandle> entry : columnFamilies.entrySet()) {
+      if (!ColumnFamilyNames.tableName(entry.getKey()).equals(tableName)) {
+        continue;
+      }
+      ColumnFamilyNames.windowStart(entry.getKey())
+          .filter(windowStart -> !windowStart.isBefore(from) && !windowStart.isAfter(to))
+          .ifPresent(windowStart -> windows.put(windowStart, entry.getValue()));
+    }
+    return new ArrayList<>(windows.values());
   }
 
   // PutItem operation
   @Override
   public void putItem(String tableName, Item item) throws RocksDBException {
-    ColumnFamilyHandle cfHandle = getOrCreateColumnFamily(tableName);
-
+    validateDirectWrite(tableName);
     // Convert key to bytes
     byte[] key = SerDeUtils.serializeKey(item.key());
     // Convert attributes to bytes
     byte[] value = SerDeUtils.serializeAttributes(item);
 
-    // Store in RocksDB
-    db.put(cfHandle, key, value);
+    Lock indexesLock = lockIndexes(tableName);
+    Lock partitionLock = null;
+    try {
+      if (!getDerivedData(tableName).isEmpty()) {
+        // indexes and aggregates are updated atomically with the item
+        executeTransaction(txCtx -> txCtx.put(tableName, item));
+        return;
+      }
+      partitionLock = lockPartition(tableName, item.key(), true);
+      ColumnFamilyHandle cfHandle = getWriteColumnFamily(tableName, item.key());
+      // Store in RocksDB, item still stored in the table column family is removed from it when the
+      // item is written to a shard
+      List<ColumnFamilyHandle> previousHandles = new ArrayList<>();
+      for (ColumnFamilyHandle handle : getReadColumnFamilies(tableName, item.key())) {
+        if (handle != cfHandle && db.get(handle, key) != null) {
+          previousHandles.add(handle);
+        }
+      }
+      if (previousHandles.isEmpty()) {
+        db.put(cfHandle, key, value);
+      } else {
+        try (WriteBatch writeBatch = new WriteBatch();
+            WriteOptions writeOptions = new WriteOptions()) {
+          writeBatch.put(cfHandle, key, value);
+          for (ColumnFamilyHandle previousHandle : previousHandles) {
+            writeBatch.delete(previousHandle, key);
+          }
+          db.write(writeOptions, writeBatch);
+        }
+      }
+    } finally {
+      if (partitionLock != null) {
+        partitionLock.unlock();
+      }
+      indexesLock.unlock();
+    }
+
+    invalidateCaches(tableName, List.of(item.key()));
+    publishChange(tableName, ChangeType.PUT, item.key(), item.attributes());
 
     String storageKey = new String(key, StandardCharsets.UTF_8);
     logger.debug("Item put: {}", storageKey);
   }
 
+  @Override
+  public Key putItem(String tableName, String partitionKey, Map<String, Object> attributes)
+      throws RocksDBException {
+    if (getTableConfig(tableName).isTimeSeries()) {
+      throw new IllegalArgumentException(
+          "Sort keys cannot be generated for time series table " + tableName);
+    }
+    // generated sort keys are time ordered so new items are always appended to the partition
+    Key key = new Key(partitionKey, sortKeyGenerator.next());
+    putItem(tableName, new Item(key, attributes));
+    return key;
+  }
+
   //  UpdateItem operation
   @Override
   public void updateItem(String tableName, Item item) throws RocksDBException {
+    if (!getDerivedData(tableName).isEmpty()) {
+      executeTransaction(txCtx -> txCtx.update(tableName, item));
+      return;
+    }
     Item existingItem = getItem(tableName, item.key());
 
     if (existingItem == null) {
@@ -128,34 +537,363 @@ public class RoxDBImpl implements RoxDB {
   // GetItem operation
   @Override
   public Item getItem(String tableName, Key key) throws RocksDBException {
-    ColumnFamilyHandle cfHandle = getOrCreateColumnFamily(tableName);
+    return getItem(tableName, key, false);
+  }
 
+  @Override
+  public Item getItem(String tableName, Key key, boolean cacheOnly) throws RocksDBException {
     // Convert key to bytes
     byte[] keyBytes = SerDeUtils.serializeKey(key);
     String storageKey = new String(keyBytes, StandardCharsets.UTF_8);
 
-    // Get from RocksDB
-    byte[] value = db.get(cfHandle, keyBytes);
+    // items of queue tables are written directly by queue operations and are not cached
+    TableConfig tableConfig = getTableConfig(tableName);
+    Map<String, Object> attributes;
+    ReadOptions readOptions = cacheOnly ? cacheOnlyReadOptions : null;
+    if (tableConfig.isQueue()) {
+      byte[] value = readItem(tableName, key, keyBytes, readOptions);
+      attributes = value == null ? null : SerDeUtils.deserializeAttributes(value);
+    } else {
+      // incomplete cache only reads are not cached
+      attributes =
+          itemCache.get(
+              tableName, key, cacheOnly, () -> readItem(tableName, key, keyBytes, readOptions));
+    }
 
-    if (value == null) {
+    if (attributes == null) {
       logger.debug("Item not found: {}", storageKey);
       return null;
     }
 
-    // Convert bytes to Map
-    Map<String, Object> attributes = SerDeUtils.deserializeAttributes(value);
+    // expiry is checked on every read as cached items can expire
+    if (tableConfig.isExpired(attributes, Instant.now().getEpochSecond())) {
+      logger.debug("Item expired: {}", storageKey);
+      return null;
+    }
     Item item = new Item(key, attributes);
     logger.debug("Item found: {}", storageKey);
     return item;
   }
 
+  // null read options use defaults
+  private byte[] readItem(String tableName, Key key, byte[] keyBytes, ReadOptions readOptions)
+      throws RocksDBException {
+    for (ColumnFamilyHandle cfHandle : getReadColumnFamilies(tableName, key)) {
+      byte[] value =
+          readOptions == null
+              ? db.get(cfHandle, keyBytes)
+              : db.get(cfHandle, readOptions, keyBytes);
+      if (value != null) {
+        return value;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public int saveWarmUpManifest(int maxKeys) throws IOException {
+    List<WarmUpManifest.Entry> entries =
+        itemCache.hottestKeys(maxKeys).stream()
+            .map(
+                cacheKey ->
+                    new WarmUpManifest.Entry(
+                        cacheKey.tableName(),
+                        cacheKey.key().partitionKey(),
+                        cacheKey.key().sortKey()))
+            .toList();
+    WarmUpManifest.write(Path.of(dbPath), entries);
+    logger.info("Saved {} hot keys to warm up manifest", entries.size());
+    return entries.size();
+  }
+
+  @Override
+  public int warmUp(Duration timeBudget) {
+    List<WarmUpManifest.Entry> entries;
+    try {
+      entries = WarmUpManifest.read(Path.of(dbPath));
+    } catch (IOException e) {
+      logger.warn("Error reading warm up manifest", e);
+      return 0;
+    }
+    long start = System.nanoTime();
+    long deadline = start + timeBudget.toNanos();
+    int warmedUp = 0;
+    for (WarmUpManifest.Entry entry : entries) {
+      if (System.nanoTime() - deadline > 0) {
+        break;
+      }
+      synchronized (warmUpLock) {
+        if (closing) {
+          break;
+        }
+        try {
+          // reads data, index and filter blocks into block cache and the item into item cache
+          getItem(entry.table(), new Key(entry.partitionKey(), entry.sortKey()));
+          warmedUp++;
+        } catch (RocksDBException | RuntimeException e) {
+          // tables can be removed from tables config between restarts
+          logger.debug("Error warming up {}", entry, e);
+        }
+      }
+    }
+    logger.info(
+        "Warmed up {} of {} hot keys in {} ms",
+        warmedUp,
+        entries.size(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    return warmedUp;
+  }
+
+  @Override
+  public CacheStats getItemCacheStats() {
+    return itemCache.stats();
+  }
+
+  @Override
+  public CacheStats getQueryCacheStats() {
+    return queryCache.stats();
+  }
+
+  @Override
+  public BlockCacheStats getBlockCacheStats() {
+    return blockCache.stats(db, statistics);
+  }
+
+  @Override
+  public long getMemTablesSizeBytes() {
+    try {
+      return db.getAggregatedLongProperty("rocksdb.cur-size-all-mem-tables");
+    } catch (RocksDBException e) {
+      logger.warn("Error reading memtables size", e);
+      return 0;
+    }
+  }
+
   // Query operation
   @Override
   public List<Item> query(
       String tableName, String partitionKey, int limit, Optional<SortKeyRange> sortKeyRange)
       throws RocksDBException {
+    // items of queue tables are written directly by queue operations and are not cached
+    TableConfig tableConfig = getTableConfig(tableName);
+    List<Item> results;
+    if (tableConfig.isQueue()) {
+      results = readPartition(tableName, partitionKey, limit, sortKeyRange);
+    } else {
+      long now = Instant.now().getEpochSecond();
+      results =
+          queryCache.get(
+              tableName,
+              partitionKey,
+              sortKeyRange,
+              limit,
+              item -> tableConfig.isExpired(item.attributes(), now),
+              () -> readPartition(tableName, partitionKey, limit, sortKeyRange));
+    }
+
+    logger.debug(
+        "QueryResults for: {}{}{} limit {} found items: {}",
+        partitionKey,
+        PARTITION_SORT_KEY_SEPARATOR,
+        sortKeyRange,
+        limit,
+        results.size());
+
+    return results;
+  }
+
+  private List<Item> readPartition(
+      String tableName, String partitionKey, int limit, Optional<SortKeyRange> sortKeyRange)
+      throws RocksDBException {
     List<Item> results = new ArrayList<>();
-    ColumnFamilyHandle cfHandle = getOrCreateColumnFamily(tableName);
+    TableConfig tableConfig = getTableConfig(tableName);
+
+    if (tableConfig.isTimeSeries()) {
+      // fan out only to time windows which overlap the sort key range
+      for (ColumnFamilyHandle cfHandle :
+          getTimeWindows(tableName, tableConfig.timeSeries().window(), sortKeyRange)) {
+        if (results.size() >= limit) {
+          break;
+        }
+        query(cfHandle, tableConfig, partitionKey, limit, sortKeyRange, results);
+      }
+    } else if (tableConfig.hasHotPartitions()
+        && hotPartitions.getSharding(tableName, partitionKey) != null) {
+      // scatter to all shards of a hot partition and merge sorted results
+      HotPartitions.Sharding sharding = hotPartitions.getSharding(tableName, partitionKey);
+      List<ColumnFamilyHandle> cfHandles = new ArrayList<>();
+      for (int shard = 0; shard < sharding.shards(); shard++) {
+        ColumnFamilyHandle shardHandle =
+            columnFamilies.get(ColumnFamilyNames.shard(tableName, shard));
+        if (shardHandle != null) {
+          cfHandles.add(shardHandle);
+        }
+      }
+      if (sharding.hasTableItems()) {
+        cfHandles.add(getOrCreateColumnFamily(tableName));
+      }
+      List<List<Item>> shardResults = new ArrayList<>();
+      for (ColumnFamilyHandle cfHandle : cfHandles) {
+        List<Item> shardItems = new ArrayList<>();
+        query(cfHandle, tableConfig, partitionKey, limit, sortKeyRange, shardItems);
+        shardResults.add(shardItems);
+      }
+      results.addAll(
+          SortedMerge.merge(
+              shardResults, Comparator.comparing((Item item) -> item.key().sortKey()), limit));
+    } else {
+      ColumnFamilyHandle cfHandle = getOrCreateColumnFamily(tableName);
+      query(cfHandle, tableConfig, partitionKey, limit, sortKeyRange, results);
+    }
+    return results;
+  }
+
+  @Override
+  public List<Item> query(
+      String tableName,
+      String partitionKey,
+      int limit,
+      Optional<SortKeyRange> sortKeyRange,
+      Map<String, String> filters)
+      throws RocksDBException {
+    if (filters.isEmpty()) {
+      return query(tableName, partitionKey, limit, sortKeyRange);
+    }
+    List<Item> results =
+        indexes.filteredQuery(tableName, partitionKey, limit, sortKeyRange, filters);
+    logger.debug(
+        "QueryResults for: {}{}{} filters {} limit {} found items: {}",
+        partitionKey,
+        PARTITION_SORT_KEY_SEPARATOR,
+        sortKeyRange,
+        filters,
+        limit,
+        results.size());
+    return results;
+  }
+
+  // Items of all partitions merged by sort key, items with the same sort key are ordered by
+  // position of their partition key in the list. Every partition is read up to limit items and the
+  // sorted lists are merged with a heap. Next page starts after exclusive start key, which is the
+  // key of the last item of the previous page: partitions up to and including its partition
+  // continue after its sort key, partitions after it continue from its sort key.
+  @Override
+  public List<Item> queryPartitions(
+      String tableName,
+      List<String> partitionKeys,
+      int limit,
+      Optional<SortKeyRange> sortKeyRange,
+      Optional<Key> exclusiveStartKey)
+      throws RocksDBException {
+    List<String> distinctPartitionKeys = List.copyOf(new LinkedHashSet<>(partitionKeys));
+    if (distinctPartitionKeys.size() > MAX_QUERY_PARTITION_KEYS) {
+      throw new IllegalArgumentException(
+          "Query cannot have more than " + MAX_QUERY_PARTITION_KEYS + " partition keys");
+    }
+    int startPartition =
+        exclusiveStartKey.map(key -> distinctPartitionKeys.indexOf(key.partitionKey())).orElse(-1);
+    if (exclusiveStartKey.isPresent() && startPartition < 0) {
+      throw new IllegalArgumentException(
+          "Exclusive start key partition key must be one of queried partition keys");
+    }
+
+    List<List<Item>> partitionResults = new ArrayList<>();
+    for (int i = 0; i < distinctPartitionKeys.size(); i++) {
+      Optional<SortKeyRange> partitionRange = sortKeyRange;
+      if (exclusiveStartKey.isPresent()) {
+        String startSortKey = exclusiveStartKey.get().sortKey();
+        partitionRange =
+            Optional.of(
+                new SortKeyRange(
+                    Optional.of(
+                        i <= startPartition
+                            ? RangeBoundary.exclusive(startSortKey)
+                            : RangeBoundary.inclusive(startSortKey)),
+                    sortKeyRange.flatMap(SortKeyRange::end)));
+      }
+      partitionResults.add(query(tableName, distinctPartitionKeys.get(i), limit, partitionRange));
+    }
+    List<Item> results =
+        SortedMerge.merge(
+            partitionResults, Comparator.comparing((Item item) -> item.key().sortKey()), limit);
+
+    logger.debug(
+        "QueryResults for: {} partitions {} exclusive start key {} limit {} found items: {}",
+        distinctPartitionKeys.size(),
+        sortKeyRange,
+        exclusiveStartKey,
+        limit,
+        results.size());
+    return results;
+  }
+
+  // aggregates are computed while scanning, items are not returned
+  @Override
+  public List<AggregateGroup> queryAggregates(
+      String tableName,
+      String partitionKey,
+      int limit,
+      Optional<SortKeyRange> sortKeyRange,
+      List<QueryAggregate> aggregates,
+      String groupBy)
+      throws RocksDBException {
+    QueryAggregation aggregation = new QueryAggregation(aggregates, groupBy, limit);
+    scan(
+        tableName,
+        partitionKey,
+        sortKeyRange,
+        item -> {
+          aggregation.add(item);
+          return true;
+        });
+    List<AggregateGroup> results = aggregation.results();
+    logger.debug(
+        "AggregateResults for: {}{}{} aggregates {} group by {} found groups: {}",
+        partitionKey,
+        PARTITION_SORT_KEY_SEPARATOR,
+        sortKeyRange,
+        aggregates,
+        groupBy,
+        results.size());
+    return results;
+  }
+
+  // Passes items of the partition in sort key order to the consumer until it returns false, items
+  // are read page by page so that whole partition is never held in memory, pages are not cached
+  void scan(
+      String tableName,
+      String partitionKey,
+      Optional<SortKeyRange> sortKeyRange,
+      Predicate<Item> consumer)
+      throws RocksDBException {
+    Optional<SortKeyRange> pageRange = sortKeyRange;
+    while (true) {
+      List<Item> page = readPartition(tableName, partitionKey, SCAN_PAGE_SIZE, pageRange);
+      for (Item item : page) {
+        if (!consumer.test(item)) {
+          return;
+        }
+      }
+      if (page.size() < SCAN_PAGE_SIZE) {
+        return;
+      }
+      pageRange =
+          Optional.of(
+              new SortKeyRange(
+                  Optional.of(RangeBoundary.exclusive(page.getLast().key().sortKey())),
+                  sortKeyRange.flatMap(SortKeyRange::end)));
+    }
+  }
+
+  // Appends items from a single column family to results until limit is reached
+  private void query(
+      ColumnFamilyHandle cfHandle,
+      TableConfig tableConfig,
+      String partitionKey,
+      int limit,
+      Optional<SortKeyRange> sortKeyRange,
+      List<Item> results) {
+    long now = Instant.now().getEpochSecond();
 
     Optional<RangeBoundary> startSortKey = Optional.empty();
     if (sortKeyRange.isPresent()) {
@@ -179,8 +917,12 @@ public class RoxDBImpl implements RoxDB {
 
       iterator.seek(seekKey.getBytes());
 
-      // we move to the next record if start key range type is set to exclusive
-      if (startSortKey.isPresent() && startSortKey.get().type() == RangeType.EXCLUSIVE) {
+      // we move to the next record if start key range type is set to exclusive and the start key
+      // exists, otherwise seek already positioned the iterator on the first greater key
+      if (startSortKey.isPresent()
+          && startSortKey.get().type() == RangeType.EXCLUSIVE
+          && iterator.isValid()
+          && Arrays.equals(iterator.key(), seekKey.getBytes())) {
         iterator.next();
       }
 
@@ -210,42 +952,103 @@ public class RoxDBImpl implements RoxDB {
         //          break;
         //        }
 
-        // Add matching item to results
+        // Add matching item to results, expired items are hidden until they are removed
         Map<String, Object> attributes = SerDeUtils.deserializeAttributes(iterator.value());
 
-        results.add(new Item(new Key(partitionKey, currentSortKey), attributes));
+        if (!tableConfig.isExpired(attributes, now)) {
+          results.add(new Item(new Key(partitionKey, currentSortKey), attributes));
+        }
 
         iterator.next();
       }
     }
-
-    logger.debug(
-        "QueryResults for: {}{}{} limit {} found items: {}",
-        partitionKey,
-        PARTITION_SORT_KEY_SEPARATOR,
-        sortKeyRange,
-        limit,
-        results.size());
-
-    return results;
   }
 
   @Override
   public void deleteItem(String tableName, Key key) throws RocksDBException {
-    ColumnFamilyHandle cfHandle = getOrCreateColumnFamily(tableName);
     byte[] keyBytes = SerDeUtils.serializeKey(key);
-    db.delete(cfHandle, keyBytes);
+    Lock indexesLock = lockIndexes(tableName);
+    Lock partitionLock = null;
+    try {
+      if (!getDerivedData(tableName).isEmpty()) {
+        executeTransaction(txCtx -> txCtx.delete(tableName, key));
+        return;
+      }
+      partitionLock = lockPartition(tableName, key, false);
+      List<ColumnFamilyHandle> cfHandles = getReadColumnFamilies(tableName, key);
+      if (cfHandles.size() == 1) {
+        db.delete(cfHandles.get(0), keyBytes);
+      } else if (cfHandles.size() > 1) {
+        try (WriteBatch writeBatch = new WriteBatch();
+            WriteOptions writeOptions = new WriteOptions()) {
+          for (ColumnFamilyHandle cfHandle : cfHandles) {
+            writeBatch.delete(cfHandle, keyBytes);
+          }
+          db.write(writeOptions, writeBatch);
+        }
+      }
+    } finally {
+      if (partitionLock != null) {
+        partitionLock.unlock();
+      }
+      indexesLock.unlock();
+    }
+    invalidateCaches(tableName, List.of(key));
+    publishChange(tableName, ChangeType.DELETE, key, null);
+
     String storageKey = new String(keyBytes, StandardCharsets.UTF_8);
     logger.debug("Deleted: {}", storageKey);
   }
 
+  @Override
+  public Watch watch(
+      String tableName,
+      String partitionKey,
+      Optional<SortKeyRange> sortKeyRange,
+      Consumer<ChangeEvent> listener) {
+    return watches.watch(tableName, partitionKey, sortKeyRange, listener);
+  }
+
+  @Override
+  public Changes getChanges(long sinceSequenceNumber, int limit, Set<String> tables)
+      throws RocksDBException {
+    Changes changes = changeLog.read(sinceSequenceNumber, limit, tables);
+    logger.debug(
+        "Changes since: {} tables {} limit {} found changes: {} next sequence number: {}",
+        sinceSequenceNumber,
+        tables,
+        limit,
+        changes.changes().size(),
+        changes.nextSequenceNumber());
+    return changes;
+  }
+
+  boolean isWatched(String tableName, String partitionKey) {
+    return watches.isWatched(tableName, partitionKey);
+  }
+
+  // called after the write is committed
+  private void invalidateCaches(String tableName, Collection<Key> keys) {
+    itemCache.invalidateAll(tableName, keys);
+    queryCache.invalidatePartitions(tableName, keys);
+  }
+
+  // called after the write is committed
+  private void publishChange(
+      String tableName, ChangeType type, Key key, Map<String, Object> attributes) {
+    if (watches.isWatched(tableName, key.partitionKey())) {
+      watches.publish(new ChangeEvent(tableName, type, key, attributes));
+    }
+  }
+
   @Override
   public void executeTransaction(TransactionOperations transactionOperations)
       throws RocksDBException {
     Transaction transaction = db.beginTransaction(new WriteOptions());
+    TransactionContext txCtx = new TransactionContext(this, transaction);
     try {
       logger.debug("Executing transaction: {}", transaction.getID());
-      transactionOperations.doInTransaction(new TransactionContext(this, transaction));
+      transactionOperations.doInTransaction(txCtx);
       transaction.commit();
       logger.debug("Transaction committed: {}", transaction.getID());
     } catch (Exception e) {
@@ -254,24 +1057,292 @@ public class RoxDBImpl implements RoxDB {
       throw e;
     } finally {
       transaction.close();
+      txCtx.unlock();
+    }
+    txCtx.getWrittenKeys().forEach(this::invalidateCaches);
+    watches.publish(txCtx.getChanges());
+  }
+
+  @Override
+  public void createIndex(
+      String tableName, IndexDefinition indexDefinition, int backfillItemsPerSecond)
+      throws RocksDBException {
+    if (getTableConfig(tableName).isQueue()) {
+      throw new IllegalArgumentException("Queue table " + tableName + " cannot be indexed");
+    }
+    // dropped time windows would leave their items in index column families
+    if (getTableConfig(tableName).isTimeSeries()) {
+      throw new IllegalArgumentException("Time series table " + tableName + " cannot be indexed");
+    }
+    indexes.createIndex(tableName, indexDefinition, backfillItemsPerSecond);
+  }
+
+  @Override
+  public List<Item> queryIndex(
+      String tableName,
+      String indexName,
+      String partitionKey,
+      int limit,
+      Optional<SortKeyRange> sortKeyRange)
+      throws RocksDBException {
+    List<Item> results = indexes.query(tableName, indexName, partitionKey, limit, sortKeyRange);
+    logger.debug(
+        "QueryResults for index: {} {}{}{} limit {} found items: {}",
+        indexName,
+        partitionKey,
+        PARTITION_SORT_KEY_SEPARATOR,
+        sortKeyRange,
+        limit,
+        results.size());
+    return results;
+  }
+
+  @Override
+  public List<Item> queryGeoIndex(
+      String tableName, String indexName, String partitionKey, int limit, GeoArea area)
+      throws RocksDBException {
+    List<Item> results = indexes.queryGeo(tableName, indexName, partitionKey, limit, area);
+    logger.debug(
+        "QueryResults for geo index: {} {} {} limit {} found items: {}",
+        indexName,
+        partitionKey,
+        area,
+        limit,
+        results.size());
+    return results;
+  }
+
+  @Override
+  public List<Item> queryVectorIndex(
+      String tableName, String indexName, String partitionKey, int limit, float[] vector)
+      throws RocksDBException {
+    List<Item> results = indexes.queryVector(tableName, indexName, partitionKey, limit, vector);
+    logger.debug(
+        "QueryResults for vector index: {} {} limit {} found items: {}",
+        indexName,
+        partitionKey,
+        limit,
+        results.size());
+    return results;
+  }
+
+  @Override
+  public Number getAggregate(String tableName, String partitionKey, String aggregateName)
+      throws RocksDBException {
+    Number value = aggregates.get(tableName, partitionKey, aggregateName);
+    logger.debug(
+        "Aggregate {} of table {} partition {}: {}", aggregateName, tableName, partitionKey, value);
+    return value;
+  }
+
+  boolean isIndexActive(String tableName, String indexName) {
+    return indexes.isActive(tableName, indexName);
+  }
+
+  @Override
+  public Key enqueue(String tableName, String partitionKey, Map<String, Object> attributes)
+      throws RocksDBException {
+    validateQueueTable(tableName);
+    return queues.enqueue(tableName, partitionKey, attributes);
+  }
+
+  @Override
+  public List<Item> dequeue(String tableName, String partitionKey, String consumerGroup, int limit)
+      throws RocksDBException {
+    validateQueueTable(tableName);
+    return queues.dequeue(tableName, partitionKey, consumerGroup, limit);
+  }
+
+  @Override
+  public void ack(String tableName, String partitionKey, String consumerGroup, String sortKey)
+      throws RocksDBException {
+    validateQueueTable(tableName);
+    queues.ack(tableName, partitionKey, consumerGroup, sortKey);
+  }
+
+  // Memtables of tables without writes since the previous run are flushed. WAL files can only be
+  // removed once memtables of all tables holding their writes are flushed, so a rarely written
+  // table would otherwise keep every WAL file written after its last flush for restarts to replay.
+  void runIdleFlush() {
+    try {
+      activeMemTableEntries.keySet().retainAll(columnFamilyHandles);
+      List<ColumnFamilyHandle> idle = new ArrayList<>();
+      for (ColumnFamilyHandle cfHandle : columnFamilyHandles) {
+        long entries = db.getLongProperty(cfHandle, "rocksdb.num-entries-active-mem-table");
+        Long previousEntries = activeMemTableEntries.put(cfHandle, entries);
+        if (entries > 0 && previousEntries != null && previousEntries == entries) {
+          idle.add(cfHandle);
+        }
+      }
+      if (!idle.isEmpty()) {
+        try (FlushOptions flushOptions = new FlushOptions().setWaitForFlush(false)) {
+          db.flush(flushOptions, idle);
+        }
+        logger.info("Flushed memtables of {} idle column families", idle.size());
+      }
+    } catch (RocksDBException | RuntimeException e) {
+      logger.error("Error flushing idle column families", e);
+    }
+  }
+
+  @Override
+  public void flush() throws RocksDBException {
+    long start = System.nanoTime();
+    try (FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true)) {
+      db.flush(flushOptions, columnFamilyHandles);
+    }
+    logger.info(
+        "Flushed memtables of {} column families in {} ms",
+        columnFamilyHandles.size(),
+        millisSince(start));
+  }
+
+  @Override
+  public StartupStats getStartupStats() {
+    return startupStats;
+  }
+
+  private static long millisSince(long startNanos) {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+  }
+
+  private void runExpiry() {
+    try {
+      expireItems();
+    } catch (Exception e) {
+      logger.error("Error removing expired items", e);
+    }
+  }
+
+  // Removes expired items from all tables which have TTL attribute configured.
+  // Expired items are already hidden from reads, deleting them lets compaction drop them from disk.
+  // Only entries of the expiry column family which already expired are read, tables are not
+  // scanned.
+  void expireItems() throws RocksDBException {
+    for (Map.Entry<String, TableConfig> entry : tablesConfig.tables().entrySet()) {
+      String tableName = entry.getKey();
+      TableConfig tableConfig = entry.getValue();
+      if (!tableConfig.hasTtl() || tableConfig.isTimeSeries()) {
+        continue;
+      }
+
+      long now = Instant.now().getEpochSecond();
+      int expiredCount = 0;
+      List<Expiry.Entry> expired = expiry.expired(tableName, now, null, EXPIRY_BATCH_SIZE);
+      while (!expired.isEmpty()) {
+        expiredCount += deleteExpiredItems(tableName, expired, now);
+        expired = expiry.expired(tableName, now, expired.getLast(), EXPIRY_BATCH_SIZE);
+      }
+
+      if (expiredCount > 0) {
+        logger.info("Removed {} expired items from table {}", expiredCount, tableName);
+      }
+    }
+  }
+
+  private int deleteExpiredItems(String tableName, List<Expiry.Entry> entries, long now)
+      throws RocksDBException {
+    // expiry is re-checked inside transaction so that items refreshed in the meantime are kept
+    int[] deleted = new int[1];
+    executeTransaction(
+        (txCtx) -> {
+          for (Expiry.Entry entry : entries) {
+            if (txCtx.deleteIfExpired(tableName, entry, now)) {
+              deleted[0]++;
+            }
+          }
+        });
+    return deleted[0];
+  }
+
+  private void runRetention() {
+    try {
+      dropExpiredTimeWindows();
+    } catch (Exception e) {
+      logger.error("Error dropping expired time windows", e);
+    }
+  }
+
+  // Drops whole time windows which fall out of retention instead of deleting items one by one
+  void dropExpiredTimeWindows() throws RocksDBException {
+    for (Map.Entry<String, TableConfig> entry : tablesConfig.tables().entrySet()) {
+      String tableName = entry.getKey();
+      TableConfig tableConfig = entry.getValue();
+      if (!tableConfig.isTimeSeries() || !tableConfig.timeSeries().hasRetention()) {
+        continue;
+      }
+
+      TimeWindow window = tableConfig.timeSeries().window();
+      Instant oldestRetainedWindow =
+          window
+              .windowStart(Instant.now())
+              .minus(
+                  window.duration().multipliedBy(tableConfig.timeSeries().retentionWindows() - 1));
+
+      for (String cfName : List.copyOf(columnFamilies.keySet())) {
+        if (!ColumnFamilyNames.tableName(cfName).equals(tableName)) {
+          continue;
+        }
+        Optional<Instant> windowStart = ColumnFamilyNames.windowStart(cfName);
+        if (windowStart.isPresent() && windowStart.get().isBefore(oldestRetainedWindow)) {
+          synchronized (columnFamilies) {
+            // handle stays open until the database is closed as it may still be used by readers
+            ColumnFamilyHandle cfHandle = columnFamilies.remove(cfName);
+            db.dropColumnFamily(cfHandle);
+            columnFamilyHandles.remove(cfHandle);
+            droppedColumnFamilyHandles.add(cfHandle);
+          }
+          itemCache.invalidateTable(tableName);
+          queryCache.invalidateAll();
+          logger.info("Dropped time window {} of table {}", windowStart.get(), tableName);
+        }
+      }
     }
   }
 
   @Override
   public void close() {
     logger.info("Closing RocksDB instance");
+    // Stop warm up, waits for its read in flight
+    synchronized (warmUpLock) {
+      closing = true;
+    }
+    // Stop background maintenance before closing handles
+    maintenanceExecutor.shutdownNow();
+    try {
+      if (!maintenanceExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+        logger.warn("Background maintenance did not terminate in 30 seconds");
+      }
+    } catch (InterruptedException e) {
+      logger.error("Interrupted while waiting for background maintenance to terminate", e);
+      Thread.currentThread().interrupt();
+    }
+    indexes.close();
     // Close all column family handles
     for (ColumnFamilyHandle handle : columnFamilyHandles) {
       handle.close();
     }
+    for (ColumnFamilyHandle handle : droppedColumnFamilyHandles) {
+      handle.close();
+    }
+    // Close column family options
+    columnFamilyOptions.close();
+    for (ColumnFamilyOptions options : timeWindowColumnFamilyOptions.values()) {
+      CompactionOptionsFIFO compactionOptionsFIFO = options.compactionOptionsFIFO();
+      options.close();
+      compactionOptionsFIFO.close();
+    }
     // Close DB options
     dbOptions.close();
     // Close transaction DB options
     transactionDbOptions.close();
     // Close statistics
     statistics.close();
+    cacheOnlyReadOptions.close();
     // Close the database
     db.close();
+    // Close block cache once no table reader uses it
+    blockCache.close();
     logger.info("RocksDB instance closed successfully");
   }
 }
@@ -0,0 +1,7 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+// Secondary indexes are stored in their own column families and are updated in the same
+// transaction as the base table item
+interface SecondaryIndex extends DerivedData {
+  IndexDefinition definition();
+}
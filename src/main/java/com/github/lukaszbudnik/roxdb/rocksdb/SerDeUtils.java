@@ -6,29 +6,41 @@ import com.esotericsoftware.kryo.io.Output;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import org.slf4j.Logger;
 
 public class SerDeUtils {
-  private static final Kryo kryo;
+  // Kryo instances are not thread safe, items are serialized from request and background threads
+  private static final ThreadLocal<Kryo> kryo =
+      ThreadLocal.withInitial(
+          () -> {
+            Kryo kryo = new Kryo();
+            kryo.register(HashMap.class);
+            // list attributes, for example vectors
+            kryo.register(ArrayList.class);
+            return kryo;
+          });
   private static final Logger logger = org.slf4j.LoggerFactory.getLogger(SerDeUtils.class);
 
-  static {
-    kryo = new Kryo();
-    kryo.register(HashMap.class);
-  }
-
   public static byte[] serializeKey(Key key) {
     String storageKey = key.partitionKey() + RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR + key.sortKey();
     return storageKey.getBytes(StandardCharsets.UTF_8);
   }
 
+  public static Key deserializeKey(byte[] key) {
+    String storageKey = new String(key, StandardCharsets.UTF_8);
+    int separatorIndex = storageKey.indexOf(RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR);
+    return new Key(
+        storageKey.substring(0, separatorIndex), storageKey.substring(separatorIndex + 1));
+  }
+
   public static byte[] serializeAttributes(Item item) {
     byte[] value = null;
     try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
         Output output = new Output(baos)) {
-      kryo.writeObject(output, item.attributes());
+      kryo.get().writeObject(output, item.attributes());
       // needs explicit flush
       output.flush();
       value = baos.toByteArray();
@@ -44,7 +56,7 @@ public class SerDeUtils {
   public static Map<String, Object> deserializeAttributes(byte[] value) {
     Map<String, Object> attributes = null;
     try (Input input = new Input(value)) {
-      attributes = kryo.readObject(input, HashMap.class);
+      attributes = kryo.get().readObject(input, HashMap.class);
     }
     return attributes;
   }
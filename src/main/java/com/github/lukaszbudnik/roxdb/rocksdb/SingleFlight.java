@@ -0,0 +1,70 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import org.rocksdb.RocksDBException;
+
+// Coalesces concurrent loads of the same key into one, callers arriving while a load is in flight
+// wait for it and share its result (or exception) instead of reading RocksDB again. Writers forget
+// keys they wrote after the write is committed, so callers arriving after the write start a new
+// load and never get a result read before it. Results are shared and must not be modified.
+class SingleFlight<K, V> {
+  interface Loader<V> {
+    V load() throws RocksDBException;
+  }
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+  private final LongAdder coalescedCount = new LongAdder();
+
+  V load(K key, Loader<V> loader) throws RocksDBException {
+    CompletableFuture<V> flight = new CompletableFuture<>();
+    CompletableFuture<V> inFlight = flights.putIfAbsent(key, flight);
+    if (inFlight != null) {
+      coalescedCount.increment();
+      return join(inFlight);
+    }
+    try {
+      V value = loader.load();
+      flight.complete(value);
+      return value;
+    } catch (Throwable t) {
+      flight.completeExceptionally(t);
+      throw t;
+    } finally {
+      // a newer flight started after the key was forgotten is left in place
+      flights.remove(key, flight);
+    }
+  }
+
+  void forget(K key) {
+    flights.remove(key);
+  }
+
+  void forgetIf(Predicate<K> predicate) {
+    flights.keySet().removeIf(predicate);
+  }
+
+  long coalescedCount() {
+    return coalescedCount.sum();
+  }
+
+  private static <V> V join(CompletableFuture<V> flight) throws RocksDBException {
+    try {
+      return flight.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RocksDBException rocksDBException) {
+        throw rocksDBException;
+      }
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      if (e.getCause() instanceof Error error) {
+        throw error;
+      }
+      throw e;
+    }
+  }
+}
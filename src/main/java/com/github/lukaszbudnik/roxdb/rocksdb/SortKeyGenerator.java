@@ -0,0 +1,65 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.util.Random;
+
+// Generates ULID sort keys: 48 bit millisecond timestamp followed by 80 random bits encoded as 26
+// Crockford base32 characters. Generated keys are strictly increasing, within the same millisecond
+// (or when the clock goes backwards) the random part of the previous key is incremented.
+class SortKeyGenerator {
+  private static final char[] ENCODING = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+  private static final int LENGTH = 26;
+  private static final long RANDOM_HIGH_MASK = 0xFFFFL;
+
+  private final Clock clock;
+  private final Random random;
+  private long lastTimestamp = -1;
+  // 80 random bits split into high 16 bits and low 64 bits
+  private long randomHigh;
+  private long randomLow;
+
+  SortKeyGenerator() {
+    this(Clock.systemUTC(), new SecureRandom());
+  }
+
+  SortKeyGenerator(Clock clock, Random random) {
+    this.clock = clock;
+    this.random = random;
+  }
+
+  synchronized String next() {
+    long timestamp = clock.millis();
+    if (timestamp > lastTimestamp) {
+      lastTimestamp = timestamp;
+      randomHigh = random.nextLong() & RANDOM_HIGH_MASK;
+      randomLow = random.nextLong();
+    } else {
+      randomLow++;
+      if (randomLow == 0) {
+        randomHigh = (randomHigh + 1) & RANDOM_HIGH_MASK;
+        if (randomHigh == 0) {
+          // random part overflowed, borrow the next millisecond
+          lastTimestamp++;
+        }
+      }
+    }
+    return encode(lastTimestamp, randomHigh, randomLow);
+  }
+
+  static String encode(long timestamp, long randomHigh, long randomLow) {
+    char[] chars = new char[LENGTH];
+    // timestamp: 10 characters, 50 bits of which the top 2 are always 0
+    for (int i = 9; i >= 0; i--) {
+      chars[i] = ENCODING[(int) (timestamp & 0x1F)];
+      timestamp >>>= 5;
+    }
+    // randomness: 16 characters, 80 bits
+    for (int i = LENGTH - 1; i >= 10; i--) {
+      chars[i] = ENCODING[(int) (randomLow & 0x1F)];
+      randomLow = (randomLow >>> 5) | ((randomHigh & 0x1F) << 59);
+      randomHigh >>>= 5;
+    }
+    return new String(chars);
+  }
+}
@@ -14,4 +14,23 @@ public record SortKeyRange(Optional<RangeBoundary> start, Optional<RangeBoundary
   public static SortKeyRange to(RangeBoundary end) {
     return new SortKeyRange(Optional.empty(), Optional.of(end));
   }
+
+  public boolean contains(String sortKey) {
+    boolean afterStart =
+        start
+            .map(
+                boundary -> {
+                  int compared = sortKey.compareTo(boundary.value());
+                  return boundary.type() == RangeType.INCLUSIVE ? compared >= 0 : compared > 0;
+                })
+            .orElse(true);
+    boolean beforeEnd =
+        end.map(
+                boundary -> {
+                  int compared = sortKey.compareTo(boundary.value());
+                  return boundary.type() == RangeType.INCLUSIVE ? compared <= 0 : compared < 0;
+                })
+            .orElse(true);
+    return afterStart && beforeEnd;
+  }
 }
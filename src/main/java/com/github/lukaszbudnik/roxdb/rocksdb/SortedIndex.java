@@ -0,0 +1,183 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import static com.github.lukaszbudnik.roxdb.rocksdb.RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.rocksdb.*;
+
+// Index entries are keyed by partition value, sort value and base item key so that every base item
+// has at most one entry and entries of an index partition are ordered by sort value
+abstract class SortedIndex implements SecondaryIndex {
+  protected final String tableName;
+  protected final IndexDefinition definition;
+  private final RoxDBImpl roxDB;
+  private final TransactionDB db;
+  private final ColumnFamilyHandle cfHandle;
+
+  SortedIndex(
+      String tableName,
+      IndexDefinition definition,
+      RoxDBImpl roxDB,
+      TransactionDB db,
+      ColumnFamilyHandle cfHandle) {
+    this.tableName = tableName;
+    this.definition = definition;
+    this.roxDB = roxDB;
+    this.db = db;
+    this.cfHandle = cfHandle;
+  }
+
+  @Override
+  public IndexDefinition definition() {
+    return definition;
+  }
+
+  @Override
+  public void update(
+      Transaction transaction,
+      Key key,
+      Map<String, Object> oldAttributes,
+      Map<String, Object> newAttributes)
+      throws RocksDBException {
+    byte[] oldEntryKey = entryKey(key, oldAttributes);
+    byte[] newEntryKey = entryKey(key, newAttributes);
+    if (oldEntryKey != null && !Arrays.equals(oldEntryKey, newEntryKey)) {
+      transaction.delete(cfHandle, oldEntryKey);
+    }
+    if (newEntryKey != null) {
+      transaction.put(cfHandle, newEntryKey, entryValue(key, newAttributes));
+    }
+  }
+
+  // index partition of the item, null when item is not indexed
+  protected abstract String partitionValue(Key key, Map<String, Object> attributes);
+
+  // part of the entry key which identifies the base item within index partition and sort value
+  protected abstract String baseKeySuffix(Key key);
+
+  protected abstract Key baseKey(String partitionValue, String baseKeySuffix);
+
+  // index partitions of the queried partition value, encoded the same way as by writes
+  protected abstract List<String> encodePartitionValue(String partitionValue);
+
+  // items without partition attribute (or sort attribute when it is defined) are not indexed
+  private byte[] entryKey(Key key, Map<String, Object> attributes) {
+    if (attributes == null) {
+      return null;
+    }
+    String partitionValue = partitionValue(key, attributes);
+    String sortValue =
+        definition.sortAttribute() == null
+            ? ""
+            : IndexValues.encode(
+                definition.sortAttribute(), attributes.get(definition.sortAttribute()));
+    if (partitionValue == null || sortValue == null) {
+      return null;
+    }
+    String entryKey =
+        partitionValue
+            + PARTITION_SORT_KEY_SEPARATOR
+            + sortValue
+            + PARTITION_SORT_KEY_SEPARATOR
+            + baseKeySuffix(key);
+    return entryKey.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private byte[] entryValue(Key key, Map<String, Object> attributes) {
+    Map<String, Object> projected = new HashMap<>();
+    if (definition.hasProjection()) {
+      List<String> projectedAttributes = new ArrayList<>(definition.projectedAttributes());
+      if (definition.partitionAttribute() != null) {
+        projectedAttributes.add(definition.partitionAttribute());
+      }
+      if (definition.sortAttribute() != null) {
+        projectedAttributes.add(definition.sortAttribute());
+      }
+      // TTL attribute is needed to hide expired items without reading the base table
+      TableConfig tableConfig = roxDB.getTableConfig(tableName);
+      if (tableConfig.hasTtl()) {
+        projectedAttributes.add(tableConfig.ttlAttribute());
+      }
+      for (String attribute : projectedAttributes) {
+        if (attributes.containsKey(attribute)) {
+          projected.put(attribute, attributes.get(attribute));
+        }
+      }
+    }
+    return SerDeUtils.serializeAttributes(new Item(key, projected));
+  }
+
+  private record Entry(String sortValue, Item item) {}
+
+  // entries of every index partition are ordered by sort value, partitions are merged
+  List<Item> query(String partitionValue, int limit, Optional<SortKeyRange> sortKeyRange)
+      throws RocksDBException {
+    // entries of indexes without sort attribute have empty sort values
+    List<IndexValues.Range> ranges =
+        definition.sortAttribute() == null
+            ? List.of(new IndexValues.Range("", false, null, false))
+            : IndexValues.encodeRange(
+                sortKeyRange.flatMap(SortKeyRange::start), sortKeyRange.flatMap(SortKeyRange::end));
+    List<List<Entry>> partitions = new ArrayList<>();
+    for (String encodedPartitionValue : encodePartitionValue(partitionValue)) {
+      List<Entry> entries = new ArrayList<>();
+      for (IndexValues.Range range : ranges) {
+        scan(encodedPartitionValue, range, limit, entries);
+      }
+      partitions.add(entries);
+    }
+    return SortedMerge.merge(partitions, Comparator.comparing(Entry::sortValue), limit).stream()
+        .map(Entry::item)
+        .toList();
+  }
+
+  private void scan(String partitionValue, IndexValues.Range range, int limit, List<Entry> entries)
+      throws RocksDBException {
+    TableConfig tableConfig = roxDB.getTableConfig(tableName);
+    long now = Instant.now().getEpochSecond();
+    String partitionPrefix = partitionValue + PARTITION_SORT_KEY_SEPARATOR;
+    try (RocksIterator iterator = db.newIterator(cfHandle)) {
+      for (iterator.seek((partitionPrefix + range.start()).getBytes(StandardCharsets.UTF_8));
+          iterator.isValid() && entries.size() < limit;
+          iterator.next()) {
+        String entryKey = new String(iterator.key(), StandardCharsets.UTF_8);
+        if (!entryKey.startsWith(partitionPrefix)) {
+          break;
+        }
+        // sort value followed by base key suffix
+        String[] parts =
+            entryKey
+                .substring(partitionPrefix.length())
+                .split(String.valueOf(PARTITION_SORT_KEY_SEPARATOR), 2);
+        String sortValue = parts[0];
+        if (range.excludes(sortValue)) {
+          continue;
+        }
+        if (range.endsBefore(sortValue)) {
+          break;
+        }
+
+        Key baseKey = baseKey(partitionValue, parts[1]);
+        if (definition.hasProjection()) {
+          Map<String, Object> attributes = SerDeUtils.deserializeAttributes(iterator.value());
+          if (!tableConfig.isExpired(attributes, now)) {
+            entries.add(new Entry(sortValue, new Item(baseKey, attributes)));
+          }
+        } else {
+          Item item = roxDB.getItem(tableName, baseKey);
+          if (item != null) {
+            entries.add(new Entry(sortValue, item));
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// K-way merge of already sorted lists using a heap of list heads, stops once limit is reached
+class SortedMerge {
+
+  private record Head<T>(T value, int source, int index) {}
+
+  static <T> List<T> merge(List<List<T>> sources, Comparator<T> comparator, int limit) {
+    PriorityQueue<Head<T>> heads =
+        new PriorityQueue<>(
+            Math.max(1, sources.size()),
+            Comparator.comparing((Head<T> head) -> head.value(), comparator)
+                .thenComparingInt(Head::source));
+    for (int source = 0; source < sources.size(); source++) {
+      if (!sources.get(source).isEmpty()) {
+        heads.add(new Head<>(sources.get(source).get(0), source, 0));
+      }
+    }
+
+    List<T> results = new ArrayList<>();
+    while (!heads.isEmpty() && results.size() < limit) {
+      Head<T> head = heads.poll();
+      results.add(head.value());
+      List<T> source = sources.get(head.source());
+      int next = head.index() + 1;
+      if (next < source.size()) {
+        heads.add(new Head<>(source.get(next), head.source(), next));
+      }
+    }
+    return results;
+  }
+}
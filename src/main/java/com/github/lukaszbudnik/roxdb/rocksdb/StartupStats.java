@@ -0,0 +1,11 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+// Durations of database startup phases. WAL replay runs inside RocksDB open, which does not report
+// its duration separately, so the number and size of WAL files found at open are recorded with it.
+// Derived data (queues, hot partitions, indexes, aggregates and change log) is loaded after open.
+public record StartupStats(
+    long columnFamilyDiscoveryMillis,
+    long openMillis,
+    long walReplayFiles,
+    long walReplayBytes,
+    long derivedDataMillis) {}
@@ -0,0 +1,87 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+// Database wide storage settings. WAL files are kept for walTtlSeconds and up to walSizeLimitMb
+// after their changes are flushed so that GetChanges can read older changes, 0 disables the limit
+// and when both are 0 WAL files are removed as soon as they are no longer needed for recovery.
+// Decoded items read by GetItem are cached up to itemCacheSizeBytes and results of Query up to
+// queryCacheSizeBytes, 0 disables the cache. Blocks of SST files of all tables are cached in a
+// single block cache of blockCacheSizeBytes, blocks evicted from it are kept compressed in up to
+// secondaryCacheSizeBytes of files under secondaryCachePath (0 disables the secondary tier).
+// Memtables of all tables are charged to the block cache and limited to writeBufferManagerSizeBytes
+// (0 leaves memtables unbounded by the cache), see MemoryBudget. Flushes and compactions run in
+// up to backgroundJobs threads, 0 keeps RocksDB default. Memtables of tables without writes for
+// idleFlushSeconds are flushed so that they do not hold old WAL files, 0 disables idle flushes.
+public record StorageOptions(
+    long walTtlSeconds,
+    long walSizeLimitMb,
+    long itemCacheSizeBytes,
+    long queryCacheSizeBytes,
+    long blockCacheSizeBytes,
+    BlockCacheType blockCacheType,
+    String secondaryCachePath,
+    long secondaryCacheSizeBytes,
+    long writeBufferManagerSizeBytes,
+    int backgroundJobs,
+    long idleFlushSeconds) {
+  public static final long DEFAULT_ITEM_CACHE_SIZE_BYTES = 64L * 1024 * 1024;
+  public static final long DEFAULT_QUERY_CACHE_SIZE_BYTES = 32L * 1024 * 1024;
+  public static final long DEFAULT_BLOCK_CACHE_SIZE_BYTES = 256L * 1024 * 1024;
+  // RocksDB persistent cache needs room for at least one of its 100 MB cache files
+  public static final long MIN_SECONDARY_CACHE_SIZE_BYTES = 100L * 1024 * 1024;
+  public static final long DEFAULT_IDLE_FLUSH_SECONDS = 300;
+  public static final StorageOptions DEFAULT =
+      new StorageOptions(
+          0,
+          0,
+          DEFAULT_ITEM_CACHE_SIZE_BYTES,
+          DEFAULT_QUERY_CACHE_SIZE_BYTES,
+          DEFAULT_BLOCK_CACHE_SIZE_BYTES,
+          BlockCacheType.LRU,
+          null,
+          0,
+          0,
+          0,
+          DEFAULT_IDLE_FLUSH_SECONDS);
+
+  public StorageOptions {
+    if (walTtlSeconds < 0) {
+      throw new IllegalArgumentException("WAL TTL seconds cannot be negative");
+    }
+    if (walSizeLimitMb < 0) {
+      throw new IllegalArgumentException("WAL size limit cannot be negative");
+    }
+    if (itemCacheSizeBytes < 0) {
+      throw new IllegalArgumentException("Item cache size cannot be negative");
+    }
+    if (queryCacheSizeBytes < 0) {
+      throw new IllegalArgumentException("Query cache size cannot be negative");
+    }
+    if (blockCacheSizeBytes <= 0) {
+      throw new IllegalArgumentException("Block cache size must be greater than 0");
+    }
+    if (blockCacheType == null) {
+      throw new IllegalArgumentException("Block cache type cannot be null");
+    }
+    if (secondaryCacheSizeBytes < 0) {
+      throw new IllegalArgumentException("Secondary cache size cannot be negative");
+    }
+    if (secondaryCacheSizeBytes > 0 && secondaryCacheSizeBytes < MIN_SECONDARY_CACHE_SIZE_BYTES) {
+      throw new IllegalArgumentException(
+          "Secondary cache size must be at least " + MIN_SECONDARY_CACHE_SIZE_BYTES + " bytes");
+    }
+    if (secondaryCacheSizeBytes > 0
+        && (secondaryCachePath == null || secondaryCachePath.isBlank())) {
+      throw new IllegalArgumentException("Secondary cache path is required");
+    }
+    if (writeBufferManagerSizeBytes < 0 || writeBufferManagerSizeBytes >= blockCacheSizeBytes) {
+      throw new IllegalArgumentException(
+          "Write buffer manager size must be between 0 and block cache size");
+    }
+    if (backgroundJobs < 0) {
+      throw new IllegalArgumentException("Background jobs cannot be negative");
+    }
+    if (idleFlushSeconds < 0) {
+      throw new IllegalArgumentException("Idle flush seconds cannot be negative");
+    }
+  }
+}
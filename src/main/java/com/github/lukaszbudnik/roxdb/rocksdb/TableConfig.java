@@ -0,0 +1,73 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public record TableConfig(
+    TableType type,
+    String ttlAttribute,
+    TimeSeriesConfig timeSeries,
+    HotPartitionsConfig hotPartitions,
+    List<AggregateConfig> aggregates) {
+  public static final TableConfig DEFAULT =
+      new TableConfig(TableType.STANDARD, null, null, null, null);
+
+  public TableConfig {
+    if (type == null) {
+      type = TableType.STANDARD;
+    }
+    if (type == TableType.TIME_SERIES && timeSeries == null) {
+      timeSeries = new TimeSeriesConfig(TimeWindow.DAILY, 0, false, 0, null);
+    }
+    if (type != TableType.STANDARD && hotPartitions != null) {
+      throw new IllegalArgumentException("Hot partitions are supported only by standard tables");
+    }
+    aggregates = aggregates == null ? List.of() : List.copyOf(aggregates);
+    // time series windows are dropped as a whole and queue messages are removed by offset
+    if (type != TableType.STANDARD && !aggregates.isEmpty()) {
+      throw new IllegalArgumentException("Aggregates are supported only by standard tables");
+    }
+    Set<String> aggregateNames = new HashSet<>();
+    for (AggregateConfig aggregate : aggregates) {
+      if (!aggregateNames.add(aggregate.name())) {
+        throw new IllegalArgumentException("Duplicate aggregate name: " + aggregate.name());
+      }
+    }
+  }
+
+  public boolean hasTtl() {
+    return ttlAttribute != null && !ttlAttribute.isBlank();
+  }
+
+  public boolean isTimeSeries() {
+    return type == TableType.TIME_SERIES;
+  }
+
+  public boolean isQueue() {
+    return type == TableType.QUEUE;
+  }
+
+  public boolean hasHotPartitions() {
+    return hotPartitions != null;
+  }
+
+  public boolean hasAggregates() {
+    return !aggregates.isEmpty();
+  }
+
+  // TTL attribute holds expiry time as epoch seconds, items without a numeric TTL never expire
+  public boolean isExpired(Map<String, Object> attributes, long nowEpochSeconds) {
+    Long expiresAt = expiresAt(attributes);
+    return expiresAt != null && expiresAt <= nowEpochSeconds;
+  }
+
+  // returns null when table has no TTL or item does not expire
+  public Long expiresAt(Map<String, Object> attributes) {
+    if (!hasTtl() || attributes == null) {
+      return null;
+    }
+    return attributes.get(ttlAttribute) instanceof Number expiresAt ? expiresAt.longValue() : null;
+  }
+}
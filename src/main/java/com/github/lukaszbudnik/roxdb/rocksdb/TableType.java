@@ -0,0 +1,7 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+public enum TableType {
+  STANDARD,
+  TIME_SERIES,
+  QUEUE
+}
@@ -0,0 +1,17 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.Map;
+
+public record TablesConfig(Map<String, TableConfig> tables) {
+  public static final TablesConfig EMPTY = new TablesConfig(Map.of());
+
+  public TablesConfig {
+    if (tables == null) {
+      tables = Map.of();
+    }
+  }
+
+  public TableConfig getTableConfig(String tableName) {
+    return tables.getOrDefault(tableName, TableConfig.DEFAULT);
+  }
+}
@@ -0,0 +1,24 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TablesConfigReader {
+  private static final Logger logger = LoggerFactory.getLogger(TablesConfigReader.class);
+  private static final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+
+  public TablesConfig readConfig(String yamlFile) {
+    try {
+      String configContent = Files.readString(Path.of(yamlFile));
+      return mapper.readValue(configContent, TablesConfig.class);
+    } catch (IOException e) {
+      logger.warn("Failed to read tables config", e);
+      throw new IllegalArgumentException(e);
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+public record TimeSeriesConfig(
+    TimeWindow window,
+    int retentionWindows,
+    boolean fifoCompaction,
+    long fifoMaxTableFilesSize,
+    TimestampPrecision precision) {
+
+  public TimeSeriesConfig {
+    if (window == null) {
+      window = TimeWindow.DAILY;
+    }
+    if (precision == null) {
+      precision = TimestampPrecision.SECONDS;
+    }
+  }
+
+  // retention is expressed as number of most recent windows to keep, 0 keeps all windows
+  public boolean hasRetention() {
+    return retentionWindows > 0;
+  }
+}
@@ -0,0 +1,24 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+public enum TimeWindow {
+  HOURLY(ChronoUnit.HOURS),
+  DAILY(ChronoUnit.DAYS);
+
+  private final ChronoUnit unit;
+
+  TimeWindow(ChronoUnit unit) {
+    this.unit = unit;
+  }
+
+  public Duration duration() {
+    return unit.getDuration();
+  }
+
+  public Instant windowStart(Instant timestamp) {
+    return timestamp.truncatedTo(unit);
+  }
+}
@@ -0,0 +1,24 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+
+// Time series sort keys are UTC timestamps with a fixed number of fractional digits, keys of
+// different lengths would not sort chronologically (10:00:00.5Z sorts before 10:00:00Z)
+public enum TimestampPrecision {
+  SECONDS(0),
+  MILLISECONDS(3),
+  MICROSECONDS(6),
+  NANOSECONDS(9);
+
+  private final DateTimeFormatter formatter;
+
+  TimestampPrecision(int fractionalDigits) {
+    this.formatter = new DateTimeFormatterBuilder().appendInstant(fractionalDigits).toFormatter();
+  }
+
+  public String format(Instant timestamp) {
+    return formatter.format(timestamp);
+  }
+}
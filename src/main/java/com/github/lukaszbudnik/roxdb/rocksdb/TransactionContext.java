@@ -1,7 +1,12 @@
 package com.github.lukaszbudnik.roxdb.rocksdb;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.Transaction;
@@ -10,17 +15,45 @@ import org.slf4j.Logger;
 public class TransactionContext {
   private final Logger logger = org.slf4j.LoggerFactory.getLogger(TransactionContext.class);
   private final Transaction transaction;
-  private final RoxDB roxDB;
+  private final RoxDBImpl roxDB;
+  // changes of watched partitions, published once the transaction is committed
+  private final List<ChangeEvent> changes = new ArrayList<>();
+  // keys of written items by table, invalidated in item cache once the transaction is committed
+  private final Map<String, List<Key>> writtenKeys = new HashMap<>();
+  // locks of written tables and of written partitions of tables with hot partitions, released
+  // when the transaction ends
+  private final List<Lock> locks = new ArrayList<>();
 
-  public TransactionContext(RoxDB roxDB, Transaction transaction) {
+  public TransactionContext(RoxDBImpl roxDB, Transaction transaction) {
     this.transaction = transaction;
     this.roxDB = roxDB;
   }
 
   public void put(String tableName, Item item) throws RocksDBException {
+    roxDB.validateDirectWrite(tableName);
+    hold(roxDB.lockIndexes(tableName));
+    hold(roxDB.lockPartition(tableName, item.key(), true));
     byte[] key = SerDeUtils.serializeKey(item.key());
     byte[] value = SerDeUtils.serializeAttributes(item);
-    transaction.put(roxDB.getOrCreateColumnFamily(tableName), key, value);
+    List<DerivedData> derivedData = roxDB.getDerivedData(tableName);
+    Map<String, Object> previousAttributes =
+        getPreviousAttributes(tableName, item.key(), derivedData);
+    ColumnFamilyHandle cfHandle = roxDB.getWriteColumnFamily(tableName, item.key());
+    // item written to a shard of a hot partition is removed from the table column family, only
+    // items still stored there are deleted so that shard writes do not add tombstones
+    for (ColumnFamilyHandle previousHandle : roxDB.getReadColumnFamilies(tableName, item.key())) {
+      if (previousHandle != cfHandle && exists(previousHandle, key)) {
+        transaction.delete(previousHandle, key);
+      }
+    }
+    transaction.put(cfHandle, key, value);
+    writtenKeys.computeIfAbsent(tableName, t -> new ArrayList<>()).add(item.key());
+    for (DerivedData data : derivedData) {
+      data.update(transaction, item.key(), previousAttributes, item.attributes());
+    }
+    if (roxDB.isWatched(tableName, item.key().partitionKey())) {
+      changes.add(new ChangeEvent(tableName, ChangeType.PUT, item.key(), item.attributes()));
+    }
     String storageKey = new String(key, java.nio.charset.StandardCharsets.UTF_8);
     logger.debug("Transaction {} put: {}", transaction.getID(), storageKey);
   }
@@ -47,7 +80,20 @@ public class TransactionContext {
   public void delete(String tableName, Key key) throws RocksDBException {
     byte[] keyBytes = SerDeUtils.serializeKey(key);
     String storageKey = new String(keyBytes, java.nio.charset.StandardCharsets.UTF_8);
-    transaction.delete(roxDB.getOrCreateColumnFamily(tableName), keyBytes);
+    hold(roxDB.lockIndexes(tableName));
+    hold(roxDB.lockPartition(tableName, key, false));
+    List<DerivedData> derivedData = roxDB.getDerivedData(tableName);
+    Map<String, Object> previousAttributes = getPreviousAttributes(tableName, key, derivedData);
+    for (ColumnFamilyHandle cfHandle : roxDB.getReadColumnFamilies(tableName, key)) {
+      transaction.delete(cfHandle, keyBytes);
+    }
+    writtenKeys.computeIfAbsent(tableName, t -> new ArrayList<>()).add(key);
+    for (DerivedData data : derivedData) {
+      data.update(transaction, key, previousAttributes, null);
+    }
+    if (roxDB.isWatched(tableName, key.partitionKey())) {
+      changes.add(new ChangeEvent(tableName, ChangeType.DELETE, key, null));
+    }
     logger.debug("Transaction {} delete: {}", transaction.getID(), storageKey);
   }
 
@@ -55,9 +101,7 @@ public class TransactionContext {
   public Item get(String tableName, Key key) throws RocksDBException {
     byte[] keyBytes = SerDeUtils.serializeKey(key);
     String storageKey = new String(keyBytes, java.nio.charset.StandardCharsets.UTF_8);
-    byte[] value =
-        transaction.getForUpdate(
-            new ReadOptions(), roxDB.getOrCreateColumnFamily(tableName), keyBytes, false);
+    byte[] value = getForUpdate(tableName, key, keyBytes, false);
 
     if (value == null) {
       logger.debug("Transaction {} item not found: {}", transaction.getID(), storageKey);
@@ -66,8 +110,91 @@ public class TransactionContext {
 
     // Convert bytes to Map
     Map<String, Object> attributes = SerDeUtils.deserializeAttributes(value);
+    if (roxDB.getTableConfig(tableName).isExpired(attributes, Instant.now().getEpochSecond())) {
+      logger.debug("Transaction {} item expired: {}", transaction.getID(), storageKey);
+      return null;
+    }
     Item item = new Item(key, attributes);
     logger.debug("Transaction {} item found: {}", transaction.getID(), storageKey);
     return item;
   }
+
+  // deletes item only if it is still expired, used by background expiry. Items refreshed in the
+  // meantime moved their expiry entry, entries of items removed without a write (acknowledged
+  // messages) are removed here.
+  boolean deleteIfExpired(String tableName, Expiry.Entry entry, long nowEpochSeconds)
+      throws RocksDBException {
+    Key key = entry.key();
+    byte[] keyBytes = SerDeUtils.serializeKey(key);
+    byte[] value = getForUpdate(tableName, key, keyBytes, true);
+    if (value == null
+        || !roxDB
+            .getTableConfig(tableName)
+            .isExpired(SerDeUtils.deserializeAttributes(value), nowEpochSeconds)) {
+      transaction.delete(
+          roxDB.getOrCreateColumnFamily(ColumnFamilyNames.expiry(tableName)), entry.entryKey());
+      return false;
+    }
+    delete(tableName, key);
+    return true;
+  }
+
+  List<ChangeEvent> getChanges() {
+    return changes;
+  }
+
+  Map<String, List<Key>> getWrittenKeys() {
+    return writtenKeys;
+  }
+
+  private void hold(Lock lock) {
+    if (lock != null) {
+      locks.add(lock);
+    }
+  }
+
+  void unlock() {
+    locks.forEach(Lock::unlock);
+    locks.clear();
+  }
+
+  // (re)creates derived data of an existing item, used by index backfill and aggregates rebuild
+  boolean reindex(String tableName, Key key, DerivedData derivedData) throws RocksDBException {
+    byte[] value = getForUpdate(tableName, key, SerDeUtils.serializeKey(key), true);
+    if (value == null) {
+      return false;
+    }
+    derivedData.update(transaction, key, null, SerDeUtils.deserializeAttributes(value));
+    return true;
+  }
+
+  // stored attributes (including expired items) are needed to remove outdated derived data
+  private Map<String, Object> getPreviousAttributes(
+      String tableName, Key key, List<DerivedData> derivedData) throws RocksDBException {
+    if (derivedData.isEmpty()) {
+      return null;
+    }
+    byte[] value = getForUpdate(tableName, key, SerDeUtils.serializeKey(key), true);
+    return value != null ? SerDeUtils.deserializeAttributes(value) : null;
+  }
+
+  private boolean exists(ColumnFamilyHandle cfHandle, byte[] keyBytes) throws RocksDBException {
+    try (ReadOptions readOptions = new ReadOptions()) {
+      return transaction.getForUpdate(readOptions, cfHandle, keyBytes, true) != null;
+    }
+  }
+
+  // reads the item from the first column family which holds it
+  private byte[] getForUpdate(String tableName, Key key, byte[] keyBytes, boolean exclusive)
+      throws RocksDBException {
+    try (ReadOptions readOptions = new ReadOptions()) {
+      for (ColumnFamilyHandle cfHandle : roxDB.getReadColumnFamilies(tableName, key)) {
+        byte[] value = transaction.getForUpdate(readOptions, cfHandle, keyBytes, exclusive);
+        if (value != null) {
+          return value;
+        }
+      }
+    }
+    return null;
+  }
 }
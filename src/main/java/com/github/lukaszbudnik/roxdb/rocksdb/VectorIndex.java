@@ -0,0 +1,476 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import static com.github.lukaszbudnik.roxdb.rocksdb.RoxDBImpl.PARTITION_SORT_KEY_SEPARATOR;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import org.rocksdb.*;
+
+// Vector index keeps a hierarchical navigable small world (HNSW) graph of items of a partition by
+// cosine distance of their list of numbers attribute. Every graph node is stored under partition
+// key and sort key with its level, normalized vector and neighbors on every layer, partition key
+// alone stores the entry point of the partition graph. Writes lock the entry point so that graph
+// updates of a partition are serialized, searches read a snapshot of the graph.
+class VectorIndex implements SecondaryIndex {
+  private static final int MAX_NEIGHBORS = 16;
+  // layer 0 keeps twice as many neighbors as upper layers
+  private static final int MAX_LAYER_0_NEIGHBORS = 2 * MAX_NEIGHBORS;
+  private static final int EF_CONSTRUCTION = 100;
+  private static final int EF_SEARCH = 64;
+  private static final double LEVEL_MULTIPLIER = 1 / Math.log(MAX_NEIGHBORS);
+
+  private final String tableName;
+  private final IndexDefinition definition;
+  private final RoxDB roxDB;
+  private final TransactionDB db;
+  private final ColumnFamilyHandle cfHandle;
+
+  // neighbors are kept per layer, links to removed nodes are skipped and dropped on next update
+  record Node(int level, float[] vector, List<List<String>> neighbors) {}
+
+  private record Candidate(String sortKey, double distance) {}
+
+  @FunctionalInterface
+  private interface NodeReader {
+    byte[] read(byte[] key) throws RocksDBException;
+  }
+
+  VectorIndex(
+      String tableName,
+      IndexDefinition definition,
+      RoxDB roxDB,
+      TransactionDB db,
+      ColumnFamilyHandle cfHandle) {
+    this.tableName = tableName;
+    this.definition = definition;
+    this.roxDB = roxDB;
+    this.db = db;
+    this.cfHandle = cfHandle;
+  }
+
+  @Override
+  public IndexDefinition definition() {
+    return definition;
+  }
+
+  @Override
+  public void update(
+      Transaction transaction,
+      Key key,
+      Map<String, Object> oldAttributes,
+      Map<String, Object> newAttributes)
+      throws RocksDBException {
+    float[] oldVector = vector(oldAttributes);
+    float[] newVector = vector(newAttributes);
+    if ((oldVector == null && newVector == null)
+        || (oldVector != null && Arrays.equals(oldVector, newVector))) {
+      return;
+    }
+    try (ReadOptions readOptions = new ReadOptions()) {
+      byte[] entryPoint =
+          transaction.getForUpdate(readOptions, cfHandle, entryPointKey(key.partitionKey()), true);
+      Graph graph =
+          new Graph(
+              key.partitionKey(),
+              entryPoint != null ? new String(entryPoint, StandardCharsets.UTF_8) : null,
+              nodeKey -> transaction.get(readOptions, cfHandle, nodeKey));
+
+      // node is looked up instead of old attributes, backfill may index items written meanwhile
+      Node existing = graph.node(key.sortKey());
+      if (existing != null && newVector != null && Arrays.equals(existing.vector(), newVector)) {
+        return;
+      }
+      if (existing != null) {
+        graph.remove(key.sortKey(), existing, readOptions, transaction);
+      }
+      if (newVector != null) {
+        graph.insert(key.sortKey(), newVector, randomLevel());
+      }
+      graph.write(transaction);
+    }
+  }
+
+  // items without a non-zero list of numbers are not indexed, vectors are normalized so that
+  // cosine distance is computed from dot product
+  private float[] vector(Map<String, Object> attributes) {
+    if (attributes == null
+        || !(attributes.get(definition.attributes().get(0)) instanceof List<?> list)
+        || list.isEmpty()) {
+      return null;
+    }
+    float[] vector = new float[list.size()];
+    for (int i = 0; i < vector.length; i++) {
+      if (!(list.get(i) instanceof Number number)) {
+        return null;
+      }
+      vector[i] = number.floatValue();
+    }
+    return normalize(vector);
+  }
+
+  static float[] normalize(float[] vector) {
+    double norm = 0;
+    for (float value : vector) {
+      norm += value * value;
+    }
+    if (norm == 0 || Double.isNaN(norm) || Double.isInfinite(norm)) {
+      return null;
+    }
+    float[] normalized = new float[vector.length];
+    double length = Math.sqrt(norm);
+    for (int i = 0; i < vector.length; i++) {
+      normalized[i] = (float) (vector[i] / length);
+    }
+    return normalized;
+  }
+
+  // cosine distance of normalized vectors
+  static double distance(float[] a, float[] b) {
+    if (a.length != b.length) {
+      throw new IllegalArgumentException(
+          "Vector has " + b.length + " dimensions, indexed vectors have " + a.length);
+    }
+    double dot = 0;
+    for (int i = 0; i < a.length; i++) {
+      dot += a[i] * b[i];
+    }
+    return 1 - dot;
+  }
+
+  private static int randomLevel() {
+    return (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * LEVEL_MULTIPLIER);
+  }
+
+  private static int maxNeighbors(int layer) {
+    return layer == 0 ? MAX_LAYER_0_NEIGHBORS : MAX_NEIGHBORS;
+  }
+
+  // returns up to limit items of the partition nearest to the vector, nearest first
+  List<Item> query(String partitionKey, float[] vector, int limit) throws RocksDBException {
+    float[] normalized = normalize(vector);
+    if (normalized == null) {
+      throw new IllegalArgumentException("Query vector cannot be a zero vector");
+    }
+    List<Candidate> nearest;
+    Snapshot snapshot = db.getSnapshot();
+    try (ReadOptions readOptions = new ReadOptions().setSnapshot(snapshot)) {
+      byte[] entryPoint = db.get(cfHandle, readOptions, entryPointKey(partitionKey));
+      if (entryPoint == null) {
+        return List.of();
+      }
+      Graph graph =
+          new Graph(
+              partitionKey,
+              new String(entryPoint, StandardCharsets.UTF_8),
+              nodeKey -> db.get(cfHandle, readOptions, nodeKey));
+      nearest = graph.search(normalized, Math.max(EF_SEARCH, limit));
+    } finally {
+      db.releaseSnapshot(snapshot);
+    }
+
+    List<Item> results = new ArrayList<>();
+    for (Candidate candidate : nearest.subList(0, Math.min(limit, nearest.size()))) {
+      Item item = roxDB.getItem(tableName, new Key(partitionKey, candidate.sortKey()));
+      if (item != null) {
+        results.add(item);
+      }
+    }
+    return results;
+  }
+
+  private static byte[] entryPointKey(String partitionKey) {
+    return partitionKey.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] nodeKey(String partitionKey, String sortKey) {
+    return SerDeUtils.serializeKey(new Key(partitionKey, sortKey));
+  }
+
+  // Graph of a single partition, nodes are read lazily and modified nodes are written at the end
+  private class Graph {
+    private final String partitionKey;
+    private final NodeReader reader;
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final Set<String> modified = new LinkedHashSet<>();
+    private final Set<String> removed = new HashSet<>();
+    private final String initialEntryPoint;
+    private String entryPoint;
+
+    Graph(String partitionKey, String entryPoint, NodeReader reader) {
+      this.partitionKey = partitionKey;
+      this.initialEntryPoint = entryPoint;
+      this.entryPoint = entryPoint;
+      this.reader = reader;
+    }
+
+    Node node(String sortKey) throws RocksDBException {
+      if (removed.contains(sortKey)) {
+        return null;
+      }
+      Node node = nodes.get(sortKey);
+      if (node == null) {
+        byte[] value = reader.read(nodeKey(partitionKey, sortKey));
+        if (value == null) {
+          return null;
+        }
+        node = deserializeNode(value);
+        nodes.put(sortKey, node);
+      }
+      return node;
+    }
+
+    List<Candidate> search(float[] vector, int ef) throws RocksDBException {
+      Node entry = node(entryPoint);
+      if (entry == null) {
+        return List.of();
+      }
+      String current = entryPoint;
+      for (int layer = entry.level(); layer > 0; layer--) {
+        current = searchLayer(vector, current, 1, layer).get(0).sortKey();
+      }
+      return searchLayer(vector, current, ef, 0);
+    }
+
+    void insert(String sortKey, float[] vector, int level) throws RocksDBException {
+      List<List<String>> neighbors = new ArrayList<>();
+      for (int layer = 0; layer <= level; layer++) {
+        neighbors.add(new ArrayList<>());
+      }
+      Node node = new Node(level, vector, neighbors);
+      Node entry = entryPoint != null ? node(entryPoint) : null;
+      nodes.put(sortKey, node);
+      removed.remove(sortKey);
+      modified.add(sortKey);
+      if (entry == null) {
+        entryPoint = sortKey;
+        return;
+      }
+
+      String current = entryPoint;
+      for (int layer = entry.level(); layer > level; layer--) {
+        current = searchLayer(vector, current, 1, layer).get(0).sortKey();
+      }
+      for (int layer = Math.min(level, entry.level()); layer >= 0; layer--) {
+        List<Candidate> candidates = searchLayer(vector, current, EF_CONSTRUCTION, layer);
+        for (Candidate candidate :
+            candidates.subList(0, Math.min(MAX_NEIGHBORS, candidates.size()))) {
+          node.neighbors().get(layer).add(candidate.sortKey());
+          link(candidate.sortKey(), sortKey, layer);
+        }
+        current = candidates.get(0).sortKey();
+      }
+      if (level > entry.level()) {
+        entryPoint = sortKey;
+      }
+    }
+
+    // adds a link and keeps only the nearest neighbors when node has too many of them
+    private void link(String from, String to, int layer) throws RocksDBException {
+      Node node = node(from);
+      List<String> neighbors = node.neighbors().get(layer);
+      neighbors.add(to);
+      if (neighbors.size() > maxNeighbors(layer)) {
+        List<String> nearest = nearest(node.vector(), neighbors, maxNeighbors(layer));
+        neighbors.clear();
+        neighbors.addAll(nearest);
+      }
+      modified.add(from);
+    }
+
+    // unlinks the node from its neighbors which are reconnected to neighbors of the removed node
+    void remove(String sortKey, Node node, ReadOptions readOptions, Transaction transaction)
+        throws RocksDBException {
+      removed.add(sortKey);
+      nodes.remove(sortKey);
+      modified.remove(sortKey);
+      for (int layer = 0; layer <= node.level(); layer++) {
+        List<String> removedNeighbors = node.neighbors().get(layer);
+        for (String neighborKey : removedNeighbors) {
+          Node neighbor = node(neighborKey);
+          if (neighbor == null) {
+            continue;
+          }
+          Set<String> candidates = new LinkedHashSet<>(neighbor.neighbors().get(layer));
+          candidates.addAll(removedNeighbors);
+          candidates.remove(sortKey);
+          candidates.remove(neighborKey);
+          List<String> neighbors = neighbor.neighbors().get(layer);
+          neighbors.clear();
+          neighbors.addAll(nearest(neighbor.vector(), candidates, maxNeighbors(layer)));
+          modified.add(neighborKey);
+        }
+      }
+      if (sortKey.equals(entryPoint)) {
+        entryPoint = replacementEntryPoint(node, readOptions, transaction);
+      }
+    }
+
+    // neighbor with the highest level, when removed node had no neighbors any remaining node
+    private String replacementEntryPoint(
+        Node node, ReadOptions readOptions, Transaction transaction) throws RocksDBException {
+      String replacement = null;
+      int replacementLevel = -1;
+      for (int layer = node.level(); layer >= 0 && replacement == null; layer--) {
+        for (String neighborKey : node.neighbors().get(layer)) {
+          Node neighbor = node(neighborKey);
+          if (neighbor != null && neighbor.level() > replacementLevel) {
+            replacement = neighborKey;
+            replacementLevel = neighbor.level();
+          }
+        }
+      }
+      if (replacement != null) {
+        return replacement;
+      }
+      String nodePrefix = partitionKey + PARTITION_SORT_KEY_SEPARATOR;
+      try (RocksIterator iterator = transaction.getIterator(readOptions, cfHandle)) {
+        for (iterator.seek(nodePrefix.getBytes(StandardCharsets.UTF_8));
+            iterator.isValid();
+            iterator.next()) {
+          Key key = SerDeUtils.deserializeKey(iterator.key());
+          if (!key.partitionKey().equals(partitionKey)) {
+            break;
+          }
+          if (!removed.contains(key.sortKey())) {
+            return key.sortKey();
+          }
+        }
+      }
+      return null;
+    }
+
+    private List<String> nearest(float[] vector, Iterable<String> sortKeys, int limit)
+        throws RocksDBException {
+      List<Candidate> candidates = new ArrayList<>();
+      for (String sortKey : sortKeys) {
+        Node node = node(sortKey);
+        if (node != null) {
+          candidates.add(new Candidate(sortKey, distance(node.vector(), vector)));
+        }
+      }
+      return candidates.stream()
+          .sorted(Comparator.comparingDouble(Candidate::distance))
+          .limit(limit)
+          .map(Candidate::sortKey)
+          .toList();
+    }
+
+    // greedy best first search of a layer, returns up to ef nearest nodes, nearest first
+    private List<Candidate> searchLayer(float[] vector, String entry, int ef, int layer)
+        throws RocksDBException {
+      Comparator<Candidate> byDistance = Comparator.comparingDouble(Candidate::distance);
+      PriorityQueue<Candidate> candidates = new PriorityQueue<>(byDistance);
+      PriorityQueue<Candidate> results = new PriorityQueue<>(byDistance.reversed());
+      Set<String> visited = new HashSet<>();
+
+      Candidate start = new Candidate(entry, distance(node(entry).vector(), vector));
+      candidates.add(start);
+      results.add(start);
+      visited.add(entry);
+      while (!candidates.isEmpty()) {
+        Candidate closest = candidates.poll();
+        if (results.size() >= ef && closest.distance() > results.peek().distance()) {
+          break;
+        }
+        Node node = node(closest.sortKey());
+        if (node == null || node.level() < layer) {
+          continue;
+        }
+        for (String neighborKey : node.neighbors().get(layer)) {
+          if (!visited.add(neighborKey)) {
+            continue;
+          }
+          Node neighbor = node(neighborKey);
+          if (neighbor == null) {
+            continue;
+          }
+          Candidate candidate = new Candidate(neighborKey, distance(neighbor.vector(), vector));
+          if (results.size() < ef || candidate.distance() < results.peek().distance()) {
+            candidates.add(candidate);
+            results.add(candidate);
+            if (results.size() > ef) {
+              results.poll();
+            }
+          }
+        }
+      }
+      return results.stream().sorted(byDistance).toList();
+    }
+
+    void write(Transaction transaction) throws RocksDBException {
+      for (String sortKey : removed) {
+        transaction.delete(cfHandle, nodeKey(partitionKey, sortKey));
+      }
+      for (String sortKey : modified) {
+        transaction.put(
+            cfHandle, nodeKey(partitionKey, sortKey), serializeNode(nodes.get(sortKey)));
+      }
+      if (entryPoint == null) {
+        transaction.delete(cfHandle, entryPointKey(partitionKey));
+      } else if (!entryPoint.equals(initialEntryPoint)) {
+        transaction.put(
+            cfHandle, entryPointKey(partitionKey), entryPoint.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  // level, dimensions, vector and for every layer number of neighbors followed by their sort keys
+  static byte[] serializeNode(Node node) {
+    List<byte[]> neighborKeys = new ArrayList<>();
+    int size = 2 * Integer.BYTES + node.vector().length * Float.BYTES;
+    for (List<String> neighbors : node.neighbors()) {
+      size += Integer.BYTES;
+      for (String neighbor : neighbors) {
+        byte[] neighborKey = neighbor.getBytes(StandardCharsets.UTF_8);
+        neighborKeys.add(neighborKey);
+        size += Integer.BYTES + neighborKey.length;
+      }
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.putInt(node.level()).putInt(node.vector().length);
+    for (float value : node.vector()) {
+      buffer.putFloat(value);
+    }
+    int neighborIndex = 0;
+    for (List<String> neighbors : node.neighbors()) {
+      buffer.putInt(neighbors.size());
+      for (int i = 0; i < neighbors.size(); i++) {
+        byte[] neighborKey = neighborKeys.get(neighborIndex++);
+        buffer.putInt(neighborKey.length).put(neighborKey);
+      }
+    }
+    return buffer.array();
+  }
+
+  static Node deserializeNode(byte[] value) {
+    ByteBuffer buffer = ByteBuffer.wrap(value);
+    int level = buffer.getInt();
+    float[] vector = new float[buffer.getInt()];
+    for (int i = 0; i < vector.length; i++) {
+      vector[i] = buffer.getFloat();
+    }
+    List<List<String>> neighbors = new ArrayList<>();
+    for (int layer = 0; layer <= level; layer++) {
+      int count = buffer.getInt();
+      List<String> layerNeighbors = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        byte[] neighborKey = new byte[buffer.getInt()];
+        buffer.get(neighborKey);
+        layerNeighbors.add(new String(neighborKey, StandardCharsets.UTF_8));
+      }
+      neighbors.add(layerNeighbors);
+    }
+    return new Node(level, vector, neighbors);
+  }
+}
@@ -0,0 +1,38 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+// Keys of hot items saved on shutdown and read on startup to warm up item and block caches, in item
+// cache retention order so that a warm up cut short by its time budget reads the hottest keys.
+// The manifest is kept next to the database files, RocksDB ignores files it did not create.
+class WarmUpManifest {
+  static final String FILE_NAME = "roxdb-warmup-manifest.json";
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  record Entry(String table, String partitionKey, String sortKey) {}
+
+  private WarmUpManifest() {}
+
+  // replaces the manifest atomically so that a crash while writing does not leave a partial one
+  static void write(Path dbPath, List<Entry> entries) throws IOException {
+    Path file = dbPath.resolve(FILE_NAME);
+    Path tempFile = dbPath.resolve(FILE_NAME + ".tmp");
+    mapper.writeValue(tempFile.toFile(), entries);
+    Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // empty when there is no manifest
+  static List<Entry> read(Path dbPath) throws IOException {
+    Path file = dbPath.resolve(FILE_NAME);
+    if (!Files.exists(file)) {
+      return List.of();
+    }
+    return mapper.readValue(file.toFile(), new TypeReference<List<Entry>>() {});
+  }
+}
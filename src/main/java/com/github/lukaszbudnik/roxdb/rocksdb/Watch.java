@@ -0,0 +1,7 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+// Subscription to changes of a partition, no events are delivered after it is closed
+public interface Watch extends AutoCloseable {
+  @Override
+  void close();
+}
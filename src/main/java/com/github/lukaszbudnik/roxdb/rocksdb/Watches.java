@@ -0,0 +1,101 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// In-memory fan-out of item changes to watches of a partition. Writers publish changes only after
+// they are committed so rolled back changes are never seen. Listeners are called on the writer
+// thread and must not block, exceptions thrown by them are logged and do not fail the write.
+// Changes of a single writer are delivered in commit order, concurrent writers to the same
+// partition may be delivered in either order.
+class Watches {
+  private static final Logger logger = LoggerFactory.getLogger(Watches.class);
+
+  private record Partition(String tableName, String partitionKey) {}
+
+  private final Map<Partition, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+  Watch watch(
+      String tableName,
+      String partitionKey,
+      Optional<SortKeyRange> sortKeyRange,
+      Consumer<ChangeEvent> listener) {
+    Partition partition = new Partition(tableName, partitionKey);
+    Subscription subscription = new Subscription(partition, sortKeyRange, listener);
+    subscriptions.compute(
+        partition,
+        (p, partitionSubscriptions) -> {
+          if (partitionSubscriptions == null) {
+            partitionSubscriptions = new CopyOnWriteArrayList<>();
+          }
+          partitionSubscriptions.add(subscription);
+          return partitionSubscriptions;
+        });
+    logger.debug("Watch started: {} {}", partition, sortKeyRange);
+    return subscription;
+  }
+
+  // lets writers skip creating change events of partitions nobody watches
+  boolean isWatched(String tableName, String partitionKey) {
+    return !subscriptions.isEmpty()
+        && subscriptions.containsKey(new Partition(tableName, partitionKey));
+  }
+
+  void publish(List<ChangeEvent> events) {
+    for (ChangeEvent event : events) {
+      publish(event);
+    }
+  }
+
+  void publish(ChangeEvent event) {
+    List<Subscription> partitionSubscriptions =
+        subscriptions.get(new Partition(event.tableName(), event.key().partitionKey()));
+    if (partitionSubscriptions == null) {
+      return;
+    }
+    for (Subscription subscription : partitionSubscriptions) {
+      if (subscription.sortKeyRange.isEmpty()
+          || subscription.sortKeyRange.get().contains(event.key().sortKey())) {
+        try {
+          subscription.listener.accept(event);
+        } catch (Exception e) {
+          logger.error("Error delivering change of {} to watch", event.key(), e);
+        }
+      }
+    }
+  }
+
+  private void remove(Subscription subscription) {
+    subscriptions.computeIfPresent(
+        subscription.partition,
+        (p, partitionSubscriptions) -> {
+          partitionSubscriptions.remove(subscription);
+          return partitionSubscriptions.isEmpty() ? null : partitionSubscriptions;
+        });
+    logger.debug("Watch closed: {}", subscription.partition);
+  }
+
+  private class Subscription implements Watch {
+    private final Partition partition;
+    private final Optional<SortKeyRange> sortKeyRange;
+    private final Consumer<ChangeEvent> listener;
+
+    Subscription(
+        Partition partition, Optional<SortKeyRange> sortKeyRange, Consumer<ChangeEvent> listener) {
+      this.partition = partition;
+      this.sortKeyRange = sortKeyRange;
+      this.listener = listener;
+    }
+
+    @Override
+    public void close() {
+      remove(this);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.github.lukaszbudnik.roxdb.application;
+
+import static com.github.lukaszbudnik.roxdb.application.EnvironmentConfigReader.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class AutoTuningTest {
+  private static final long MB = 1024 * 1024;
+
+  @Test
+  void testTune() {
+    EnvironmentConfigReader configReader = new EnvironmentConfigReader();
+    RoxDBConfig config = configReader.readConfiguration(Map.of());
+    ContainerResources resources = new ContainerResources(4, 4096 * MB);
+
+    RoxDBConfig tuned = AutoTuning.tune(config, Map.of(), resources, 1024 * MB);
+    assertEquals(4, tuned.backgroundJobs());
+    assertEquals(4, tuned.eventLoopThreads());
+    assertEquals(8, tuned.ioThreads());
+    // 60% of 3 GB left after heap and 25% of 1 GB heap
+    assertEquals(3072 * 6 / 10 + 256, tuned.memoryBudgetMb());
+    assertEquals(config.dbPath(), tuned.dbPath());
+
+    // at least 2 background jobs on a single CPU
+    tuned = AutoTuning.tune(config, Map.of(), new ContainerResources(1, 0), 1024 * MB);
+    assertEquals(2, tuned.backgroundJobs());
+    assertEquals(1, tuned.eventLoopThreads());
+    // no memory limit
+    assertEquals(0, tuned.memoryBudgetMb());
+
+    // memory limit below heap
+    tuned = AutoTuning.tune(config, Map.of(), new ContainerResources(1, 512 * MB), 1024 * MB);
+    assertEquals(0, tuned.memoryBudgetMb());
+  }
+
+  @Test
+  void testExplicitSettingsWin() {
+    EnvironmentConfigReader configReader = new EnvironmentConfigReader();
+    ContainerResources resources = new ContainerResources(4, 4096 * MB);
+
+    Map<String, String> env =
+        Map.of(
+            ENV_BACKGROUND_JOBS,
+            "8",
+            ENV_EVENT_LOOP_THREADS,
+            "2",
+            ENV_IO_THREADS,
+            "3",
+            ENV_MEMORY_BUDGET_MB,
+            "1000");
+    RoxDBConfig tuned =
+        AutoTuning.tune(configReader.readConfiguration(env), env, resources, 1024 * MB);
+    assertEquals(8, tuned.backgroundJobs());
+    assertEquals(2, tuned.eventLoopThreads());
+    assertEquals(3, tuned.ioThreads());
+    assertEquals(1000, tuned.memoryBudgetMb());
+
+    // explicitly sized caches are not replaced by a budget
+    env = Map.of(ENV_BLOCK_CACHE_SIZE_MB, "512");
+    tuned = AutoTuning.tune(configReader.readConfiguration(env), env, resources, 1024 * MB);
+    assertEquals(0, tuned.memoryBudgetMb());
+    assertEquals(512, tuned.blockCacheSizeMb());
+  }
+}
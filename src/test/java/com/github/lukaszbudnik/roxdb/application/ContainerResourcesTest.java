@@ -0,0 +1,59 @@
+package com.github.lukaszbudnik.roxdb.application;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ContainerResourcesTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testCgroupV2() throws IOException {
+    Files.writeString(tempDir.resolve("cpu.max"), "150000 100000\n");
+    Files.writeString(tempDir.resolve("memory.max"), "2147483648\n");
+
+    ContainerResources resources = ContainerResources.detect(tempDir, 8);
+    assertEquals(2, resources.cpus());
+    assertEquals(2147483648L, resources.memoryLimitBytes());
+
+    // limit above available processors
+    assertEquals(1, ContainerResources.detect(tempDir, 1).cpus());
+
+    Files.writeString(tempDir.resolve("cpu.max"), "max 100000\n");
+    Files.writeString(tempDir.resolve("memory.max"), "max\n");
+    resources = ContainerResources.detect(tempDir, 8);
+    assertEquals(8, resources.cpus());
+    assertEquals(0, resources.memoryLimitBytes());
+  }
+
+  @Test
+  void testCgroupV1() throws IOException {
+    Files.createDirectories(tempDir.resolve("cpu"));
+    Files.createDirectories(tempDir.resolve("memory"));
+    Files.writeString(tempDir.resolve("cpu/cpu.cfs_quota_us"), "400000\n");
+    Files.writeString(tempDir.resolve("cpu/cpu.cfs_period_us"), "100000\n");
+    Files.writeString(tempDir.resolve("memory/memory.limit_in_bytes"), "1073741824\n");
+
+    ContainerResources resources = ContainerResources.detect(tempDir, 8);
+    assertEquals(4, resources.cpus());
+    assertEquals(1073741824L, resources.memoryLimitBytes());
+
+    Files.writeString(tempDir.resolve("cpu/cpu.cfs_quota_us"), "-1\n");
+    Files.writeString(tempDir.resolve("memory/memory.limit_in_bytes"), "9223372036854771712\n");
+    resources = ContainerResources.detect(tempDir, 8);
+    assertEquals(8, resources.cpus());
+    assertEquals(0, resources.memoryLimitBytes());
+  }
+
+  @Test
+  void testNoCgroup() {
+    ContainerResources resources = ContainerResources.detect(tempDir.resolve("missing"), 3);
+    assertEquals(3, resources.cpus());
+    assertEquals(0, resources.memoryLimitBytes());
+  }
+}
@@ -3,6 +3,9 @@ package com.github.lukaszbudnik.roxdb.application;
 import static com.github.lukaszbudnik.roxdb.application.EnvironmentConfigReader.*;
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.github.lukaszbudnik.roxdb.rocksdb.BlockCacheType;
+import com.github.lukaszbudnik.roxdb.rocksdb.MemoryBudget;
+import com.github.lukaszbudnik.roxdb.rocksdb.StorageOptions;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
@@ -87,4 +90,139 @@ class EnvironmentConfigReaderTest {
     assertEquals("cert.pem", config.tlsCertificatePath());
     assertEquals("ca_cert.pem", config.tlsCertificateChainPath());
   }
+
+  @Test
+  void testTablesConfiguration() {
+    Map<String, String> env = new HashMap<>();
+    env.put(ENV_TABLES_CONFIG, "tables.yaml");
+
+    EnvironmentConfigReader configReader = new EnvironmentConfigReader();
+    RoxDBConfig config = configReader.readConfiguration(env);
+
+    assertEquals("tables.yaml", config.tablesConfig());
+  }
+
+  @Test
+  void testWalRetention() {
+    EnvironmentConfigReader configReader = new EnvironmentConfigReader();
+    RoxDBConfig config = configReader.readConfiguration(Map.of());
+    assertEquals(0, config.walTtlSeconds());
+    assertEquals(0, config.walSizeLimitMb());
+
+    Map<String, String> env = new HashMap<>();
+    env.put(ENV_WAL_TTL_SECONDS, "86400");
+    env.put(ENV_WAL_SIZE_LIMIT_MB, "-1");
+    config = configReader.readConfiguration(env);
+
+    assertEquals(86400, config.walTtlSeconds());
+    assertEquals(0, config.walSizeLimitMb());
+  }
+
+  @Test
+  void testCacheSizes() {
+    EnvironmentConfigReader configReader = new EnvironmentConfigReader();
+    RoxDBConfig config = configReader.readConfiguration(Map.of());
+    assertEquals(DEFAULT_ITEM_CACHE_SIZE_MB, config.itemCacheSizeMb());
+
+    config = configReader.readConfiguration(Map.of(ENV_ITEM_CACHE_SIZE_MB, "0"));
+    assertEquals(0, config.itemCacheSizeMb());
+
+    config = configReader.readConfiguration(Map.of(ENV_ITEM_CACHE_SIZE_MB, "abc"));
+    assertEquals(DEFAULT_ITEM_CACHE_SIZE_MB, config.itemCacheSizeMb());
+
+    assertEquals(DEFAULT_QUERY_CACHE_SIZE_MB, config.queryCacheSizeMb());
+    config = configReader.readConfiguration(Map.of(ENV_QUERY_CACHE_SIZE_MB, "128"));
+    assertEquals(128, config.queryCacheSizeMb());
+  }
+
+  @Test
+  void testBlockCache() {
+    EnvironmentConfigReader configReader = new EnvironmentConfigReader();
+    RoxDBConfig config = configReader.readConfiguration(Map.of());
+    assertEquals(DEFAULT_BLOCK_CACHE_SIZE_MB, config.blockCacheSizeMb());
+    assertEquals(DEFAULT_BLOCK_CACHE_TYPE, config.blockCacheType());
+
+    config =
+        configReader.readConfiguration(
+            Map.of(ENV_BLOCK_CACHE_SIZE_MB, "4096", ENV_BLOCK_CACHE_TYPE, "hyper_clock"));
+    assertEquals(4096, config.blockCacheSizeMb());
+    assertEquals(BlockCacheType.HYPER_CLOCK, config.blockCacheType());
+
+    config =
+        configReader.readConfiguration(
+            Map.of(ENV_BLOCK_CACHE_SIZE_MB, "0", ENV_BLOCK_CACHE_TYPE, "clock"));
+    assertEquals(DEFAULT_BLOCK_CACHE_SIZE_MB, config.blockCacheSizeMb());
+    assertEquals(DEFAULT_BLOCK_CACHE_TYPE, config.blockCacheType());
+  }
+
+  @Test
+  void testSecondaryCache() {
+    EnvironmentConfigReader configReader = new EnvironmentConfigReader();
+    RoxDBConfig config = configReader.readConfiguration(Map.of());
+    assertEquals(0, config.secondaryCacheSizeMb());
+    assertEquals(DEFAULT_SECONDARY_CACHE_PATH, config.secondaryCachePath());
+
+    config =
+        configReader.readConfiguration(
+            Map.of(ENV_SECONDARY_CACHE_SIZE_MB, "10", ENV_SECONDARY_CACHE_PATH, "/cache"));
+    assertEquals(MIN_SECONDARY_CACHE_SIZE_MB, config.secondaryCacheSizeMb());
+    assertEquals("/cache", config.secondaryCachePath());
+  }
+
+  @Test
+  void testMemoryBudget() {
+    EnvironmentConfigReader configReader = new EnvironmentConfigReader();
+    RoxDBConfig config = configReader.readConfiguration(Map.of());
+    assertEquals(0, config.memoryBudgetMb());
+
+    config = configReader.readConfiguration(Map.of(ENV_MEMORY_BUDGET_MB, "2048"));
+    assertEquals(2048, config.memoryBudgetMb());
+    StorageOptions storageOptions = Application.storageOptions(config);
+    MemoryBudget memoryBudget =
+        new MemoryBudget(2048L * 1024 * 1024, Runtime.getRuntime().maxMemory());
+    assertEquals(memoryBudget.blockCacheBytes(), storageOptions.blockCacheSizeBytes());
+    assertEquals(memoryBudget.writeBufferBytes(), storageOptions.writeBufferManagerSizeBytes());
+    assertEquals(memoryBudget.itemCacheBytes(), storageOptions.itemCacheSizeBytes());
+    assertEquals(memoryBudget.queryCacheBytes(), storageOptions.queryCacheSizeBytes());
+  }
+
+  @Test
+  void testAutoTuning() {
+    EnvironmentConfigReader configReader = new EnvironmentConfigReader();
+    RoxDBConfig config = configReader.readConfiguration(Map.of());
+    assertTrue(config.autoTune());
+    assertEquals(0, config.backgroundJobs());
+    assertEquals(0, config.eventLoopThreads());
+    assertEquals(0, config.ioThreads());
+
+    config =
+        configReader.readConfiguration(
+            Map.of(ENV_AUTO_TUNE, "false", ENV_BACKGROUND_JOBS, "6", ENV_EVENT_LOOP_THREADS, "-1"));
+    assertFalse(config.autoTune());
+    assertEquals(6, config.backgroundJobs());
+    assertEquals(0, config.eventLoopThreads());
+    assertEquals(6, Application.storageOptions(config).backgroundJobs());
+  }
+
+  @Test
+  void testWarmUp() {
+    EnvironmentConfigReader configReader = new EnvironmentConfigReader();
+    RoxDBConfig config = configReader.readConfiguration(Map.of());
+    assertEquals(DEFAULT_WARMUP_KEYS, config.warmUpKeys());
+    assertEquals(DEFAULT_WARMUP_SECONDS, config.warmUpSeconds());
+
+    config = configReader.readConfiguration(Map.of(ENV_WARMUP_KEYS, "0", ENV_WARMUP_SECONDS, "5"));
+    assertEquals(0, config.warmUpKeys());
+    assertEquals(5, config.warmUpSeconds());
+  }
+
+  @Test
+  void testIdleFlush() {
+    EnvironmentConfigReader configReader = new EnvironmentConfigReader();
+    RoxDBConfig config = configReader.readConfiguration(Map.of());
+    assertEquals(StorageOptions.DEFAULT_IDLE_FLUSH_SECONDS, config.idleFlushSeconds());
+
+    config = configReader.readConfiguration(Map.of(ENV_IDLE_FLUSH_SECONDS, "0"));
+    assertEquals(0, Application.storageOptions(config).idleFlushSeconds());
+  }
 }
@@ -8,6 +8,7 @@ import io.opentelemetry.sdk.metrics.export.MetricExporter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -33,8 +34,24 @@ public class ShutdownManagerTest {
     shutdownManager.performShutdown();
 
     // Verify that methods were called in correct order
-    verify(mockServer).stop();
-    verify(mockRoxDB).close();
+    InOrder inOrder = inOrder(mockServer, mockRoxDB);
+    inOrder.verify(mockServer).stop();
+    // memtables are flushed so that the next start does not replay WAL
+    inOrder.verify(mockRoxDB).flush();
+    inOrder.verify(mockRoxDB).close();
+  }
+
+  @Test
+  public void testWarmUpManifestSaved() throws Exception {
+    ShutdownManager manager = new ShutdownManager(mockServer, mockRoxDB, metricExporter, 100);
+    manager.performShutdown();
+
+    // hot keys are saved after requests stopped and before the database is closed
+    InOrder inOrder = inOrder(mockServer, mockRoxDB);
+    inOrder.verify(mockServer).stop();
+    inOrder.verify(mockRoxDB).saveWarmUpManifest(100);
+    inOrder.verify(mockRoxDB).flush();
+    inOrder.verify(mockRoxDB).close();
   }
 
   @Test
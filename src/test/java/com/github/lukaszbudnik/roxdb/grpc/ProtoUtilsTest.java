@@ -2,6 +2,11 @@ package com.github.lukaszbudnik.roxdb.grpc;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.github.lukaszbudnik.roxdb.rocksdb.AggregateFunction;
+import com.github.lukaszbudnik.roxdb.rocksdb.AggregateGroup;
+import com.github.lukaszbudnik.roxdb.rocksdb.GeoArea;
+import com.github.lukaszbudnik.roxdb.rocksdb.IndexType;
+import com.github.lukaszbudnik.roxdb.rocksdb.QueryAggregate;
 import com.github.lukaszbudnik.roxdb.rocksdb.RangeType;
 import com.github.lukaszbudnik.roxdb.rocksdb.SortKeyRange;
 import com.github.lukaszbudnik.roxdb.v1.Item;
@@ -228,4 +233,75 @@ class ProtoUtilsTest {
         IllegalArgumentException.class,
         () -> ProtoUtils.protoToModel(ItemRequest.RangeType.UNRECOGNIZED));
   }
+
+  @Test
+  public void testProtoToModelIndexType() {
+    assertEquals(IndexType.GLOBAL, ProtoUtils.protoToModel(ItemRequest.IndexType.GLOBAL));
+    assertEquals(IndexType.LOCAL, ProtoUtils.protoToModel(ItemRequest.IndexType.LOCAL));
+    assertEquals(IndexType.BITMAP, ProtoUtils.protoToModel(ItemRequest.IndexType.BITMAP));
+    assertEquals(IndexType.GEO, ProtoUtils.protoToModel(ItemRequest.IndexType.GEO));
+    assertEquals(IndexType.VECTOR, ProtoUtils.protoToModel(ItemRequest.IndexType.VECTOR));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ProtoUtils.protoToModel(ItemRequest.IndexType.UNRECOGNIZED));
+  }
+
+  @Test
+  public void testProtoToModelGeoArea() {
+    assertEquals(
+        GeoArea.radius(52.2, 21.0, 1000),
+        ProtoUtils.protoToModel(
+            ItemRequest.GeoArea.newBuilder()
+                .setRadius(
+                    ItemRequest.GeoArea.Radius.newBuilder()
+                        .setLatitude(52.2)
+                        .setLongitude(21.0)
+                        .setMeters(1000))
+                .build()));
+    assertEquals(
+        GeoArea.boundingBox(-30, 170, 10, -170),
+        ProtoUtils.protoToModel(
+            ItemRequest.GeoArea.newBuilder()
+                .setBoundingBox(
+                    ItemRequest.GeoArea.BoundingBox.newBuilder()
+                        .setMinLatitude(-30)
+                        .setMinLongitude(170)
+                        .setMaxLatitude(10)
+                        .setMaxLongitude(-170))
+                .build()));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ProtoUtils.protoToModel(ItemRequest.GeoArea.getDefaultInstance()));
+  }
+
+  @Test
+  public void testProtoToModelQueryAggregate() {
+    assertEquals(
+        QueryAggregate.count(),
+        ProtoUtils.protoToModel(ItemRequest.QueryAggregate.getDefaultInstance()));
+    assertEquals(
+        QueryAggregate.of(AggregateFunction.AVG, "total"),
+        ProtoUtils.protoToModel(
+            ItemRequest.QueryAggregate.newBuilder()
+                .setFunction(ItemRequest.AggregateFunction.AVG)
+                .setAttribute("total")
+                .build()));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            ProtoUtils.protoToModel(
+                ItemRequest.QueryAggregate.newBuilder()
+                    .setFunction(ItemRequest.AggregateFunction.MAX)
+                    .build()));
+  }
+
+  @Test
+  public void testModelToProtoAggregateGroup() {
+    var group = ProtoUtils.modelToProto(new AggregateGroup(null, Arrays.asList(3L, 12.5, null)));
+    assertTrue(group.getGroupValue().hasNullValue());
+    assertEquals(3, group.getValuesCount());
+    assertEquals(3.0, group.getValues(0).getNumberValue());
+    assertEquals(12.5, group.getValues(1).getNumberValue());
+    assertTrue(group.getValues(2).hasNullValue());
+  }
 }
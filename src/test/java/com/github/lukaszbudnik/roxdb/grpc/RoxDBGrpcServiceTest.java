@@ -15,16 +15,21 @@ import com.google.protobuf.Value;
 import io.grpc.*;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import io.grpc.stub.StreamObserver;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
@@ -362,6 +367,241 @@ class RoxDBGrpcServiceTest {
         ProtoUtils.structToMap(getItemResponse.getGetItemResponse().getItem().getAttributes()));
   }
 
+  @Test
+  void getItemOffloadedToIoExecutor() throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    RoxDBGrpcService service = new RoxDBGrpcService(roxDB, 2);
+    Server ioServer =
+        InProcessServerBuilder.forName(serverName).directExecutor().addService(service).build();
+    ioServer.start();
+    ManagedChannel ioChannel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+
+    String table = "table";
+    var cachedKey = new com.github.lukaszbudnik.roxdb.rocksdb.Key("pk1", "cached");
+    var diskKey = new com.github.lukaszbudnik.roxdb.rocksdb.Key("pk1", "disk");
+    var queuedKey = new com.github.lukaszbudnik.roxdb.rocksdb.Key("pk1", "queued");
+    // item in memtables or block cache is read on the gRPC thread
+    when(roxDB.getItem(table, cachedKey, true))
+        .thenReturn(new com.github.lukaszbudnik.roxdb.rocksdb.Item(cachedKey, Map.of()));
+    // item on disk is read on the I/O executor
+    when(roxDB.getItem(table, diskKey, true))
+        .thenThrow(
+            new RocksDBException(
+                "not in cache",
+                new org.rocksdb.Status(
+                    org.rocksdb.Status.Code.Incomplete, org.rocksdb.Status.SubCode.None, null)));
+    List<String> readThreads = Collections.synchronizedList(new ArrayList<>());
+    when(roxDB.getItem(table, diskKey))
+        .thenAnswer(
+            invocation -> {
+              readThreads.add(Thread.currentThread().getName());
+              Thread.sleep(100);
+              return new com.github.lukaszbudnik.roxdb.rocksdb.Item(diskKey, Map.of());
+            });
+    // requests following an offloaded read are queued behind it
+    when(roxDB.getItem(table, queuedKey))
+        .thenAnswer(
+            invocation -> {
+              readThreads.add(Thread.currentThread().getName());
+              return null;
+            });
+
+    List<String> correlationIds = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch latch = new CountDownLatch(1);
+    StreamObserver<ItemRequest> requestObserver =
+        RoxDBGrpc.newStub(ioChannel)
+            .processItems(
+                new StreamObserver<>() {
+                  @Override
+                  public void onNext(ItemResponse itemResponse) {
+                    correlationIds.add(itemResponse.getCorrelationId());
+                  }
+
+                  @Override
+                  public void onError(Throwable throwable) {
+                    fail("onError should not be called");
+                  }
+
+                  @Override
+                  public void onCompleted() {
+                    latch.countDown();
+                  }
+                });
+    for (var key : List.of(cachedKey, diskKey, queuedKey)) {
+      requestObserver.onNext(
+          ItemRequest.newBuilder()
+              .setCorrelationId(key.sortKey())
+              .setGetItem(
+                  ItemRequest.GetItem.newBuilder()
+                      .setTable(table)
+                      .setKey(ProtoUtils.modelToProto(key))
+                      .build())
+              .build());
+    }
+    // only the cached read completed on the calling thread
+    assertEquals(List.of("cached"), correlationIds);
+    requestObserver.onCompleted();
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    // responses are sent in request order
+    assertEquals(List.of("cached", "disk", "queued"), correlationIds);
+    assertEquals(2, readThreads.size());
+    assertTrue(readThreads.stream().allMatch(name -> name.startsWith("roxdb-io-")));
+    verify(roxDB, never()).getItem(table, queuedKey, true);
+
+    ioChannel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    ioServer.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    service.shutdownIoExecutor();
+  }
+
+  @Test
+  void getItemAfterWriteCachedFromMemory(@TempDir Path dbPath) throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    RoxDBImpl roxDBImpl = new RoxDBImpl(dbPath.toString());
+    RoxDBGrpcService service = new RoxDBGrpcService(roxDBImpl, 2);
+    Server ioServer =
+        InProcessServerBuilder.forName(serverName).directExecutor().addService(service).build();
+    ioServer.start();
+    ManagedChannel ioChannel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    RoxDBGrpc.RoxDBStub ioStub = RoxDBGrpc.newStub(ioChannel);
+
+    String table = "table";
+    Key key = Key.newBuilder().setPartitionKey("pk1").setSortKey("sk1").build();
+    ItemRequest getItemRequest =
+        ItemRequest.newBuilder()
+            .setCorrelationId("get")
+            .setGetItem(ItemRequest.GetItem.newBuilder().setTable(table).setKey(key).build())
+            .build();
+    ItemRequest putItemRequest =
+        ItemRequest.newBuilder()
+            .setCorrelationId("put")
+            .setPutItem(
+                ItemRequest.PutItem.newBuilder()
+                    .setTable(table)
+                    .setItem(
+                        Item.newBuilder()
+                            .setKey(key)
+                            .setAttributes(ProtoUtils.mapToStruct(Map.of("field1", "value2")))
+                            .build())
+                    .build())
+            .build();
+    roxDBImpl.putItem(
+        table,
+        new com.github.lukaszbudnik.roxdb.rocksdb.Item(
+            ProtoUtils.protoToModel(key), new HashMap<>(Map.of("field1", "value1"))));
+
+    // write invalidates the key, the next read is served from memtable and caches the item
+    processItem(ioStub, getItemRequest);
+    processItem(ioStub, putItemRequest);
+    processItem(ioStub, getItemRequest);
+    assertTrue(ForkJoinPool.commonPool().awaitQuiescence(5, TimeUnit.SECONDS));
+
+    long hits = roxDBImpl.getItemCacheStats().hitCount();
+    ItemResponse response = processItem(ioStub, getItemRequest);
+    assertEquals(
+        Map.of("field1", "value2"),
+        ProtoUtils.structToMap(response.getGetItemResponse().getItem().getAttributes()));
+    assertEquals(hits + 1, roxDBImpl.getItemCacheStats().hitCount());
+
+    ioChannel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    ioServer.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    service.shutdownIoExecutor();
+    roxDBImpl.close();
+  }
+
+  private static ItemResponse processItem(RoxDBGrpc.RoxDBStub stub, ItemRequest request)
+      throws InterruptedException {
+    List<ItemResponse> responses = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch latch = new CountDownLatch(1);
+    StreamObserver<ItemRequest> requestObserver =
+        stub.processItems(
+            new StreamObserver<>() {
+              @Override
+              public void onNext(ItemResponse itemResponse) {
+                responses.add(itemResponse);
+              }
+
+              @Override
+              public void onError(Throwable throwable) {
+                fail("onError should not be called");
+              }
+
+              @Override
+              public void onCompleted() {
+                latch.countDown();
+              }
+            });
+    requestObserver.onNext(request);
+    requestObserver.onCompleted();
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertEquals(1, responses.size());
+    assertEquals(0, responses.getFirst().getErrors().getErrorCount());
+    return responses.getFirst();
+  }
+
+  @Test
+  void getItemRejectedByShutDownIoExecutor() throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    RoxDBGrpcService service = new RoxDBGrpcService(roxDB, 1);
+    Server ioServer =
+        InProcessServerBuilder.forName(serverName).directExecutor().addService(service).build();
+    ioServer.start();
+    ManagedChannel ioChannel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    service.shutdownIoExecutor();
+
+    String table = "table";
+    var diskKey = new com.github.lukaszbudnik.roxdb.rocksdb.Key("pk1", "disk");
+    when(roxDB.getItem(table, diskKey, true))
+        .thenThrow(
+            new RocksDBException(
+                "not in cache",
+                new org.rocksdb.Status(
+                    org.rocksdb.Status.Code.Incomplete, org.rocksdb.Status.SubCode.None, null)));
+
+    List<ItemResponse> responses = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch latch = new CountDownLatch(1);
+    StreamObserver<ItemRequest> requestObserver =
+        RoxDBGrpc.newStub(ioChannel)
+            .processItems(
+                new StreamObserver<>() {
+                  @Override
+                  public void onNext(ItemResponse itemResponse) {
+                    responses.add(itemResponse);
+                  }
+
+                  @Override
+                  public void onError(Throwable throwable) {
+                    fail("onError should not be called");
+                  }
+
+                  @Override
+                  public void onCompleted() {
+                    latch.countDown();
+                  }
+                });
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("disk")
+            .setGetItem(
+                ItemRequest.GetItem.newBuilder()
+                    .setTable(table)
+                    .setKey(ProtoUtils.modelToProto(diskKey))
+                    .build())
+            .build());
+    requestObserver.onCompleted();
+
+    // rejected read is answered and the stream completes
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertEquals(1, responses.size());
+    assertEquals("disk", responses.getFirst().getCorrelationId());
+    assertEquals(
+        "Server is shutting down", responses.getFirst().getErrors().getError(0).getMessage());
+    verify(roxDB, never()).getItem(table, diskKey);
+
+    ioChannel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    ioServer.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+  }
+
   @Test
   void getItemNotFound() throws RocksDBException, InterruptedException {
     // Test GetItem
@@ -1114,4 +1354,1009 @@ class RoxDBGrpcServiceTest {
         "When set SortKeyRange must have at least one boundary",
         queryResponse.getErrors().getError(0).getMessage());
   }
+
+  @Test
+  void putItemRejectedByTable() throws RocksDBException, InterruptedException {
+    UUID putItemId = UUID.randomUUID();
+    String table = "metrics";
+
+    CountDownLatch latch = new CountDownLatch(1);
+    Map<String, ItemResponse> responses = new HashMap<>();
+
+    doThrow(new IllegalArgumentException("Time series sort key must be an ISO-8601 timestamp"))
+        .when(roxDB)
+        .putItem(eq(table), any(com.github.lukaszbudnik.roxdb.rocksdb.Item.class));
+
+    ItemRequest putItemRequest =
+        ItemRequest.newBuilder()
+            .setCorrelationId(putItemId.toString())
+            .setPutItem(
+                ItemRequest.PutItem.newBuilder()
+                    .setTable(table)
+                    .setItem(
+                        Item.newBuilder()
+                            .setKey(
+                                Key.newBuilder().setPartitionKey("cpu").setSortKey("now").build())
+                            .build())
+                    .build())
+            .build();
+
+    var responseObserver =
+        new StreamObserver<ItemResponse>() {
+          @Override
+          public void onNext(ItemResponse itemResponse) {
+            responses.put(itemResponse.getCorrelationId(), itemResponse);
+            latch.countDown();
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            fail("onError should not be called");
+          }
+
+          @Override
+          public void onCompleted() {
+            // no-op
+          }
+        };
+
+    StreamObserver<ItemRequest> requestObserver = asyncStub.processItems(responseObserver);
+    requestObserver.onNext(putItemRequest);
+    requestObserver.onCompleted();
+
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    // verify gRPC response contains Errors message
+    ItemResponse putItemResponse = responses.get(putItemId.toString());
+    assertTrue(putItemResponse.hasErrors(), "Expected to get errors for " + putItemId);
+    assertEquals(1, putItemResponse.getErrors().getErrorCount());
+    assertEquals(
+        "Time series sort key must be an ISO-8601 timestamp",
+        putItemResponse.getErrors().getError(0).getMessage());
+  }
+
+  @Test
+  void enqueueDequeueAck() throws RocksDBException, InterruptedException {
+    String table = "jobs";
+    String partitionKey = "emails";
+    String consumerGroup = "workers";
+    var key = new com.github.lukaszbudnik.roxdb.rocksdb.Key(partitionKey, "00000000000000000001");
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put("to", "user@example.com");
+
+    when(roxDB.enqueue(eq(table), eq(partitionKey), eq(attributes))).thenReturn(key);
+    when(roxDB.dequeue(table, partitionKey, consumerGroup, 10))
+        .thenReturn(List.of(new com.github.lukaszbudnik.roxdb.rocksdb.Item(key, attributes)));
+
+    CountDownLatch latch = new CountDownLatch(3);
+    Map<String, ItemResponse> responses = new HashMap<>();
+
+    var responseObserver =
+        new StreamObserver<ItemResponse>() {
+          @Override
+          public void onNext(ItemResponse itemResponse) {
+            responses.put(itemResponse.getCorrelationId(), itemResponse);
+            latch.countDown();
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            fail("onError should not be called");
+          }
+
+          @Override
+          public void onCompleted() {
+            // no-op
+          }
+        };
+
+    StreamObserver<ItemRequest> requestObserver = asyncStub.processItems(responseObserver);
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("enqueue")
+            .setEnqueue(
+                ItemRequest.Enqueue.newBuilder()
+                    .setTable(table)
+                    .setPartitionKey(partitionKey)
+                    .setAttributes(ProtoUtils.mapToStruct(attributes))
+                    .build())
+            .build());
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("dequeue")
+            .setDequeue(
+                ItemRequest.Dequeue.newBuilder()
+                    .setTable(table)
+                    .setPartitionKey(partitionKey)
+                    .setConsumerGroup(consumerGroup)
+                    .setLimit(10)
+                    .build())
+            .build());
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("ack")
+            .setAck(
+                ItemRequest.Ack.newBuilder()
+                    .setTable(table)
+                    .setPartitionKey(partitionKey)
+                    .setConsumerGroup(consumerGroup)
+                    .setSortKey(key.sortKey())
+                    .build())
+            .build());
+    requestObserver.onCompleted();
+
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    verify(roxDB).ack(table, partitionKey, consumerGroup, key.sortKey());
+
+    assertEquals(
+        key.sortKey(), responses.get("enqueue").getEnqueueResponse().getKey().getSortKey());
+    var dequeued = responses.get("dequeue").getDequeueResponse().getDequeueResult();
+    assertEquals(1, dequeued.getItemsCount());
+    assertEquals(key.sortKey(), dequeued.getItems(0).getKey().getSortKey());
+    assertEquals(key.sortKey(), responses.get("ack").getAckResponse().getKey().getSortKey());
+  }
+
+  @Test
+  void dequeueValidationErrors() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    Map<String, ItemResponse> responses = new HashMap<>();
+
+    var responseObserver =
+        new StreamObserver<ItemResponse>() {
+          @Override
+          public void onNext(ItemResponse itemResponse) {
+            responses.put(itemResponse.getCorrelationId(), itemResponse);
+            latch.countDown();
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            fail("onError should not be called");
+          }
+
+          @Override
+          public void onCompleted() {
+            // no-op
+          }
+        };
+
+    StreamObserver<ItemRequest> requestObserver = asyncStub.processItems(responseObserver);
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("dequeue")
+            .setDequeue(ItemRequest.Dequeue.newBuilder().setTable("jobs").setLimit(10).build())
+            .build());
+    requestObserver.onCompleted();
+
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    ItemResponse dequeueResponse = responses.get("dequeue");
+    assertTrue(dequeueResponse.hasErrors());
+    assertEquals(2, dequeueResponse.getErrors().getErrorCount());
+    assertEquals(
+        "Partition key cannot be blank", dequeueResponse.getErrors().getError(0).getMessage());
+    assertEquals(
+        "Consumer group cannot be blank", dequeueResponse.getErrors().getError(1).getMessage());
+  }
+
+  @Test
+  void putItemGeneratedSortKey() throws RocksDBException, InterruptedException {
+    String table = "events";
+    String partitionKey = "user#123";
+    var generatedKey =
+        new com.github.lukaszbudnik.roxdb.rocksdb.Key(partitionKey, "01ARZ3NDEKTSV4RRFFQ69G5FAV");
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put("type", "login");
+
+    when(roxDB.putItem(eq(table), eq(partitionKey), eq(attributes))).thenReturn(generatedKey);
+
+    CountDownLatch latch = new CountDownLatch(2);
+    Map<String, ItemResponse> responses = new HashMap<>();
+
+    var responseObserver =
+        new StreamObserver<ItemResponse>() {
+          @Override
+          public void onNext(ItemResponse itemResponse) {
+            responses.put(itemResponse.getCorrelationId(), itemResponse);
+            latch.countDown();
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            fail("onError should not be called");
+          }
+
+          @Override
+          public void onCompleted() {
+            // no-op
+          }
+        };
+
+    StreamObserver<ItemRequest> requestObserver = asyncStub.processItems(responseObserver);
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("generated")
+            .setPutItem(
+                ItemRequest.PutItem.newBuilder()
+                    .setTable(table)
+                    .setGenerateSortKey(true)
+                    .setItem(
+                        Item.newBuilder()
+                            .setKey(Key.newBuilder().setPartitionKey(partitionKey).build())
+                            .setAttributes(ProtoUtils.mapToStruct(attributes))
+                            .build())
+                    .build())
+            .build());
+    // sort key cannot be set when it is generated by the server
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("invalid")
+            .setPutItem(
+                ItemRequest.PutItem.newBuilder()
+                    .setTable(table)
+                    .setGenerateSortKey(true)
+                    .setItem(
+                        Item.newBuilder()
+                            .setKey(
+                                Key.newBuilder()
+                                    .setPartitionKey(partitionKey)
+                                    .setSortKey("sk1")
+                                    .build())
+                            .build())
+                    .build())
+            .build());
+    requestObserver.onCompleted();
+
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    verify(roxDB, never())
+        .putItem(anyString(), any(com.github.lukaszbudnik.roxdb.rocksdb.Item.class));
+
+    ItemResponse generatedResponse = responses.get("generated");
+    assertTrue(generatedResponse.hasPutItemResponse());
+    assertEquals(partitionKey, generatedResponse.getPutItemResponse().getKey().getPartitionKey());
+    assertEquals(
+        generatedKey.sortKey(), generatedResponse.getPutItemResponse().getKey().getSortKey());
+
+    ItemResponse invalidResponse = responses.get("invalid");
+    assertTrue(invalidResponse.hasErrors());
+    assertEquals(1, invalidResponse.getErrors().getErrorCount());
+    assertEquals(
+        "Sort key must be blank when it is generated",
+        invalidResponse.getErrors().getError(0).getMessage());
+  }
+
+  @Test
+  void createAndQueryIndex() throws RocksDBException, InterruptedException {
+    String table = "orders";
+    var orderKey = new com.github.lukaszbudnik.roxdb.rocksdb.Key("shop1", "order1");
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put("customer", "alice");
+    attributes.put("total", 250.0);
+
+    when(roxDB.queryIndex(table, "byCustomer", "alice", 10, Optional.empty()))
+        .thenReturn(List.of(new com.github.lukaszbudnik.roxdb.rocksdb.Item(orderKey, attributes)));
+
+    CountDownLatch latch = new CountDownLatch(3);
+    Map<String, ItemResponse> responses = new HashMap<>();
+
+    var responseObserver =
+        new StreamObserver<ItemResponse>() {
+          @Override
+          public void onNext(ItemResponse itemResponse) {
+            responses.put(itemResponse.getCorrelationId(), itemResponse);
+            latch.countDown();
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            fail("onError should not be called");
+          }
+
+          @Override
+          public void onCompleted() {
+            // no-op
+          }
+        };
+
+    StreamObserver<ItemRequest> requestObserver = asyncStub.processItems(responseObserver);
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("create")
+            .setCreateIndex(
+                ItemRequest.CreateIndex.newBuilder()
+                    .setTable(table)
+                    .setIndexName("byCustomer")
+                    .setType(ItemRequest.IndexType.GLOBAL)
+                    .setPartitionAttribute("customer")
+                    .setSortAttribute("total")
+                    .addProjectedAttributes("status")
+                    .setBackfillItemsPerSecond(500)
+                    .build())
+            .build());
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("invalid")
+            .setCreateIndex(
+                ItemRequest.CreateIndex.newBuilder().setTable(table).setIndexName("byNothing"))
+            .build());
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("query")
+            .setQuery(
+                ItemRequest.Query.newBuilder()
+                    .setTable(table)
+                    .setIndexName("byCustomer")
+                    .setPartitionKey("alice")
+                    .setLimit(10)
+                    .build())
+            .build());
+    requestObserver.onCompleted();
+
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    verify(roxDB)
+        .createIndex(
+            table,
+            new IndexDefinition(
+                "byCustomer", IndexType.GLOBAL, "customer", "total", List.of("status"), List.of()),
+            500);
+    assertEquals("byCustomer", responses.get("create").getCreateIndexResponse().getIndexName());
+
+    ItemResponse invalidResponse = responses.get("invalid");
+    assertTrue(invalidResponse.hasErrors());
+    assertEquals(
+        "Index partition attribute cannot be blank",
+        invalidResponse.getErrors().getError(0).getMessage());
+
+    var items = responses.get("query").getQueryResponse().getItemsQueryResult().getItemsList();
+    assertEquals(1, items.size());
+    assertEquals("order1", items.get(0).getKey().getSortKey());
+    verify(roxDB, never()).query(anyString(), anyString(), anyInt(), any());
+  }
+
+  @Test
+  void queryWithFilters() throws RocksDBException, InterruptedException {
+    String table = "orders";
+    var orderKey = new com.github.lukaszbudnik.roxdb.rocksdb.Key("shop1", "order1");
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put("status", "open");
+    Map<String, String> filters = Map.of("status", "open");
+
+    when(roxDB.query(table, "shop1", 10, Optional.empty(), filters))
+        .thenReturn(List.of(new com.github.lukaszbudnik.roxdb.rocksdb.Item(orderKey, attributes)));
+
+    CountDownLatch latch = new CountDownLatch(3);
+    Map<String, ItemResponse> responses = new HashMap<>();
+
+    var responseObserver =
+        new StreamObserver<ItemResponse>() {
+          @Override
+          public void onNext(ItemResponse itemResponse) {
+            responses.put(itemResponse.getCorrelationId(), itemResponse);
+            latch.countDown();
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            fail("onError should not be called");
+          }
+
+          @Override
+          public void onCompleted() {
+            // no-op
+          }
+        };
+
+    StreamObserver<ItemRequest> requestObserver = asyncStub.processItems(responseObserver);
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("create")
+            .setCreateIndex(
+                ItemRequest.CreateIndex.newBuilder()
+                    .setTable(table)
+                    .setIndexName("byStatus")
+                    .setType(ItemRequest.IndexType.BITMAP)
+                    .addAttributes("status")
+                    .build())
+            .build());
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("query")
+            .setQuery(
+                ItemRequest.Query.newBuilder()
+                    .setTable(table)
+                    .setPartitionKey("shop1")
+                    .setLimit(10)
+                    .putAllFilters(filters)
+                    .build())
+            .build());
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("invalid")
+            .setQuery(
+                ItemRequest.Query.newBuilder()
+                    .setTable(table)
+                    .setPartitionKey("shop1")
+                    .setLimit(10)
+                    .setIndexName("byStatus")
+                    .putAllFilters(filters)
+                    .build())
+            .build());
+    requestObserver.onCompleted();
+
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    verify(roxDB)
+        .createIndex(
+            table,
+            new IndexDefinition("byStatus", IndexType.BITMAP, "", "", List.of(), List.of("status")),
+            0);
+
+    var items = responses.get("query").getQueryResponse().getItemsQueryResult().getItemsList();
+    assertEquals(1, items.size());
+    assertEquals("order1", items.get(0).getKey().getSortKey());
+
+    ItemResponse invalidResponse = responses.get("invalid");
+    assertTrue(invalidResponse.hasErrors());
+    assertEquals(
+        "Filters cannot be used with index queries",
+        invalidResponse.getErrors().getError(0).getMessage());
+    verify(roxDB, never()).queryIndex(anyString(), anyString(), anyString(), anyInt(), any());
+  }
+
+  @Test
+  void queryGeoIndex() throws RocksDBException, InterruptedException {
+    String table = "stores";
+    var storeKey = new com.github.lukaszbudnik.roxdb.rocksdb.Key("poland", "warsaw");
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put("lat", 52.2297);
+    attributes.put("lon", 21.0122);
+    GeoArea area = GeoArea.radius(52.0, 21.0, 50_000);
+
+    when(roxDB.queryGeoIndex(table, "byLocation", "poland", 10, area))
+        .thenReturn(List.of(new com.github.lukaszbudnik.roxdb.rocksdb.Item(storeKey, attributes)));
+
+    CountDownLatch latch = new CountDownLatch(2);
+    Map<String, ItemResponse> responses = new HashMap<>();
+
+    var responseObserver =
+        new StreamObserver<ItemResponse>() {
+          @Override
+          public void onNext(ItemResponse itemResponse) {
+            responses.put(itemResponse.getCorrelationId(), itemResponse);
+            latch.countDown();
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            fail("onError should not be called");
+          }
+
+          @Override
+          public void onCompleted() {
+            // no-op
+          }
+        };
+
+    var geoArea =
+        ItemRequest.GeoArea.newBuilder()
+            .setRadius(
+                ItemRequest.GeoArea.Radius.newBuilder()
+                    .setLatitude(52.0)
+                    .setLongitude(21.0)
+                    .setMeters(50_000))
+            .build();
+    StreamObserver<ItemRequest> requestObserver = asyncStub.processItems(responseObserver);
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("query")
+            .setQuery(
+                ItemRequest.Query.newBuilder()
+                    .setTable(table)
+                    .setIndexName("byLocation")
+                    .setPartitionKey("poland")
+                    .setLimit(10)
+                    .setGeoArea(geoArea)
+                    .build())
+            .build());
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("invalid")
+            .setQuery(
+                ItemRequest.Query.newBuilder()
+                    .setTable(table)
+                    .setPartitionKey("poland")
+                    .setLimit(10)
+                    .setGeoArea(geoArea)
+                    .build())
+            .build());
+    requestObserver.onCompleted();
+
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    var items = responses.get("query").getQueryResponse().getItemsQueryResult().getItemsList();
+    assertEquals(1, items.size());
+    assertEquals("warsaw", items.get(0).getKey().getSortKey());
+
+    ItemResponse invalidResponse = responses.get("invalid");
+    assertTrue(invalidResponse.hasErrors());
+    assertEquals(
+        "Geo area requires geo index name", invalidResponse.getErrors().getError(0).getMessage());
+  }
+
+  @Test
+  void queryVectorIndex() throws RocksDBException, InterruptedException {
+    String table = "documents";
+    var documentKey = new com.github.lukaszbudnik.roxdb.rocksdb.Key("library", "doc1");
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put("embedding", new ArrayList<>(List.of(0.6, 0.8)));
+
+    when(roxDB.queryVectorIndex(table, "byEmbedding", "library", 5, new float[] {0.6f, 0.8f}))
+        .thenReturn(
+            List.of(new com.github.lukaszbudnik.roxdb.rocksdb.Item(documentKey, attributes)));
+
+    CountDownLatch latch = new CountDownLatch(2);
+    Map<String, ItemResponse> responses = new HashMap<>();
+
+    var responseObserver =
+        new StreamObserver<ItemResponse>() {
+          @Override
+          public void onNext(ItemResponse itemResponse) {
+            responses.put(itemResponse.getCorrelationId(), itemResponse);
+            latch.countDown();
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            fail("onError should not be called");
+          }
+
+          @Override
+          public void onCompleted() {
+            // no-op
+          }
+        };
+
+    StreamObserver<ItemRequest> requestObserver = asyncStub.processItems(responseObserver);
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("query")
+            .setQuery(
+                ItemRequest.Query.newBuilder()
+                    .setTable(table)
+                    .setIndexName("byEmbedding")
+                    .setPartitionKey("library")
+                    .setLimit(5)
+                    .addAllVector(List.of(0.6f, 0.8f))
+                    .build())
+            .build());
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("invalid")
+            .setQuery(
+                ItemRequest.Query.newBuilder()
+                    .setTable(table)
+                    .setPartitionKey("library")
+                    .setLimit(5)
+                    .addAllVector(List.of(0.6f, 0.8f))
+                    .build())
+            .build());
+    requestObserver.onCompleted();
+
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    var items = responses.get("query").getQueryResponse().getItemsQueryResult().getItemsList();
+    assertEquals(1, items.size());
+    assertEquals("doc1", items.get(0).getKey().getSortKey());
+
+    ItemResponse invalidResponse = responses.get("invalid");
+    assertTrue(invalidResponse.hasErrors());
+    assertEquals(
+        "Vector requires vector index name", invalidResponse.getErrors().getError(0).getMessage());
+  }
+
+  @Test
+  void getAggregate() throws RocksDBException, InterruptedException {
+    when(roxDB.getAggregate("orders", "shop1", "revenue")).thenReturn(270.0);
+    when(roxDB.getAggregate("orders", "shop1", "largest")).thenReturn(null);
+
+    CountDownLatch latch = new CountDownLatch(2);
+    Map<String, ItemResponse> responses = new HashMap<>();
+
+    var responseObserver =
+        new StreamObserver<ItemResponse>() {
+          @Override
+          public void onNext(ItemResponse itemResponse) {
+            responses.put(itemResponse.getCorrelationId(), itemResponse);
+            latch.countDown();
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            fail("onError should not be called");
+          }
+
+          @Override
+          public void onCompleted() {
+            // no-op
+          }
+        };
+
+    StreamObserver<ItemRequest> requestObserver = asyncStub.processItems(responseObserver);
+    for (String aggregateName : List.of("revenue", "largest")) {
+      requestObserver.onNext(
+          ItemRequest.newBuilder()
+              .setCorrelationId(aggregateName)
+              .setGetAggregate(
+                  ItemRequest.GetAggregate.newBuilder()
+                      .setTable("orders")
+                      .setPartitionKey("shop1")
+                      .setAggregateName(aggregateName)
+                      .build())
+              .build());
+    }
+    requestObserver.onCompleted();
+
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    assertEquals(
+        270.0, responses.get("revenue").getGetAggregateResponse().getValue().getNumberValue());
+    assertTrue(responses.get("largest").getGetAggregateResponse().getValue().hasNullValue());
+  }
+
+  @Test
+  void queryAggregates() throws RocksDBException, InterruptedException {
+    List<QueryAggregate> aggregates =
+        List.of(QueryAggregate.count(), QueryAggregate.of(AggregateFunction.AVG, "total"));
+    when(roxDB.queryAggregates("orders", "shop1", 10, Optional.empty(), aggregates, "customer"))
+        .thenReturn(
+            List.of(
+                new AggregateGroup("alice", List.of(2L, 129.75)),
+                new AggregateGroup(null, Arrays.asList(1L, null))));
+
+    CountDownLatch latch = new CountDownLatch(3);
+    Map<String, ItemResponse> responses = new HashMap<>();
+
+    var responseObserver =
+        new StreamObserver<ItemResponse>() {
+          @Override
+          public void onNext(ItemResponse itemResponse) {
+            responses.put(itemResponse.getCorrelationId(), itemResponse);
+            latch.countDown();
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            fail("onError should not be called");
+          }
+
+          @Override
+          public void onCompleted() {
+            // no-op
+          }
+        };
+
+    var queryAggregates =
+        List.of(
+            ItemRequest.QueryAggregate.newBuilder()
+                .setFunction(ItemRequest.AggregateFunction.COUNT)
+                .build(),
+            ItemRequest.QueryAggregate.newBuilder()
+                .setFunction(ItemRequest.AggregateFunction.AVG)
+                .setAttribute("total")
+                .build());
+    StreamObserver<ItemRequest> requestObserver = asyncStub.processItems(responseObserver);
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("query")
+            .setQuery(
+                ItemRequest.Query.newBuilder()
+                    .setTable("orders")
+                    .setPartitionKey("shop1")
+                    .setLimit(10)
+                    .addAllAggregates(queryAggregates)
+                    .setGroupBy("customer")
+                    .build())
+            .build());
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("index")
+            .setQuery(
+                ItemRequest.Query.newBuilder()
+                    .setTable("orders")
+                    .setPartitionKey("shop1")
+                    .setLimit(10)
+                    .setIndexName("byCustomer")
+                    .addAllAggregates(queryAggregates)
+                    .build())
+            .build());
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("groupBy")
+            .setQuery(
+                ItemRequest.Query.newBuilder()
+                    .setTable("orders")
+                    .setPartitionKey("shop1")
+                    .setLimit(10)
+                    .setGroupBy("customer")
+                    .build())
+            .build());
+    requestObserver.onCompleted();
+
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    var groups =
+        responses.get("query").getQueryResponse().getAggregatesQueryResult().getGroupsList();
+    assertEquals(2, groups.size());
+    assertEquals("alice", groups.get(0).getGroupValue().getStringValue());
+    assertEquals(2.0, groups.get(0).getValues(0).getNumberValue());
+    assertEquals(129.75, groups.get(0).getValues(1).getNumberValue());
+    assertTrue(groups.get(1).getGroupValue().hasNullValue());
+    assertTrue(groups.get(1).getValues(1).hasNullValue());
+
+    assertEquals(
+        "Aggregates cannot be used with index queries or filters",
+        responses.get("index").getErrors().getError(0).getMessage());
+    assertEquals(
+        "Group by requires aggregates",
+        responses.get("groupBy").getErrors().getError(0).getMessage());
+  }
+
+  @Test
+  void queryPartitions() throws RocksDBException, InterruptedException {
+    var startKey = new com.github.lukaszbudnik.roxdb.rocksdb.Key("alice", "2024-01");
+    when(roxDB.queryPartitions(
+            "feeds", List.of("carol", "alice"), 2, Optional.empty(), Optional.of(startKey)))
+        .thenReturn(
+            List.of(
+                new com.github.lukaszbudnik.roxdb.rocksdb.Item(
+                    new com.github.lukaszbudnik.roxdb.rocksdb.Key("carol", "2024-02"), Map.of()),
+                new com.github.lukaszbudnik.roxdb.rocksdb.Item(
+                    new com.github.lukaszbudnik.roxdb.rocksdb.Key("alice", "2024-02"), Map.of())));
+
+    CountDownLatch latch = new CountDownLatch(3);
+    Map<String, ItemResponse> responses = new HashMap<>();
+
+    var responseObserver =
+        new StreamObserver<ItemResponse>() {
+          @Override
+          public void onNext(ItemResponse itemResponse) {
+            responses.put(itemResponse.getCorrelationId(), itemResponse);
+            latch.countDown();
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            fail("onError should not be called");
+          }
+
+          @Override
+          public void onCompleted() {
+            // no-op
+          }
+        };
+
+    StreamObserver<ItemRequest> requestObserver = asyncStub.processItems(responseObserver);
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("query")
+            .setQuery(
+                ItemRequest.Query.newBuilder()
+                    .setTable("feeds")
+                    .addAllPartitionKeys(List.of("carol", "alice"))
+                    .setLimit(2)
+                    .setExclusiveStartKey(
+                        Key.newBuilder().setPartitionKey("alice").setSortKey("2024-01"))
+                    .build())
+            .build());
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("both")
+            .setQuery(
+                ItemRequest.Query.newBuilder()
+                    .setTable("feeds")
+                    .setPartitionKey("bob")
+                    .addAllPartitionKeys(List.of("carol", "alice"))
+                    .setLimit(2)
+                    .build())
+            .build());
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("startKey")
+            .setQuery(
+                ItemRequest.Query.newBuilder()
+                    .setTable("feeds")
+                    .addAllPartitionKeys(List.of("carol", "alice"))
+                    .setLimit(2)
+                    .setExclusiveStartKey(
+                        Key.newBuilder().setPartitionKey("bob").setSortKey("2024-01"))
+                    .build())
+            .build());
+    requestObserver.onCompleted();
+
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    var items = responses.get("query").getQueryResponse().getItemsQueryResult().getItemsList();
+    assertEquals(
+        List.of("carol", "alice"),
+        items.stream().map(item -> item.getKey().getPartitionKey()).toList());
+    assertEquals(
+        "Partition key and partition keys cannot be used together",
+        responses.get("both").getErrors().getError(0).getMessage());
+    assertEquals(
+        "Exclusive start key partition key must be one of partition keys",
+        responses.get("startKey").getErrors().getError(0).getMessage());
+  }
+
+  @Test
+  void watch() throws InterruptedException {
+    Watch watch = mock(Watch.class);
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<java.util.function.Consumer<ChangeEvent>> listenerCaptor =
+        ArgumentCaptor.forClass(java.util.function.Consumer.class);
+    when(roxDB.watch(
+            eq("feeds"),
+            eq("alice"),
+            eq(Optional.of(SortKeyRange.from(RangeBoundary.inclusive("2024")))),
+            listenerCaptor.capture()))
+        .thenReturn(watch);
+
+    List<WatchResponse> responses = new ArrayList<>();
+    var responseObserver =
+        new ClientResponseObserver<WatchRequest, WatchResponse>() {
+          ClientCallStreamObserver<WatchRequest> requestStream;
+
+          @Override
+          public void beforeStart(ClientCallStreamObserver<WatchRequest> requestStream) {
+            this.requestStream = requestStream;
+          }
+
+          @Override
+          public void onNext(WatchResponse watchResponse) {
+            responses.add(watchResponse);
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            // cancelled by the client
+          }
+
+          @Override
+          public void onCompleted() {
+            // no-op
+          }
+        };
+
+    asyncStub.watch(
+        WatchRequest.newBuilder()
+            .setTable("feeds")
+            .setPartitionKey("alice")
+            .setSortKeyRange(
+                ItemRequest.SortKeyRange.newBuilder()
+                    .setStart(ItemRequest.RangeBoundary.newBuilder().setValue("2024")))
+            .build(),
+        responseObserver);
+
+    var key = new com.github.lukaszbudnik.roxdb.rocksdb.Key("alice", "2024-01");
+    listenerCaptor
+        .getValue()
+        .accept(new ChangeEvent("feeds", ChangeType.PUT, key, Map.of("title", "hello")));
+    listenerCaptor.getValue().accept(new ChangeEvent("feeds", ChangeType.DELETE, key, null));
+
+    assertEquals(2, responses.size());
+    assertEquals(WatchResponse.ChangeType.PUT, responses.get(0).getType());
+    assertEquals("2024-01", responses.get(0).getItem().getKey().getSortKey());
+    assertEquals(
+        "hello",
+        responses.get(0).getItem().getAttributes().getFieldsOrThrow("title").getStringValue());
+    assertEquals(WatchResponse.ChangeType.DELETE, responses.get(1).getType());
+    assertEquals(0, responses.get(1).getItem().getAttributes().getFieldsCount());
+
+    // watch is closed when the client cancels the stream
+    responseObserver.requestStream.cancel("done", null);
+    verify(watch, timeout(1000)).close();
+  }
+
+  @Test
+  void watchInvalidPartitionKey() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    List<Throwable> errors = new ArrayList<>();
+    asyncStub.watch(
+        WatchRequest.newBuilder().setTable("feeds").build(),
+        new StreamObserver<>() {
+          @Override
+          public void onNext(WatchResponse watchResponse) {
+            fail("onNext should not be called");
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            errors.add(throwable);
+            latch.countDown();
+          }
+
+          @Override
+          public void onCompleted() {
+            fail("onCompleted should not be called");
+          }
+        });
+
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+    assertEquals(Status.Code.INVALID_ARGUMENT, Status.fromThrowable(errors.get(0)).getCode());
+    verifyNoInteractions(roxDB);
+  }
+
+  @Test
+  void getChanges() throws RocksDBException, InterruptedException {
+    when(roxDB.getChanges(0, 10, Set.of("users")))
+        .thenReturn(
+            new Changes(
+                List.of(
+                    new ChangeEvent(
+                        "users",
+                        ChangeType.PUT,
+                        new com.github.lukaszbudnik.roxdb.rocksdb.Key("alice", "profile"),
+                        Map.of("name", "Alice")),
+                    new ChangeEvent(
+                        "users",
+                        ChangeType.DELETE,
+                        new com.github.lukaszbudnik.roxdb.rocksdb.Key("bob", "profile"),
+                        null)),
+                42));
+
+    CountDownLatch latch = new CountDownLatch(2);
+    Map<String, ItemResponse> responses = new HashMap<>();
+
+    var responseObserver =
+        new StreamObserver<ItemResponse>() {
+          @Override
+          public void onNext(ItemResponse itemResponse) {
+            responses.put(itemResponse.getCorrelationId(), itemResponse);
+            latch.countDown();
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            fail("onError should not be called");
+          }
+
+          @Override
+          public void onCompleted() {
+            // no-op
+          }
+        };
+
+    StreamObserver<ItemRequest> requestObserver = asyncStub.processItems(responseObserver);
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("changes")
+            .setGetChanges(
+                ItemRequest.GetChanges.newBuilder().setLimit(10).addTables("users").build())
+            .build());
+    requestObserver.onNext(
+        ItemRequest.newBuilder()
+            .setCorrelationId("invalid")
+            .setGetChanges(ItemRequest.GetChanges.newBuilder().setSinceSequenceNumber(-1).build())
+            .build());
+    requestObserver.onCompleted();
+
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    var result = responses.get("changes").getGetChangesResponse().getChangesResult();
+    assertEquals(42, result.getNextSequenceNumber());
+    assertEquals(2, result.getChangesCount());
+    assertEquals("users", result.getChanges(0).getTable());
+    assertEquals(WatchResponse.ChangeType.PUT, result.getChanges(0).getType());
+    assertEquals(
+        "Alice",
+        result.getChanges(0).getItem().getAttributes().getFieldsOrThrow("name").getStringValue());
+    assertEquals(WatchResponse.ChangeType.DELETE, result.getChanges(1).getType());
+    assertEquals("bob", result.getChanges(1).getItem().getKey().getPartitionKey());
+
+    var errors = responses.get("invalid").getErrors().getErrorList();
+    assertEquals("Since sequence number cannot be negative", errors.get(0).getMessage());
+    assertEquals("Limit must be greater than 0", errors.get(1).getMessage());
+  }
 }
@@ -24,7 +24,9 @@ import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x509.*;
@@ -94,6 +96,25 @@ class RoxDBServerTest {
     }
   }
 
+  @Test
+  void testStartServer_WarmUp() throws IOException, InterruptedException {
+    RoxDBConfig config = mock(RoxDBConfig.class);
+    when(config.tlsCertificatePath()).thenReturn("");
+    when(config.tlsPrivateKeyPath()).thenReturn("");
+    when(config.port()).thenReturn(50055);
+
+    RoxDBServer server = new RoxDBServer(config, new RoxDBGrpcService(mock(RoxDB.class)));
+    List<HealthCheckResponse.ServingStatus> warmUpStatuses = new ArrayList<>();
+    // port is bound during warm up but the server does not report SERVING yet
+    server.start(() -> warmUpStatuses.add(server.getServiceStatus()));
+    try {
+      assertEquals(List.of(HealthCheckResponse.ServingStatus.NOT_SERVING), warmUpStatuses);
+      assertEquals(HealthCheckResponse.ServingStatus.SERVING, server.getServiceStatus());
+    } finally {
+      server.stop();
+    }
+  }
+
   @Test
   void testStartServer_WithTLS()
       throws IOException,
@@ -113,6 +134,8 @@ class RoxDBServerTest {
     when(config.tlsPrivateKeyPath()).thenReturn(keyFile.toString());
     when(config.tlsCertificateChainPath()).thenReturn("");
     when(config.port()).thenReturn(50053);
+    // dedicated Netty event loops
+    when(config.eventLoopThreads()).thenReturn(2);
 
     RoxDB roxDB = mock(RoxDB.class);
 
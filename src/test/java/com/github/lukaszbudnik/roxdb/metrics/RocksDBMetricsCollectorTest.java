@@ -1,12 +1,17 @@
 package com.github.lukaszbudnik.roxdb.metrics;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
+import com.github.lukaszbudnik.roxdb.rocksdb.BlockCacheStats;
+import com.github.lukaszbudnik.roxdb.rocksdb.CacheStats;
 import io.opentelemetry.api.metrics.Meter;
 import io.opentelemetry.sdk.metrics.export.MetricExporter;
 import io.opentelemetry.sdk.testing.exporter.InMemoryMetricExporter;
 import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -71,4 +76,52 @@ class RocksDBMetricsCollectorTest {
     verify(statistics, times(gauges.length))
         .getHistogramData(metricsConfigProcessor.getHistogramTypes().getFirst());
   }
+
+  @Test
+  void testCacheMetrics() throws InterruptedException {
+    AtomicInteger reads = new AtomicInteger();
+    RocksDBMetricsCollector collector = new RocksDBMetricsCollector(statistics, meter);
+    collector.createCacheMetrics(
+        "roxdb_item_cache",
+        () -> {
+          reads.incrementAndGet();
+          return new CacheStats(3, 1, 0, 2, 512, 4);
+        });
+
+    // metrics are read every 1s, sleep for 1.1s
+    Thread.sleep(Duration.ofSeconds(1).plusMillis(100));
+
+    // hits, misses, hit rate, evictions, entries, size and coalesced reads
+    assertEquals(7, reads.get());
+  }
+
+  @Test
+  void testBlockCacheMetrics() throws InterruptedException {
+    AtomicInteger reads = new AtomicInteger();
+    RocksDBMetricsCollector collector = new RocksDBMetricsCollector(statistics, meter);
+    collector.createBlockCacheMetrics(
+        () -> {
+          reads.incrementAndGet();
+          return new BlockCacheStats(1024, 512, 128, Map.of("data-block", 384L), 10, 5, 4096, 3, 2);
+        });
+
+    // metrics are read every 1s, sleep for 1.1s
+    Thread.sleep(Duration.ofSeconds(1).plusMillis(100));
+
+    // capacity, usage, pinned usage, usage by role, hits and misses and secondary tier capacity,
+    // hits and misses
+    assertEquals(9, reads.get());
+  }
+
+  @Test
+  void testGauge() throws InterruptedException {
+    AtomicInteger reads = new AtomicInteger();
+    RocksDBMetricsCollector collector = new RocksDBMetricsCollector(statistics, meter);
+    collector.createGauge("roxdb_memtables_size_bytes", reads::incrementAndGet);
+
+    // metrics are read every 1s, sleep for 1.1s
+    Thread.sleep(Duration.ofSeconds(1).plusMillis(100));
+
+    assertEquals(1, reads.get());
+  }
 }
@@ -0,0 +1,44 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class GeoIndexTest {
+
+  @Test
+  void encode() {
+    Assertions.assertEquals(
+        "u4pruydqqvj", GeoIndex.encode(new GeoIndex.Point(57.64911, 10.40744), 11));
+    Assertions.assertEquals("ezs42", GeoIndex.encode(new GeoIndex.Point(42.605, -5.603), 5));
+    Assertions.assertEquals("s0000", GeoIndex.encode(new GeoIndex.Point(0, 0), 5));
+    Assertions.assertEquals("zzzzz", GeoIndex.encode(new GeoIndex.Point(90, 180), 5));
+  }
+
+  @Test
+  void distanceMeters() {
+    GeoIndex.Point warsaw = new GeoIndex.Point(52.2297, 21.0122);
+    GeoIndex.Point krakow = new GeoIndex.Point(50.0647, 19.9450);
+    Assertions.assertEquals(252_000, GeoIndex.distanceMeters(warsaw, krakow), 1_000);
+    Assertions.assertEquals(0, GeoIndex.distanceMeters(warsaw, warsaw));
+  }
+
+  @Test
+  void contains() {
+    GeoIndex.Point warsaw = new GeoIndex.Point(52.2297, 21.0122);
+    Assertions.assertTrue(GeoIndex.contains(GeoArea.radius(50.0647, 19.9450, 260_000), warsaw));
+    Assertions.assertFalse(GeoIndex.contains(GeoArea.radius(50.0647, 19.9450, 240_000), warsaw));
+    Assertions.assertTrue(GeoIndex.contains(GeoArea.boundingBox(49, 14, 55, 24), warsaw));
+    Assertions.assertFalse(GeoIndex.contains(GeoArea.boundingBox(49, 22, 55, 24), warsaw));
+
+    // bounding box crossing the antimeridian
+    GeoArea.BoundingBox pacific = GeoArea.boundingBox(-30, 170, 10, -170);
+    Assertions.assertTrue(GeoIndex.contains(pacific, new GeoIndex.Point(-17.7, 178.1)));
+    Assertions.assertTrue(GeoIndex.contains(pacific, new GeoIndex.Point(-14.3, -170.7)));
+    Assertions.assertFalse(GeoIndex.contains(pacific, new GeoIndex.Point(-14.3, 160)));
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> GeoArea.radius(91, 0, 10));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> GeoArea.radius(0, 0, 0));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> GeoArea.boundingBox(10, 0, -10, 1));
+  }
+}
@@ -0,0 +1,74 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class IndexValuesTest {
+
+  @Test
+  void numbersAreOrderedNumerically() {
+    List<Double> numbers = List.of(-1000.5, -2.0, -0.5, 0.0, 0.25, 2.0, 10.0, 100.0, 1e12);
+    List<String> encoded =
+        new ArrayList<>(numbers.stream().map(n -> IndexValues.encode("n", n)).toList());
+    List<String> sorted = new ArrayList<>(encoded);
+    sorted.sort(Comparator.naturalOrder());
+    Assertions.assertEquals(encoded, sorted);
+
+    // integers and doubles are encoded the same way, so are query boundaries
+    Assertions.assertEquals(IndexValues.encode("n", 10.0), IndexValues.encode("n", 10));
+    Assertions.assertEquals(IndexValues.encode("n", 10), IndexValues.encodeQueryValue("10").get(0));
+    Assertions.assertEquals(
+        IndexValues.encode("n", -0.5), IndexValues.encodeQueryValue("-0.5").get(0));
+    Assertions.assertEquals(IndexValues.encode("n", 0.0), IndexValues.encode("n", -0.0));
+  }
+
+  @Test
+  void stringsAndBooleans() {
+    Assertions.assertEquals("alice", IndexValues.encode("s", "alice"));
+    Assertions.assertEquals(List.of("alice"), IndexValues.encodeQueryValue("alice"));
+    Assertions.assertEquals("true", IndexValues.encode("b", true));
+    Assertions.assertNull(IndexValues.encode("s", null));
+    Assertions.assertNull(IndexValues.encode("m", Map.of()));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> IndexValues.encode("s", "a\u001Fb"));
+  }
+
+  @Test
+  void queryValuesWhichAreNumbersMatchStrings() {
+    Assertions.assertTrue(IndexValues.matches("02134", "02134"));
+    Assertions.assertTrue(IndexValues.matches(2134, "02134"));
+    Assertions.assertTrue(IndexValues.matches("1e5", "1e5"));
+    Assertions.assertTrue(IndexValues.matches(100000, "1e5"));
+    Assertions.assertFalse(IndexValues.matches("2134", "02134"));
+    Assertions.assertFalse(IndexValues.matches(2134, "alice"));
+
+    // numbers sort before strings, string values are compared as strings
+    List<IndexValues.Range> ranges =
+        IndexValues.encodeRange(
+            Optional.of(RangeBoundary.inclusive("02100")),
+            Optional.of(RangeBoundary.exclusive("02200")));
+    Assertions.assertEquals(2, ranges.size());
+    Assertions.assertTrue(inRange(ranges.get(0), IndexValues.encode("n", 2134)));
+    Assertions.assertFalse(inRange(ranges.get(0), IndexValues.encode("n", 2200)));
+    Assertions.assertFalse(inRange(ranges.get(0), "02134"));
+    Assertions.assertTrue(inRange(ranges.get(1), "02134"));
+    Assertions.assertFalse(inRange(ranges.get(1), "02200"));
+
+    // numeric values are not compared with string boundaries
+    ranges = IndexValues.encodeRange(Optional.empty(), Optional.of(RangeBoundary.inclusive("b")));
+    Assertions.assertEquals(1, ranges.size());
+    Assertions.assertTrue(inRange(ranges.get(0), "a"));
+    Assertions.assertFalse(inRange(ranges.get(0), IndexValues.encode("n", 1)));
+  }
+
+  private static boolean inRange(IndexValues.Range range, String value) {
+    return value.compareTo(range.start()) >= 0
+        && !range.excludes(value)
+        && !range.endsBefore(value);
+  }
+}
@@ -0,0 +1,107 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ItemCacheTest {
+  private static final Key KEY = new Key("alice", "profile");
+  private static final byte[] VALUE =
+      SerDeUtils.serializeAttributes(new Item(KEY, new HashMap<>(Map.of("name", "Alice"))));
+
+  @Test
+  void cacheOnlyGetDoesNotWaitForLoadInFlight() throws Exception {
+    ItemCache itemCache = new ItemCache(1024 * 1024);
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Map<String, Object>> load =
+          executor.submit(
+              () ->
+                  itemCache.get(
+                      "users",
+                      KEY,
+                      false,
+                      () -> {
+                        loading.countDown();
+                        await(release);
+                        return VALUE;
+                      }));
+      Assertions.assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+      // probe misses and reads memory while the load holds the key
+      Assertions.assertEquals(
+          Map.of("name", "Alice"), itemCache.get("users", KEY, true, () -> VALUE));
+      Assertions.assertFalse(load.isDone());
+
+      release.countDown();
+      Assertions.assertEquals(Map.of("name", "Alice"), load.get(5, TimeUnit.SECONDS));
+      // cached items are returned without reading
+      Assertions.assertEquals(
+          Map.of("name", "Alice"),
+          itemCache.get(
+              "users",
+              KEY,
+              true,
+              () -> {
+                throw new AssertionError("cached item was read");
+              }));
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void cacheOnlyGetCachesMemoryReadsNotInvalidatedMeanwhile() throws Exception {
+    ItemCache itemCache = new ItemCache(1024 * 1024);
+    Key otherKey = new Key("bob", "profile");
+
+    // write committed while the read was in flight invalidates the key, the read is not cached
+    itemCache.get(
+        "users",
+        KEY,
+        true,
+        () -> {
+          itemCache.invalidate("users", KEY);
+          return VALUE;
+        });
+    itemCache.get("users", otherKey, true, () -> null);
+    Assertions.assertTrue(ForkJoinPool.commonPool().awaitQuiescence(5, TimeUnit.SECONDS));
+
+    Assertions.assertNull(
+        itemCache.get(
+            "users",
+            otherKey,
+            true,
+            () -> {
+              throw new AssertionError("cached item was read");
+            }));
+    Assertions.assertEquals(
+        Map.of("name", "Bob"),
+        itemCache.get(
+            "users",
+            KEY,
+            true,
+            () ->
+                SerDeUtils.serializeAttributes(
+                    new Item(KEY, new HashMap<>(Map.of("name", "Bob"))))));
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+}
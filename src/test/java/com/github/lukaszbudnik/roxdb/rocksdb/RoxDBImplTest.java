@@ -1,16 +1,32 @@
 package com.github.lukaszbudnik.roxdb.rocksdb;
 
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.rocksdb.RocksDBException;
+import org.rocksdb.Status;
+import org.rocksdb.TickerType;
 
 class RoxDBImplTest {
 
@@ -393,4 +409,1814 @@ class RoxDBImplTest {
     Item retrievedItem2 = roxdb.getItem("users", key2);
     Assertions.assertNull(retrievedItem2);
   }
+
+  @Test
+  void aggregates() throws RocksDBException {
+    // items written before aggregates are declared are aggregated on startup
+    roxdb.putItem("orders", order("order1", "alice", 250, "open"));
+    roxdb.putItem("orders", order("order2", "bob", 20, "open"));
+    roxdb.close();
+    List<AggregateConfig> aggregates =
+        List.of(
+            new AggregateConfig("orders", AggregateFunction.COUNT, null),
+            new AggregateConfig("discounted", AggregateFunction.COUNT, "discount"),
+            new AggregateConfig("revenue", AggregateFunction.SUM, "total"),
+            new AggregateConfig("smallest", AggregateFunction.MIN, "total"),
+            new AggregateConfig("largest", AggregateFunction.MAX, "total"));
+    TablesConfig tablesConfig =
+        new TablesConfig(
+            Map.of("orders", new TableConfig(TableType.STANDARD, null, null, null, aggregates)));
+    roxdb = new RoxDBImpl(dbPath.toString(), tablesConfig);
+    Assertions.assertEquals(2L, roxdb.getAggregate("orders", "shop1", "orders"));
+    Assertions.assertEquals(270.0, roxdb.getAggregate("orders", "shop1", "revenue"));
+
+    // writes update aggregates
+    roxdb.putItem("orders", order("order3", "alice", 9.5, "closed"));
+    roxdb.updateItem(
+        "orders",
+        new Item(new Key("shop1", "order1"), new HashMap<>(Map.of("total", 200, "discount", 50))));
+    roxdb.executeTransaction(
+        txCtx -> {
+          txCtx.delete("orders", new Key("shop1", "order3"));
+          txCtx.put("orders", order("order4", "carol", 5, "open"));
+        });
+    roxdb.putItem("orders", new Item(new Key("shop2", "order1"), new HashMap<>()));
+
+    Assertions.assertEquals(3L, roxdb.getAggregate("orders", "shop1", "orders"));
+    Assertions.assertEquals(1L, roxdb.getAggregate("orders", "shop1", "discounted"));
+    Assertions.assertEquals(225.0, roxdb.getAggregate("orders", "shop1", "revenue"));
+    Assertions.assertEquals(5.0, roxdb.getAggregate("orders", "shop1", "smallest"));
+    Assertions.assertEquals(200.0, roxdb.getAggregate("orders", "shop1", "largest"));
+    // removing the current minimum exposes the next value
+    roxdb.deleteItem("orders", new Key("shop1", "order4"));
+    Assertions.assertEquals(20.0, roxdb.getAggregate("orders", "shop1", "smallest"));
+
+    // partitions are aggregated separately
+    Assertions.assertEquals(1L, roxdb.getAggregate("orders", "shop2", "orders"));
+    Assertions.assertEquals(0.0, roxdb.getAggregate("orders", "shop2", "revenue"));
+    Assertions.assertNull(roxdb.getAggregate("orders", "shop2", "largest"));
+    Assertions.assertEquals(0L, roxdb.getAggregate("orders", "shop3", "orders"));
+
+    // unchanged aggregates are kept when the database is reopened
+    roxdb.close();
+    roxdb = new RoxDBImpl(dbPath.toString(), tablesConfig);
+    Assertions.assertEquals(2L, roxdb.getAggregate("orders", "shop1", "orders"));
+    Assertions.assertEquals(220.0, roxdb.getAggregate("orders", "shop1", "revenue"));
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> roxdb.getAggregate("orders", "shop1", "unknown"));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new AggregateConfig("revenue", AggregateFunction.SUM, null));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new TableConfig(TableType.QUEUE, null, null, null, aggregates));
+  }
+
+  @Test
+  void getChanges() throws RocksDBException {
+    roxdb.close();
+    roxdb =
+        new RoxDBImpl(
+            dbPath.toString(),
+            TablesConfig.EMPTY,
+            new StorageOptions(
+                3600,
+                0,
+                StorageOptions.DEFAULT_ITEM_CACHE_SIZE_BYTES,
+                StorageOptions.DEFAULT_QUERY_CACHE_SIZE_BYTES,
+                StorageOptions.DEFAULT_BLOCK_CACHE_SIZE_BYTES,
+                BlockCacheType.LRU,
+                null,
+                0,
+                0,
+                0,
+                0));
+    Key key = new Key("alice", "profile");
+    roxdb.putItem("users", new Item(key, new HashMap<>(Map.of("name", "Alice"))));
+    roxdb.updateItem("users", new Item(key, new HashMap<>(Map.of("age", 30))));
+    roxdb.putItem("orders", order("order1", "alice", 250, "open"));
+    roxdb.executeTransaction(
+        txCtx -> {
+          txCtx.delete("users", key);
+          txCtx.put("users", new Item(new Key("bob", "profile"), new HashMap<>()));
+        });
+
+    Changes changes = roxdb.getChanges(0, 100, Set.of());
+    Assertions.assertEquals(
+        List.of(
+            new ChangeEvent("users", ChangeType.PUT, key, Map.of("name", "Alice")),
+            new ChangeEvent("users", ChangeType.PUT, key, Map.of("name", "Alice", "age", 30)),
+            new ChangeEvent(
+                "orders",
+                ChangeType.PUT,
+                new Key("shop1", "order1"),
+                Map.of("customer", "alice", "total", 250, "status", "open")),
+            new ChangeEvent("users", ChangeType.DELETE, key, null),
+            new ChangeEvent("users", ChangeType.PUT, new Key("bob", "profile"), Map.of())),
+        changes.changes());
+    Assertions.assertTrue(
+        roxdb.getChanges(changes.nextSequenceNumber(), 100, Set.of()).changes().isEmpty());
+
+    // pages are resumed from next sequence number, transactions are not split
+    List<ChangeEvent> paged = new ArrayList<>();
+    long sequenceNumber = 0;
+    Changes page;
+    do {
+      page = roxdb.getChanges(sequenceNumber, 1, Set.of("users"));
+      paged.addAll(page.changes());
+      sequenceNumber = page.nextSequenceNumber();
+    } while (!page.changes().isEmpty());
+    Assertions.assertEquals(
+        changes.changes().stream().filter(change -> change.tableName().equals("users")).toList(),
+        paged);
+
+    // retained WAL is readable after the database is reopened
+    roxdb.close();
+    roxdb =
+        new RoxDBImpl(
+            dbPath.toString(),
+            TablesConfig.EMPTY,
+            new StorageOptions(
+                3600,
+                0,
+                StorageOptions.DEFAULT_ITEM_CACHE_SIZE_BYTES,
+                StorageOptions.DEFAULT_QUERY_CACHE_SIZE_BYTES,
+                StorageOptions.DEFAULT_BLOCK_CACHE_SIZE_BYTES,
+                BlockCacheType.LRU,
+                null,
+                0,
+                0,
+                0,
+                0));
+    roxdb.putItem("users", new Item(key, new HashMap<>()));
+    Assertions.assertEquals(
+        List.of(new ChangeEvent("users", ChangeType.PUT, key, Map.of())),
+        roxdb.getChanges(changes.nextSequenceNumber(), 100, Set.of()).changes());
+    Assertions.assertEquals(6, roxdb.getChanges(0, 100, Set.of()).changes().size());
+  }
+
+  @Test
+  void itemCache() throws RocksDBException {
+    Key key = new Key("alice", "profile");
+    // negative entry is cached and invalidated by put
+    Assertions.assertNull(roxdb.getItem("users", key));
+    Assertions.assertNull(roxdb.getItem("users", key));
+    Assertions.assertEquals(1, roxdb.getItemCacheStats().hitCount());
+    Assertions.assertEquals(1, roxdb.getItemCacheStats().missCount());
+
+    roxdb.putItem("users", new Item(key, new HashMap<>(Map.of("name", "Alice"))));
+    Assertions.assertEquals(Map.of("name", "Alice"), roxdb.getItem("users", key).attributes());
+    Assertions.assertEquals(Map.of("name", "Alice"), roxdb.getItem("users", key).attributes());
+    Assertions.assertEquals(2, roxdb.getItemCacheStats().hitCount());
+    Assertions.assertEquals(2, roxdb.getItemCacheStats().missCount());
+    Assertions.assertEquals(1, roxdb.getItemCacheStats().entryCount());
+    Assertions.assertTrue(roxdb.getItemCacheStats().sizeBytes() > 0);
+
+    // cached attributes cannot be modified by callers
+    Assertions.assertThrows(
+        UnsupportedOperationException.class,
+        () -> roxdb.getItem("users", key).attributes().put("name", "Bob"));
+
+    roxdb.updateItem("users", new Item(key, new HashMap<>(Map.of("age", 30))));
+    Assertions.assertEquals(
+        Map.of("name", "Alice", "age", 30), roxdb.getItem("users", key).attributes());
+
+    // transactions invalidate written keys after commit
+    roxdb.executeTransaction(
+        txCtx -> txCtx.put("users", new Item(key, new HashMap<>(Map.of("name", "Bob")))));
+    Assertions.assertEquals(Map.of("name", "Bob"), roxdb.getItem("users", key).attributes());
+    roxdb.executeTransaction(txCtx -> txCtx.delete("users", key));
+    Assertions.assertNull(roxdb.getItem("users", key));
+
+    roxdb.putItem("users", new Item(key, new HashMap<>()));
+    roxdb.getItem("users", key);
+    roxdb.deleteItem("users", key);
+    Assertions.assertNull(roxdb.getItem("users", key));
+
+    // size 0 disables the cache
+    roxdb.close();
+    roxdb =
+        new RoxDBImpl(
+            dbPath.toString(),
+            TablesConfig.EMPTY,
+            new StorageOptions(
+                0,
+                0,
+                0,
+                0,
+                StorageOptions.DEFAULT_BLOCK_CACHE_SIZE_BYTES,
+                BlockCacheType.LRU,
+                null,
+                0,
+                0,
+                0,
+                0));
+    roxdb.putItem("users", new Item(key, new HashMap<>(Map.of("name", "Alice"))));
+    Assertions.assertEquals(Map.of("name", "Alice"), roxdb.getItem("users", key).attributes());
+    Assertions.assertEquals(CacheStats.EMPTY, roxdb.getItemCacheStats());
+  }
+
+  @Test
+  void cacheOnlyGetItem() throws RocksDBException {
+    StorageOptions storageOptions =
+        new StorageOptions(
+            0,
+            0,
+            0,
+            0,
+            StorageOptions.DEFAULT_BLOCK_CACHE_SIZE_BYTES,
+            BlockCacheType.LRU,
+            null,
+            0,
+            0,
+            0,
+            0);
+    roxdb.close();
+    roxdb = new RoxDBImpl(dbPath.toString(), TablesConfig.EMPTY, storageOptions);
+    Key key = new Key("alice", "profile");
+    roxdb.putItem("users", new Item(key, new HashMap<>(Map.of("name", "Alice"))));
+    // memtables are read by cache only reads
+    Assertions.assertEquals(
+        Map.of("name", "Alice"), roxdb.getItem("users", key, true).attributes());
+
+    // flushed items are read from SST files after the database is reopened
+    roxdb.flush();
+    roxdb.close();
+    roxdb = new RoxDBImpl(dbPath.toString(), TablesConfig.EMPTY, storageOptions);
+    RocksDBException exception =
+        Assertions.assertThrows(RocksDBException.class, () -> roxdb.getItem("users", key, true));
+    Assertions.assertEquals(Status.Code.Incomplete, exception.getStatus().getCode());
+
+    // read from disk puts blocks into the block cache
+    Assertions.assertEquals(Map.of("name", "Alice"), roxdb.getItem("users", key).attributes());
+    Assertions.assertEquals(
+        Map.of("name", "Alice"), roxdb.getItem("users", key, true).attributes());
+  }
+
+  @Test
+  void warmUp() throws Exception {
+    Key alice = new Key("alice", "profile");
+    Key bob = new Key("bob", "profile");
+    roxdb.putItem("users", new Item(alice, new HashMap<>(Map.of("name", "Alice"))));
+    roxdb.putItem("users", new Item(bob, new HashMap<>(Map.of("name", "Bob"))));
+    roxdb.getItem("users", alice);
+    roxdb.getItem("users", bob);
+    Assertions.assertEquals(1, roxdb.saveWarmUpManifest(1));
+    Assertions.assertEquals(2, roxdb.saveWarmUpManifest(10));
+
+    roxdb.close();
+    roxdb = new RoxDBImpl(dbPath.toString());
+    Assertions.assertEquals(0, roxdb.warmUp(Duration.ZERO));
+    Assertions.assertEquals(2, roxdb.warmUp(Duration.ofSeconds(10)));
+    // warmed up items are served from the item cache
+    long hitCount = roxdb.getItemCacheStats().hitCount();
+    Assertions.assertEquals(Map.of("name", "Alice"), roxdb.getItem("users", alice).attributes());
+    Assertions.assertEquals(Map.of("name", "Bob"), roxdb.getItem("users", bob).attributes());
+    Assertions.assertEquals(hitCount + 2, roxdb.getItemCacheStats().hitCount());
+
+    // warm up stops once the database is closing
+    roxdb.close();
+    Assertions.assertEquals(0, roxdb.warmUp(Duration.ofSeconds(10)));
+
+    // database without a manifest has nothing to warm up
+    roxdb = new RoxDBImpl(dbPath.resolve("empty").toString());
+    Assertions.assertEquals(0, roxdb.warmUp(Duration.ofSeconds(10)));
+  }
+
+  @Test
+  void flushAndStartupStats() throws Exception {
+    Key key = new Key("alice", "profile");
+    roxdb.putItem("users", new Item(key, new HashMap<>(Map.of("name", "Alice"))));
+
+    // unflushed writes are replayed from WAL when the database is opened
+    roxdb.close();
+    roxdb = new RoxDBImpl(dbPath.toString());
+    StartupStats startupStats = roxdb.getStartupStats();
+    Assertions.assertTrue(startupStats.walReplayFiles() > 0);
+    Assertions.assertTrue(startupStats.walReplayBytes() > 0);
+    Assertions.assertTrue(startupStats.openMillis() >= 0);
+
+    roxdb.putItem("users", new Item(key, new HashMap<>(Map.of("name", "Bob"))));
+    roxdb.flush();
+    roxdb.close();
+    roxdb = new RoxDBImpl(dbPath.toString());
+    // flushed writes are not replayed
+    Assertions.assertEquals(0, roxdb.getStartupStats().walReplayBytes());
+    Assertions.assertEquals(Map.of("name", "Bob"), roxdb.getItem("users", key).attributes());
+  }
+
+  @Test
+  void idleFlush() throws Exception {
+    roxdb.putItem("users", new Item(new Key("alice", "profile"), new HashMap<>()));
+    // first run only records memtable entries
+    roxdb.runIdleFlush();
+    Assertions.assertEquals(0, roxdb.getStatistics().getTickerCount(TickerType.FLUSH_WRITE_BYTES));
+
+    // memtable without writes since the previous run is flushed
+    roxdb.runIdleFlush();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (roxdb.getStatistics().getTickerCount(TickerType.FLUSH_WRITE_BYTES) == 0
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assertions.assertTrue(roxdb.getStatistics().getTickerCount(TickerType.FLUSH_WRITE_BYTES) > 0);
+  }
+
+  @Test
+  void queryCache() throws RocksDBException {
+    roxdb.putItem("feeds", new Item(new Key("alice", "2024-01"), new HashMap<>(Map.of("n", 1))));
+    Assertions.assertEquals(1, roxdb.query("feeds", "alice", 10, Optional.empty()).size());
+    Assertions.assertEquals(1, roxdb.query("feeds", "alice", 10, Optional.empty()).size());
+    Assertions.assertEquals(1, roxdb.getQueryCacheStats().hitCount());
+    Assertions.assertEquals(1, roxdb.getQueryCacheStats().missCount());
+
+    // different limit or sort key range are separate results
+    roxdb.query("feeds", "alice", 1, Optional.empty());
+    roxdb.query(
+        "feeds", "alice", 10, Optional.of(SortKeyRange.from(RangeBoundary.inclusive("2024"))));
+    Assertions.assertEquals(3, roxdb.getQueryCacheStats().missCount());
+
+    // cached items cannot be modified by callers
+    Assertions.assertThrows(
+        UnsupportedOperationException.class,
+        () -> roxdb.query("feeds", "alice", 10, Optional.empty()).add(null));
+    Assertions.assertThrows(
+        UnsupportedOperationException.class,
+        () ->
+            roxdb
+                .query("feeds", "alice", 10, Optional.empty())
+                .getFirst()
+                .attributes()
+                .put("n", 2));
+
+    // any write to the partition invalidates all its results
+    roxdb.putItem("feeds", new Item(new Key("alice", "2024-02"), new HashMap<>(Map.of("n", 2))));
+    Assertions.assertEquals(2, roxdb.query("feeds", "alice", 10, Optional.empty()).size());
+    Assertions.assertEquals(
+        2,
+        roxdb
+            .query(
+                "feeds",
+                "alice",
+                10,
+                Optional.of(SortKeyRange.from(RangeBoundary.inclusive("2024"))))
+            .size());
+    roxdb.updateItem("feeds", new Item(new Key("alice", "2024-01"), new HashMap<>(Map.of("n", 3))));
+    Assertions.assertEquals(
+        Map.of("n", 3), roxdb.query("feeds", "alice", 1, Optional.empty()).getFirst().attributes());
+    roxdb.executeTransaction(txCtx -> txCtx.delete("feeds", new Key("alice", "2024-01")));
+    Assertions.assertEquals(1, roxdb.query("feeds", "alice", 10, Optional.empty()).size());
+    roxdb.deleteItem("feeds", new Key("alice", "2024-02"));
+    Assertions.assertTrue(roxdb.query("feeds", "alice", 10, Optional.empty()).isEmpty());
+  }
+
+  @Test
+  void blockCache() throws RocksDBException {
+    long capacity = 16L * 1024 * 1024;
+    for (BlockCacheType blockCacheType : BlockCacheType.values()) {
+      StorageOptions storageOptions =
+          new StorageOptions(0, 0, 0, 0, capacity, blockCacheType, null, 0, 0, 0, 0);
+      roxdb.close();
+      roxdb =
+          new RoxDBImpl(
+              dbPath.resolve(blockCacheType.name()).toString(), TablesConfig.EMPTY, storageOptions);
+      for (int i = 0; i < 100; i++) {
+        roxdb.putItem("users", new Item(new Key("user" + i, "profile"), new HashMap<>()));
+        roxdb.putItem("orders", order("order" + i, "user" + i, i, "open"));
+      }
+      Assertions.assertEquals(capacity, roxdb.getBlockCacheStats().capacityBytes());
+
+      // memtables are flushed to L0 files on recovery, reads of all tables go through the cache
+      // and index and filter blocks of L0 files stay pinned
+      roxdb.close();
+      roxdb =
+          new RoxDBImpl(
+              dbPath.resolve(blockCacheType.name()).toString(), TablesConfig.EMPTY, storageOptions);
+      Assertions.assertNotNull(roxdb.getItem("users", new Key("user1", "profile")));
+      Assertions.assertNotNull(roxdb.getItem("orders", new Key("shop1", "order1")));
+      BlockCacheStats stats = roxdb.getBlockCacheStats();
+      Assertions.assertTrue(stats.usageBytes() > 0);
+      Assertions.assertTrue(stats.pinnedUsageBytes() > 0);
+      Assertions.assertTrue(stats.usageBytes() <= capacity);
+      Assertions.assertTrue(stats.usageBytesByRole().containsKey("data-block"));
+    }
+  }
+
+  @Test
+  void secondaryBlockCache() throws RocksDBException {
+    // primary cache holds only a few blocks, evicted blocks are read from the secondary tier
+    StorageOptions storageOptions =
+        new StorageOptions(
+            0,
+            0,
+            0,
+            0,
+            64 * 1024,
+            BlockCacheType.LRU,
+            dbPath.resolve("secondary").toString(),
+            StorageOptions.MIN_SECONDARY_CACHE_SIZE_BYTES,
+            0,
+            0,
+            0);
+    roxdb.close();
+    roxdb = new RoxDBImpl(dbPath.resolve("db").toString(), TablesConfig.EMPTY, storageOptions);
+    for (int i = 0; i < 10000; i++) {
+      roxdb.putItem(
+          "users", new Item(new Key("user" + i, "profile"), new HashMap<>(Map.of("n", i))));
+    }
+    roxdb.close();
+    roxdb = new RoxDBImpl(dbPath.resolve("db").toString(), TablesConfig.EMPTY, storageOptions);
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < 10000; i += 10) {
+        Assertions.assertEquals(
+            Map.of("n", i), roxdb.getItem("users", new Key("user" + i, "profile")).attributes());
+      }
+    }
+    BlockCacheStats stats = roxdb.getBlockCacheStats();
+    Assertions.assertEquals(
+        StorageOptions.MIN_SECONDARY_CACHE_SIZE_BYTES, stats.secondaryCapacityBytes());
+    Assertions.assertTrue(stats.missCount() > 0);
+    Assertions.assertTrue(stats.secondaryHitCount() > 0);
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new StorageOptions(0, 0, 0, 0, 1024, BlockCacheType.LRU, "/tmp", 1024, 0, 0, 0));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new StorageOptions(
+                0,
+                0,
+                0,
+                0,
+                1024,
+                BlockCacheType.LRU,
+                null,
+                StorageOptions.MIN_SECONDARY_CACHE_SIZE_BYTES,
+                0,
+                0,
+                0));
+  }
+
+  @Test
+  void memoryBudget() throws RocksDBException {
+    MemoryBudget memoryBudget =
+        new MemoryBudget(64L * 1024 * 1024, Runtime.getRuntime().maxMemory());
+    Assertions.assertEquals(
+        memoryBudget.totalBytes(), memoryBudget.blockCacheBytes() + memoryBudget.heapBytes());
+    // heap caches are capped by maximum heap size, the rest goes to the block cache
+    MemoryBudget largeBudget = new MemoryBudget(64L * 1024 * 1024 * 1024, 512L * 1024 * 1024);
+    Assertions.assertEquals(128L * 1024 * 1024, largeBudget.heapBytes(), 1);
+    Assertions.assertEquals(
+        largeBudget.totalBytes(), largeBudget.blockCacheBytes() + largeBudget.heapBytes());
+
+    StorageOptions storageOptions = memoryBudget.apply(StorageOptions.DEFAULT);
+    Assertions.assertEquals(memoryBudget.blockCacheBytes(), storageOptions.blockCacheSizeBytes());
+    Assertions.assertEquals(
+        memoryBudget.writeBufferBytes(), storageOptions.writeBufferManagerSizeBytes());
+
+    // without the write buffer manager memtables of every table would grow to 64 MB
+    roxdb.close();
+    roxdb = new RoxDBImpl(dbPath.toString(), TablesConfig.EMPTY, storageOptions);
+    String value = "x".repeat(1024);
+    long maxMemTablesSize = 0;
+    long maxBlockCacheUsage = 0;
+    for (int i = 0; i < 40000; i++) {
+      roxdb.putItem(
+          "table" + (i % 4), new Item(new Key("pk" + i, "sk"), new HashMap<>(Map.of("v", value))));
+      if (i % 1000 == 0) {
+        long memTablesSize = roxdb.getMemTablesSizeBytes();
+        long blockCacheUsage = roxdb.getBlockCacheStats().usageBytes();
+        // memtables are charged to the block cache
+        Assertions.assertTrue(blockCacheUsage >= memTablesSize);
+        maxMemTablesSize = Math.max(maxMemTablesSize, memTablesSize);
+        maxBlockCacheUsage = Math.max(maxBlockCacheUsage, blockCacheUsage);
+      }
+    }
+    Assertions.assertTrue(maxMemTablesSize > 0);
+    Assertions.assertTrue(maxMemTablesSize <= memoryBudget.writeBufferBytes());
+    Assertions.assertTrue(maxBlockCacheUsage <= memoryBudget.blockCacheBytes());
+  }
+
+  @Test
+  void watch() throws RocksDBException {
+    List<ChangeEvent> events = new ArrayList<>();
+    Watch watch =
+        roxdb.watch(
+            "feeds",
+            "alice",
+            Optional.of(SortKeyRange.from(RangeBoundary.inclusive("2024"))),
+            events::add);
+    List<ChangeEvent> allEvents = new ArrayList<>();
+    Watch allWatch = roxdb.watch("feeds", "alice", Optional.empty(), allEvents::add);
+
+    Key key = new Key("alice", "2024-01");
+    roxdb.putItem("feeds", new Item(key, new HashMap<>(Map.of("title", "hello"))));
+    roxdb.updateItem("feeds", new Item(key, new HashMap<>(Map.of("likes", 1))));
+    roxdb.putItem("feeds", new Item(new Key("alice", "2023-12"), new HashMap<>()));
+    roxdb.putItem("feeds", new Item(new Key("bob", "2024-01"), new HashMap<>()));
+    roxdb.executeTransaction(
+        txCtx -> {
+          txCtx.delete("feeds", key);
+          txCtx.put("feeds", new Item(new Key("alice", "2024-02"), new HashMap<>()));
+        });
+    // changes of rolled back transactions are not published
+    Assertions.assertThrows(
+        IllegalStateException.class,
+        () ->
+            roxdb.executeTransaction(
+                txCtx -> {
+                  txCtx.put("feeds", new Item(new Key("alice", "2024-03"), new HashMap<>()));
+                  throw new IllegalStateException("rollback");
+                }));
+
+    Assertions.assertEquals(
+        List.of(
+            new ChangeEvent("feeds", ChangeType.PUT, key, Map.of("title", "hello")),
+            new ChangeEvent("feeds", ChangeType.PUT, key, Map.of("title", "hello", "likes", 1)),
+            new ChangeEvent("feeds", ChangeType.DELETE, key, null),
+            new ChangeEvent("feeds", ChangeType.PUT, new Key("alice", "2024-02"), Map.of())),
+        events);
+    Assertions.assertEquals(5, allEvents.size());
+
+    // closed watch does not receive changes, failing listener does not fail writes
+    watch.close();
+    allWatch.close();
+    roxdb.watch(
+        "feeds",
+        "alice",
+        Optional.empty(),
+        event -> {
+          throw new IllegalStateException("listener failure");
+        });
+    roxdb.deleteItem("feeds", new Key("alice", "2024-02"));
+    Assertions.assertEquals(4, events.size());
+    Assertions.assertEquals(5, allEvents.size());
+  }
+
+  @Test
+  void queryPartitions() throws RocksDBException {
+    for (String user : List.of("alice", "bob", "carol")) {
+      for (String post : List.of("2024-01", "2024-02", "2024-03")) {
+        roxdb.putItem(
+            "feeds", new Item(new Key(user, post), new HashMap<>(Map.of("author", user))));
+      }
+    }
+    roxdb.putItem("feeds", new Item(new Key("bob", "2024-04"), new HashMap<>()));
+    List<String> partitionKeys = List.of("carol", "alice", "dave");
+
+    // merged by sort key, same sort keys in order of partition keys
+    Assertions.assertEquals(
+        List.of(
+            "carol/2024-01",
+            "alice/2024-01",
+            "carol/2024-02",
+            "alice/2024-02",
+            "carol/2024-03",
+            "alice/2024-03"),
+        feedKeys(
+            roxdb.queryPartitions("feeds", partitionKeys, 10, Optional.empty(), Optional.empty())));
+
+    // global limit and pagination from the key of the last item
+    List<Item> page =
+        roxdb.queryPartitions("feeds", partitionKeys, 3, Optional.empty(), Optional.empty());
+    Assertions.assertEquals(
+        List.of("carol/2024-01", "alice/2024-01", "carol/2024-02"), feedKeys(page));
+    page =
+        roxdb.queryPartitions(
+            "feeds", partitionKeys, 3, Optional.empty(), Optional.of(page.getLast().key()));
+    Assertions.assertEquals(
+        List.of("alice/2024-02", "carol/2024-03", "alice/2024-03"), feedKeys(page));
+    page =
+        roxdb.queryPartitions(
+            "feeds", partitionKeys, 3, Optional.empty(), Optional.of(page.getLast().key()));
+    Assertions.assertTrue(page.isEmpty());
+
+    // sort key range applies to all partitions and is kept when paginating
+    Optional<SortKeyRange> range =
+        Optional.of(
+            SortKeyRange.between(
+                RangeBoundary.exclusive("2024-01"), RangeBoundary.inclusive("2024-03")));
+    page = roxdb.queryPartitions("feeds", List.of("alice", "bob"), 2, range, Optional.empty());
+    Assertions.assertEquals(List.of("alice/2024-02", "bob/2024-02"), feedKeys(page));
+    page =
+        roxdb.queryPartitions(
+            "feeds", List.of("alice", "bob"), 10, range, Optional.of(page.getLast().key()));
+    Assertions.assertEquals(List.of("alice/2024-03", "bob/2024-03"), feedKeys(page));
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            roxdb.queryPartitions(
+                "feeds",
+                partitionKeys,
+                3,
+                Optional.empty(),
+                Optional.of(new Key("bob", "2024-01"))));
+  }
+
+  private static List<String> feedKeys(List<Item> items) {
+    return items.stream()
+        .map(item -> item.key().partitionKey() + "/" + item.key().sortKey())
+        .toList();
+  }
+
+  @Test
+  void queryAggregates() throws RocksDBException {
+    roxdb.putItem("orders", order("order1", "alice", 250, "open"));
+    roxdb.putItem("orders", order("order2", "bob", 20, "closed"));
+    roxdb.putItem("orders", order("order3", "alice", 9.5, "open"));
+    roxdb.putItem(
+        "orders", new Item(new Key("shop1", "order4"), new HashMap<>(Map.of("customer", "carol"))));
+    roxdb.putItem("orders", new Item(new Key("shop2", "order1"), new HashMap<>()));
+    List<QueryAggregate> aggregates =
+        List.of(
+            QueryAggregate.count(),
+            QueryAggregate.of(AggregateFunction.COUNT, "total"),
+            QueryAggregate.of(AggregateFunction.SUM, "total"),
+            QueryAggregate.of(AggregateFunction.AVG, "total"),
+            QueryAggregate.of(AggregateFunction.MIN, "total"),
+            QueryAggregate.of(AggregateFunction.MAX, "total"));
+
+    List<AggregateGroup> groups =
+        roxdb.queryAggregates("orders", "shop1", 10, Optional.empty(), aggregates, null);
+    Assertions.assertEquals(
+        List.of(new AggregateGroup(null, List.of(4L, 3L, 279.5, 279.5 / 3, 9.5, 250.0))), groups);
+
+    // groups in order of first appearance, items without the attribute are grouped under null
+    groups = roxdb.queryAggregates("orders", "shop1", 10, Optional.empty(), aggregates, "customer");
+    Assertions.assertEquals(
+        List.of(
+            new AggregateGroup("alice", List.of(2L, 2L, 259.5, 129.75, 9.5, 250.0)),
+            new AggregateGroup("bob", List.of(1L, 1L, 20.0, 20.0, 20.0, 20.0)),
+            new AggregateGroup("carol", Arrays.asList(1L, 0L, 0.0, null, null, null))),
+        groups);
+
+    // limit caps the number of groups
+    groups = roxdb.queryAggregates("orders", "shop1", 2, Optional.empty(), aggregates, "customer");
+    Assertions.assertEquals(
+        List.of("alice", "bob"), groups.stream().map(AggregateGroup::groupValue).toList());
+    // proto default limit 0 does not limit groups nor skip items of not grouped queries
+    groups = roxdb.queryAggregates("orders", "shop1", 0, Optional.empty(), aggregates, "customer");
+    Assertions.assertEquals(3, groups.size());
+    groups = roxdb.queryAggregates("orders", "shop1", 0, Optional.empty(), aggregates, null);
+    Assertions.assertEquals(
+        List.of(new AggregateGroup(null, List.of(4L, 3L, 279.5, 279.5 / 3, 9.5, 250.0))), groups);
+
+    // sort key range
+    groups =
+        roxdb.queryAggregates(
+            "orders",
+            "shop1",
+            10,
+            Optional.of(
+                SortKeyRange.between(
+                    RangeBoundary.inclusive("order2"), RangeBoundary.inclusive("order3"))),
+            aggregates,
+            "status");
+    Assertions.assertEquals(
+        List.of(
+            new AggregateGroup("closed", List.of(1L, 1L, 20.0, 20.0, 20.0, 20.0)),
+            new AggregateGroup("open", List.of(1L, 1L, 9.5, 9.5, 9.5, 9.5))),
+        groups);
+
+    // empty partition returns a single group unless grouped
+    groups = roxdb.queryAggregates("orders", "shop3", 10, Optional.empty(), aggregates, null);
+    Assertions.assertEquals(
+        List.of(new AggregateGroup(null, Arrays.asList(0L, 0L, 0.0, null, null, null))), groups);
+    Assertions.assertTrue(
+        roxdb
+            .queryAggregates("orders", "shop3", 10, Optional.empty(), aggregates, "customer")
+            .isEmpty());
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> QueryAggregate.of(AggregateFunction.SUM, " "));
+  }
+
+  @Test
+  void ttl() throws RocksDBException {
+    roxdb.close();
+    roxdb =
+        new RoxDBImpl(
+            dbPath.toString(),
+            new TablesConfig(
+                Map.of(
+                    "sessions",
+                    new TableConfig(TableType.STANDARD, "expiresAt", null, null, null))));
+
+    long now = Instant.now().getEpochSecond();
+    Key expiredKey = new Key("user123", "session1");
+    Item expiredItem = new Item(expiredKey, new HashMap<>(Map.of("expiresAt", now - 1)));
+    Key liveKey = new Key("user123", "session2");
+    Item liveItem = new Item(liveKey, new HashMap<>(Map.of("expiresAt", now + 3600)));
+    Key noTtlKey = new Key("user123", "session3");
+    Item noTtlItem = new Item(noTtlKey, new HashMap<>(Map.of("message", "Hello World")));
+    roxdb.putItem("sessions", expiredItem);
+    roxdb.putItem("sessions", liveItem);
+    roxdb.putItem("sessions", noTtlItem);
+
+    // expired items are hidden from reads immediately
+    Assertions.assertNull(roxdb.getItem("sessions", expiredKey));
+    Assertions.assertEquals(liveItem, roxdb.getItem("sessions", liveKey));
+    Assertions.assertEquals(noTtlItem, roxdb.getItem("sessions", noTtlKey));
+    List<Item> queryResults = roxdb.query("sessions", "user123", 10, Optional.empty());
+    Assertions.assertEquals(List.of(liveItem, noTtlItem), queryResults);
+
+    // update of expired item behaves like put
+    roxdb.executeTransaction((txCtx) -> Assertions.assertNull(txCtx.get("sessions", expiredKey)));
+
+    // TTL is configured per table
+    roxdb.putItem("users", expiredItem);
+    Assertions.assertEquals(expiredItem, roxdb.getItem("users", expiredKey));
+
+    // background expiry physically removes expired items
+    roxdb.expireItems();
+    // reopen without TTL configuration to see what is physically stored
+    roxdb.close();
+    roxdb = new RoxDBImpl(dbPath.toString());
+    Assertions.assertEquals(
+        List.of(liveItem, noTtlItem), roxdb.query("sessions", "user123", 10, Optional.empty()));
+  }
+
+  @Test
+  void ttlExpiryIndex() throws RocksDBException {
+    long now = Instant.now().getEpochSecond();
+    // items written before TTL was configured are listed on startup
+    Key listedKey = new Key("user123", "session1");
+    Item listedItem = new Item(listedKey, new HashMap<>(Map.of("expiresAt", now - 10)));
+    roxdb.putItem("sessions", listedItem);
+
+    roxdb.close();
+    roxdb =
+        new RoxDBImpl(
+            dbPath.toString(),
+            new TablesConfig(
+                Map.of(
+                    "sessions",
+                    new TableConfig(TableType.STANDARD, "expiresAt", null, null, null),
+                    "jobs",
+                    new TableConfig(TableType.QUEUE, "expiresAt", null, null, null))));
+
+    // refreshed items move their expiry entry
+    Key refreshedKey = new Key("user123", "session2");
+    roxdb.putItem("sessions", new Item(refreshedKey, new HashMap<>(Map.of("expiresAt", now - 5))));
+    Item refreshedItem = new Item(refreshedKey, new HashMap<>(Map.of("expiresAt", now + 3600)));
+    roxdb.putItem("sessions", refreshedItem);
+    Key expiredKey = new Key("user456", "session1");
+    roxdb.putItem("sessions", new Item(expiredKey, new HashMap<>(Map.of("expiresAt", now - 1))));
+
+    // acknowledged messages leave entries which are removed when they expire
+    Key ackedKey = roxdb.enqueue("jobs", "worker1", new HashMap<>(Map.of("expiresAt", now - 1)));
+    roxdb.dequeue("jobs", "worker1", "group1", 10);
+    roxdb.ack("jobs", "worker1", "group1", ackedKey.sortKey());
+    roxdb.enqueue("jobs", "worker1", new HashMap<>(Map.of("expiresAt", now - 1)));
+    Key liveMessageKey =
+        roxdb.enqueue("jobs", "worker1", new HashMap<>(Map.of("expiresAt", now + 3600)));
+
+    roxdb.expireItems();
+    roxdb.close();
+    roxdb = new RoxDBImpl(dbPath.toString());
+    Assertions.assertEquals(
+        List.of(refreshedItem), roxdb.query("sessions", "user123", 10, Optional.empty()));
+    Assertions.assertEquals(List.of(), roxdb.query("sessions", "user456", 10, Optional.empty()));
+    Assertions.assertEquals(
+        List.of(new Item(liveMessageKey, Map.of("expiresAt", now + 3600))),
+        roxdb.query("jobs", "worker1", 10, Optional.empty()));
+  }
+
+  @Test
+  void timeSeriesPrecision() throws RocksDBException {
+    roxdb.close();
+    TableConfig metricsConfig =
+        new TableConfig(
+            TableType.TIME_SERIES,
+            null,
+            new TimeSeriesConfig(TimeWindow.HOURLY, 0, false, 0, TimestampPrecision.MILLISECONDS),
+            null,
+            null);
+    roxdb = new RoxDBImpl(dbPath.toString(), new TablesConfig(Map.of("metrics", metricsConfig)));
+
+    // whole seconds are written with fractional digits too and sort before later milliseconds
+    Instant second = Instant.parse("2025-01-31T10:00:00Z");
+    List<Item> items = new ArrayList<>();
+    for (Instant timestamp :
+        List.of(second, second.plusMillis(5), second.plusMillis(500), second.plusSeconds(1))) {
+      Item item =
+          new Item(
+              new Key("cpu", TimestampPrecision.MILLISECONDS.format(timestamp)),
+              new HashMap<>(Map.of("value", 1)));
+      items.add(item);
+    }
+    roxdb.putItem("metrics", items.get(2));
+    roxdb.putItem("metrics", items.get(0));
+    roxdb.putItem("metrics", items.get(3));
+    roxdb.putItem("metrics", items.get(1));
+    Assertions.assertEquals("2025-01-31T10:00:00.000Z", items.get(0).key().sortKey());
+    Assertions.assertEquals(items, roxdb.query("metrics", "cpu", 10, Optional.empty()));
+    Assertions.assertEquals(
+        items.subList(1, 3),
+        roxdb.query(
+            "metrics",
+            "cpu",
+            10,
+            Optional.of(
+                SortKeyRange.between(
+                    RangeBoundary.exclusive(items.get(0).key().sortKey()),
+                    RangeBoundary.exclusive(items.get(3).key().sortKey())))));
+
+    // keys of other precision are rejected
+    for (String sortKey :
+        List.of("2025-01-31T10:00:00Z", "2025-01-31T10:00:00.5Z", "2025-01-31T10:00:00.500000Z")) {
+      Assertions.assertThrows(
+          IllegalArgumentException.class,
+          () -> roxdb.putItem("metrics", new Item(new Key("cpu", sortKey), new HashMap<>())));
+      Assertions.assertThrows(
+          IllegalArgumentException.class, () -> roxdb.getItem("metrics", new Key("cpu", sortKey)));
+    }
+  }
+
+  @Test
+  void timeSeries() throws RocksDBException {
+    roxdb.close();
+    TableConfig metricsConfig =
+        new TableConfig(
+            TableType.TIME_SERIES,
+            null,
+            new TimeSeriesConfig(TimeWindow.DAILY, 2, true, 0, null),
+            null,
+            null);
+    roxdb = new RoxDBImpl(dbPath.toString(), new TablesConfig(Map.of("metrics", metricsConfig)));
+
+    Instant today = Instant.now().truncatedTo(ChronoUnit.DAYS);
+    List<Item> items = new java.util.ArrayList<>();
+    // two items per day over the last 4 days
+    for (int day = 3; day >= 0; day--) {
+      for (int hour = 0; hour < 2; hour++) {
+        Instant timestamp = today.minus(day, ChronoUnit.DAYS).plus(hour, ChronoUnit.HOURS);
+        Item item =
+            new Item(
+                new Key("cpu", timestamp.toString()), new HashMap<>(Map.of("value", day + hour)));
+        roxdb.putItem("metrics", item);
+        items.add(item);
+      }
+    }
+
+    // point reads go to the window of the item
+    Assertions.assertEquals(items.get(0), roxdb.getItem("metrics", items.get(0).key()));
+    Assertions.assertNull(
+        roxdb.getItem("metrics", new Key("cpu", today.minus(30, ChronoUnit.DAYS).toString())));
+
+    // queries fan out to all windows in order
+    Assertions.assertEquals(items, roxdb.query("metrics", "cpu", 10, Optional.empty()));
+    Assertions.assertEquals(
+        items.subList(0, 3), roxdb.query("metrics", "cpu", 3, Optional.empty()));
+
+    // queries over a time range read only the overlapping windows
+    Assertions.assertEquals(
+        items.subList(1, 5),
+        roxdb.query(
+            "metrics",
+            "cpu",
+            10,
+            Optional.of(
+                SortKeyRange.between(
+                    RangeBoundary.exclusive(items.get(0).key().sortKey()),
+                    RangeBoundary.inclusive(items.get(4).key().sortKey())))));
+
+    // sort keys of time series tables must be timestamps
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> roxdb.putItem("metrics", new Item(new Key("cpu", "yesterday"), new HashMap<>())));
+    // other forms of timestamps would not sort chronologically
+    for (String sortKey :
+        List.of(
+            today.plus(1, ChronoUnit.HOURS).plusMillis(500).toString(),
+            today.toString().replace("Z", "+00:00"),
+            today.toString().replace("T00:00:00Z", "T02:00:00+02:00"))) {
+      Assertions.assertThrows(
+          IllegalArgumentException.class,
+          () -> roxdb.putItem("metrics", new Item(new Key("cpu", sortKey), new HashMap<>())));
+    }
+
+    // retention drops whole windows, 2 most recent windows are kept
+    roxdb.dropExpiredTimeWindows();
+    Assertions.assertEquals(
+        items.subList(4, 8), roxdb.query("metrics", "cpu", 10, Optional.empty()));
+    Assertions.assertNull(roxdb.getItem("metrics", items.get(0).key()));
+    // dropped windows are not flushed
+    roxdb.flush();
+    roxdb.runIdleFlush();
+
+    // indexes are rejected, they would keep returning items of dropped windows
+    for (IndexDefinition definition :
+        List.of(
+            new IndexDefinition("byValue", IndexType.GLOBAL, "value", null, List.of(), List.of()),
+            new IndexDefinition("byValue", IndexType.LOCAL, null, "value", List.of(), List.of()),
+            new IndexDefinition(
+                "byValue", IndexType.BITMAP, null, null, List.of(), List.of("value")))) {
+      Assertions.assertThrows(
+          IllegalArgumentException.class, () -> roxdb.createIndex("metrics", definition, 0));
+    }
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> roxdb.queryIndex("metrics", "byValue", "cpu", 10, Optional.empty()));
+
+    // windows are rediscovered after restart
+    roxdb.close();
+    roxdb = new RoxDBImpl(dbPath.toString(), new TablesConfig(Map.of("metrics", metricsConfig)));
+    Assertions.assertEquals(
+        items.subList(4, 8), roxdb.query("metrics", "cpu", 10, Optional.empty()));
+  }
+
+  @Test
+  void queryExclusiveStartKeyNotFound() throws RocksDBException {
+    for (int i = 0; i < 3; i++) {
+      roxdb.putItem("users", new Item(new Key("user123", "profile" + i), new HashMap<>()));
+    }
+
+    // exclusive start key which does not exist must not skip the next item
+    List<Item> queryResults =
+        roxdb.query(
+            "users",
+            "user123",
+            10,
+            Optional.of(SortKeyRange.from(RangeBoundary.exclusive("profile0a"))));
+    Assertions.assertEquals(2, queryResults.size());
+    Assertions.assertEquals("profile1", queryResults.get(0).key().sortKey());
+  }
+
+  @Test
+  void queue() throws RocksDBException {
+    roxdb.close();
+    TablesConfig tablesConfig =
+        new TablesConfig(Map.of("jobs", new TableConfig(TableType.QUEUE, null, null, null, null)));
+    roxdb = new RoxDBImpl(dbPath.toString(), tablesConfig);
+
+    List<Key> keys = new java.util.ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      keys.add(roxdb.enqueue("jobs", "emails", new HashMap<>(Map.of("job", i))));
+    }
+    // offsets are monotonic and sorted lexicographically
+    Assertions.assertEquals("00000000000000000001", keys.get(0).sortKey());
+    Assertions.assertEquals("00000000000000000005", keys.get(4).sortKey());
+
+    // every consumer group has its own offset
+    List<Item> workers = roxdb.dequeue("jobs", "emails", "workers", 3);
+    Assertions.assertEquals(keys.subList(0, 3), workers.stream().map(Item::key).toList());
+    List<Item> audit = roxdb.dequeue("jobs", "emails", "audit", 10);
+    Assertions.assertEquals(keys, audit.stream().map(Item::key).toList());
+
+    roxdb.ack("jobs", "emails", "workers", keys.get(2).sortKey());
+    workers = roxdb.dequeue("jobs", "emails", "workers", 3);
+    Assertions.assertEquals(keys.subList(3, 5), workers.stream().map(Item::key).toList());
+    // messages not acknowledged by all groups are kept
+    Assertions.assertEquals(5, roxdb.query("jobs", "emails", 10, Optional.empty()).size());
+
+    roxdb.ack("jobs", "emails", "audit", keys.get(3).sortKey());
+    // messages acknowledged by all groups are removed
+    Assertions.assertEquals(
+        keys.subList(3, 5),
+        roxdb.query("jobs", "emails", 10, Optional.empty()).stream().map(Item::key).toList());
+    // acknowledging older offset is a no-op
+    roxdb.ack("jobs", "emails", "audit", keys.get(0).sortKey());
+    Assertions.assertEquals(
+        keys.subList(4, 5),
+        roxdb.dequeue("jobs", "emails", "audit", 10).stream().map(Item::key).toList());
+
+    // items cannot be put directly and offsets which were not assigned cannot be acknowledged
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> roxdb.putItem("jobs", new Item(new Key("emails", "1"), new HashMap<>())));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> roxdb.ack("jobs", "emails", "audit", Queues.formatOffset(6)));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> roxdb.enqueue("users", "emails", new HashMap<>()));
+
+    // offsets are not reused after restart even when all messages were removed
+    roxdb.ack("jobs", "emails", "workers", keys.get(4).sortKey());
+    roxdb.ack("jobs", "emails", "audit", keys.get(4).sortKey());
+    Assertions.assertTrue(roxdb.query("jobs", "emails", 10, Optional.empty()).isEmpty());
+    roxdb.close();
+    roxdb = new RoxDBImpl(dbPath.toString(), tablesConfig);
+    Key next = roxdb.enqueue("jobs", "emails", new HashMap<>());
+    Assertions.assertEquals(Queues.formatOffset(6), next.sortKey());
+    Assertions.assertEquals(
+        List.of(next),
+        roxdb.dequeue("jobs", "emails", "workers", 10).stream().map(Item::key).toList());
+  }
+
+  @Test
+  void generatedSortKeys() throws RocksDBException {
+    List<Key> keys = new java.util.ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      keys.add(roxdb.putItem("events", "user123", new HashMap<>(Map.of("sequence", i))));
+    }
+
+    // generated sort keys are unique and ordered by insertion
+    List<Item> queryResults = roxdb.query("events", "user123", 100, Optional.empty());
+    Assertions.assertEquals(keys, queryResults.stream().map(Item::key).toList());
+    Assertions.assertEquals(26, keys.get(0).sortKey().length());
+    Assertions.assertEquals(0, queryResults.get(0).attributes().get("sequence"));
+    Assertions.assertEquals(99, queryResults.get(99).attributes().get("sequence"));
+
+    // time series sort keys are timestamps provided by clients
+    roxdb.close();
+    roxdb =
+        new RoxDBImpl(
+            dbPath.toString(),
+            new TablesConfig(
+                Map.of("metrics", new TableConfig(TableType.TIME_SERIES, null, null, null, null))));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> roxdb.putItem("metrics", "cpu", new HashMap<>()));
+  }
+
+  @Test
+  void hotPartitions() throws RocksDBException {
+    roxdb.close();
+    TablesConfig tablesConfig =
+        new TablesConfig(
+            Map.of(
+                "timeline",
+                new TableConfig(
+                    TableType.STANDARD,
+                    null,
+                    null,
+                    new HotPartitionsConfig(4, List.of("celebrity"), 1000),
+                    null)));
+    roxdb = new RoxDBImpl(dbPath.toString(), tablesConfig);
+
+    // listed partition is sharded on first write, queries merge all shards in sort key order
+    for (int i = 19; i >= 0; i--) {
+      roxdb.putItem(
+          "timeline",
+          new Item(
+              new Key("celebrity", String.format("post%02d", i)), new HashMap<>(Map.of("i", i))));
+    }
+    List<Item> queryResults = roxdb.query("timeline", "celebrity", 100, Optional.empty());
+    Assertions.assertEquals(20, queryResults.size());
+    for (int i = 0; i < 20; i++) {
+      Assertions.assertEquals(String.format("post%02d", i), queryResults.get(i).key().sortKey());
+    }
+    queryResults =
+        roxdb.query(
+            "timeline",
+            "celebrity",
+            3,
+            Optional.of(SortKeyRange.from(RangeBoundary.exclusive("post09"))));
+    Assertions.assertEquals(
+        List.of("post10", "post11", "post12"),
+        queryResults.stream().map(item -> item.key().sortKey()).toList());
+    Assertions.assertNull(roxdb.getItem("timeline", new Key("celebrity", "post20")));
+    Assertions.assertEquals(
+        5, roxdb.getItem("timeline", new Key("celebrity", "post05")).attributes().get("i"));
+    Assertions.assertTrue(
+        roxdb.query("timeline", "other", 10, Optional.empty()).isEmpty(),
+        "Other partitions are not affected");
+
+    // partition which exceeds write rate is sharded, items written before keep being read
+    roxdb.close();
+    tablesConfig =
+        new TablesConfig(
+            Map.of(
+                "timeline",
+                new TableConfig(
+                    TableType.STANDARD,
+                    null,
+                    null,
+                    new HotPartitionsConfig(4, List.of(), 5),
+                    null)));
+    roxdb = new RoxDBImpl(dbPath.toString(), tablesConfig);
+    for (int i = 0; i < 20; i++) {
+      roxdb.putItem(
+          "timeline",
+          new Item(new Key("rising", String.format("post%02d", i)), new HashMap<>(Map.of("i", i))));
+    }
+    // items written before the partition became hot are moved to shards when they are written again
+    roxdb.updateItem(
+        "timeline", new Item(new Key("rising", "post00"), new HashMap<>(Map.of("edited", true))));
+    roxdb.executeTransaction(
+        txCtx -> {
+          txCtx.delete("timeline", new Key("rising", "post01"));
+          txCtx.put(
+              "timeline", new Item(new Key("rising", "post02"), new HashMap<>(Map.of("i", 22))));
+        });
+    roxdb.deleteItem("timeline", new Key("rising", "post19"));
+
+    queryResults = roxdb.query("timeline", "rising", 100, Optional.empty());
+    Assertions.assertEquals(18, queryResults.size());
+    Assertions.assertEquals("post00", queryResults.get(0).key().sortKey());
+    Assertions.assertEquals(Map.of("i", 0, "edited", true), queryResults.get(0).attributes());
+    Assertions.assertEquals("post02", queryResults.get(1).key().sortKey());
+    Assertions.assertEquals(22, queryResults.get(1).attributes().get("i"));
+    Assertions.assertEquals("post18", queryResults.get(17).key().sortKey());
+    Assertions.assertNull(roxdb.getItem("timeline", new Key("rising", "post01")));
+
+    // sharding survives restart and listed partitions are still sharded
+    roxdb.close();
+    roxdb = new RoxDBImpl(dbPath.toString(), tablesConfig);
+    Assertions.assertEquals(queryResults, roxdb.query("timeline", "rising", 100, Optional.empty()));
+    Assertions.assertEquals(20, roxdb.query("timeline", "celebrity", 100, Optional.empty()).size());
+  }
+
+  @Test
+  void hotPartitionWritesOfNewItems() throws RocksDBException {
+    roxdb.close();
+    TablesConfig tablesConfig =
+        new TablesConfig(
+            Map.of(
+                "timeline",
+                new TableConfig(
+                    TableType.STANDARD,
+                    null,
+                    null,
+                    new HotPartitionsConfig(4, List.of(), 5),
+                    null)));
+    roxdb = new RoxDBImpl(dbPath.toString(), tablesConfig);
+    for (int i = 0; i < 10; i++) {
+      roxdb.putItem(
+          "timeline", new Item(new Key("rising", String.format("post%02d", i)), new HashMap<>()));
+    }
+
+    // items which are not stored in the table column family are not deleted from it
+    long keysWritten = roxdb.getStatistics().getTickerCount(TickerType.NUMBER_KEYS_WRITTEN);
+    for (int i = 10; i < 15; i++) {
+      roxdb.putItem(
+          "timeline", new Item(new Key("rising", String.format("post%02d", i)), new HashMap<>()));
+    }
+    roxdb.executeTransaction(
+        txCtx -> {
+          for (int i = 15; i < 20; i++) {
+            txCtx.put(
+                "timeline",
+                new Item(new Key("rising", String.format("post%02d", i)), new HashMap<>()));
+          }
+        });
+    Assertions.assertEquals(
+        keysWritten + 10, roxdb.getStatistics().getTickerCount(TickerType.NUMBER_KEYS_WRITTEN));
+    Assertions.assertEquals(20, roxdb.query("timeline", "rising", 100, Optional.empty()).size());
+  }
+
+  @Test
+  void hotPartitionShardedAfterWritesInFlight() throws Exception {
+    roxdb.close();
+    TablesConfig tablesConfig =
+        new TablesConfig(
+            Map.of(
+                "timeline",
+                new TableConfig(
+                    TableType.STANDARD,
+                    null,
+                    null,
+                    new HotPartitionsConfig(4, List.of(), 2),
+                    null)));
+    roxdb = new RoxDBImpl(dbPath.toString(), tablesConfig);
+    Key key = new Key("rising", "post00");
+    CountDownLatch written = new CountDownLatch(1);
+    CountDownLatch commit = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      // transaction chooses the table column family before the partition becomes hot
+      Future<?> transaction =
+          executor.submit(
+              () -> {
+                roxdb.executeTransaction(
+                    txCtx -> {
+                      txCtx.put("timeline", new Item(key, new HashMap<>(Map.of("by", "tx"))));
+                      written.countDown();
+                      await(commit);
+                    });
+                return null;
+              });
+      Assertions.assertTrue(written.await(5, TimeUnit.SECONDS));
+      Future<?> writes =
+          executor.submit(
+              () -> {
+                for (int i = 1; i < 10; i++) {
+                  roxdb.putItem(
+                      "timeline",
+                      new Item(new Key("rising", String.format("post%02d", i)), new HashMap<>()));
+                }
+                return null;
+              });
+      // sharding gives up waiting for the transaction, writes go to the table column family
+      writes.get(5, TimeUnit.SECONDS);
+
+      commit.countDown();
+      transaction.get(5, TimeUnit.SECONDS);
+    } finally {
+      commit.countDown();
+      executor.shutdownNow();
+    }
+    for (int i = 10; i < 20; i++) {
+      roxdb.putItem(
+          "timeline", new Item(new Key("rising", String.format("post%02d", i)), new HashMap<>()));
+    }
+    roxdb.putItem("timeline", new Item(key, new HashMap<>(Map.of("by", "put"))));
+
+    // the last write wins and every item is stored once
+    Assertions.assertEquals(Map.of("by", "put"), roxdb.getItem("timeline", key).attributes());
+    List<Item> queryResults = roxdb.query("timeline", "rising", 100, Optional.empty());
+    Assertions.assertEquals(20, queryResults.size());
+    Assertions.assertEquals(Map.of("by", "put"), queryResults.get(0).attributes());
+  }
+
+  @Test
+  void hotPartitionsShardedWhileTransactionsWaitForEachOther() throws Exception {
+    roxdb.close();
+    TablesConfig tablesConfig =
+        new TablesConfig(
+            Map.of(
+                "timeline",
+                new TableConfig(
+                    TableType.STANDARD,
+                    null,
+                    null,
+                    new HotPartitionsConfig(4, List.of(), 1),
+                    null)));
+    roxdb = new RoxDBImpl(dbPath.toString(), tablesConfig);
+    // warms up writes so that sharding writes start waiting quickly
+    roxdb.putItem("timeline", new Item(new Key("other", "put"), new HashMap<>()));
+    CountDownLatch written = new CountDownLatch(2);
+    CountDownLatch proceed = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      // each transaction locks one partition and then writes to the other one, partitions use
+      // different lock stripes
+      List<Future<?>> futures = new ArrayList<>();
+      for (String[] partitions :
+          List.of(new String[] {"rising", "falling"}, new String[] {"falling", "rising"})) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  roxdb.executeTransaction(
+                      txCtx -> {
+                        txCtx.put(
+                            "timeline",
+                            new Item(
+                                new Key(partitions[0], "tx-" + partitions[0]), new HashMap<>()));
+                        written.countDown();
+                        await(proceed);
+                        txCtx.put(
+                            "timeline",
+                            new Item(
+                                new Key(partitions[1], "tx-" + partitions[0]), new HashMap<>()));
+                      });
+                  return null;
+                }));
+      }
+      Assertions.assertTrue(written.await(5, TimeUnit.SECONDS));
+      // writes which exceed the write rate wait to shard the partitions locked by transactions
+      for (String partitionKey : List.of("rising", "falling")) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  roxdb.putItem(
+                      "timeline", new Item(new Key(partitionKey, "put"), new HashMap<>()));
+                  return null;
+                }));
+      }
+      Thread.sleep(50);
+      proceed.countDown();
+
+      for (Future<?> future : futures) {
+        future.get(5, TimeUnit.SECONDS);
+      }
+    } finally {
+      proceed.countDown();
+      executor.shutdownNow();
+    }
+    Assertions.assertEquals(3, roxdb.query("timeline", "rising", 100, Optional.empty()).size());
+    Assertions.assertEquals(3, roxdb.query("timeline", "falling", 100, Optional.empty()).size());
+  }
+
+  @Test
+  void indexCreatedWhileWriteInFlight() throws Exception {
+    // index on another table is not blocked
+    roxdb.createIndex(
+        "customers",
+        new IndexDefinition("byZip", IndexType.GLOBAL, "zip", null, List.of(), List.of()),
+        10000);
+    CountDownLatch written = new CountDownLatch(1);
+    CountDownLatch commit = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      // transaction does not see the index and commits after it is created
+      Future<?> transaction =
+          executor.submit(
+              () -> {
+                roxdb.executeTransaction(
+                    txCtx -> {
+                      txCtx.put("orders", order("order1", "alice", 250, "open"));
+                      written.countDown();
+                      await(commit);
+                    });
+                return null;
+              });
+      Assertions.assertTrue(written.await(5, TimeUnit.SECONDS));
+      Future<?> createIndex =
+          executor.submit(
+              () -> {
+                roxdb.createIndex(
+                    "orders",
+                    new IndexDefinition(
+                        "byCustomer", IndexType.GLOBAL, "customer", "total", List.of(), List.of()),
+                    10000);
+                return null;
+              });
+      // index is registered once the transaction which did not see it ends
+      Assertions.assertThrows(TimeoutException.class, () -> createIndex.get(1, TimeUnit.SECONDS));
+
+      commit.countDown();
+      transaction.get(5, TimeUnit.SECONDS);
+      createIndex.get(5, TimeUnit.SECONDS);
+    } finally {
+      commit.countDown();
+      executor.shutdownNow();
+    }
+    awaitIndex("orders", "byCustomer");
+    Assertions.assertEquals(
+        List.of("order1"), indexSortKeys("byCustomer", "alice", Optional.empty()));
+  }
+
+  @Test
+  void globalIndex() throws RocksDBException, InterruptedException {
+    // existing items are indexed by backfill
+    roxdb.putItem("orders", order("order1", "alice", 250, "open"));
+    roxdb.putItem("orders", order("order2", "bob", 20, "open"));
+    roxdb.putItem("orders", order("order3", "alice", 9.5, "closed"));
+    roxdb.putItem("orders", new Item(new Key("shop1", "order4"), new HashMap<>()));
+
+    roxdb.createIndex(
+        "orders",
+        new IndexDefinition(
+            "byCustomer", IndexType.GLOBAL, "customer", "total", List.of(), List.of()),
+        10000);
+    roxdb.createIndex(
+        "orders",
+        new IndexDefinition(
+            "byStatus", IndexType.GLOBAL, "status", null, List.of("total"), List.of()),
+        10000);
+    awaitIndex("orders", "byCustomer");
+    awaitIndex("orders", "byStatus");
+
+    // numeric sort attribute is ordered numerically
+    Assertions.assertEquals(
+        List.of("order3", "order1"), indexSortKeys("byCustomer", "alice", Optional.empty()));
+    Assertions.assertEquals(
+        order("order1", "alice", 250, "open"),
+        roxdb.queryIndex("orders", "byCustomer", "alice", 10, Optional.empty()).get(1));
+
+    // writes maintain the index
+    roxdb.putItem("orders", order("order5", "alice", 100, "open"));
+    roxdb.updateItem(
+        "orders", new Item(new Key("shop1", "order2"), new HashMap<>(Map.of("customer", "alice"))));
+    roxdb.deleteItem("orders", new Key("shop1", "order3"));
+    roxdb.executeTransaction(
+        txCtx -> {
+          txCtx.put("orders", order("order6", "carol", 5, "open"));
+          txCtx.delete("orders", new Key("shop1", "order1"));
+        });
+    Assertions.assertEquals(
+        List.of("order2", "order5"), indexSortKeys("byCustomer", "alice", Optional.empty()));
+    Assertions.assertTrue(indexSortKeys("byCustomer", "bob", Optional.empty()).isEmpty());
+    Assertions.assertEquals(
+        List.of("order5"),
+        indexSortKeys(
+            "byCustomer",
+            "alice",
+            Optional.of(
+                SortKeyRange.between(
+                    RangeBoundary.exclusive("20"), RangeBoundary.inclusive("100")))));
+
+    // projected index returns only projected and index attributes
+    List<Item> openOrders = roxdb.queryIndex("orders", "byStatus", "open", 10, Optional.empty());
+    Assertions.assertEquals(
+        List.of(new Key("shop1", "order2"), new Key("shop1", "order5"), new Key("shop1", "order6")),
+        openOrders.stream().map(Item::key).toList());
+    Assertions.assertEquals(Map.of("status", "open", "total", 100), openOrders.get(1).attributes());
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> roxdb.queryIndex("orders", "byRegion", "eu", 10, Optional.empty()));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            roxdb.createIndex(
+                "orders",
+                new IndexDefinition(
+                    "byStatus", IndexType.GLOBAL, "status", null, List.of(), List.of()),
+                0));
+
+    // index definitions survive restart
+    roxdb.close();
+    roxdb = new RoxDBImpl(dbPath.toString());
+    roxdb.putItem("orders", order("order7", "alice", 1, "open"));
+    Assertions.assertEquals(
+        List.of("order7", "order2", "order5"),
+        indexSortKeys("byCustomer", "alice", Optional.empty()));
+  }
+
+  @Test
+  void globalIndexNumericPartition() throws RocksDBException, InterruptedException {
+    roxdb.putItem("orders", order("order1", "alice", 20, "open"));
+    roxdb.putItem("orders", order("order2", "bob", 20.0, "open"));
+    roxdb.putItem("orders", order("order3", "carol", 250, "open"));
+    roxdb.createIndex(
+        "orders",
+        new IndexDefinition("byTotal", IndexType.GLOBAL, "total", null, List.of(), List.of()),
+        10000);
+    awaitIndex("orders", "byTotal");
+
+    // query partition value is encoded like numeric attribute values
+    Assertions.assertEquals(
+        List.of("order1", "order2"), indexSortKeys("byTotal", "20", Optional.empty()));
+    Assertions.assertEquals(List.of("order3"), indexSortKeys("byTotal", "250", Optional.empty()));
+    Assertions.assertTrue(indexSortKeys("byTotal", "21", Optional.empty()).isEmpty());
+  }
+
+  @Test
+  void indexedStringsOfDigits() throws RocksDBException, InterruptedException {
+    roxdb.putItem("customers", customer("c1", "02134", "10"));
+    roxdb.putItem("customers", customer("c2", "02139", "12345"));
+    roxdb.putItem("customers", customer("c3", "10001", "1e5"));
+    roxdb.createIndex(
+        "customers",
+        new IndexDefinition("byZip", IndexType.GLOBAL, "region", "zip", List.of(), List.of()),
+        10000);
+    roxdb.createIndex(
+        "customers",
+        new IndexDefinition(
+            "byOrder", IndexType.BITMAP, null, null, List.of(), List.of("lastOrder")),
+        10000);
+    awaitIndex("customers", "byZip");
+    awaitIndex("customers", "byOrder");
+
+    // string sort values which look like numbers are compared as strings
+    Assertions.assertEquals(
+        List.of("c1", "c2"),
+        roxdb
+            .queryIndex(
+                "customers",
+                "byZip",
+                "east",
+                10,
+                Optional.of(
+                    SortKeyRange.between(
+                        RangeBoundary.inclusive("02100"), RangeBoundary.exclusive("02200"))))
+            .stream()
+            .map(item -> item.key().sortKey())
+            .toList());
+
+    // bitmap and residual filters match strings of digits, numbers still match numeric values
+    for (String lastOrder : List.of("12345", "1e5")) {
+      Assertions.assertEquals(
+          1,
+          roxdb
+              .query("customers", "east", 10, Optional.empty(), Map.of("lastOrder", lastOrder))
+              .size());
+    }
+    Assertions.assertEquals(
+        List.of(new Key("east", "c1")),
+        roxdb.query("customers", "east", 10, Optional.empty(), Map.of("zip", "02134")).stream()
+            .map(Item::key)
+            .toList());
+    roxdb.putItem(
+        "customers",
+        new Item(new Key("east", "c4"), new HashMap<>(Map.of("region", "east", "lastOrder", 10))));
+    Assertions.assertEquals(
+        List.of(new Key("east", "c1"), new Key("east", "c4")),
+        roxdb.query("customers", "east", 10, Optional.empty(), Map.of("lastOrder", "10")).stream()
+            .map(Item::key)
+            .toList());
+  }
+
+  @Test
+  void localIndex() throws RocksDBException, InterruptedException {
+    roxdb.putItem("products", product("p1", "keyboard", 120));
+    roxdb.putItem("products", product("p2", "mouse", 40));
+
+    roxdb.createIndex(
+        "products",
+        new IndexDefinition("byPrice", IndexType.LOCAL, null, "price", List.of("name"), List.of()),
+        10000);
+    roxdb.createIndex(
+        "products",
+        new IndexDefinition("byName", IndexType.LOCAL, null, "name", List.of(), List.of()),
+        10000);
+    awaitIndex("products", "byPrice");
+    awaitIndex("products", "byName");
+
+    roxdb.putItem("products", product("p3", "monitor", 300));
+    roxdb.putItem("products", product("p4", "cable", 40));
+    roxdb.updateItem(
+        "products", new Item(new Key("shop1", "p1"), new HashMap<>(Map.of("price", 99))));
+    // other partitions are indexed separately
+    roxdb.putItem(
+        "products",
+        new Item(new Key("shop2", "p1"), new HashMap<>(Map.of("name", "desk", "price", 10))));
+
+    // items with equal sort values are ordered by table sort key
+    List<Item> byPrice = roxdb.queryIndex("products", "byPrice", "shop1", 10, Optional.empty());
+    Assertions.assertEquals(
+        List.of("p2", "p4", "p1", "p3"),
+        byPrice.stream().map(item -> item.key().sortKey()).toList());
+    // projected attributes are returned without reading the table
+    Assertions.assertEquals(Map.of("name", "keyboard", "price", 99), byPrice.get(2).attributes());
+    Assertions.assertEquals(
+        List.of("p1", "p3"),
+        roxdb
+            .queryIndex(
+                "products",
+                "byPrice",
+                "shop1",
+                10,
+                Optional.of(SortKeyRange.from(RangeBoundary.exclusive("40"))))
+            .stream()
+            .map(item -> item.key().sortKey())
+            .toList());
+
+    // not projected index returns table items
+    List<Item> byName = roxdb.queryIndex("products", "byName", "shop1", 2, Optional.empty());
+    Assertions.assertEquals(
+        List.of(
+            product("p4", "cable", 40),
+            new Item(
+                new Key("shop1", "p1"),
+                new HashMap<>(Map.of("name", "keyboard", "price", 99, "stock", 10)))),
+        byName);
+    Assertions.assertEquals(
+        List.of(new Key("shop2", "p1")),
+        roxdb.queryIndex("products", "byName", "shop2", 10, Optional.empty()).stream()
+            .map(Item::key)
+            .toList());
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new IndexDefinition("invalid", IndexType.LOCAL, "name", "price", List.of(), List.of()));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new IndexDefinition("invalid", IndexType.LOCAL, null, null, List.of(), List.of()));
+  }
+
+  @Test
+  void bitmapIndex() throws RocksDBException, InterruptedException {
+    roxdb.putItem("orders", order("order1", "alice", 250, "open"));
+    roxdb.putItem("orders", order("order2", "bob", 20, "open"));
+    roxdb.putItem("orders", order("order3", "alice", 20, "closed"));
+
+    // without bitmap index filters are evaluated on the partition items
+    Assertions.assertEquals(
+        List.of("order1", "order2"),
+        filteredSortKeys(10, Optional.empty(), Map.of("status", "open")));
+
+    roxdb.createIndex(
+        "orders",
+        new IndexDefinition(
+            "byStatus", IndexType.BITMAP, null, null, List.of(), List.of("status", "customer")),
+        10000);
+    awaitIndex("orders", "byStatus");
+
+    // writes maintain posting lists
+    roxdb.putItem("orders", order("order4", "alice", 15, "open"));
+    roxdb.putItem("orders", order("order5", "alice", 20, "open"));
+    roxdb.updateItem(
+        "orders", new Item(new Key("shop1", "order3"), new HashMap<>(Map.of("status", "open"))));
+    roxdb.deleteItem("orders", new Key("shop1", "order4"));
+
+    Assertions.assertEquals(
+        List.of("order1", "order3", "order5"),
+        filteredSortKeys(10, Optional.empty(), Map.of("status", "open", "customer", "alice")));
+    // filters not covered by the index are checked on items, numeric filters match numbers
+    Assertions.assertEquals(
+        List.of("order2", "order3", "order5"),
+        filteredSortKeys(10, Optional.empty(), Map.of("status", "open", "total", "20")));
+    Assertions.assertEquals(
+        List.of("order3"),
+        filteredSortKeys(
+            1,
+            Optional.of(
+                SortKeyRange.between(
+                    RangeBoundary.exclusive("order1"), RangeBoundary.inclusive("order5"))),
+            Map.of("customer", "alice")));
+    Assertions.assertEquals(
+        List.of(), filteredSortKeys(10, Optional.empty(), Map.of("status", "cancelled")));
+
+    // bitmap index cannot be queried directly
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> roxdb.queryIndex("orders", "byStatus", "shop1", 10, Optional.empty()));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new IndexDefinition("invalid", IndexType.BITMAP, null, null, List.of(), List.of()));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new IndexDefinition(
+                "invalid", IndexType.BITMAP, "status", null, List.of(), List.of("status")));
+  }
+
+  @Test
+  void geoIndex() throws RocksDBException, InterruptedException {
+    roxdb.putItem("stores", store("warsaw", 52.2297, 21.0122));
+    roxdb.putItem("stores", store("krakow", 50.0647, 19.9450));
+    roxdb.createIndex(
+        "stores",
+        new IndexDefinition(
+            "byLocation", IndexType.GEO, null, null, List.of(), List.of("lat", "lon")),
+        10000);
+    awaitIndex("stores", "byLocation");
+
+    roxdb.putItem("stores", store("lodz", 51.7592, 19.4560));
+    roxdb.putItem("stores", store("gdansk", 54.3520, 18.6466));
+    // moved store is re-indexed, stores without coordinates are not indexed
+    roxdb.updateItem(
+        "stores",
+        new Item(
+            new Key("poland", "gdansk"), new HashMap<>(Map.of("lat", 52.4064, "lon", 16.9252))));
+    roxdb.putItem("stores", new Item(new Key("poland", "online"), new HashMap<>()));
+    roxdb.putItem(
+        "stores",
+        new Item(new Key("pacific", "fiji"), new HashMap<>(Map.of("lat", -17.7, "lon", 178.1))));
+    roxdb.putItem(
+        "stores",
+        new Item(new Key("pacific", "samoa"), new HashMap<>(Map.of("lat", -14.3, "lon", -170.7))));
+
+    // radius queries are ordered by distance
+    Assertions.assertEquals(
+        List.of("warsaw", "lodz"),
+        geoSortKeys("poland", 10, GeoArea.radius(52.2297, 21.0122, 150_000)));
+    Assertions.assertEquals(
+        List.of("lodz", "warsaw", "gdansk", "krakow"),
+        geoSortKeys("poland", 10, GeoArea.radius(51.7592, 19.4560, 300_000)));
+    Assertions.assertEquals(
+        List.of("lodz"), geoSortKeys("poland", 1, GeoArea.radius(51.7592, 19.4560, 300_000)));
+    // bounding box queries are ordered by sort key
+    Assertions.assertEquals(
+        List.of("gdansk", "lodz"), geoSortKeys("poland", 10, GeoArea.boundingBox(51, 16, 53, 20)));
+    Assertions.assertEquals(
+        List.of("fiji", "samoa"),
+        geoSortKeys("pacific", 10, GeoArea.boundingBox(-30, 170, 10, -170)));
+    Assertions.assertEquals(
+        List.of("samoa", "fiji"), geoSortKeys("pacific", 10, GeoArea.radius(-14, -171, 1_500_000)));
+    Assertions.assertEquals(
+        List.of(), geoSortKeys("poland", 10, GeoArea.radius(-14, -171, 1_500_000)));
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> roxdb.queryIndex("stores", "byLocation", "poland", 10, Optional.empty()));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new IndexDefinition("invalid", IndexType.GEO, null, null, List.of(), List.of("lat")));
+  }
+
+  @Test
+  void vectorIndex() throws RocksDBException, InterruptedException {
+    Random random = new Random(42);
+    Map<String, float[]> vectors = new HashMap<>();
+    for (int i = 0; i < 300; i++) {
+      String documentId = String.format("doc%03d", i);
+      float[] vector = new float[8];
+      for (int d = 0; d < vector.length; d++) {
+        vector[d] = random.nextFloat() * 2 - 1;
+      }
+      vectors.put(documentId, vector);
+      // half of the items are indexed by backfill and half by writes
+      if (i == 150) {
+        roxdb.createIndex(
+            "documents",
+            new IndexDefinition(
+                "byEmbedding", IndexType.VECTOR, null, null, List.of(), List.of("embedding")),
+            10000);
+      }
+      roxdb.putItem("documents", document(documentId, vector));
+    }
+    awaitIndex("documents", "byEmbedding");
+
+    // vectors are compared by direction
+    float[] query = vectors.get("doc007").clone();
+    for (int d = 0; d < query.length; d++) {
+      query[d] *= 3;
+    }
+    Assertions.assertEquals(List.of("doc007"), nearestDocuments(1, query));
+    List<String> nearest = nearestDocuments(10, query);
+    Assertions.assertEquals(bruteForceNearest(vectors, query, 10), nearest);
+
+    // writes maintain the graph
+    roxdb.deleteItem("documents", new Key("library", "doc007"));
+    roxdb.updateItem(
+        "documents",
+        new Item(new Key("library", nearest.get(1)), new HashMap<>(Map.of("title", "updated"))));
+    float[] moved = vectors.get("doc200");
+    roxdb.putItem("documents", document("doc100", moved));
+    vectors.remove("doc007");
+    vectors.put("doc100", moved);
+    Assertions.assertEquals(bruteForceNearest(vectors, query, 10), nearestDocuments(10, query));
+    Assertions.assertEquals(
+        List.of("doc100", "doc200"), nearestDocuments(2, moved).stream().sorted().toList());
+
+    // items without vector are not indexed
+    roxdb.putItem(
+        "documents",
+        new Item(new Key("library", "untitled"), new HashMap<>(Map.of("embedding", "none"))));
+    Assertions.assertEquals(
+        List.of(), roxdb.queryVectorIndex("documents", "byEmbedding", "archive", 10, query));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> roxdb.putItem("documents", document("doc300", new float[] {1, 0})));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> roxdb.queryVectorIndex("documents", "byEmbedding", "library", 10, new float[8]));
+  }
+
+  private static Item document(String documentId, float[] vector) {
+    List<Object> embedding = new ArrayList<>();
+    for (float value : vector) {
+      embedding.add((double) value);
+    }
+    return new Item(new Key("library", documentId), new HashMap<>(Map.of("embedding", embedding)));
+  }
+
+  private List<String> nearestDocuments(int limit, float[] vector) throws RocksDBException {
+    return roxdb.queryVectorIndex("documents", "byEmbedding", "library", limit, vector).stream()
+        .map(item -> item.key().sortKey())
+        .toList();
+  }
+
+  private static List<String> bruteForceNearest(
+      Map<String, float[]> vectors, float[] query, int limit) {
+    float[] normalized = VectorIndex.normalize(query);
+    return vectors.entrySet().stream()
+        .sorted(
+            Comparator.comparingDouble(
+                entry -> VectorIndex.distance(VectorIndex.normalize(entry.getValue()), normalized)))
+        .limit(limit)
+        .map(Map.Entry::getKey)
+        .toList();
+  }
+
+  private static Item store(String city, double latitude, double longitude) {
+    return new Item(
+        new Key("poland", city), new HashMap<>(Map.of("lat", latitude, "lon", longitude)));
+  }
+
+  private List<String> geoSortKeys(String partitionKey, int limit, GeoArea area)
+      throws RocksDBException {
+    return roxdb.queryGeoIndex("stores", "byLocation", partitionKey, limit, area).stream()
+        .map(item -> item.key().sortKey())
+        .toList();
+  }
+
+  private List<String> filteredSortKeys(
+      int limit, Optional<SortKeyRange> sortKeyRange, Map<String, String> filters)
+      throws RocksDBException {
+    return roxdb.query("orders", "shop1", limit, sortKeyRange, filters).stream()
+        .map(item -> item.key().sortKey())
+        .toList();
+  }
+
+  private static Item product(String productId, String name, Number price) {
+    return new Item(
+        new Key("shop1", productId),
+        new HashMap<>(Map.of("name", name, "price", price, "stock", 10)));
+  }
+
+  private static Item customer(String customerId, String zip, String lastOrder) {
+    return new Item(
+        new Key("east", customerId),
+        new HashMap<>(Map.of("region", "east", "zip", zip, "lastOrder", lastOrder)));
+  }
+
+  private static Item order(String orderId, String customer, Number total, String status) {
+    return new Item(
+        new Key("shop1", orderId),
+        new HashMap<>(Map.of("customer", customer, "total", total, "status", status)));
+  }
+
+  private List<String> indexSortKeys(
+      String indexName, String partitionKey, Optional<SortKeyRange> sortKeyRange)
+      throws RocksDBException {
+    return roxdb.queryIndex("orders", indexName, partitionKey, 10, sortKeyRange).stream()
+        .map(item -> item.key().sortKey())
+        .toList();
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void awaitIndex(String tableName, String indexName) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (!roxdb.isIndexActive(tableName, indexName)) {
+      Assertions.assertTrue(System.currentTimeMillis() < deadline, "Index was not built in time");
+      Thread.sleep(10);
+    }
+  }
 }
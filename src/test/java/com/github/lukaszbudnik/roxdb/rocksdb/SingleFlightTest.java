@@ -0,0 +1,132 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.rocksdb.RocksDBException;
+
+class SingleFlightTest {
+
+  @Test
+  void concurrentLoadsAreCoalesced() throws Exception {
+    SingleFlight<String, List<String>> singleFlight = new SingleFlight<>();
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<List<String>>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(
+            executor.submit(
+                () ->
+                    singleFlight.load(
+                        "key",
+                        () -> {
+                          loads.incrementAndGet();
+                          await(release);
+                          return List.of("value");
+                        })));
+      }
+      // wait until all callers joined the load
+      while (singleFlight.coalescedCount() < 7) {
+        Thread.sleep(10);
+      }
+      release.countDown();
+
+      List<String> first = results.getFirst().get(5, TimeUnit.SECONDS);
+      for (Future<List<String>> result : results) {
+        Assertions.assertSame(first, result.get(5, TimeUnit.SECONDS));
+      }
+      Assertions.assertEquals(1, loads.get());
+
+      // completed loads are not reused
+      singleFlight.load("key", () -> List.of("value"));
+      Assertions.assertEquals(7, singleFlight.coalescedCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void forgottenKeyStartsNewLoad() throws Exception {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<String> before =
+          executor.submit(
+              () ->
+                  singleFlight.load(
+                      "key",
+                      () -> {
+                        started.countDown();
+                        await(release);
+                        return "before write";
+                      }));
+      Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+      // write committed while the load was in flight
+      singleFlight.forget("key");
+      Assertions.assertEquals("after write", singleFlight.load("key", () -> "after write"));
+      Assertions.assertEquals(0, singleFlight.coalescedCount());
+
+      release.countDown();
+      Assertions.assertEquals("before write", before.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void exceptionsAreShared() throws Exception {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 2; i++) {
+        results.add(
+            executor.submit(
+                () ->
+                    singleFlight.load(
+                        "key",
+                        () -> {
+                          await(release);
+                          throw new RocksDBException("read failed");
+                        })));
+      }
+      while (singleFlight.coalescedCount() < 1) {
+        Thread.sleep(10);
+      }
+      release.countDown();
+
+      for (Future<String> result : results) {
+        var exception =
+            Assertions.assertThrows(
+                ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(RocksDBException.class, exception.getCause());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  // loaders can only throw RocksDBException
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+}
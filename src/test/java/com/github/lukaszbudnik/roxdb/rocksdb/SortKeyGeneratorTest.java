@@ -0,0 +1,74 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SortKeyGeneratorTest {
+
+  @Test
+  void encode() {
+    Assertions.assertEquals("00000000000000000000000000", SortKeyGenerator.encode(0, 0, 0));
+    Assertions.assertEquals(
+        "7ZZZZZZZZZZZZZZZZZZZZZZZZZ", SortKeyGenerator.encode((1L << 48) - 1, 0xFFFF, -1L));
+    // timestamp occupies the first 10 characters
+    Assertions.assertEquals(
+        "01ARYZ6S41", SortKeyGenerator.encode(1469918176385L, 0, 0).substring(0, 10));
+  }
+
+  @Test
+  void monotonicWithinSameMillisecond() {
+    Clock clock = Clock.fixed(Instant.parse("2025-01-31T10:15:30Z"), ZoneOffset.UTC);
+    SortKeyGenerator generator = new SortKeyGenerator(clock, new Random(42));
+
+    String previous = generator.next();
+    for (int i = 0; i < 1000; i++) {
+      String next = generator.next();
+      Assertions.assertTrue(next.compareTo(previous) > 0, next + " <= " + previous);
+      // all keys share the timestamp prefix
+      Assertions.assertEquals(previous.substring(0, 10), next.substring(0, 10));
+      previous = next;
+    }
+  }
+
+  @Test
+  void monotonicWhenClockGoesBackwards() {
+    MutableClock clock = new MutableClock(Instant.parse("2025-01-31T10:15:30Z"));
+    SortKeyGenerator generator = new SortKeyGenerator(clock, new Random(42));
+
+    String first = generator.next();
+    clock.instant = clock.instant.minusSeconds(5);
+    String second = generator.next();
+    Assertions.assertTrue(second.compareTo(first) > 0);
+    clock.instant = clock.instant.plusSeconds(10);
+    String third = generator.next();
+    Assertions.assertTrue(third.compareTo(second) > 0);
+    Assertions.assertNotEquals(first.substring(0, 10), third.substring(0, 10));
+  }
+
+  private static class MutableClock extends Clock {
+    private Instant instant;
+
+    MutableClock(Instant instant) {
+      this.instant = instant;
+    }
+
+    @Override
+    public ZoneOffset getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(java.time.ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SortedMergeTest {
+
+  @Test
+  void merge() {
+    List<List<String>> sources =
+        List.of(List.of("a", "d", "g"), List.of(), List.of("b", "c", "h"), List.of("e", "f"));
+
+    Assertions.assertEquals(
+        List.of("a", "b", "c", "d", "e", "f", "g", "h"),
+        SortedMerge.merge(sources, Comparator.naturalOrder(), 100));
+    Assertions.assertEquals(
+        List.of("a", "b", "c"), SortedMerge.merge(sources, Comparator.naturalOrder(), 3));
+    Assertions.assertTrue(
+        SortedMerge.merge(List.of(), Comparator.<String>naturalOrder(), 10).isEmpty());
+  }
+
+  @Test
+  void mergeEqualValuesInSourceOrder() {
+    record Value(String key, int source) {}
+    List<List<Value>> sources =
+        List.of(List.of(new Value("a", 0), new Value("b", 0)), List.of(new Value("a", 1)));
+
+    Assertions.assertEquals(
+        List.of(new Value("a", 0), new Value("a", 1), new Value("b", 0)),
+        SortedMerge.merge(sources, Comparator.comparing(Value::key), 10));
+  }
+}
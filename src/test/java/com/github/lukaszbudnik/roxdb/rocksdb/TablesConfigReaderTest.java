@@ -0,0 +1,114 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TablesConfigReaderTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void readConfig() throws IOException {
+    // Create test yaml file
+    Path tablesConfig = tempDir.resolve("tables.yaml");
+    String tablesConfigContent =
+"""
+tables:
+  sessions:
+    ttlAttribute: expiresAt
+  users: {}
+  metrics:
+    type: TIME_SERIES
+    timeSeries:
+      window: HOURLY
+      retentionWindows: 48
+      fifoCompaction: true
+      precision: MILLISECONDS
+  timeline:
+    hotPartitions:
+      shards: 16
+      partitionKeys: ["celebrity"]
+      writesPerSecondThreshold: 1000
+""";
+
+    Files.write(tablesConfig, tablesConfigContent.getBytes());
+
+    TablesConfigReader reader = new TablesConfigReader();
+    TablesConfig config = reader.readConfig(tablesConfig.toString());
+    assertNotNull(config);
+    assertEquals(4, config.tables().size());
+    assertEquals("expiresAt", config.getTableConfig("sessions").ttlAttribute());
+    assertFalse(config.getTableConfig("users").hasTtl());
+    assertEquals(TableConfig.DEFAULT, config.getTableConfig("orders"));
+    TableConfig metrics = config.getTableConfig("metrics");
+    assertTrue(metrics.isTimeSeries());
+    assertEquals(TimeWindow.HOURLY, metrics.timeSeries().window());
+    assertEquals(48, metrics.timeSeries().retentionWindows());
+    assertTrue(metrics.timeSeries().fifoCompaction());
+    assertEquals(TimestampPrecision.MILLISECONDS, metrics.timeSeries().precision());
+    TableConfig timeline = config.getTableConfig("timeline");
+    assertTrue(timeline.hasHotPartitions());
+    assertEquals(16, timeline.hotPartitions().shards());
+    assertEquals(List.of("celebrity"), timeline.hotPartitions().partitionKeys());
+    assertEquals(1000, timeline.hotPartitions().writesPerSecondThreshold());
+  }
+
+  @Test
+  void readConfigHotPartitionsNotSupported() throws IOException {
+    Path tablesConfig = tempDir.resolve("tables.yaml");
+    Files.write(
+        tablesConfig,
+        "tables:\n  jobs:\n    type: QUEUE\n    hotPartitions:\n      shards: 4\n".getBytes());
+
+    TablesConfigReader reader = new TablesConfigReader();
+    assertThrows(IllegalArgumentException.class, () -> reader.readConfig(tablesConfig.toString()));
+  }
+
+  @Test
+  void readConfigAggregates() throws IOException {
+    Path tablesConfig = tempDir.resolve("tables.yaml");
+    Files.write(
+        tablesConfig,
+"""
+tables:
+  orders:
+    aggregates:
+      - name: orders
+        function: COUNT
+      - name: revenue
+        function: SUM
+        attribute: total
+"""
+            .getBytes());
+
+    TablesConfigReader reader = new TablesConfigReader();
+    TableConfig orders = reader.readConfig(tablesConfig.toString()).getTableConfig("orders");
+    assertTrue(orders.hasAggregates());
+    assertEquals(
+        List.of(
+            new AggregateConfig("orders", AggregateFunction.COUNT, null),
+            new AggregateConfig("revenue", AggregateFunction.SUM, "total")),
+        orders.aggregates());
+
+    Files.write(
+        tablesConfig,
+        "tables:\n  orders:\n    aggregates:\n      - name: revenue\n        function: SUM\n"
+            .getBytes());
+    assertThrows(IllegalArgumentException.class, () -> reader.readConfig(tablesConfig.toString()));
+  }
+
+  @Test
+  void readConfigUnknownProperty() throws IOException {
+    Path tablesConfig = tempDir.resolve("tables.yaml");
+    Files.write(tablesConfig, "tables:\n  sessions:\n    ttl: expiresAt\n".getBytes());
+
+    TablesConfigReader reader = new TablesConfigReader();
+    assertThrows(IllegalArgumentException.class, () -> reader.readConfig(tablesConfig.toString()));
+  }
+}
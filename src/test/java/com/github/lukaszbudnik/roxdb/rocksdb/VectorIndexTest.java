@@ -0,0 +1,38 @@
+package com.github.lukaszbudnik.roxdb.rocksdb;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class VectorIndexTest {
+
+  @Test
+  void serializeNode() {
+    VectorIndex.Node node =
+        new VectorIndex.Node(
+            1,
+            new float[] {0.6f, 0.8f},
+            List.of(new ArrayList<>(List.of("a", "żółw")), new ArrayList<>(List.of())));
+
+    VectorIndex.Node deserialized = VectorIndex.deserializeNode(VectorIndex.serializeNode(node));
+
+    Assertions.assertEquals(node.level(), deserialized.level());
+    Assertions.assertArrayEquals(node.vector(), deserialized.vector());
+    Assertions.assertEquals(node.neighbors(), deserialized.neighbors());
+  }
+
+  @Test
+  void distance() {
+    float[] x = VectorIndex.normalize(new float[] {3, 0});
+    float[] y = VectorIndex.normalize(new float[] {0, 0.5f});
+    float[] diagonal = VectorIndex.normalize(new float[] {1, 1});
+
+    Assertions.assertEquals(0, VectorIndex.distance(x, x), 1e-6);
+    Assertions.assertEquals(1, VectorIndex.distance(x, y), 1e-6);
+    Assertions.assertEquals(1 - Math.sqrt(0.5), VectorIndex.distance(x, diagonal), 1e-6);
+    Assertions.assertNull(VectorIndex.normalize(new float[] {0, 0}));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> VectorIndex.distance(x, new float[] {1, 0, 0}));
+  }
+}